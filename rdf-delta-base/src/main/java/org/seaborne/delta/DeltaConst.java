@@ -62,6 +62,8 @@ public class DeltaConst {
     public static final String OP_LOCK_GRAB      = "lock-grab";
     public static final String OP_UNLOCK         = "unlock";
     public static final String OP_LOCK_REFRESH   = "lock-refresh";
+    // Several operations in one request.
+    public static final String OP_BATCH          = "batch";
 
     // JSON field names, in RPC and configuration files.
     public static final String F_OP            = "operation";
@@ -98,6 +100,7 @@ public class DeltaConst {
     public static final String F_LOCK_REF      = "lock-ref";
     public static final String F_LOCK_GRAB     = "lock-grab";
     public static final String F_LOCK_TICKS    = "lock-ticks";
+    public static final String F_TIMEOUT       = "timeout";
     // Some atomic JSON value.
     public static final String F_VALUE         = "value";
     // Some JSON array
@@ -106,6 +109,8 @@ public class DeltaConst {
     // JSON field names, patch append errors.
     public static final String F_ERROR         = "error";
     public static final String F_LOG_INFO      = "log_info";
+    // JSON field names, batch operation results.
+    public static final String F_STATUS        = "status";
 
     /** Default choice of port */
     public static final int    PORT            = 1066;
@@ -120,6 +125,59 @@ public class DeltaConst {
     // Properties used to define patch store providers.
     public static final String pDeltaStore     = "delta.store";
     public static final String pDeltaZk        = "delta.zk";
+    // Property to write the ZooKeeper patch headers in the binary encoding (default: JSON).
+    // Only to be set when every server of the cluster reads the binary encoding.
+    public static final String pDeltaZkHeadersBinary = "delta.zk.headers.binary";
+
+    // Property for the maximum size, in bytes, of the server-wide patch cache.
+    public static final String pDeltaPatchCache = "delta.patch.cache";
+
+    // Properties for the layout of the file patch store:
+    // one file per patch ("files", the default) or patches appended to segment files ("segments").
+    public static final String pDeltaFileLayout     = "delta.file.layout";
+    public static final String pDeltaSegmentBytes   = "delta.file.segment.bytes";
+    public static final String pDeltaSegmentPatches = "delta.file.segment.patches";
+    public static final String FILE_LAYOUT_FILES    = "files";
+    public static final String FILE_LAYOUT_SEGMENTS = "segments";
+
+    // Property for the layout of the RocksDB patch store:
+    // one database per patch log ("log", the default) or one database for all logs ("shared").
+    public static final String pDeltaRocksLayout    = "delta.rocks.layout";
+    public static final String ROCKS_LAYOUT_LOG     = "log";
+    public static final String ROCKS_LAYOUT_SHARED  = "shared";
+
+    // Properties for tuning the RocksDB patch store: the size in bytes of the block cache
+    // shared by all the databases, the limit in bytes on memtables, the compression of
+    // patches ("none", "snappy", "lz4", "zstd"), the bits per key of the bloom filter on
+    // patch ids (0 for none), the limit in bytes per second on flush and compaction writes
+    // (0 for none) and whether to collect RocksDB statistics.
+    public static final String pDeltaRocksCacheBytes       = "delta.rocks.cache.bytes";
+    public static final String pDeltaRocksWriteBufferBytes = "delta.rocks.writebuffer.bytes";
+    public static final String pDeltaRocksCompression      = "delta.rocks.compression";
+    public static final String pDeltaRocksBloomBits        = "delta.rocks.bloom.bits";
+    public static final String pDeltaRocksCompactionRate   = "delta.rocks.compaction.rate";
+    public static final String pDeltaRocksStatistics       = "delta.rocks.statistics";
+
+    // Properties for writes to the RocksDB patch store: whether each write waits for the
+    // write-ahead log to be synced to disk, the time in milliseconds a group commit waits
+    // for more writes (0 for no wait) and the maximum number of writes in a group commit.
+    public static final String pDeltaRocksSync         = "delta.rocks.sync";
+    public static final String pDeltaRocksCommitWindow = "delta.rocks.commit.window";
+    public static final String pDeltaRocksCommitBatch  = "delta.rocks.commit.batch";
+
+    // Properties for dataset snapshots: the directory for snapshot files (no snapshots if
+    // not set) and the number of patches between snapshots.
+    public static final String pDeltaSnapshotDir      = "delta.snapshot.dir";
+    public static final String pDeltaSnapshotInterval = "delta.snapshot.interval";
+
+    // Properties for patch log retention: the number of patches to keep, the age in seconds
+    // and the total size in bytes of the patches to keep, whether to remove the patches
+    // included in the latest snapshot, and the seconds between checks of the logs.
+    public static final String pDeltaRetainPatches  = "delta.retain.patches";
+    public static final String pDeltaRetainAge      = "delta.retain.age";
+    public static final String pDeltaRetainBytes    = "delta.retain.bytes";
+    public static final String pDeltaRetainSnapshot = "delta.retain.snapshot";
+    public static final String pDeltaRetainInterval = "delta.retain.interval";
 
     // HTTP query string.
     // Registration
@@ -130,6 +188,18 @@ public class DeltaConst {
     public static final String paramPatch      = "patch";
     public static final String paramDatasource = F_DATASOURCE;
     public static final String paramVersion    = "version";
+    // Range of versions (inclusive).
+    public static final String paramFrom       = "from";
+    public static final String paramTo         = "to";
+    // Fetch a range as squashed (net effect) patches.
+    public static final String paramSquash     = "squash";
+    // Wait for a change to a log.
+    public static final String paramAfter      = "after";
+    public static final String paramTimeout    = "timeout";
+
+    // HTTP response headers for a dataset snapshot: the version and patch id it includes.
+    public static final String hdrSnapshotVersion = "Delta-Snapshot-Version";
+    public static final String hdrSnapshotPatch   = "Delta-Snapshot-Patch";
 
     // Symbols used to store information, e.g. in a dataset context.
 
@@ -143,6 +213,10 @@ public class DeltaConst {
     public static final String contentTypePatchTextAlt  = "text/rdf-patch";
     public static final String contentTypePatchBinary   = "application/rdf-patch+thrift";
 
+    // Sequence of patches, each preceded by its length. See PatchStreamIO.
+    public static final String contentTypePatchRange        = "application/rdf-patch-range";
+    public static final String contentTypePatchRangeBinary  = "application/rdf-patch-range+thrift";
+
     // Preferred form.
     public static final ContentType ctPatchText         = ContentType.create(contentTypePatchText);
     public static final ContentType ctPatchBinary       = ContentType.create(contentTypePatchBinary);
@@ -160,8 +234,87 @@ public class DeltaConst {
     // Environment variable name for the port number of the Delta server.
     public static final String ENV_PORT        = "DELTA_PORT";
 
-    /** The size of the server-wide LRU cache */
-    public static final int PATCH_CACHE_SIZE   = 1000;
+    /** The default maximum size, in bytes, of the server-wide patch cache */
+    public static final long PATCH_CACHE_BYTES = 64L*1024*1024;
+
+    /** Size, in bytes, above which a patch being sent or received is held in a temporary file instead of in memory */
+    public static final long PATCH_SPOOL_BYTES = 8L*1024*1024;
+
+    /** The maximum number of patches of a log squashed into one patch when a range is fetched squashed */
+    public static final int SQUASH_PATCHES = 100;
+
+    /** The default number of requests a client makes at once to fetch patches when catching up with a patch log */
+    public static final int PREFETCH_THREADS          = 4;
+
+    /** The default number of versions fetched in one request when catching up with a patch log */
+    public static final int PREFETCH_CHUNK            = 100;
+
+    /** The default limit on the number of changes in patches fetched ahead of being applied when catching up with a patch log */
+    public static final long PREFETCH_BUFFER_CHANGES  = 1_000_000;
+
+    /** The default maximum number of patches applied in one transaction when catching up with a patch log */
+    public static final int CATCHUP_PATCHES           = 10_000;
+
+    /** The default number of changes after which a transaction ends when catching up with a patch log */
+    public static final long CATCHUP_CHANGES          = 1_000_000;
+
+    /** The default time, in milliseconds, that the number of patches in a transaction is adjusted towards when catching up with a patch log */
+    public static final long CATCHUP_TXN_MS           = 2_000;
+
+    /** The default size, in bytes, of the block cache shared by the RocksDB databases of the patch store */
+    public static final long ROCKS_CACHE_BYTES        = 128L*1024*1024;
+
+    /** The default limit, in bytes, on the memtables of all the RocksDB databases of the patch store */
+    public static final long ROCKS_WRITE_BUFFER_BYTES = 64L*1024*1024;
+
+    /** The default compression of patches in the RocksDB patch store */
+    public static final String ROCKS_COMPRESSION      = "zstd";
+
+    /** The default bits per key of the bloom filter on patch ids in the RocksDB patch store */
+    public static final int ROCKS_BLOOM_BITS          = 10;
+
+    /** The default maximum number of writes in one group commit to a RocksDB database */
+    public static final int ROCKS_COMMIT_BATCH        = 1000;
+
+    /** The default size, in bytes, at which a new segment file is started in the file patch store */
+    public static final long SEGMENT_BYTES     = 64L*1024*1024;
+
+    /** The default number of patches at which a new segment file is started in the file patch store */
+    public static final int SEGMENT_PATCHES    = 100_000;
+
+    /** The default number of patches between dataset snapshots */
+    public static final long SNAPSHOT_INTERVAL = 10_000;
+
+    /** The default time, in seconds, between applying the retention policy to the patch logs */
+    public static final long RETAIN_INTERVAL   = 10*60;
+
+    /** Default time, in milliseconds, a server holds a request waiting for a change to a patch log. */
+    public static final long AWAIT_TIMEOUT_MS  = 20*1000;
+
+    /**
+     * Maximum time, in milliseconds, a server holds a request waiting for a change to a patch log.
+     * This is less than the usual 30s HTTP connection idle timeout.
+     */
+    public static final long AWAIT_TIMEOUT_MAX_MS = 25*1000;
+
+    /** Interval, in milliseconds, between checks of a patch log when waiting for a change without notification. */
+    public static final long AWAIT_POLL_MS     = 1000;
+
+    /**
+     * Maximum time, in milliseconds, a server holds a request waiting to acquire a patch log lock.
+     * A waiting request holds a server thread so this is kept short; a client that has
+     * not got the lock asks again.
+     */
+    public static final long LOCK_WAIT_MAX_MS  = 2*1000;
+
+    /** Maximum number of operations in one batch RPC request. */
+    public static final int DRPC_BATCH_MAX     = 1000;
+
+    /** Number of operations a client sends in one batch RPC request. */
+    public static final int DRPC_BATCH_SIZE    = 100;
+
+    /** Number of threads a server uses to run the independent operations of batch RPC requests. */
+    public static final int DRPC_BATCH_THREADS = 8;
 
     /** The version number when not set */
     public static long VERSION_UNSET    = -1;
@@ -17,8 +17,13 @@
 
 package org.seaborne.delta;
 
+import java.io.InputStream ;
 import java.io.OutputStream ;
 
+import org.apache.jena.riot.Lang ;
+import org.apache.jena.riot.RDFParser ;
+import org.apache.jena.riot.lang.LabelToNode ;
+import org.apache.jena.riot.system.StreamRDF ;
 import org.seaborne.patch.RDFChanges;
 import org.seaborne.patch.changes.RDFChangesLog ;
 import org.seaborne.patch.changes.RDFChangesN ;
@@ -65,4 +70,17 @@ public class DeltaOps {
         TokenWriter tokenWriter = new TokenWriterText(out) ;
         return tokenWriter ;
     }
+
+    /**
+     * Parse a dataset snapshot, in N-Quads, keeping the blank node labels. The N-Quads
+     * writer encodes blank node labels ({@code _:B...}); decoding them gives the same blank
+     * nodes as the patches that are applied after the snapshot.
+     */
+    public static void parseSnapshot(InputStream in, StreamRDF dest) {
+        RDFParser.create()
+            .source(in)
+            .lang(Lang.NQUADS)
+            .labelToNode(LabelToNode.createUseLabelEncoded())
+            .parse(dest);
+    }
 }
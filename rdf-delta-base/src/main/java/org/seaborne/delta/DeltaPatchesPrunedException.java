@@ -0,0 +1,30 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta;
+
+import org.apache.jena.web.HttpSC;
+
+/**
+ * The patches asked for have been removed from the start of the patch log by log
+ * retention. A copy of the dataset that needs them can not catch up by applying patches;
+ * it has to start again from a snapshot or the initial state.
+ */
+public class DeltaPatchesPrunedException extends DeltaHttpException
+{
+    public DeltaPatchesPrunedException(String msg) { super(HttpSC.GONE_410, msg) ; }
+}
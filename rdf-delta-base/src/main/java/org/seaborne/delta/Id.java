@@ -79,6 +79,14 @@ public final class Id {
         return new Id(str);
     }
 
+    /**
+     * Create a {@code Id} that is not a UUID from the bytes of its string (see {@link #asBytes}).
+     * Unlike {@link #fromBytes}, 16 bytes are not taken to be a UUID.
+     */
+    public static Id fromStringBytes(byte[] bytes) {
+        return new Id(new String(bytes, StandardCharsets.UTF_8));
+    }
+
     /** Convenience operation to make a displayable string from a Node, that has been used for an Id. */
     public static String str(Node node) {
         if ( node == null )
@@ -180,6 +188,16 @@ public final class Id {
         return this.equals(nilId);
     }
 
+    /** Is this {@code Id} a UUID? */
+    public boolean isUUID() {
+        return uuid != null;
+    }
+
+    /** The UUID of this {@code Id}, or null if it is not a UUID. */
+    public UUID asUUID() {
+        return uuid;
+    }
+
     /** Suitable for putting into an HTTP request query string. */
     public String asParam() {
         if ( uuid != null )
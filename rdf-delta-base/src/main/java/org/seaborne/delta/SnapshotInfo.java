@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta;
+
+import java.util.Objects;
+
+/** The version, and the id of the patch at that version, that a dataset snapshot includes. */
+public final /*record*/ class SnapshotInfo {
+    public final Version version;
+    public final Id patchId;
+
+    private SnapshotInfo(Version version, Id patchId) {
+        this.version = version;
+        this.patchId = patchId;
+    }
+
+    public static SnapshotInfo create(Version version, Id patchId) {
+        Objects.requireNonNull(version);
+        Objects.requireNonNull(patchId);
+        if ( ! Version.isValid(version) || version.value() < DeltaConst.VERSION_FIRST )
+            throw new IllegalArgumentException("Bad snapshot version: "+version);
+        return new SnapshotInfo(version, patchId);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[snapshot %s, %s]", version, patchId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, patchId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ( this == obj )
+            return true;
+        if ( obj == null )
+            return false;
+        if ( getClass() != obj.getClass() )
+            return false;
+        SnapshotInfo other = (SnapshotInfo)obj;
+        return Objects.equals(version, other.version) && Objects.equals(patchId, other.patchId);
+    }
+}
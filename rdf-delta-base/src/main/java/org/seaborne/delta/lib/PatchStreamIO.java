@@ -0,0 +1,132 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.lib;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.jena.atlas.io.IO;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+
+/**
+ * Read and write a sequence of patches as one byte stream.
+ * <p>
+ * Each patch is a frame: the length of the patch in bytes, as ASCII decimal digits,
+ * a newline, then the patch itself in text or binary format. The sequence ends at the
+ * end of the byte stream.
+ */
+public class PatchStreamIO {
+
+    /** Write a patch as one frame. */
+    public static void write(OutputStream out, RDFPatch patch, boolean binary) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8*1024);
+        if ( binary )
+            RDFPatchOps.writeBinary(bytes, patch);
+        else
+            RDFPatchOps.write(bytes, patch);
+        try {
+            out.write(Integer.toString(bytes.size()).getBytes(StandardCharsets.US_ASCII));
+            out.write('\n');
+            bytes.writeTo(out);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /**
+     * Read a sequence of frames as a stream of patches. Patches are read as the stream
+     * is consumed. Closing the stream closes the {@code InputStream}.
+     */
+    public static Stream<RDFPatch> read(InputStream input, boolean binary) {
+        InputStream in = ( input instanceof BufferedInputStream ) ? input : new BufferedInputStream(input);
+        Iterator<RDFPatch> iter = new Iterator<RDFPatch>() {
+            private RDFPatch slot = null;
+            private boolean finished = false;
+
+            @Override
+            public boolean hasNext() {
+                if ( slot != null )
+                    return true;
+                if ( finished )
+                    return false;
+                slot = readFrame(in, binary);
+                if ( slot == null ) {
+                    finished = true;
+                    IO.close(in);
+                }
+                return slot != null;
+            }
+
+            @Override
+            public RDFPatch next() {
+                if ( ! hasNext() )
+                    throw new NoSuchElementException();
+                RDFPatch patch = slot;
+                slot = null;
+                return patch;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iter, Spliterator.ORDERED|Spliterator.NONNULL), false)
+            .onClose(()->IO.close(in));
+    }
+
+    /** Read one frame. Return null at the end of the input. */
+    private static RDFPatch readFrame(InputStream in, boolean binary) {
+        try {
+            long length = readLength(in);
+            if ( length < 0 )
+                return null;
+            if ( length > Integer.MAX_VALUE )
+                throw new DeltaException("Patch frame too large: "+length);
+            byte[] bytes = in.readNBytes((int)length);
+            if ( bytes.length != length )
+                throw new DeltaException("Truncated patch frame: expected "+length+" bytes, got "+bytes.length);
+            InputStream patchInput = new ByteArrayInputStream(bytes);
+            return binary ? RDFPatchOps.readBinary(patchInput) : RDFPatchOps.read(patchInput);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /** Read the frame length. Return -1 for end of input. */
+    private static long readLength(InputStream in) throws IOException {
+        long x = 0;
+        int digits = 0;
+        for(;;) {
+            int b = in.read();
+            if ( b == -1 ) {
+                if ( digits == 0 )
+                    return -1;
+                throw new DeltaException("Truncated patch frame length");
+            }
+            if ( b == '\n' ) {
+                if ( digits == 0 )
+                    throw new DeltaException("Empty patch frame length");
+                return x;
+            }
+            if ( b < '0' || b > '9' || digits > 18 )
+                throw new DeltaException("Bad patch frame length");
+            x = 10*x + (b-'0');
+            digits++;
+        }
+    }
+}
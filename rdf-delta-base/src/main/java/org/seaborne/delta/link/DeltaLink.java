@@ -17,9 +17,17 @@
 
 package org.seaborne.delta.link;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.riot.system.StreamRDF;
 import org.seaborne.delta.*;
 import org.seaborne.patch.RDFPatch;
 
@@ -155,12 +163,72 @@ public interface DeltaLink {
     /** Retrieve a patch by data source and patch id. */
     public RDFPatch fetch(Id dsRef, Id patchId);
 
+    /**
+     * Retrieve the patches for versions {@code start} to {@code finish} inclusive, in
+     * version order. Versions with no patch are skipped.
+     * <p>
+     * The stream should be closed after use; it may be holding a network connection.
+     */
+    public default Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        return LongStream.rangeClosed(Math.max(start.value(), Version.FIRST.value()), finish.value())
+            .mapToObj(v->fetch(dsRef, Version.create(v)))
+            .filter(Objects::nonNull);
+    }
+
+    /**
+     * Retrieve the patches for versions {@code start} to {@code finish} inclusive, in
+     * version order, where the server may send one patch for the net effect of several
+     * consecutive versions. Such a patch has the id of the last version it covers and a
+     * {@link org.seaborne.patch.RDFPatchConst#SQUASH} header of the number of versions
+     * (see {@link org.seaborne.patch.RDFPatchOps#squashCount}).
+     * <p>
+     * The default implementation is {@link #fetchRange}.
+     */
+    public default Stream<RDFPatch> fetchRangeSquashed(Id dsRef, Version start, Version finish) {
+        return fetchRange(dsRef, start, finish);
+    }
+
+    /**
+     * Wait until the patch log has a version later than {@code after}, or until
+     * {@code timeoutMillis} has passed. Return the details of the patch log at that
+     * point, which may not have changed if the wait timed out. Return null if the patch
+     * log is not registered.
+     * <p>
+     * This lets a client be told of changes instead of repeatedly asking with
+     * {@link #getPatchLogInfo}. Implementations that can be notified of changes should
+     * override this; the default implementation checks the log every second.
+     */
+    public default PatchLogInfo awaitChange(Id dsRef, Version after, long timeoutMillis) {
+        long finishTime = System.currentTimeMillis() + Math.max(0, timeoutMillis);
+        for(;;) {
+            PatchLogInfo info = getPatchLogInfo(dsRef);
+            if ( info == null || info.getMaxVersion().isAfter(after) )
+                return info;
+            long remaining = finishTime - System.currentTimeMillis();
+            if ( remaining <= 0 )
+                return info;
+            Lib.sleep((int)Math.min(remaining, DeltaConst.AWAIT_POLL_MS));
+        }
+    }
+
     /**
      * Retrieve a URL to the initial state.
      * The log starts with this state.
      */
     public String initialState(Id dsRef);
 
+    /**
+     * Send the latest snapshot of the dataset of a patch log to {@code dest} and return
+     * the version and the patch id that the snapshot includes. A new copy of the dataset
+     * can start from the snapshot and then apply only the later patches.
+     * <p>
+     * Return null, and send nothing to {@code dest}, if there is no snapshot.
+     * The default implementation returns null.
+     */
+    public default SnapshotInfo fetchSnapshot(Id dsRef, StreamRDF dest) {
+        return null;
+    }
+
     /** Add a {@link DeltaLinkListener} listener. */
     public void addListener(DeltaLinkListener listener);
 
@@ -192,6 +260,20 @@ public interface DeltaLink {
      */
     public Id acquireLock(Id datasourceId);
 
+    /**
+     * Acquire the lock for a data source, waiting up to {@code timeoutMillis} for it to
+     * become free. Requests waiting for the same lock are given it in the order they
+     * started waiting. A server may limit the time it waits.
+     * <p>
+     * Returns an {@link Id} for the lock ownership.<br/>
+     * Returns null if the lock was not acquired.
+     * <p>
+     * The default implementation makes one attempt, as {@link #acquireLock(Id)}.
+     */
+    public default Id acquireLock(Id datasourceId, long timeoutMillis) {
+        return acquireLock(datasourceId);
+    }
+
     /**
      * Refresh a set of locks. This operation is blocking.
      *
@@ -200,6 +282,24 @@ public interface DeltaLink {
      */
     public boolean refreshLock(Id datasourceId, Id lockSession);
 
+    /**
+     * Refresh a set of locks, given as a map from data source to lock session.
+     * This operation is blocking.
+     * <p>
+     * Returns the data sources whose locks were not refreshed, either because they have
+     * been released or have timed-out.
+     * <p>
+     * The default implementation calls {@link #refreshLock} for each lock.
+     */
+    public default Set<Id> refreshLocks(Map<Id, Id> locks) {
+        Set<Id> failed = new HashSet<>();
+        locks.forEach((datasourceId, lockSession)->{
+            if ( ! refreshLock(datasourceId, lockSession) )
+                failed.add(datasourceId);
+        });
+        return failed;
+    }
+
     /**
      * Read the details of lock: the session/ownership id and the refresh index.
      *
@@ -216,17 +316,6 @@ public interface DeltaLink {
      */
     public Id /*new ownership */ grabLock(Id datasourceId, Id oldlockSession);
 
-
-    // FUTURE
-
-//    /**
-//     * Refresh a set of locks. This operation is blocking.
-//     *
-//     * Returns a set of {@link Id} for locks in the lock set that no longer exist, either
-//     * because they have been released or have timed-out.
-//     */
-//    public Set<Id> refreshLocks(Set<Id> lockSet);
-
     /** Release the lock for a data source. This operation does not fail if there is no lock. */
     public void releaseLock(Id datasourceId, Id lockSession);
 }
@@ -37,4 +37,19 @@ public interface DeltaLinkListener {
     /** Version.UNSET on error.*/
     public default void append(Id dsRef, Version version, RDFPatch patch) {}
 
+    // Timings, for links that perform the operations (e.g. the server's local link).
+
+    /** The time, in nanoseconds, to add the patch to the log. Called after {@link #append}. */
+    public default void appendTime(Id dsRef, Version version, RDFPatch patch, long nanos) {}
+    /** The time, in nanoseconds, to get a patch from the log. */
+    public default void fetchTime(Id dsRef, long nanos) {}
+    /** {@code session} is null if the lock was not acquired. {@code nanos} is the time spent waiting. */
+    public default void lockAcquired(Id dsRef, Id session, long nanos) {}
+    public default void lockReleased(Id dsRef, Id session) {}
+
+    /**
+     * Whether this listener looks at the patches of fetch events.
+     * If no listener does, a patch can be sent on without parsing it.
+     */
+    public default boolean fetchesPatches() { return true; }
 }
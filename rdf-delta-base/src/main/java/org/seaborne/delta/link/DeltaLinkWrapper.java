@@ -18,9 +18,13 @@
 package org.seaborne.delta.link;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.riot.system.StreamRDF;
 import org.seaborne.delta.*;
 import org.seaborne.patch.RDFPatch ;
 
@@ -115,11 +119,31 @@ public class DeltaLinkWrapper implements DeltaLink {
         return execRtn(()->get().fetch(dsRef, patchId));
     }
 
+    @Override
+    public Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        return execRtn(()->get().fetchRange(dsRef, start, finish));
+    }
+
+    @Override
+    public Stream<RDFPatch> fetchRangeSquashed(Id dsRef, Version start, Version finish) {
+        return execRtn(()->get().fetchRangeSquashed(dsRef, start, finish));
+    }
+
+    @Override
+    public PatchLogInfo awaitChange(Id dsRef, Version after, long timeoutMillis) {
+        return execRtn(()->get().awaitChange(dsRef, after, timeoutMillis));
+    }
+
     @Override
     public String initialState(Id dsRef) {
         return execRtn(()->get().initialState(dsRef));
     }
 
+    @Override
+    public SnapshotInfo fetchSnapshot(Id dsRef, StreamRDF dest) {
+        return execRtn(()->get().fetchSnapshot(dsRef, dest));
+    }
+
     @Override
     public void addListener(DeltaLinkListener listener) {
         other.addListener(listener);
@@ -144,15 +168,20 @@ public class DeltaLinkWrapper implements DeltaLink {
         return execRtn(() -> get().acquireLock(datasourceId));
     }
 
+    @Override
+    public Id acquireLock(Id datasourceId, long timeoutMillis) {
+        return execRtn(() -> get().acquireLock(datasourceId, timeoutMillis));
+    }
+
     @Override
     public boolean refreshLock(Id datasourceId, Id lockRef) {
         return execRtn(()->get().refreshLock(datasourceId, lockRef));
     }
 
-//    @Override
-//    public Set<Id> refreshLocks(Set<Id> lockSet) {
-//        return execRtn(()->get().refreshLocks(lockSet));
-//    }
+    @Override
+    public Set<Id> refreshLocks(Map<Id, Id> locks) {
+        return execRtn(()->get().refreshLocks(locks));
+    }
 
     @Override
     public LockState readLock(Id datasourceId) {
@@ -25,6 +25,7 @@ import org.junit.runners.Suite ;
     TestId.class
     , TestVersion.class
     , TestPersistentState.class
+    , TestPatchStreamIO.class
 })
 
 public class TS_DeltaBase { }
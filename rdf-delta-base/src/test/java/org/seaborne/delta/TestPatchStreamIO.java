@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.seaborne.delta;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.delta.lib.PatchStreamIO;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+
+public class TestPatchStreamIO {
+
+    private static List<RDFPatch> patches(int N) {
+        List<RDFPatch> x = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ ) {
+            int j = i;
+            RDFPatch patch = RDFPatchOps.build(c->{
+                c.header(RDFPatchConst.ID, Id.create().asNode());
+                c.txnBegin();
+                c.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode(Integer.toString(j)));
+                c.txnCommit();
+            });
+            x.add(patch);
+        }
+        return x;
+    }
+
+    private static void roundTrip(int N, boolean binary) {
+        List<RDFPatch> patches = patches(N);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        patches.forEach(p->PatchStreamIO.write(out, p, binary));
+        List<RDFPatch> patches2 = PatchStreamIO.read(new ByteArrayInputStream(out.toByteArray()), binary)
+                .collect(Collectors.toList());
+        assertEquals(N, patches2.size());
+        for ( int i = 0 ; i < N ; i++ ) {
+            assertEquals(patches.get(i).getId(), patches2.get(i).getId());
+            assertEquals(RDFPatchOps.str(patches.get(i)), RDFPatchOps.str(patches2.get(i)));
+        }
+    }
+
+    @Test public void patchStream_text_0()      { roundTrip(0, false); }
+    @Test public void patchStream_text_1()      { roundTrip(1, false); }
+    @Test public void patchStream_text_3()      { roundTrip(3, false); }
+    @Test public void patchStream_binary_0()    { roundTrip(0, true); }
+    @Test public void patchStream_binary_3()    { roundTrip(3, true); }
+
+    @Test(expected=DeltaException.class)
+    public void patchStream_truncated() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PatchStreamIO.write(out, patches(1).get(0), false);
+        byte[] bytes = out.toByteArray();
+        byte[] bytes2 = new byte[bytes.length-2];
+        System.arraycopy(bytes, 0, bytes2, 0, bytes2.length);
+        PatchStreamIO.read(new ByteArrayInputStream(bytes2), false).count();
+    }
+}
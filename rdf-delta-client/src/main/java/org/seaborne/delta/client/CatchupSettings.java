@@ -0,0 +1,114 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.client;
+
+import static java.lang.String.format;
+
+import org.seaborne.delta.DeltaConst;
+
+/**
+ * How a {@link DeltaConnection} catches up with the patch log: how patches are fetched
+ * and how they are applied to the local dataset. Settings are given when a connection is
+ * made (see {@link DeltaClient#create(Zone, org.seaborne.delta.link.DeltaLink, CatchupSettings)}).
+ * <p>
+ * Patches are fetched by {@code prefetchThreads} requests at once ({@code 1} for a single
+ * request for all the patches), each request for {@code prefetchChunk} versions, with at
+ * most {@code prefetchBufferChanges} changes in patches fetched but not yet applied.
+ * <p>
+ * Patches are applied in a series of transactions, each of at most {@code maxPatches}
+ * patches and ending after the patch that reaches {@code maxChanges} changes. If
+ * {@code txnMillis} is greater than zero, the number of patches in a transaction is
+ * adjusted, up to {@code maxPatches}, so that a transaction takes about
+ * {@code txnMillis} milliseconds. The local state is updated after each transaction.
+ * {@code batches(Integer.MAX_VALUE, Long.MAX_VALUE, 0)} applies all the patches in one
+ * transaction.
+ */
+public class CatchupSettings {
+    private static final CatchupSettings dft = create().build();
+
+    /** The default settings. */
+    public static CatchupSettings dft() { return dft; }
+
+    /** A builder, starting from the default settings. */
+    public static Builder create() { return new Builder(); }
+
+    private final int  prefetchThreads;
+    private final int  prefetchChunk;
+    private final long prefetchBufferChanges;
+    private final int  maxPatches;
+    private final long maxChanges;
+    private final long txnMillis;
+
+    private CatchupSettings(int prefetchThreads, int prefetchChunk, long prefetchBufferChanges,
+                            int maxPatches, long maxChanges, long txnMillis) {
+        this.prefetchThreads = prefetchThreads;
+        this.prefetchChunk = prefetchChunk;
+        this.prefetchBufferChanges = prefetchBufferChanges;
+        this.maxPatches = maxPatches;
+        this.maxChanges = maxChanges;
+        this.txnMillis = txnMillis;
+    }
+
+    public int getPrefetchThreads()         { return prefetchThreads; }
+    public int getPrefetchChunk()           { return prefetchChunk; }
+    public long getPrefetchBufferChanges()  { return prefetchBufferChanges; }
+    public int getMaxPatches()              { return maxPatches; }
+    public long getMaxChanges()             { return maxChanges; }
+    public long getTxnMillis()              { return txnMillis; }
+
+    @Override
+    public String toString() {
+        return format("CatchupSettings[prefetch=%d/%d/%d, batches=%d/%d/%dms]",
+                      prefetchThreads, prefetchChunk, prefetchBufferChanges, maxPatches, maxChanges, txnMillis);
+    }
+
+    public static class Builder {
+        private int  prefetchThreads       = DeltaConst.PREFETCH_THREADS;
+        private int  prefetchChunk         = DeltaConst.PREFETCH_CHUNK;
+        private long prefetchBufferChanges = DeltaConst.PREFETCH_BUFFER_CHANGES;
+        private int  maxPatches            = DeltaConst.CATCHUP_PATCHES;
+        private long maxChanges            = DeltaConst.CATCHUP_CHANGES;
+        private long txnMillis             = DeltaConst.CATCHUP_TXN_MS;
+
+        private Builder() {}
+
+        /** Set how patches are fetched. */
+        public Builder prefetch(int threads, int chunkSize, long maxBufferedChanges) {
+            if ( threads < 1 || chunkSize < 1 || maxBufferedChanges < 1 )
+                throw new IllegalArgumentException(format("Bad prefetch settings: threads=%d chunk=%d buffer=%d", threads, chunkSize, maxBufferedChanges));
+            this.prefetchThreads = threads;
+            this.prefetchChunk = chunkSize;
+            this.prefetchBufferChanges = maxBufferedChanges;
+            return this;
+        }
+
+        /** Set how patches are applied in transactions. */
+        public Builder batches(int maxPatches, long maxChanges, long txnMillis) {
+            if ( maxPatches < 1 || maxChanges < 1 )
+                throw new IllegalArgumentException(format("Bad catchup settings: patches=%d changes=%d", maxPatches, maxChanges));
+            this.maxPatches = maxPatches;
+            this.maxChanges = maxChanges;
+            this.txnMillis = txnMillis;
+            return this;
+        }
+
+        public CatchupSettings build() {
+            return new CatchupSettings(prefetchThreads, prefetchChunk, prefetchBufferChanges, maxPatches, maxChanges, txnMillis);
+        }
+    }
+}
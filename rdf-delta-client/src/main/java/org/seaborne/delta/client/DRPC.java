@@ -46,14 +46,18 @@ public class DRPC {
 
     /** Send a JSON argument to a URL+name by POST and received a JSON object in return. */
     public static JsonValue rpc(String url, String opName, JsonValue arg) {
-        JsonObject a = JSONX.buildObject((b)->{
+        return rpc(url, request(opName, arg)) ;
+    }
+
+    /** The JSON object for an operation, with a new operation id. */
+    /*package*/ static JsonObject request(String opName, JsonValue arg) {
+        return JSONX.buildObject((b)->{
 //            if ( token != null )
 //                b.key(F_TOKEN).value(token.asString());
             b.pair(F_OP, opName);
             b.pair(F_OP_ID, Long.toString(counter.incrementAndGet()));
             b.pair(F_ARG, arg);
             }) ;
-        return rpc(url, a) ;
     }
 
     /** Send a JSON object to a URL by POST and received a JSON object in return. */
@@ -0,0 +1,189 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.client;
+
+import static org.seaborne.delta.DeltaConst.F_ARRAY;
+import static org.seaborne.delta.DeltaConst.F_ERROR;
+import static org.seaborne.delta.DeltaConst.F_STATUS;
+import static org.seaborne.delta.DeltaConst.F_VALUE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.json.*;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.web.HttpSC;
+import org.seaborne.delta.*;
+import org.seaborne.delta.lib.JSONX;
+import org.slf4j.Logger;
+
+/**
+ * Coalesce concurrent DRPC calls into batch requests.
+ * <p>
+ * One batch request is in progress at a time. Calls made while it is in progress wait
+ * and are sent together, up to {@code maxBatch} at a time, as the next batch request. A
+ * call made when no request is in progress is sent at once, so there is no added delay
+ * when calls are not concurrent.
+ * <p>
+ * If the server does not support batch requests, calls are sent one at a time.
+ */
+/*package*/ class DRPCBatcher {
+    static private Logger LOG = Delta.DELTA_RPC_LOG;
+
+    private static class Call {
+        final String opName;
+        final JsonObject arg;
+        // Protected by synchronized(lock)
+        boolean done = false;
+        JsonValue result = null;
+        RuntimeException error = null;
+
+        Call(String opName, JsonObject arg) {
+            this.opName = opName;
+            this.arg = arg;
+        }
+    }
+
+    private final String url;
+    private final int maxBatch;
+    private final Object lock = new Object();
+    // Calls waiting to be sent, in order. Protected by synchronized(lock)
+    private final List<Call> pending = new ArrayList<>();
+    private boolean inProgress = false;
+    private volatile boolean supported = true;
+
+    /*package*/ DRPCBatcher(String url, int maxBatch) {
+        this.url = url;
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    /** Perform an operation, possibly as part of a batch request with other concurrent calls. */
+    /*package*/ JsonValue rpc(String opName, JsonObject arg) {
+        if ( ! supported )
+            return DRPC.rpc(url, opName, arg);
+        Call call = new Call(opName, arg);
+        synchronized(lock) {
+            pending.add(call);
+        }
+        for(;;) {
+            List<Call> batch;
+            synchronized(lock) {
+                try {
+                    while ( ! call.done && inProgress )
+                        lock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    if ( ! call.done ) {
+                        pending.remove(call);
+                        throw new DeltaException("Interrupted: "+opName);
+                    }
+                }
+                if ( call.done )
+                    break;
+                // No request in progress and this call has not been sent:
+                // send the oldest waiting calls.
+                inProgress = true;
+                int n = Math.min(pending.size(), maxBatch);
+                batch = new ArrayList<>(pending.subList(0, n));
+                pending.subList(0, n).clear();
+            }
+            try {
+                send(batch);
+            } finally {
+                synchronized(lock) {
+                    inProgress = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+        if ( call.error != null )
+            throw call.error;
+        return call.result;
+    }
+
+    private void send(List<Call> batch) {
+        if ( batch.size() == 1 || ! supported ) {
+            batch.forEach(this::sendOne);
+            return;
+        }
+        JsonArray array = new JsonArray();
+        batch.forEach(call->array.add(DRPC.request(call.opName, call.arg)));
+        JsonObject arg = JSONX.buildObject(b->b.pair(F_ARRAY, array));
+        JsonArray results;
+        try {
+            JsonValue rtn = DRPC.rpc(url, DeltaConst.OP_BATCH, arg);
+            results = rtn.getAsObject().get(F_ARRAY).getAsArray();
+        } catch (DeltaBadRequestException ex) {
+            // Server does not support batch requests.
+            FmtLog.info(LOG, "Batch requests not supported: %s", url);
+            supported = false;
+            batch.forEach(this::sendOne);
+            return;
+        } catch (RuntimeException ex) {
+            finish(batch, null, ex);
+            return;
+        }
+        if ( results.size() != batch.size() ) {
+            finish(batch, null, new DeltaException("Batch request: expected "+batch.size()+" results, got "+results.size()));
+            return;
+        }
+        for ( int i = 0 ; i < batch.size() ; i++ ) {
+            Call call = batch.get(i);
+            JsonObject obj = results.get(i).getAsObject();
+            if ( obj.hasKey(F_STATUS) )
+                finish(call, null, error(obj));
+            else
+                finish(call, obj.get(F_VALUE), null);
+        }
+    }
+
+    private void sendOne(Call call) {
+        try {
+            finish(call, DRPC.rpc(url, call.opName, call.arg), null);
+        } catch (RuntimeException ex) {
+            finish(call, null, ex);
+        }
+    }
+
+    /** The exception for an error result, as for a single request. */
+    private static RuntimeException error(JsonObject obj) {
+        int statusCode = obj.get(F_STATUS).getAsNumber().value().intValue();
+        String message = JSONX.getStrOrNull(obj, F_ERROR);
+        switch (statusCode) {
+            case HttpSC.BAD_REQUEST_400:
+                return new DeltaBadRequestException(message);
+            case HttpSC.NOT_FOUND_404:
+                return new DeltaNotFoundException(message);
+            default:
+                return new HttpException(statusCode, HttpSC.getMessage(statusCode), message);
+        }
+    }
+
+    private void finish(List<Call> calls, JsonValue result, RuntimeException error) {
+        calls.forEach(call->finish(call, result, error));
+    }
+
+    private void finish(Call call, JsonValue result, RuntimeException error) {
+        synchronized(lock) {
+            call.result = ( result == null || result.isNull() ) ? new JsonObject() : result;
+            call.error = error;
+            call.done = true;
+        }
+    }
+}
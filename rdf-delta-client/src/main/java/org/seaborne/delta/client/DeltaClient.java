@@ -109,25 +109,38 @@ public class DeltaClient {
      * log server.
      */
     public static DeltaClient create(Zone zone, DeltaLink dLink) {
+        return create(zone, dLink, CatchupSettings.dft());
+    }
+
+    /**
+     * Create a {@code DeltaClient} whose connections catch up with the patch log
+     * according to {@code catchup}.
+     */
+    public static DeltaClient create(Zone zone, DeltaLink dLink, CatchupSettings catchup) {
         Objects.requireNonNull(zone);
         Objects.requireNonNull(dLink);
-        return new DeltaClient(zone, dLink);
+        Objects.requireNonNull(catchup);
+        return new DeltaClient(zone, dLink, catchup);
     }
 
     private final Zone               zone;
     private final DeltaLink          dLink;
+    private final CatchupSettings    catchup;
+    // One lock refresh, in one request, for all the connections. Started when first needed.
+    private LogLockMgr               logLockMgr = null;
     // For now, non-counting.
     private Map<Id, DeltaConnection> connections = new ConcurrentHashMap<>();
 
     private void removeCache(Id id) {
-        connections.remove(id);
+        DeltaConnection dConn = connections.remove(id);
+        if ( dConn != null )
+            dConn.shutdown();
     }
 
     private void putCache(Id id, DeltaConnection dConn) {
-        if ( dConn == null )
-            connections.remove(id);
-        else
-            connections.put(id, dConn);
+        DeltaConnection dConn0 = ( dConn == null ) ? connections.remove(id) : connections.put(id, dConn);
+        if ( dConn0 != null && dConn0 != dConn )
+            dConn0.shutdown();
     }
 
     private DeltaConnection getCache(Id id) {
@@ -139,13 +152,22 @@ public class DeltaClient {
 // private void putCache(Id id, DeltaConnection dConn) { }
 // private DeltaConnection getCache(Id id) { return null; }
 
+    private synchronized LogLockMgr logLockMgr() {
+        if ( logLockMgr == null ) {
+            logLockMgr = new LogLockMgr(dLink);
+            logLockMgr.start();
+        }
+        return logLockMgr;
+    }
+
     private static SyncPolicy applyDefault(SyncPolicy syncPolicy) {
         return syncPolicy == null ? SyncPolicy.NONE : syncPolicy;
     }
 
-    private DeltaClient(Zone zone, DeltaLink dLink) {
+    private DeltaClient(Zone zone, DeltaLink dLink, CatchupSettings catchup) {
         this.zone = zone;
         this.dLink = dLink;
+        this.catchup = catchup;
     }
 
     /**
@@ -329,12 +351,26 @@ public class DeltaClient {
      * @param syncPolicy
      */
     public DeltaConnection connect(Id datasourceId, SyncPolicy syncPolicy) {
+        return connect(datasourceId, syncPolicy, catchup);
+    }
+
+    /**
+     * Connect to an existing {@code DataSource} with existing local state, with the
+     * settings for catching up with the patch log for this connection.
+     * This operation does not fail if it can not contact the patch log server.
+     *
+     * @param datasourceId
+     * @param syncPolicy
+     * @param catchup
+     */
+    public DeltaConnection connect(Id datasourceId, SyncPolicy syncPolicy, CatchupSettings catchup) {
+        Objects.requireNonNull(catchup);
         syncPolicy = applyDefault(syncPolicy);
         if ( !zone.exists(datasourceId) )
             throw new DeltaConfigException("Data source '" + datasourceId.toString() + "' not found for this DeltaClient");
         DataState dataState = zone.connect(datasourceId);
         DatasetGraph dsg = zone.getDataset(dataState);
-        DeltaConnection dConn = DeltaConnection.create(dataState, dsg, dLink, syncPolicy);
+        DeltaConnection dConn = DeltaConnection.create(dataState, dsg, dLink, syncPolicy, catchup, logLockMgr());
         putCache(datasourceId, dConn);
         return dConn;
     }
@@ -367,7 +403,7 @@ public class DeltaClient {
             return dConn;
         zone.externalStorage(datasourceId, dsg);
         DataState dataState = zone.get(datasourceId);
-        dConn = DeltaConnection.create(dataState, dsg, dLink, syncPolicy);
+        dConn = DeltaConnection.create(dataState, dsg, dLink, syncPolicy, catchup, logLockMgr());
         putCache(datasourceId, dConn);
         return dConn;
     }
@@ -485,6 +521,20 @@ public class DeltaClient {
         dLink.removeDataSource(datasourceId);
     }
 
+    /**
+     * Stop all the connections of this client: background watchers and lock refresh
+     * end and the connections are no longer valid. The local state is kept; connect
+     * again to use a data source.
+     */
+    public void shutdown() {
+        connections.keySet().forEach(this::removeCache);
+        synchronized(this) {
+            if ( logLockMgr != null )
+                logLockMgr.stop();
+            logLockMgr = null;
+        }
+    }
+
     private void checkDeltaClient() {}
 
 // public void printState() {
@@ -19,18 +19,21 @@ package org.seaborne.delta.client;
 
 import static java.lang.String.format;
 
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference ;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer ;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.lib.Lib ;
-import org.apache.jena.atlas.lib.Pair ;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.ReadWrite ;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.system.Txn;
 import org.apache.jena.web.HttpSC;
@@ -40,9 +43,11 @@ import org.seaborne.delta.link.DeltaLinkListener;
 import org.seaborne.patch.RDFChanges;
 import org.seaborne.patch.RDFPatch ;
 import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
 import org.seaborne.patch.changes.RDFChangesApply ;
-import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesSpool;
 import org.seaborne.patch.changes.RDFChangesExternalTxn;
+import org.seaborne.patch.changes.RDFChangesWrapper;
 import org.seaborne.patch.system.DatasetGraphChanges;
 import org.seaborne.patch.system.RDFChangesSuppressEmpty;
 import org.slf4j.Logger;
@@ -81,10 +86,27 @@ public class DeltaConnection implements AutoCloseable {
     private final DataState state;
     private final LogLock logLock;
 
-    private boolean valid = false;
+    private volatile boolean valid = false;
     private final SyncPolicy syncPolicy;
 
+    // Refreshes the lock, shared with other connections to the same patch log server.
     private final LogLockMgr logLockMgr;
+    // Whether this connection made, and so stops, the LogLockMgr.
+    private final boolean ownLogLockMgr;
+
+    // Background thread waiting for changes to the patch log. See startWatching().
+    private Thread watcher = null;
+    // Serializes syncs from the watcher, transaction begin and the application.
+    // Not the connection monitor: append() holds that during a write transaction
+    // and a sync needs the write lock of the base dataset.
+    private final Object syncLock = new Object();
+    private static final long WATCH_TIMEOUT_MS  = DeltaConst.AWAIT_TIMEOUT_MS;
+    private static final long WATCH_RETRY_MS    = 5*1000;
+
+    // Catching up with the patch log.
+    private final CatchupSettings catchup;
+    // Patches in the first transaction when the batch size is adjusted to the time taken.
+    private static final int CATCHUP_FIRST_BATCH        = 100;
 
     /**
      * Connect to an existing {@code DataSource} with the {@link DatasetGraph} as local state.
@@ -94,18 +116,40 @@ public class DeltaConnection implements AutoCloseable {
      */
 
     /*package*/ static DeltaConnection create(DataState dataState, DatasetGraph dsg, DeltaLink dLink, SyncPolicy syncTxnBegin) {
+        return create(dataState, dsg, dLink, syncTxnBegin, CatchupSettings.dft());
+    }
+
+    /**
+     * As {@link #create(DataState, DatasetGraph, DeltaLink, SyncPolicy)}, with the
+     * settings for catching up with the patch log.
+     */
+    /*package*/ static DeltaConnection create(DataState dataState, DatasetGraph dsg, DeltaLink dLink, SyncPolicy syncTxnBegin,
+                                              CatchupSettings catchup) {
+        return create(dataState, dsg, dLink, syncTxnBegin, catchup, null);
+    }
+
+    /**
+     * As {@link #create(DataState, DatasetGraph, DeltaLink, SyncPolicy, CatchupSettings)},
+     * with the patch log lock refreshed by {@code logLockMgr}, a started {@link LogLockMgr}
+     * for {@code dLink} shared by the connections of a {@link DeltaClient}. If it is
+     * null, the connection has its own.
+     */
+    /*package*/ static DeltaConnection create(DataState dataState, DatasetGraph dsg, DeltaLink dLink, SyncPolicy syncTxnBegin,
+                                              CatchupSettings catchup, LogLockMgr logLockMgr) {
         Objects.requireNonNull(dataState,           "Null data state");
         Objects.requireNonNull(dLink,               "DeltaLink is null");
         Objects.requireNonNull(syncTxnBegin,        "SyncPolicy is null");
         Objects.requireNonNull(dataState.getDataSourceId(),     "Null data source Id");
         Objects.requireNonNull(dataState.getDatasourceName(),   "Null data source name");
+        Objects.requireNonNull(catchup,             "CatchupSettings is null");
 
-        DeltaConnection dConn = new DeltaConnection(dataState, dsg, dLink, syncTxnBegin);
+        DeltaConnection dConn = new DeltaConnection(dataState, dsg, dLink, syncTxnBegin, catchup, logLockMgr);
         dConn.start();
         return dConn;
     }
 
-    private DeltaConnection(DataState dataState, DatasetGraph basedsg, DeltaLink link, SyncPolicy syncTxnBegin) {
+    private DeltaConnection(DataState dataState, DatasetGraph basedsg, DeltaLink link, SyncPolicy syncTxnBegin, CatchupSettings catchup,
+                            LogLockMgr logLockMgr) {
         Objects.requireNonNull(dataState, "DataState");
         Objects.requireNonNull(link, "DeltaLink");
         //Objects.requireNonNull(basedsg, "base DatasetGraph");
@@ -118,12 +162,17 @@ public class DeltaConnection implements AutoCloseable {
         this.dLink = link;
         this.logLock = new LogLock(link, datasourceId);
 
-        this.logLockMgr = new LogLockMgr(dLink);
-        logLockMgr.start();
+        this.ownLogLockMgr = ( logLockMgr == null );
+        if ( ownLogLockMgr ) {
+            logLockMgr = new LogLockMgr(dLink);
+            logLockMgr.start();
+        }
+        this.logLockMgr = logLockMgr;
         logLockMgr.add(logLock);
 
         this.valid = true;
         this.syncPolicy = syncTxnBegin;
+        this.catchup = catchup;
         if ( basedsg == null ) {
             this.target = null;
             this.managed = null;
@@ -223,11 +272,12 @@ public class DeltaConnection implements AutoCloseable {
 
     /**
      * An {@link RDFChanges} that adds "id", and "prev" as necessary.
+     * Changes beyond {@link DeltaConst#PATCH_SPOOL_BYTES} are held in a temporary file.
      */
-    private class RDFChangesDS extends RDFChangesCollector {
+    private class RDFChangesDS extends RDFChangesSpool {
         private volatile Node currentTransactionId = null;
 
-        RDFChangesDS() {}
+        RDFChangesDS() { super(DeltaConst.PATCH_SPOOL_BYTES); }
 
         // Auto-add an id.
         @Override
@@ -321,7 +371,9 @@ public class DeltaConnection implements AutoCloseable {
 
     public void sync(PatchLogInfo logInfo) {
         checkDeltaConnection();
-        syncToVersion(logInfo.getMaxVersion());
+        synchronized(syncLock) {
+            syncToVersion(logInfo.getMaxVersion());
+        }
     }
 
     /**
@@ -335,6 +387,60 @@ public class DeltaConnection implements AutoCloseable {
         return trySync();
     }
 
+    /**
+     * Start a background thread that keeps the local dataset up-to-date.
+     * The thread asks the patch log server to hold the request until there is a
+     * change to the patch log (see {@link DeltaLink#awaitChange}) and then syncs,
+     * so new versions are applied as soon as they are available without polling.
+     * Calling this when already watching has no effect.
+     */
+    public synchronized void startWatching() {
+        checkDeltaConnection();
+        if ( watcher != null )
+            return;
+        watcher = new Thread(this::watch, "DeltaWatch-"+datasourceName);
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /** Stop the background thread started by {@link #startWatching}. */
+    public synchronized void stopWatching() {
+        if ( watcher == null )
+            return;
+        watcher.interrupt();
+        watcher = null;
+    }
+
+    /** Is there a background thread keeping the local dataset up-to-date? */
+    public synchronized boolean isWatching() {
+        return watcher != null;
+    }
+
+    private void watch() {
+        FmtLog.debug(LOG, "[%s] Watch: start", datasourceId);
+        while ( ! Thread.currentThread().isInterrupted() && valid ) {
+            try {
+                Version localVer = getLocalVersion();
+                PatchLogInfo info = dLink.awaitChange(datasourceId, localVer, WATCH_TIMEOUT_MS);
+                if ( info == null ) {
+                    FmtLog.warn(LOG, "[%s] Watch: patch log not found", datasourceId);
+                    break;
+                }
+                if ( info.getMaxVersion().isAfter(localVer) ) {
+                    remote.set(info);
+                    sync(info);
+                }
+            } catch (RuntimeException ex) {
+                if ( Thread.currentThread().isInterrupted() )
+                    break;
+                FmtLog.warn(LOG, "[%s] Watch: failed to sync with the patch log server: %s", datasourceId, ex.getMessage());
+                try { Thread.sleep(WATCH_RETRY_MS); }
+                catch (InterruptedException ex2) { break; }
+            }
+        }
+        FmtLog.debug(LOG, "[%s] Watch: finish", datasourceId);
+    }
+
     /**
      * No-op end-to-end operation. This operation succeeds or throws an exception.
      * This operation makes one attempt only to perform the ping.
@@ -383,68 +489,219 @@ public class DeltaConnection implements AutoCloseable {
             FmtLog.info(LOG, "[%s] Local version ahead of remote : [local=%d, remote=%d]", datasourceId, getLocalVersion(), getRemoteVersionCached());
         if ( localVer.value() >= version.value() )
             return;
+        // A new local copy starts from the latest snapshot, if there is one.
+        if ( localVer.value() == DeltaConst.VERSION_INIT && base != null ) {
+            localVer = startFromSnapshot();
+            if ( localVer.value() >= version.value() )
+                return;
+        }
         // bring up-to-date.
 
         FmtLog.info(LOG, "Sync: Versions [%s, %s]", localVer, version);
-        playPatches(localVer.value()+1, version.value()) ;
+        try {
+            playPatches(localVer.value()+1, version.value()) ;
+        } catch (DeltaPatchesPrunedException ex) {
+            // The local copy is too far behind to catch up with patches.
+            FmtLog.error(LOG, "[%s] Patches after version %s have been removed from the patch log: the local dataset must be rebuilt from a snapshot", datasourceId, localVer);
+            throw ex;
+        }
         //FmtLog.info(LOG, "Now: Versions [%d, %d]", getLocalVersion(), remoteVer);
     }
 
+    /**
+     * Load the latest snapshot of the dataset from the patch log server into the local
+     * dataset, if there is a snapshot and the local dataset is empty. Return the local
+     * version afterwards.
+     */
+    private Version startFromSnapshot() {
+        try {
+            SnapshotInfo info = Txn.calculateWrite(base, ()->{
+                // The snapshot is the whole dataset at its version, not changes to the local data.
+                if ( ! base.isEmpty() ) {
+                    FmtLog.warn(LOG, "[%s] Local dataset is not empty: not starting from a snapshot", datasourceId);
+                    return null;
+                }
+                return dLink.fetchSnapshot(datasourceId, StreamRDFLib.dataset(base));
+            });
+            if ( info == null )
+                return getLocalVersion();
+            FmtLog.info(LOG, "[%s] Start from snapshot: version %s", datasourceId, info.version);
+            setLocalState(info.version, info.patchId);
+        } catch (RuntimeException ex) {
+            FmtLog.warn(LOG, "[%s] Failed to load snapshot, playing all patches: %s", datasourceId, ex.getMessage());
+        }
+        return getLocalVersion();
+    }
+
     /** Play the patches (range is inclusive at both ends) */
     private void playPatches(long firstPatchVer, long lastPatchVer) {
-        Pair<Version, Node> p = play(datasourceId, base, target, dLink, firstPatchVer, lastPatchVer);
-        Version patchLastVersion = p.car();
-        Node patchLastIdNode = p.cdr();
-        setLocalState(patchLastVersion, patchLastIdNode);
+        play(datasourceId, base, target, dLink, firstPatchVer, lastPatchVer, catchup, this::setLocalState);
     }
 
-    /** Play patches, return details of the the last successfully applied one */
-    private static Pair<Version, Node> play(Id datasourceId, DatasetGraph base, RDFChanges target, DeltaLink dLink, long minVersion, long maxVersion) {
-        // [Delta] replace with a one-shot "get all patches" operation.
+    /**
+     * Play patches in a series of write transactions. After each transaction commits,
+     * {@code progress} is called with the version and id of the last patch applied so
+     * that the local state records the work done if a later transaction fails.
+     * <p>
+     * A transaction ends after a number of patches, adjusted so that a transaction takes
+     * about the time set by {@link CatchupSettings}, or after a number of changes.
+     */
+    private static void play(Id datasourceId, DatasetGraph base, RDFChanges target, DeltaLink dLink, long minVersion, long maxVersion,
+                             CatchupSettings settings, BiConsumer<Version, Node> progress) {
         //FmtLog.debug(LOG, "Patch range [%d, %d]", minVersion, maxVersion);
 
-        // Switch off transactions inside of each patch and execute as a single, overall transaction.
+        // Switch off transactions inside of each patch and execute in batches of patches.
         RDFChanges c = new RDFChangesExternalTxn(target);
         if ( false )
             c = DeltaOps.print(c);
-        try {
-            return Txn.calculateWrite(base, ()->{
-                Node patchLastIdNode = null;
-                Version patchLastVersion = Version.UNSET;
-
-                for ( long ver = minVersion ; ver <= maxVersion ; ver++ ) {
-                    //FmtLog.debug(LOG, "Play: patch=%s", ver);
-                    RDFPatch patch;
-                    Version verObj = Version.create(ver);
-                    try {
-                        patch = dLink.fetch(datasourceId, verObj);
-                        if ( patch == null ) {
-                            base.commit();
-                            FmtLog.info(LOG, "Play: %s patch=%s : not found", datasourceId, verObj);
-                            continue;
-                        }
-                    } catch (DeltaNotFoundException ex) {
-                        // Which ever way it is signalled.  This way means "bad datasourceId"
-                        FmtLog.info(LOG, "Play: %s patch=%s : not found (no datasource)", datasourceId, verObj);
-                        continue;
-                    }
-                    patch.apply(c);
-                    patchLastIdNode = patch.getId();
-                    patchLastVersion = verObj;
-                }
-                return Pair.create(patchLastVersion, patchLastIdNode);
-            });
+        // Requests for chunks of the range are made in parallel, ahead of applying
+        // the patches.
+        try ( Stream<RDFPatch> patches = PatchPrefetcher.fetch(dLink, datasourceId, Version.create(minVersion), Version.create(maxVersion),
+                                                               settings.getPrefetchThreads(), settings.getPrefetchChunk(),
+                                                               settings.getPrefetchBufferChanges()) ) {
+            Catchup catchup = new Catchup(datasourceId, patches.iterator(), c, minVersion, maxVersion,
+                                          settings.getMaxPatches(), settings.getMaxChanges(), settings.getTxnMillis());
+            while ( ! catchup.finished() ) {
+                long startTime = System.currentTimeMillis();
+                int count = Txn.calculateWrite(base, catchup::applyBatch);
+                if ( count == 0 )
+                    break;
+                progress.accept(catchup.lastVersion(), catchup.lastId());
+                catchup.adjust(count, System.currentTimeMillis()-startTime);
+            }
+            if ( catchup.nextVersion() <= maxVersion )
+                FmtLog.info(LOG, "Play: %s patches=[%d,%d] : not found", datasourceId, catchup.nextVersion(), maxVersion);
         } catch (Throwable th) {
             FmtLog.warn(LOG, "Play: Problem for %s", datasourceId, th);
             throw th;
         }
     }
 
+    /** Apply a sequence of patches in batches, one transaction per batch. */
+    private static class Catchup {
+        private final Id datasourceId;
+        private final Iterator<RDFPatch> patches;
+        private final CountingChanges changes;
+        private final long minVersion;
+        private final long maxVersion;
+        private final int maxPatches;
+        private final long maxChanges;
+        private final long txnMillis;
+        // Patches per batch; adjusted to the time taken.
+        private int batchPatches;
+        private boolean finished = false;
+        // Versions in a log are consecutive so the n'th patch is version minVersion+n,
+        // except that a squashed patch covers several versions.
+        private long ver;
+        private Node lastId = null;
+
+        Catchup(Id datasourceId, Iterator<RDFPatch> patches, RDFChanges target, long minVersion, long maxVersion,
+                int maxPatches, long maxChanges, long txnMillis) {
+            this.datasourceId = datasourceId;
+            this.patches = patches;
+            this.changes = new CountingChanges(target);
+            this.minVersion = minVersion;
+            this.maxVersion = maxVersion;
+            this.maxPatches = maxPatches;
+            this.maxChanges = maxChanges;
+            this.txnMillis = txnMillis;
+            this.batchPatches = ( txnMillis > 0 ) ? Math.min(CATCHUP_FIRST_BATCH, maxPatches) : maxPatches;
+            this.ver = minVersion;
+        }
+
+        boolean finished()      { return finished; }
+        long nextVersion()      { return ver; }
+        Version lastVersion()   { return Version.create(ver-1); }
+        Node lastId()           { return lastId; }
+
+        /** Apply the next batch of patches; called inside a write transaction. Return the number of patches applied. */
+        int applyBatch() {
+            int count = 0;
+            changes.count = 0;
+            try {
+                while ( count < batchPatches && changes.count < maxChanges ) {
+                    if ( ! patches.hasNext() ) {
+                        finished = true;
+                        break;
+                    }
+                    RDFPatch patch = patches.next();
+                    //FmtLog.debug(LOG, "Play: patch=%s", ver);
+                    patch.apply(changes);
+                    lastId = patch.getId();
+                    ver += RDFPatchOps.squashCount(patch);
+                    count++;
+                }
+            } catch (DeltaNotFoundException ex) {
+                // Which ever way it is signalled.  This way means "bad datasourceId"
+                FmtLog.info(LOG, "Play: %s patches=[%d,%d] : not found (no datasource)", datasourceId, minVersion, maxVersion);
+                finished = true;
+            }
+            return count;
+        }
+
+        /** Change the number of patches in a batch towards one transaction taking {@code txnMillis}. */
+        void adjust(int count, long millis) {
+            FmtLog.debug(LOG, "Play: %s batch of %d patches in %dms, now at version %d", datasourceId, count, millis, ver-1);
+            if ( txnMillis <= 0 || count < batchPatches )
+                return;
+            if ( millis < txnMillis/2 )
+                batchPatches = (int)Math.min(maxPatches, 2L*batchPatches);
+            else if ( millis > 2*txnMillis )
+                batchPatches = Math.max(1, batchPatches/2);
+        }
+    }
+
+    /** Count the data changes passing through. */
+    private static class CountingChanges extends RDFChangesWrapper {
+        long count = 0;
+
+        CountingChanges(RDFChanges other) {
+            super(other);
+        }
+
+        @Override
+        public void add(Node g, Node s, Node p, Node o) {
+            count++;
+            super.add(g, s, p, o);
+        }
+
+        @Override
+        public void delete(Node g, Node s, Node p, Node o) {
+            count++;
+            super.delete(g, s, p, o);
+        }
+    }
+
+    /**
+     * The connection is shared by all the callers of {@link DeltaClient#get} so closing
+     * it does not stop it. The connection is stopped when it is released from the
+     * {@link DeltaClient} or the {@code DeltaClient} is shutdown.
+     */
     @Override
     public void close() {
         // Return to pool if pooled.
     }
 
+    /**
+     * Stop the background watcher and lock refresh for this connection and mark it as
+     * no longer valid. Called by {@link DeltaClient} when the connection is removed from
+     * its cache.
+     */
+    /*package*/ void shutdown() {
+        if ( ! valid )
+            return;
+        stopWatching();
+        logLockMgr.remove(logLock);
+        if ( ownLogLockMgr )
+            logLockMgr.stop();
+        valid = false;
+    }
+
+    /** The settings for catching up with the patch log. */
+    public CatchupSettings getCatchupSettings() {
+        return catchup;
+    }
+
     public boolean isValid() {
         return valid;
     }
@@ -23,27 +23,42 @@ import static org.seaborne.delta.DeltaConst.F_DATASOURCE;
 import static org.seaborne.delta.DeltaConst.F_LOCK_REF;
 import static org.seaborne.delta.DeltaConst.F_LOCK_TICKS;
 
-import java.io.InputStream ;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier ;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.jena.atlas.io.IO ;
 import org.apache.jena.atlas.json.*;
 import org.apache.jena.atlas.logging.FmtLog ;
 import org.apache.jena.atlas.web.HttpException ;
+import org.apache.jena.atlas.web.TypedInputStream ;
+import org.apache.jena.riot.WebContent ;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.riot.web.HttpOp ;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.*;
 import org.seaborne.delta.lib.JSONX;
+import org.seaborne.delta.lib.PatchStreamIO;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.link.DeltaLinkListener;
 import org.seaborne.delta.link.DeltaNotConnectedException ;
 import org.seaborne.patch.RDFPatch ;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
 import org.seaborne.patch.changes.RDFChangesCollector ;
 import org.seaborne.patch.text.RDFPatchReaderText ;
 
@@ -59,36 +74,67 @@ public class DeltaLinkHTTP implements DeltaLink {
     private final String remoteReceive;
     private final String remoteData;
 
+    // Send and ask for patches in binary (Thrift) format.
+    private final boolean binaryPatches;
+
     private Id clientId = null;
     private boolean linkOpen = false;
 
+    // Coalesces concurrent calls of some operations into batch requests; null for no batching.
+    private volatile DRPCBatcher batcher;
+    private static final Set<String> batchableOps = Set.of(DeltaConst.OP_DESCR_DS,
+                                                           DeltaConst.OP_DESCR_LOG,
+                                                           DeltaConst.OP_LOCK_READ);
+
     private Set<DeltaLinkListener> listeners = ConcurrentHashMap.newKeySet();
 
     private final static JsonObject emptyObject = new JsonObject();
 
     public static DeltaLink connect(String serverURL) {
+        return connect(serverURL, false);
+    }
+
+    /**
+     * Connect to a patch log server. If {@code binaryPatches} is true, patches are sent
+     * to the server in binary (Thrift) format and binary format is requested when
+     * fetching patches. Binary patches are faster to parse than text ones.
+     */
+    public static DeltaLink connect(String serverURL, boolean binaryPatches) {
         Objects.requireNonNull(serverURL, "DelatLinkHTTP: Null URL for the server");
         if ( ! serverURL.startsWith("http://") && ! serverURL.startsWith("https://") )
             throw new IllegalArgumentException("Bad server URL: '"+serverURL+"'");
-        DeltaLink link = new DeltaLinkHTTP(serverURL);
+        DeltaLink link = new DeltaLinkHTTP(serverURL, binaryPatches);
         link.start();
         return link;
     }
 
-    private DeltaLinkHTTP(String serverURL) {
+    private DeltaLinkHTTP(String serverURL, boolean binaryPatches) {
         if ( ! serverURL.endsWith("/" ))
             serverURL= serverURL+"/";
 
         this.remoteServer = serverURL;
+        this.binaryPatches = binaryPatches;
         // One URL
         this.remoteSend     = serverURL+"{"+DeltaConst.paramDatasource+"}";
         this.remoteReceive  = serverURL+"{"+DeltaConst.paramDatasource+"}";
         this.remoteData     = serverURL+DeltaConst.EP_InitData;
+        this.batcher        = new DRPCBatcher(serverURL+DeltaConst.EP_RPC, DeltaConst.DRPC_BATCH_SIZE);
 //        // Separate URLs
 //        this.remoteSend = serverURL+DPConst.EP_Append;
 //        this.remoteReceive = serverURL+DPConst.EP_Fetch;
     }
 
+    /**
+     * Set whether concurrent calls to describe data sources, describe patch logs and read
+     * locks are sent to the server together in batch requests. A call made while no
+     * request is in progress is sent immediately. The default is true.
+     */
+    public void setBatching(boolean batching) {
+        this.batcher = batching
+            ? new DRPCBatcher(remoteServer+DeltaConst.EP_RPC, DeltaConst.DRPC_BATCH_SIZE)
+            : null;
+    }
+
     @Override
     public void start() {
         linkOpen = true;
@@ -136,7 +182,7 @@ public class DeltaLinkHTTP implements DeltaLink {
     private RDFChangesHTTP createRDFChanges(Id dsRef) {
         Objects.requireNonNull(dsRef);
         checkLink();
-        return new RDFChangesHTTP(dsRef.toSchemeString("ds:"), calcChangesURL(dsRef));
+        return new RDFChangesHTTP(dsRef.toSchemeString("ds:"), calcChangesURL(dsRef), binaryPatches);
     }
 
     /** Calculate the patch log URL */
@@ -200,16 +246,22 @@ public class DeltaLinkHTTP implements DeltaLink {
         url = createURL(url, DeltaConst.paramDatasource, dsRef.asParam());
         url = appendURL(url, paramStr);
         final String s = url;
+        String acceptPatch = binaryPatches ? DeltaConst.contentTypePatchBinary : DeltaConst.contentTypePatchText;
         try {
             RDFPatch patch =  retry(()->{
                 // [NET] Network point
-                InputStream in = HttpOp.execHttpGet(s) ;
+                TypedInputStream in = HttpOp.execHttpGet(s, acceptPatch) ;
                 if ( in == null )
                     return null ;
-                RDFPatchReaderText pr = new RDFPatchReaderText(in) ;
-                RDFChangesCollector collector = new RDFChangesCollector();
-                pr.apply(collector);
-                return collector.getRDFPatch();
+                try {
+                    // The response is text unless the server sent binary.
+                    if ( DeltaConst.contentTypePatchBinary.equals(in.getContentType()) )
+                        return RDFPatchReaderBinary.read(in);
+                    RDFPatchReaderText pr = new RDFPatchReaderText(in) ;
+                    RDFChangesCollector collector = new RDFChangesCollector();
+                    pr.apply(collector);
+                    return collector.getRDFPatch();
+                } finally { IO.close(in); }
             }, ()->true, ()->"Retry fetch patch.", ()->"Failed to fetch patch.");
             return patch;
         }
@@ -217,8 +269,87 @@ public class DeltaLinkHTTP implements DeltaLink {
             if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 ) {
                 return null ; //throw new DeltaNotFoundException(ex.getMessage());
             }
+            if ( ex.getStatusCode() == HttpSC.GONE_410 )
+                throw new DeltaPatchesPrunedException(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    @Override
+    public Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        return fetchRange(dsRef, start, finish, false);
+    }
+
+    @Override
+    public Stream<RDFPatch> fetchRangeSquashed(Id dsRef, Version start, Version finish) {
+        return fetchRange(dsRef, start, finish, true);
+    }
+
+    private Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish, boolean squashed) {
+        checkLink();
+        String url = createURL(remoteReceive, DeltaConst.paramDatasource, dsRef.asParam());
+        url = String.format("%s?%s=%s&%s=%s", url, DeltaConst.paramFrom, start.asParam(), DeltaConst.paramTo, finish.asParam());
+        if ( squashed )
+            url = String.format("%s&%s=true", url, DeltaConst.paramSquash);
+        final String s = url;
+        TypedInputStream in;
+        try {
+            // [NET] Network point
+            String acceptRange = binaryPatches ? DeltaConst.contentTypePatchRangeBinary : DeltaConst.contentTypePatchRange;
+            in = retry(()->HttpOp.execHttpGet(s, acceptRange),
+                       ()->true, ()->"Retry fetch patch range.", ()->"Failed to fetch patch range.");
+        }
+        catch ( HttpException ex) {
+            if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 )
+                return Stream.empty();
+            if ( ex.getStatusCode() == HttpSC.GONE_410 )
+                throw new DeltaPatchesPrunedException(ex.getMessage());
+            if ( ex.getStatusCode() == HttpSC.BAD_REQUEST_400 ) {
+                // Older server without range fetch: one request per patch.
+                FmtLog.debug(Delta.DELTA_HTTP_LOG, "Patch range fetch not supported: %s", remoteServer);
+                return DeltaLink.super.fetchRange(dsRef, start, finish);
+            }
+            throw ex;
+        }
+        if ( in == null )
+            return Stream.empty();
+        boolean binary = DeltaConst.contentTypePatchRangeBinary.equals(in.getContentType());
+        return PatchStreamIO.read(in, binary)
+            .peek(patch->event(listener->listener.fetchById(dsRef, Id.fromNode(patch.getId()), patch)));
+    }
+
+    /**
+     * Wait for a change to the patch log. The server holds the request until the log has
+     * a version later than {@code after} or the timeout is reached.
+     */
+    @Override
+    public PatchLogInfo awaitChange(Id dsRef, Version after, long timeoutMillis) {
+        checkLink();
+        String url = createURL(remoteReceive, DeltaConst.paramDatasource, dsRef.asParam());
+        url = String.format("%s?%s=%s&%s=%d", url, DeltaConst.paramAfter, after.asParam(), DeltaConst.paramTimeout, Math.max(0, timeoutMillis));
+        final String s = url;
+        TypedInputStream in;
+        try {
+            // [NET] Network point
+            in = retry(()->HttpOp.execHttpGet(s, WebContent.contentTypeJSON),
+                       ()->true, ()->"Retry wait for change.", ()->"Failed to wait for change.");
+        }
+        catch ( HttpException ex) {
+            if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 )
+                return null;
+            if ( ex.getStatusCode() == HttpSC.BAD_REQUEST_400 ) {
+                // Older server: check the log at intervals.
+                FmtLog.debug(Delta.DELTA_HTTP_LOG, "Wait for change not supported: %s", remoteServer);
+                return DeltaLink.super.awaitChange(dsRef, after, timeoutMillis);
+            }
             throw ex;
         }
+        if ( in == null )
+            return null;
+        try {
+            JsonObject obj = JSON.parse(in);
+            return PatchLogInfo.fromJson(obj);
+        } finally { IO.close(in); }
     }
 
     private static String appendURL(String url, String string) {
@@ -237,6 +368,49 @@ public class DeltaLinkHTTP implements DeltaLink {
         return String.format("%s?%s=%s", remoteData, DeltaConst.paramDatasource, dsRef.asParam());
     }
 
+    /**
+     * Fetch the latest dataset snapshot from the server. The version and patch id of the
+     * snapshot are in the response headers; a response without them (for example, initial
+     * data from a server without snapshots) is not used.
+     */
+    @Override
+    public SnapshotInfo fetchSnapshot(Id dsRef, StreamRDF dest) {
+        checkLink();
+        String url = initialState(dsRef);
+        AtomicReference<SnapshotInfo> result = new AtomicReference<>(null);
+        try {
+            // [NET] Network point
+            HttpOp.execHttpGet(url, WebContent.contentTypeNQuads, (base, response)->{
+                Header hVersion = response.getFirstHeader(DeltaConst.hdrSnapshotVersion);
+                Header hPatch = response.getFirstHeader(DeltaConst.hdrSnapshotPatch);
+                HttpEntity entity = response.getEntity();
+                if ( hVersion == null || hPatch == null || entity == null )
+                    return;
+                SnapshotInfo info = SnapshotInfo.create(Version.create(hVersion.getValue()), Id.fromString(hPatch.getValue()));
+                try ( InputStream in = snapshotStream(response, entity) ) {
+                    DeltaOps.parseSnapshot(in, dest);
+                }
+                result.set(info);
+            });
+        }
+        catch ( HttpException ex) {
+            if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 )
+                return null;
+            throw ex;
+        }
+        return result.get();
+    }
+
+    // The snapshot is gzip-compressed. The HTTP client may already have decompressed it
+    // and, if so, removed the Content-Encoding header.
+    private static InputStream snapshotStream(HttpResponse response, HttpEntity entity) throws IOException {
+        InputStream in = entity.getContent();
+        Header encoding = response.getFirstHeader(HttpNames.hContentEncoding);
+        if ( encoding != null && "gzip".equalsIgnoreCase(encoding.getValue().trim()) )
+            in = new GZIPInputStream(in, 128*1024);
+        return in;
+    }
+
     public String getServerURL() {
         return remoteServer ;
     }
@@ -340,7 +514,6 @@ public class DeltaLinkHTTP implements DeltaLink {
         Objects.requireNonNull(datasourceId);
         JsonObject arg = JSONX.buildObject(b->{
             b.key(DeltaConst.F_DATASOURCE).value(datasourceId.asPlainString());
-            //b.key(DeltaConst.F_TIMEOUT).value(datasourceId.asPlainString());
         });
 
         JsonObject obj = rpcOnce(DeltaConst.OP_LOCK, arg);
@@ -350,65 +523,57 @@ public class DeltaLinkHTTP implements DeltaLink {
         return lockSession;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The server holds the request while waiting. A server that does not support waiting
+     * makes one attempt.
+     */
+    @Override
+    public Id acquireLock(Id datasourceId, long timeoutMillis) {
+        Objects.requireNonNull(datasourceId);
+        JsonObject arg = JSONX.buildObject(b->{
+            b.key(DeltaConst.F_DATASOURCE).value(datasourceId.asPlainString());
+            b.key(DeltaConst.F_TIMEOUT).value(Math.max(0, timeoutMillis));
+        });
+        JsonObject obj = rpcOnce(DeltaConst.OP_LOCK, arg);
+        return idOrNullFromField(obj, DeltaConst.F_LOCK_REF);
+    }
+
     @Override
     public boolean refreshLock(Id datasourceId, Id lockRef) {
         Objects.requireNonNull(datasourceId);
         Objects.requireNonNull(lockRef);
+        return refreshLocks(Map.of(datasourceId, lockRef)).isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This is one request to the server.
+     */
+    @Override
+    public Set<Id> refreshLocks(Map<Id, Id> locks) {
+        Objects.requireNonNull(locks);
+        if ( locks.isEmpty() )
+            return new HashSet<>();
+        // batch refresh operation { array: [ { datasource: "", lock: ""} ] }
         // DRY with S_DRPC
-        JsonObject x = JSONX.buildObject(b->{
-            b.pair(F_DATASOURCE, datasourceId.asPlainString());
-            b.pair(F_LOCK_REF, lockRef.asPlainString());
-        });
         JsonArray array = new JsonArray();
-        array.add(x);
+        locks.forEach((datasourceId, lockRef)->{
+            JsonObject x = JSONX.buildObject(b->{
+                b.pair(F_DATASOURCE, datasourceId.asPlainString());
+                b.pair(F_LOCK_REF, lockRef.asPlainString());
+            });
+            array.add(x);
+        });
         JsonObject args = JSONX.buildObject(b->b.pair(F_ARRAY, array));
         JsonObject rtn = rpcOnce(DeltaConst.OP_LOCK_REFRESH, args);
-        // One  lock.
-        Optional<JsonValue> foo = rtn.getArray(F_ARRAY).findFirst();
-        // NB Return locks that do not exist
-        if ( foo.isEmpty() )
-            return true;
-        JsonObject rtnLock = foo.get().getAsObject();
-        rtnLock.get(F_DATASOURCE);
-        rtnLock.get(F_LOCK_REF);
-        return false;
-    }
-
-    // Sketch of lock batching.
-
-//    @Override
-//    public Set refreshLocks(Set<Id> lockSet) {
-//        JsonObject arg = buildRefreshArg(lockSet);
-//        JsonObject obj = rpcOnce(DeltaConst.OP_LOCK_REFRESH, arg);
-//        // ???
-//    }
-//
-//    // batch refresh operation { array: [ { datasource: "", lock: ""} ] }
-//    /*package*/ static JsonObject buildRefreshArg(Set<Id> locks) {
-//        List<JsonObject> x = locks.stream().map(lockId->{
-//            return JSONX.buildObject(b->{
-//                b.pair(F_DATASOURCE, lockId.asPlainString());
-//                b.pair(F_LOCK_REF, lockId.asPlainString());
-//            });
-//        }).collect(toList());
-//        JsonArray array = new JsonArray();
-//        array.addAll(x);
-//        return JSONX.buildObject(b->b.pair(F_ARRAY, array));
-//    }
-//
-//    /*package*/ static Set<Id> buildRefreshRtn(JsonObject obj) {
-//        obj.getArray(F_ARRAY).
-//
-//        List<JsonObject> x = locks.stream().map(lockId->{
-//            return JSONX.buildObject(b->{
-//                b.pair(F_DATASOURCE, lockId.asPlainString());
-//                b.pair(F_LOCK_REF, lockId.asPlainString());
-//            });
-//        }).collect(toList());
-//        JsonArray array = new JsonArray();
-//        array.addAll(x);
-//        return JSONX.buildObject(b->b.pair(F_ARRAY, array));
-//    }
+        // The server returns the locks that were not refreshed.
+        Set<Id> failed = new HashSet<>();
+        rtn.getArray(F_ARRAY).forEach(v->failed.add(idFromField(v.getAsObject(), F_DATASOURCE)));
+        return failed;
+    }
 
     @Override
     public LockState readLock(Id datasourceId) {
@@ -537,7 +702,7 @@ public class DeltaLinkHTTP implements DeltaLink {
     private JsonValue rpcToValue(String opName, JsonObject arg) {
         JsonObject argx = ( arg == null ) ? emptyObject : arg;
         // [NET] Network point
-        return retry(()->DRPC.rpc(remoteServer + DeltaConst.EP_RPC, opName, argx),
+        return retry(()->send(opName, argx),
                      ()->true,
                      ()->format("Retry : %s",opName),
                      ()->format("Failed : %s %s",opName,JSON.toStringFlat(argx))
@@ -556,7 +721,15 @@ public class DeltaLinkHTTP implements DeltaLink {
     private JsonValue rpcOnceToValue(String opName, JsonObject arg) {
         JsonObject argx = ( arg == null ) ? emptyObject : arg;
         // [NET] Network point
-        return DRPC.rpc(remoteServer + DeltaConst.EP_RPC, opName, argx);
+        return send(opName, argx);
+    }
+
+    /** Send an RPC, in a batch request with other concurrent calls if batching is enabled. */
+    private JsonValue send(String opName, JsonObject arg) {
+        DRPCBatcher drpcBatcher = batcher;
+        if ( drpcBatcher != null && batchableOps.contains(opName) )
+            return drpcBatcher.rpc(opName, arg);
+        return DRPC.rpc(remoteServer + DeltaConst.EP_RPC, opName, arg);
     }
 
     private <X> void event(Consumer<DeltaLinkListener> action) {
@@ -18,7 +18,12 @@
 
 package org.seaborne.delta.client;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.jena.atlas.lib.Lib;
@@ -86,6 +91,39 @@ public class LogLock {
         return _refreshLock(dLink, dataSourceId, session);
     }
 
+    /**
+     * Refresh the locks held, all on the patch log server of {@code dLink}, in one
+     * request. Errors are handled as for {@link #refreshLock()}. Each lock that was
+     * not refreshed is told with {@link #notRefreshed}.
+     */
+    /*package*/ static void refreshLocks(DeltaLink dLink, Collection<LogLock> locks) {
+        Map<Id, Id> sessions = new LinkedHashMap<>();
+        Map<Id, LogLock> held = new HashMap<>();
+        locks.forEach(lock->{
+            Id session = lock.getLockSessionId();
+            if ( session != null ) {
+                sessions.put(lock.getDataSourceId(), session);
+                held.put(lock.getDataSourceId(), lock);
+            }
+        });
+        if ( sessions.isEmpty() )
+            return;
+        Set<Id> failed = _refreshLocks(dLink, sessions);
+        failed.forEach(dsRef->{
+            LogLock lock = held.get(dsRef);
+            if ( lock != null )
+                lock.notRefreshed(sessions.get(dsRef));
+        });
+    }
+
+    // The lock session was not refreshed: it has been released or timed out on the server.
+    private void notRefreshed(Id session) {
+        // Released here since the refresh started.
+        if ( ! session.equals(lockSessionId.get()) )
+            return;
+        FmtLog.warn(LOG, "Patch log lock not refreshed: %s", dataSourceId);
+    }
+
     public LockState readLock() {
         return _readLock(dLink, dataSourceId);
     }
@@ -134,6 +172,18 @@ public class LogLock {
         }
     }
 
+    private static Set<Id> _refreshLocks(DeltaLink dLink, Map<Id, Id> locks) {
+        try {
+            return dLink.refreshLocks(locks);
+        } catch (HttpException ex) {
+            failedConnection();
+            FmtLog.warn(LOG, "Failed to refresh the patch log locks: %s", locks.keySet());
+            if ( ex.getStatusCode() == -1 )
+                throw new HttpException(HttpSC.SERVICE_UNAVAILABLE_503, HttpSC.getMessage(HttpSC.SERVICE_UNAVAILABLE_503), ex.getMessage());
+            throw ex;
+        }
+    }
+
     private static LockState _readLock(DeltaLink dLink, Id datasourceId) {
         try {
             return dLink.readLock(datasourceId);
@@ -188,8 +238,9 @@ public class LogLock {
         LOCK_POLL_WAIT_MS = 500;
         LOCK_SAME_TICKS_RETRIES = 3;
         LOCK_STATE_CHANGE_RETRIES = 2;
-        FmtLog.info(LOG,"POLL_WAIT_MS = %d SAME_TICKS_RETRIES = %d STATE_CHANGE_RETRIES = %d",
-                        LOCK_POLL_WAIT_MS, LOCK_SAME_TICKS_RETRIES, LOCK_STATE_CHANGE_RETRIES);
+        LOCK_WAIT_MS = 1000;
+        FmtLog.info(LOG,"POLL_WAIT_MS = %d SAME_TICKS_RETRIES = %d STATE_CHANGE_RETRIES = %d WAIT_MS = %d",
+                        LOCK_POLL_WAIT_MS, LOCK_SAME_TICKS_RETRIES, LOCK_STATE_CHANGE_RETRIES, LOCK_WAIT_MS);
     }
 
     private static void DEV(String fmt, Object... args) {
@@ -205,6 +256,8 @@ public class LogLock {
 
     /**
      * Number of attempts watching for the session to change or ticks not to change.
+     * The lock holder is presumed dead when the ticks have not changed for this many
+     * times {@link #LOCK_POLL_WAIT_MS}.
      *
      * This is the inner loop.
      * Related: retry frequency in {@link LogLockMgr#REFRESH_MS}.
@@ -223,14 +276,22 @@ public class LogLock {
      */
     private static int LOCK_POLL_WAIT_MS                = 1000;
 
+    /**
+     * Time the server is asked to hold a request waiting for the lock (milliseconds).
+     * Waiting requests are given the lock in the order they started waiting.
+     * The server may hold the request for less time (see {@link org.seaborne.delta.DeltaConst#LOCK_WAIT_MAX_MS}).
+     */
+    private static int LOCK_WAIT_MS                     = 2*1000;
+
     /**
      * Acquire the patch log lock else bail out.
      * <p>
      * The patch log is a discretion lock provided by the patch log server that can be
      * used to serialise updates across the cluster.
      * <p>
-     * The server provides certain actions on locks, none of which block or wait. The
-     * policy for the lock is determined by the clients.
+     * The server provides certain actions on locks. Only acquiring the lock waits: the
+     * server holds the request, in a FIFO queue, until the lock is free or a timeout.
+     * The policy for breaking the lock is determined by the clients.
      * <p>
      * This is not perfect - it does not always acquire the lock when unexpected
      * combinations of failures occur. It is intended first and foremost to protect the
@@ -255,10 +316,10 @@ public class LogLock {
      * <p>
      * Algorithm:
      * <ul>
-     * <li> Try to acquire the lock and return if successful
+     * <li> Try to acquire the lock, waiting in the server queue, and return if successful
      * <li> Otherwise, read the lock state (being careful the lock may become free at this point).
-     * <li> Poll, noting whether the lock ticks are advancing, or the lock becomes free, or for someone else
-     * to get it. Id the ticks advance, loop.
+     * <li> Wait for the lock in the server queue, then read the lock, noting whether the lock ticks
+     * are advancing, or the lock becomes free, or for someone else to get it. If the ticks advance, loop.
      * <li> If the lock became free, start again.
      * <li> If someone else grabbed it, start again.
      * <li> If the ticks aren't advancing, grab (break and acquire) the lock.
@@ -271,10 +332,11 @@ public class LogLock {
      * typical use cases of a predominately read workload, or updates being directed via
      * one distinguished replica.
      * <ul>
-     * <li>Waiting for the lock is not a queue. If the system is under heavy write load,
-     * one writer may not manage to acquire the lock because it does not manage to get the
-     * lock when all the waiting writers try to acquire the lock.
-     * <li>
+     * <li>Waiting for the lock is a queue on the server for each wait of up to
+     * {@code LOCK_WAIT_MS}. A writer that has to wait longer than that joins the back of
+     * the queue again.
+     * <li>A server that does not support waiting makes one attempt and the client
+     * waits between attempts.
      * </ul>
      */
     private static Id attemptToAcquireLock(int depth, DeltaLink dLink, Id datasourceId) {
@@ -290,7 +352,7 @@ public class LogLock {
 
         // Step 1: Acquire the lock or read the lock.
         DEV(">%d Attempt to acquire lock: %s", depth, datasourceId);
-        Id lockSession = dLink.acquireLock(datasourceId);
+        Id lockSession = waitForLock(dLink, datasourceId, LOCK_WAIT_MS);
 
         if ( lockSession != null )
             // Success!
@@ -313,6 +375,9 @@ public class LogLock {
         int pollWaitAttempts = 0;
         Id sessionToken = state.session;
 
+        // Set if the lock is acquired while polling.
+        AtomicReference<Id> acquired = new AtomicReference<>(null);
+
         // One loop for each change of lock ownership (someone else grabs).
         // pollReadLock includes the tracking of ticks advancing.
         for(;;) {
@@ -322,7 +387,10 @@ public class LogLock {
             // Loop looking for ticks change.
             DEV(">%d Poll lock : %s", depth, datasourceId);
 
-            LockState state2 = pollReadLock(dLink, datasourceId, state);
+            LockState state2 = pollReadLock(dLink, datasourceId, state, acquired);
+            if ( acquired.get() != null )
+                // Success while waiting.
+                return acquired.get();
 
             if ( LockState.isFree(state2) ) {
                 DEV("Lock became free: %s", datasourceId);
@@ -360,33 +428,40 @@ public class LogLock {
     }
 
     /** Watch the lock advance.
-     * Loop watching for the lock
+     * Loop waiting for the lock and watching the lock state.
      * <ul>
-     * <li> If the the ticks do not advance, timeout and return null.
-     * <li>
+     * <li>If the lock is acquired while waiting, set {@code acquired} and return.
+     * <li>If the the ticks do not advance, timeout and return the lock state.
+     * <li>If the lock becomes free, return {@link LockState#UNLOCKED}.
      * <li>ticks advance, reset the observed tick setting and keep polling
      * <li>if the lock changes owner, return the new lock state
      * </ul>
      */
-    private static LockState pollReadLock(DeltaLink dLink, Id datasourceId, LockState lockState) {
+    private static LockState pollReadLock(DeltaLink dLink, Id datasourceId, LockState lockState, AtomicReference<Id> acquired) {
         int totalAttempts = 0;
-        int sameTickAttempts = 0;
+        long staleMillis = (long)LOCK_SAME_TICKS_RETRIES * LOCK_POLL_WAIT_MS;
+        long sameTicksStart = System.currentTimeMillis();
 
         for(;;) {
             Id lockSession = lockState.session;
             long ticks = lockState.ticks;
-            sameTickAttempts++;
             totalAttempts++;
-            if ( sameTickAttempts > LOCK_SAME_TICKS_RETRIES ) {
+            long remaining = staleMillis - (System.currentTimeMillis() - sameTicksStart);
+            if ( remaining <= 0 ) {
                 DEV("{%d} Lock not advancing - end polling", totalAttempts);
                 return lockState;
             }
-            Lib.sleep(LOCK_POLL_WAIT_MS);
+            Id session = waitForLock(dLink, datasourceId, Math.min(LOCK_WAIT_MS, remaining));
+            if ( session != null ) {
+                DEV("{%d} Acquired while waiting", totalAttempts);
+                acquired.set(session);
+                return LockState.UNLOCKED;
+            }
             DEV("{%d} ticks=%s", totalAttempts, ticks);
             LockState state2 = dLink.readLock(datasourceId);
             if ( LockState.isFree(state2) ) {
                 // Lock became free.
-                DEV("Poll lock attempt=%d - lock became free", sameTickAttempts);
+                DEV("Poll lock attempt=%d - lock became free", totalAttempts);
                 return LockState.UNLOCKED;
             }
 
@@ -402,10 +477,26 @@ public class LogLock {
             if ( ticks2 > ticks ) {
                 DEV("{%d} ticks advanced %d", totalAttempts, ticks2);
                 lockState = state2;
-                sameTickAttempts = 0;
+                sameTicksStart = System.currentTimeMillis();
             } else
                 DEV("{%d} ticks did not advance", totalAttempts);
             // And loop.
         }
     }
+
+    /**
+     * Wait up to {@code waitMillis} for the lock. The server holds the request; a server
+     * that does not support waiting returns at once, in which case wait here before the
+     * caller tries again.
+     */
+    private static Id waitForLock(DeltaLink dLink, Id datasourceId, long waitMillis) {
+        long start = System.currentTimeMillis();
+        Id session = dLink.acquireLock(datasourceId, waitMillis);
+        if ( session == null ) {
+            long pause = Math.min(waitMillis, LOCK_POLL_WAIT_MS) - (System.currentTimeMillis() - start);
+            if ( pause > 0 )
+                Lib.sleep((int)pause);
+        }
+        return session;
+    }
 }
@@ -52,18 +52,25 @@ public class LogLockMgr {
             FmtLog.debug(LOG,  fmt,  args);
     }
 
-    // Ideal: batch refresh operation { array: [ { datasource: "", lock: ""} ] }
+    // One batch refresh operation for all the locks held.
+    // Results and failures are handled by each LogLock.
     private Runnable lockRefresher = ()-> {
         DEV("Refresh %d", active.size());
-        active.forEach(lock-> {
-            if ( lock.isLocked() ) {
-                lock.refreshLock();
-                if ( DEBUG ) {
+        try {
+            LogLock.refreshLocks(getLink(), active);
+        } catch (RuntimeException ex) {
+            // Keep the refresher running; the next refresh may succeed.
+            FmtLog.warn(LOG, "Failed to refresh patch log locks: %s", ex.getMessage());
+            return;
+        }
+        if ( DEBUG ) {
+            active.forEach(lock-> {
+                if ( lock.isLocked() ) {
                     LockState state = lock.readLock();
                     DEV("Refresh %s : %s", lock.getDataSourceId(), state);
                 }
-            }
-        });
+            });
+        }
     };
 
     private static int LOCK_REFRESH_MS                  = 1000;
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.PatchSummary;
+
+/**
+ * Fetch a range of patches with several requests in parallel, returning the patches in
+ * version order.
+ * <p>
+ * The range is split into chunks of versions. Up to {@code threads} chunks are fetched,
+ * and parsed, ahead of the chunk being consumed. No more chunks are started while the
+ * fetched chunks waiting to be consumed hold more than {@code maxBufferedChanges}
+ * changes.
+ * <p>
+ * The patches end at the first chunk that does not reach the end of its range (a gap
+ * or the end of the log); patches in later chunks are not returned.
+ */
+/*package*/ class PatchPrefetcher implements Iterator<RDFPatch> {
+
+    /**
+     * Return the patches, as {@link DeltaLink#fetchRangeSquashed}, fetching chunks of
+     * {@code chunkSize} versions with up to {@code threads} requests at once.
+     * The stream must be closed after use.
+     */
+    /*package*/ static Stream<RDFPatch> fetch(DeltaLink dLink, Id dsRef, Version start, Version finish,
+                                             int threads, int chunkSize, long maxBufferedChanges) {
+        long first = Math.max(start.value(), Version.FIRST.value());
+        if ( threads <= 1 || finish.value() - first < chunkSize )
+            return dLink.fetchRangeSquashed(dsRef, start, finish);
+        PatchPrefetcher prefetcher = new PatchPrefetcher(dLink, dsRef, first, finish.value(), threads, chunkSize, maxBufferedChanges);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(prefetcher, Spliterator.ORDERED|Spliterator.NONNULL), false)
+            .onClose(prefetcher::close);
+    }
+
+    /** The patches for the versions [start, finish] */
+    private static class Chunk {
+        final List<RDFPatch> patches;
+        final long changes;
+        // Whether the patches cover all the versions of the chunk.
+        final boolean complete;
+        Chunk(List<RDFPatch> patches, long changes, boolean complete) {
+            this.patches = patches;
+            this.changes = changes;
+            this.complete = complete;
+        }
+    }
+
+    private static final AtomicInteger threadCounter = new AtomicInteger(0);
+
+    private final DeltaLink dLink;
+    private final Id dsRef;
+    private final long finish;
+    private final int threads;
+    private final int chunkSize;
+    private final long maxBufferedChanges;
+    private final ExecutorService executor;
+    private final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+    // Changes in chunks fetched but not yet consumed.
+    private final AtomicLong bufferedChanges = new AtomicLong(0);
+    private long nextStart;
+    private Iterator<RDFPatch> current = null;
+    private boolean finished = false;
+
+    private PatchPrefetcher(DeltaLink dLink, Id dsRef, long start, long finish, int threads, int chunkSize, long maxBufferedChanges) {
+        this.dLink = dLink;
+        this.dsRef = dsRef;
+        this.finish = finish;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.maxBufferedChanges = maxBufferedChanges;
+        this.nextStart = start;
+        this.executor = Executors.newFixedThreadPool(threads, r->{
+            Thread thread = new Thread(r, "DeltaPrefetch-"+threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        for(;;) {
+            if ( current != null && current.hasNext() )
+                return true;
+            if ( finished )
+                return false;
+            fill();
+            if ( pending.isEmpty() ) {
+                close();
+                return false;
+            }
+            Chunk chunk = get(pending.removeFirst());
+            bufferedChanges.addAndGet(-chunk.changes);
+            current = chunk.patches.iterator();
+            if ( ! chunk.complete )
+                // Return this chunk and no more.
+                close();
+        }
+    }
+
+    @Override
+    public RDFPatch next() {
+        if ( ! hasNext() )
+            throw new NoSuchElementException();
+        return current.next();
+    }
+
+    /** Start fetching chunks, up to the limits. */
+    private void fill() {
+        while ( pending.size() < threads && nextStart <= finish && bufferedChanges.get() < maxBufferedChanges ) {
+            long chunkStart = nextStart;
+            long chunkFinish = Math.min(finish, chunkStart + chunkSize - 1);
+            nextStart = chunkFinish + 1;
+            pending.add(executor.submit(()->fetchChunk(chunkStart, chunkFinish)));
+        }
+    }
+
+    private Chunk fetchChunk(long start, long finish) {
+        List<RDFPatch> patches = new ArrayList<>();
+        long changes = 0;
+        long ver = start;
+        try ( Stream<RDFPatch> stream = dLink.fetchRangeSquashed(dsRef, Version.create(start), Version.create(finish)) ) {
+            Iterator<RDFPatch> iter = stream.iterator();
+            while ( iter.hasNext() ) {
+                // Parse now, not in the thread applying the patches.
+                RDFPatch patch = RDFPatchOps.collect(iter.next());
+                PatchSummary summary = RDFPatchOps.summary(patch);
+                changes += summary.countAddData + summary.countDeleteData + summary.countAddPrefix + summary.countDeletePrefix;
+                patches.add(patch);
+                ver += RDFPatchOps.squashCount(patch);
+            }
+        }
+        bufferedChanges.addAndGet(changes);
+        return new Chunk(patches, changes, ver > finish);
+    }
+
+    private static Chunk get(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DeltaException("Interrupted while fetching patches");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            if ( cause instanceof Error )
+                throw (Error)cause;
+            throw new DeltaException("Failed to fetch patches", cause);
+        }
+    }
+
+    /** Stop fetching. Patches already returned by this iterator are not affected. */
+    /*package*/ void close() {
+        if ( finished )
+            return;
+        finished = true;
+        pending.forEach(f->f.cancel(true));
+        pending.clear();
+        executor.shutdownNow();
+    }
+}
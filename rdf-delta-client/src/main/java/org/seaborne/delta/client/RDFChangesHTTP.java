@@ -17,7 +17,6 @@
 
 package org.seaborne.delta.client;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -30,7 +29,8 @@ import org.apache.http.HttpResponse ;
 import org.apache.http.StatusLine ;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.jena.atlas.io.IO;
@@ -41,20 +41,31 @@ import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.graph.Node;
 import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.thrift.TRDF;
 import org.seaborne.delta.*;
 import org.seaborne.delta.lib.IOX ;
 import org.seaborne.delta.lib.JSONX;
+import org.seaborne.patch.RDFChanges;
 import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.binary.RDFChangesWriterBinary;
+import org.seaborne.patch.changes.RDFChangesWrapper;
 import org.seaborne.patch.changes.RDFChangesWriter;
+import org.seaborne.patch.system.Spool;
 import org.slf4j.Logger;
 
-/** Collect the bytes of a change stream, then write to HTTP */
-public class RDFChangesHTTP extends RDFChangesWriter {
-    // This should have control of text/binary.
-
+/**
+ * Collect the bytes of a change stream, then write to HTTP. The patch is sent in text
+ * format or, if requested, in binary (Thrift) format, optionally with term compression
+ * (see {@link RDFChangesWriterBinary}).
+ * <p>
+ * The bytes are collected in a {@link Spool} so a patch larger than
+ * {@link DeltaConst#PATCH_SPOOL_BYTES} is held in a temporary file, not in memory.
+ */
+public class RDFChangesHTTP extends RDFChangesWrapper {
     private static final Logger LOG = Delta.DELTA_HTTP_LOG;
     private final CloseableHttpClient httpClient = HttpClients.createDefault();
-    private final ByteArrayOutputStream bytes ;
+    private final Spool bytes ;
+    private final boolean binary;
     // Count to match up begin-commit.
     private int txnDepth = 0 ;
     private final Runnable resetAction;
@@ -69,12 +80,26 @@ public class RDFChangesHTTP extends RDFChangesWriter {
 
     /** Send changes to a specific URL */
     public RDFChangesHTTP(String urlstr) {
-        this(urlstr, null, ()->urlstr, null);
+        this(urlstr, null, ()->urlstr, null, false, false);
     }
 
     /** Send changes to a specific URL */
     public RDFChangesHTTP(String label, String urlstr) {
-        this(label, ()->urlstr, null);
+        this(label, urlstr, false);
+    }
+
+    /** Send changes to a specific URL, in binary format if {@code binary} is true, otherwise in text format. */
+    public RDFChangesHTTP(String label, String urlstr, boolean binary) {
+        this(label, urlstr, binary, false);
+    }
+
+    /**
+     * Send changes to a specific URL, in binary format if {@code binary} is true,
+     * otherwise in text format. If {@code compress} is true, binary patches are written
+     * with term compression, which the patch log server must be able to read.
+     */
+    public RDFChangesHTTP(String label, String urlstr, boolean binary, boolean compress) {
+        this(label, null, ()->urlstr, null, binary, compress);
     }
 
     // resetAction (on 401) not currently enabled.
@@ -86,16 +111,17 @@ public class RDFChangesHTTP extends RDFChangesWriter {
 
     /** Send changes to a supplied URL, with an action a specific action on any 401  */
     private RDFChangesHTTP(String label, Supplier<String> urlSupplier, Runnable resetAction) {
-        this(label, null, urlSupplier, resetAction);
+        this(label, null, urlSupplier, resetAction, false, false);
     }
 
     /** Send changes to a supplied URL, with an action a specific action on any 401 and sync'ed on a specific object  */
-    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction) {
-        this(label, syncObject, urlSupplier, resetAction, new ByteArrayOutputStream(100*1024));
+    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, boolean binary, boolean compress) {
+        this(label, syncObject, urlSupplier, resetAction, binary, compress, new Spool(DeltaConst.PATCH_SPOOL_BYTES));
     }
 
-    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, ByteArrayOutputStream out) {
-        super(DeltaOps.tokenWriter(out));
+    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, boolean binary, boolean compress, Spool out) {
+        super(writer(out, binary, compress));
+        this.binary = binary;
         this.syncObject = (syncObject!=null) ? syncObject : new Object();
         this.resetAction = resetAction;
         this.urlSupplier = urlSupplier;
@@ -104,6 +130,12 @@ public class RDFChangesHTTP extends RDFChangesWriter {
         reset();
     }
 
+    private static RDFChanges writer(Spool out, boolean binary, boolean compress) {
+        if ( binary )
+            return new RDFChangesWriterBinary(TRDF.protocol(out), compress);
+        return new RDFChangesWriter(DeltaOps.tokenWriter(out));
+    }
+
     @Override
     public void header(String field, Node value) {
         super.header(field, value);
@@ -154,6 +186,9 @@ public class RDFChangesHTTP extends RDFChangesWriter {
             LOG.warn("Nested transaction error.");
         // This adds the "TC"
         super.txnCommit();
+        if ( binary )
+            // The binary writer buffers: flush the bytes through to the collector.
+            get().finish();
         // This will throw an exception if the patch isn't current.
         // send does reset().
         // The exception passes up and DatasetGraphChanges turns the commit into an abort.
@@ -181,13 +216,12 @@ public class RDFChangesHTTP extends RDFChangesWriter {
 
     private void reset() {
         patchId = null ;
+        if ( binary )
+            // Discard anything buffered by the binary writer as well.
+            get().finish();
         bytes.reset();
     }
 
-    private byte[] collected() {
-        return bytes.toByteArray();
-    }
-
     public void send() {
         synchronized(syncObject) {
             try { send$(); }
@@ -205,18 +239,21 @@ public class RDFChangesHTTP extends RDFChangesWriter {
     private void send$() {
         long number = counter.incrementAndGet();
 
-        byte[] bytes = collected();
+        long length = bytes.size();
         String idStr;
 
         if ( patchId != null )
             idStr = Id.str(patchId);
         else
             idStr = Long.toString(number);
-        FmtLog.info(LOG, "Send patch %s (%d bytes) -> %s", idStr, bytes.length, destLabel);
+        FmtLog.info(LOG, "Send patch %s (%d bytes) -> %s", idStr, length, destLabel);
 
         if ( false ) {
-            if ( LOG.isDebugEnabled() ) {
-                String s = new String(bytes, StandardCharsets.UTF_8);
+            if ( LOG.isDebugEnabled() && bytes.inMemory() ) {
+                String s;
+                try ( InputStream in = bytes.openInputStream() ) {
+                    s = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                } catch (IOException ex) { throw IOX.exception(ex); }
                 LOG.debug("== Sending ...");
                 // Do NOT close!
                 IndentedWriter w = IndentedWriter.stdout;
@@ -234,9 +271,13 @@ public class RDFChangesHTTP extends RDFChangesWriter {
         int attempts = 0 ;
         for(;;) {
             HttpPost postRequest = new HttpPost(urlSupplier.get());
-            postRequest.setEntity(new ByteArrayEntity(bytes));
+            ContentType contentType = binary
+                ? ContentType.create(DeltaConst.contentTypePatchBinary)
+                : ContentType.create(DeltaConst.contentTypePatchText);
+            InputStream body = bytes.openInputStream();
+            postRequest.setEntity(new InputStreamEntity(body, length, contentType));
 
-            try(CloseableHttpResponse r = httpClient.execute(postRequest) ) {
+            try(body; CloseableHttpResponse r = httpClient.execute(postRequest) ) {
                 attempts++;
                 statusLine = r.getStatusLine();
                 response = readResponse(r);
@@ -19,22 +19,18 @@ package org.seaborne.delta.client.assembler;
 
 import static org.apache.jena.sparql.util.graph.GraphUtils.exactlyOneProperty;
 import static org.apache.jena.sparql.util.graph.GraphUtils.getAsStringValue;
+import static org.seaborne.delta.DeltaConst.symDeltaConnection;
 import static org.seaborne.delta.client.assembler.VocabDelta.*;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.jena.assembler.Assembler;
 import org.apache.jena.assembler.Mode;
 import org.apache.jena.assembler.assemblers.AssemblerBase;
 import org.apache.jena.assembler.exceptions.AssemblerException;
 import org.apache.jena.atlas.lib.ListUtils;
-import org.apache.jena.atlas.lib.NotImplemented;
 import org.apache.jena.atlas.logging.FmtLog;
-import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.*;
@@ -43,9 +39,7 @@ import org.apache.jena.sparql.util.graph.GraphUtils;
 import org.apache.jena.tdb.base.file.Location;
 import org.seaborne.delta.Delta;
 import org.seaborne.delta.client.DeltaConnection;
-import org.seaborne.delta.client.DeltaLinkHTTP;
 import org.seaborne.delta.client.LocalStorageType;
-import org.seaborne.delta.link.DeltaLink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +54,7 @@ public class DeltaAssembler extends AssemblerBase implements Assembler {
      *     delta:patchlog "ABC"
      *     delta:zone "file path"
      *     delta:storage "mem", "file", "tdb" zone info.
+     *     delta:watch true   (optional) keep up-to-date in the background.
      *
      * If delta:changes is a list with more than one element, then that is used to build a
      * switchable DelatLink to replicated delta servers.
@@ -124,13 +119,17 @@ public class DeltaAssembler extends AssemblerBase implements Assembler {
                 : LibBuildDC.setupDataset(dsName, zoneLocation, externalDataset, deltaServers);
         Dataset dataset = DatasetFactory.wrap(dsg);
 
-        //  Poll for changes as well. Not implemented (yet).
-//      if ( root.hasProperty(pPollForChanges) ) {
-//          if ( ! exactlyOneProperty(root, pPollForChanges) )
-//              throw new AssemblerException(root, "Multiple places to poll for chnages") ;
-//          String source = getStringValue(root, pPollForChanges) ;
-//          forkUpdateFetcher(source, dsgSub) ;
-//      }
+        // delta:watch true - keep up-to-date in the background.
+        if ( root.hasProperty(pDeltaWatch) ) {
+            if ( ! exactlyOneProperty(root, pDeltaWatch) )
+                throw new AssemblerException(root, "Multiple delta:watch settings") ;
+            String watchStr = getAsStringValue(root, pDeltaWatch);
+            if ( Boolean.parseBoolean(watchStr) ) {
+                DeltaConnection dConn = dsg.getContext().get(symDeltaConnection);
+                if ( dConn != null )
+                    dConn.startWatching();
+            }
+        }
 
         return dataset;
     }
@@ -156,26 +155,4 @@ public class DeltaAssembler extends AssemblerBase implements Assembler {
         }));
         return xs;
     }
-
-    // Poll for changes.
-    private static void UNUSED_CURRENTLY_forkUpdateFetcher(String source, DatasetGraph dsg) {
-        if ( true ) {
-            Log.warn(DeltaAssembler.class, "forkUpdateFetcher not set up");
-            if ( true ) return;
-            throw new NotImplemented("NEED THE STATE AREA; NEED THE DATASOURCE ID; NEED THE CLIENT ID");
-        }
-        DeltaLink dc = DeltaLinkHTTP.connect(source) ;
-        DeltaConnection client = null;
-        Runnable r = ()->{
-            try { client.sync(); }
-            catch (Exception ex) {
-                Delta.DELTA_LOG.warn("Failed to sync with the change server: "+ex.getMessage()) ;
-//                // Delay this task ; extra 3s + the time interval of 2s.
-//                Dones not work as expected.
-//                Lib.sleep(5*1000);
-            }
-        } ;
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1) ;
-        executor.scheduleWithFixedDelay(r, 2, 2, TimeUnit.SECONDS) ;
-    }
 }
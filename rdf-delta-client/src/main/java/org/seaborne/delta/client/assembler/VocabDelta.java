@@ -62,6 +62,9 @@ public class VocabDelta {
     // Whether and how often to poll for changes.
     //public static final Property pPollForChanges        = Vocab.property(NS, "poll") ;
 
+    // Whether to keep the local copy up-to-date in the background by waiting for changes.
+    public static final Property pDeltaWatch            = Vocab.property(getURI(), "watch") ;
+
     // Zone location for local copy.
     public static final Property pDeltaZone             = Vocab.property(getURI(), "zone") ;
 
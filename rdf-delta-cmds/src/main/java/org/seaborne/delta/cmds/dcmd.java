@@ -132,6 +132,7 @@ public class dcmd {
             case "patch2update":    patch2update.main(argsSub); break;
             case "ping":            pingserver.main(argsSub); break;
             case "parse":           patchparse.main(argsSub); break;
+            case "rocksmigrate":    rocksmigrate.main(argsSub); break;
 
             case "patchserver":
                 delta.server.DeltaServerCmd.main(argsSub); break;
@@ -0,0 +1,75 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.cmds;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import jena.cmd.CmdException;
+import jena.cmd.CmdGeneral ;
+import org.apache.jena.atlas.logging.LogCtl ;
+import org.apache.jena.sys.JenaSystem;
+import org.seaborne.delta.server.local.patchstores.rdb.RocksMigrate;
+
+/**
+ * Convert the area of a RocksDB patch store from one database per log to one database
+ * shared by all the logs. The patch log server must not be running.
+ */
+public class rocksmigrate extends CmdGeneral
+{
+    static {
+        LogCtl.setLogging();
+        JenaSystem.init();
+    }
+
+    public static void main(String... args) {
+        new rocksmigrate(args).mainRun();
+    }
+
+    public rocksmigrate(String[] argv) {
+        super(argv) ;
+    }
+
+    @Override
+    protected String getSummary() {
+        return "rocksmigrate DIR" ;
+    }
+
+    @Override
+    protected void processModulesAndArgs() {
+        super.processModulesAndArgs();
+        if ( super.positionals.size() != 1 )
+            throw new CmdException("Patch store directory required. Usage: "+getSummary());
+    }
+
+    @Override
+    protected void exec() {
+        Path area = Paths.get(getPositional().get(0));
+        if ( ! Files.isDirectory(area) )
+            throw new CmdException("Not a directory: "+area);
+        int count = RocksMigrate.toShared(area);
+        System.out.printf("%d logs copied to the shared database.\n", count);
+        System.out.println("Set \"delta.rocks.layout\" to \"shared\" in the server configuration.");
+    }
+
+    @Override
+    protected String getCommandName() {
+        return "rocksmigrate" ;
+    }
+}
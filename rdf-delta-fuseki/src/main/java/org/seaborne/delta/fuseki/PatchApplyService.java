@@ -19,7 +19,6 @@ package org.seaborne.delta.fuseki;
 
 import static java.lang.String.format;
 import static org.apache.jena.fuseki.servlets.ActionExecLib.incCounter;
-import static org.seaborne.delta.DeltaConst.contentTypePatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchText;
 
@@ -35,7 +34,9 @@ import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.web.HttpSC;
 import org.seaborne.patch.PatchException;
+import org.seaborne.patch.PatchProcessor;
 import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
 import org.seaborne.patch.changes.PatchTxnAbortException;
 import org.seaborne.patch.changes.RDFChangesApply;
 import org.seaborne.patch.changes.RDFChangesExternalTxn;
@@ -82,8 +83,6 @@ public class PatchApplyService extends ActionREST {
 
         if ( ! ctPatchText.equals(contentType) && ! ctPatchBinary.equals(contentType) )
             ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, "Allowed Content-types are "+ctPatchText+" or "+ctPatchBinary+", not "+ctStr);
-        if ( ctPatchBinary.equals(contentType) )
-            ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, contentTypePatchBinary+" not supported yet");
     }
 
     protected void operation(HttpAction action) {
@@ -135,11 +134,12 @@ public class PatchApplyService extends ActionREST {
         try {
             String ct = action.getRequest().getContentType();
             // If triples or quads, maybe POST.
+            boolean binary = ( ct != null ) && ctPatchBinary.equals(ContentType.create(ct));
 
             InputStream input = action.request.getInputStream();
             DatasetGraph dsg = action.getDataset();
 
-            RDFPatchReaderText pr = new RDFPatchReaderText(input);
+            PatchProcessor pr = binary ? RDFPatchReaderBinary.create(input) : new RDFPatchReaderText(input);
             RDFChanges changes = new RDFChangesApply(dsg);
             // External transaction. Suppress patch recorded TX and TC.
             if ( withPatchTxn == WithPatchTxn.EXTERNAL_TXN )
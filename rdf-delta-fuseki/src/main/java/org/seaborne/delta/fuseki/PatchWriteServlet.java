@@ -18,7 +18,6 @@
 package org.seaborne.delta.fuseki;
 
 import static java.lang.String.format;
-import static org.seaborne.delta.DeltaConst.contentTypePatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchText;
 
@@ -102,8 +101,6 @@ public class PatchWriteServlet extends ServletProcessor {
         ContentType contentType = ( ctStr != null ) ? ContentType.create(ctStr) : ctPatchText;
         if ( ! ctPatchText.equals(contentType) && ! ctPatchBinary.equals(contentType) )
             ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, "Allowed Content-types are "+ctPatchText+" or "+ctPatchBinary+", not "+ctStr);
-        if ( ctPatchBinary.equals(contentType) )
-            ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, contentTypePatchBinary+" not supported yet");
     }
 
     protected void operation(HttpAction action) {
@@ -130,9 +127,11 @@ public class PatchWriteServlet extends ServletProcessor {
     private void actOnRDFPatch(HttpAction action) {
         try {
             String ct = action.getRequest().getContentType();
+            boolean binary = ( ct != null ) && ctPatchBinary.equals(ContentType.create(ct));
             InputStream input = action.request.getInputStream();
 
-            RDFPatch patch = RDFPatchOps.read(input);
+            // Binary or text in; the log files are always text.
+            RDFPatch patch = binary ? RDFPatchOps.readBinary(input) : RDFPatchOps.read(input);
             try ( OutputStream out = output.output() ) {
                 String fn = output.currentFilename().getFileName().toString();
                 if ( action.verbose ) {
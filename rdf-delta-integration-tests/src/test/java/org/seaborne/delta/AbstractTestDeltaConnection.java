@@ -19,12 +19,17 @@ package org.seaborne.delta;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger ;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.atlas.lib.Lib;
 import org.apache.jena.ext.com.google.common.base.Objects;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphFactory;
@@ -37,6 +42,7 @@ import org.junit.Test;
 import org.seaborne.delta.client.*;
 import org.seaborne.delta.lib.LogX;
 import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.link.DeltaLinkWrapper;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
 import org.seaborne.patch.changes.RDFChangesCollector;
@@ -103,6 +109,59 @@ public abstract class AbstractTestDeltaConnection {
         assertEquals(dsRef, info.getDataSourceId());
     }
 
+    // Callers of get() share a connection: one caller closing it does not stop it for the others.
+    @Test
+    public void shared_dconn_close() {
+        String NAME = "shared_dconn_close";
+        DeltaClient dClient = createRegister(NAME);
+        DeltaConnection dConn1 = dClient.get(NAME);
+        dConn1.startWatching();
+        try(DeltaConnection dConn2 = dClient.get(NAME)) {
+            assertSame(dConn1, dConn2);
+        }
+        assertTrue(dConn1.isValid());
+        assertTrue(dConn1.isWatching());
+        dConn1.sync();
+
+        dClient.shutdown();
+        assertFalse(dConn1.isValid());
+        assertFalse(dConn1.isWatching());
+    }
+
+    // The locks held by the connections of one client are refreshed in one request.
+    @Test
+    public void shared_lock_refresh() {
+        List<Integer> refreshes = new ArrayList<>();
+        DeltaLink link = new DeltaLinkWrapper(getLink()) {
+            @Override
+            public Set<Id> refreshLocks(Map<Id, Id> locks) {
+                synchronized(refreshes) { refreshes.add(locks.size()); }
+                return super.refreshLocks(locks);
+            }
+        };
+        DeltaClient dClient = DeltaClient.create(Zone.connectMem(), link);
+        Id dsRef1 = dClient.newDataSource("shared_lock_refresh_1", "http://example/shared_lock_refresh_1");
+        Id dsRef2 = dClient.newDataSource("shared_lock_refresh_2", "http://example/shared_lock_refresh_2");
+        dClient.register(dsRef1, LocalStorageType.MEM, SyncPolicy.NONE);
+        dClient.register(dsRef2, LocalStorageType.MEM, SyncPolicy.NONE);
+        DeltaConnection dConn1 = dClient.get(dsRef1);
+        DeltaConnection dConn2 = dClient.get(dsRef2);
+        try {
+            assertTrue(dConn1.acquireLock());
+            assertTrue(dConn2.acquireLock());
+            // The refresh interval is 1s.
+            Lib.sleep(2500);
+            synchronized(refreshes) {
+                assertFalse(refreshes.isEmpty());
+                assertEquals(2, refreshes.get(refreshes.size()-1).intValue());
+            }
+            dConn1.releaseLock();
+            dConn2.releaseLock();
+        } finally {
+            dClient.shutdown();
+        }
+    }
+
     // Make a change, ensure the local dataset is changed.
     @Test
     public void change_1() {
@@ -272,6 +331,151 @@ public abstract class AbstractTestDeltaConnection {
     }
 
     private static AtomicInteger counter = new AtomicInteger(0);
+
+    // A new local copy catches up with a log of many patches, fetching chunks in parallel.
+    @Test
+    public void catchup_prefetch() {
+        catchup(100, CatchupSettings.create().prefetch(3, 7, 20).build());
+    }
+
+    // Catch up in many small transactions.
+    @Test
+    public void catchup_batches_1() {
+        catchup(50, CatchupSettings.create().batches(7, Long.MAX_VALUE, 0).build());
+    }
+
+    @Test
+    public void catchup_batches_2() {
+        // One quad per patch.
+        catchup(50, CatchupSettings.create().batches(Integer.MAX_VALUE, 3, 0).build());
+    }
+
+    @Test
+    public void catchup_batches_3() {
+        catchup(50, CatchupSettings.create().batches(Integer.MAX_VALUE, Long.MAX_VALUE, 0).build());
+    }
+
+    // The local version advances after each transaction of a catch up.
+    @Test
+    public void catchup_progress() {
+        int N = 30;
+        List<Quad> quads = new ArrayList<>();
+        Id dsRef = writePatches(N, quads);
+        // The local version when each patch is handed out, in order.
+        List<Long> seen = new ArrayList<>();
+        DeltaConnection[] conn = new DeltaConnection[1];
+        DeltaLink link = new DeltaLinkUnsquashed(getLink()) {
+            @Override
+            protected RDFPatch next(RDFPatch patch) {
+                seen.add(conn[0].getLocalVersion().value());
+                return patch;
+            }
+        };
+        // Fetched patches are not squashed so there is one patch per version.
+        CatchupSettings settings = CatchupSettings.create().prefetch(1, 100, 100).batches(7, Long.MAX_VALUE, 0).build();
+        DeltaClient dClient2 = DeltaClient.create(Zone.connectMem(), link, settings);
+        dClient2.register(dsRef, LocalStorageType.MEM, SyncPolicy.NONE);
+        try(DeltaConnection dConn = dClient2.get(dsRef)) {
+            conn[0] = dConn;
+            dConn.sync();
+            assertEquals(N, dConn.getLocalVersion().value());
+        }
+        assertEquals(N, seen.size());
+        for ( int i = 0 ; i < N ; i++ )
+            assertEquals("Patch "+(i+1), (i/7)*7, seen.get(i).longValue());
+    }
+
+    // A catch up that fails part way keeps the transactions that committed and a later
+    // sync continues from there.
+    @Test
+    public void catchup_resume() {
+        int N = 30;
+        List<Quad> quads = new ArrayList<>();
+        Id dsRef = writePatches(N, quads);
+        AtomicInteger fetched = new AtomicInteger(0);
+        AtomicInteger failAfter = new AtomicInteger(17);
+        DeltaLink link = new DeltaLinkUnsquashed(getLink()) {
+            @Override
+            protected RDFPatch next(RDFPatch patch) {
+                if ( fetched.incrementAndGet() > failAfter.get() )
+                    throw new DeltaException("Injected failure");
+                return patch;
+            }
+        };
+        CatchupSettings settings = CatchupSettings.create().prefetch(1, 100, 100).batches(5, Long.MAX_VALUE, 0).build();
+        DeltaClient dClient2 = DeltaClient.create(Zone.connectMem(), link, settings);
+        dClient2.register(dsRef, LocalStorageType.MEM, SyncPolicy.NONE);
+        try(DeltaConnection dConn = dClient2.get(dsRef)) {
+            try {
+                dConn.sync();
+                fail("Expected the sync to fail");
+            } catch (DeltaException ex) {}
+            // Batches of 5: patches 16 and 17 were in the transaction that aborted.
+            assertEquals(15, dConn.getLocalVersion().value());
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeRead(dsg, ()->{
+                for ( int i = 0 ; i < N ; i++ )
+                    assertEquals("Quad "+(i+1), i < 15, dsg.contains(quads.get(i)));
+            });
+
+            failAfter.set(Integer.MAX_VALUE);
+            fetched.set(0);
+            dConn.sync();
+            assertEquals(N, dConn.getLocalVersion().value());
+            // Only the patches not yet applied are fetched again.
+            assertEquals(N-15, fetched.get());
+            Txn.executeRead(dsg, ()->quads.forEach(quad->assertTrue(dsg.contains(quad))));
+        }
+    }
+
+    /**
+     * Fetch patches without squashing them, passing each patch through {@link #next}
+     * as it is handed out.
+     */
+    private static abstract class DeltaLinkUnsquashed extends DeltaLinkWrapper {
+        DeltaLinkUnsquashed(DeltaLink other) {
+            super(other);
+        }
+
+        protected abstract RDFPatch next(RDFPatch patch);
+
+        @Override
+        public Stream<RDFPatch> fetchRangeSquashed(Id dsRef, Version start, Version finish) {
+            return get().fetchRange(dsRef, start, finish).map(this::next);
+        }
+    }
+
+    // Write N patches, each of one new quad, to a new log.
+    private Id writePatches(int N, List<Quad> quads) {
+        String NAME = "DS-"+counter.incrementAndGet();
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            for ( int i = 0 ; i < N ; i++ ) {
+                Quad quad = DeltaTestLib.freshQuad();
+                quads.add(quad);
+                Txn.executeWrite(dsg, ()->dsg.add(quad));
+            }
+            return dConn.getDataSourceId();
+        }
+    }
+
+    // Write N patches, then check a new local copy catches up.
+    private void catchup(int N, CatchupSettings settings) {
+        List<Quad> quads = new ArrayList<>();
+        Id dsRef = writePatches(N, quads);
+        // A different zone so the local copy starts empty.
+        DeltaClient dClient2 = DeltaClient.create(Zone.connectMem(), getLink(), settings);
+        dClient2.register(dsRef, LocalStorageType.MEM, SyncPolicy.NONE);
+        try(DeltaConnection dConn = dClient2.get(dsRef)) {
+            assertSame(settings, dConn.getCatchupSettings());
+            dConn.sync();
+            assertEquals(N, dConn.getLocalVersion().value());
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeRead(dsg, ()->quads.forEach(quad->assertTrue(dsg.contains(quad))));
+        }
+    }
+
     private DeltaClient resetDeltaClient(String name) {
         DeltaClient dClient = createDeltaClient();
         Id dsRef = dClient.nameToId(name);
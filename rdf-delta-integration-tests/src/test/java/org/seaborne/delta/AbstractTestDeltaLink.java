@@ -19,9 +19,15 @@ package org.seaborne.delta;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List ;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import org.apache.jena.atlas.lib.Lib;
 import org.apache.jena.ext.com.google.common.base.Objects;
 import org.apache.jena.graph.*;
 import org.apache.jena.riot.RDFDataMgr ;
@@ -158,6 +164,60 @@ public abstract class AbstractTestDeltaLink {
         }
     }
 
+    @Test
+    public void patch_range_1() {
+        DeltaLink dLink = getLink();
+        Id dsRef = dLink.newDataSource("patch_range_1", "http://example/");
+
+        RDFPatch patch1 = RDFPatchOps.read(FILES_DIR+"/patch1.rdfp");
+        RDFPatch patch2 = RDFPatchOps.read(FILES_DIR+"/patch2.rdfp");
+        dLink.append(dsRef, patch1);
+        dLink.append(dsRef, patch2);
+
+        List<RDFPatch> x = dLink.fetchRange(dsRef, version_1, version_2).collect(Collectors.toList());
+        assertEquals(2, x.size());
+        assertTrue(equals(patch1, x.get(0)));
+        assertTrue(equals(patch2, x.get(1)));
+
+        List<RDFPatch> x2 = dLink.fetchRange(dsRef, version_2, version_4).collect(Collectors.toList());
+        assertEquals(1, x2.size());
+        assertTrue(equals(patch2, x2.get(0)));
+
+        long count = dLink.fetchRange(dsRef, version_3, version_4).count();
+        assertEquals(0, count);
+    }
+
+    @Test
+    public void await_change_1() {
+        DeltaLink dLink = getLink();
+        Id dsRef = dLink.newDataSource("await_change_1", "http://example/");
+        RDFPatch patch1 = RDFPatchOps.read(FILES_DIR+"/patch1.rdfp");
+        dLink.append(dsRef, patch1);
+
+        // Already changed.
+        PatchLogInfo info1 = dLink.awaitChange(dsRef, Version.INIT, 10*1000);
+        assertEquals(version_1, info1.getMaxVersion());
+
+        // No change: timeout.
+        PatchLogInfo info2 = dLink.awaitChange(dsRef, version_1, 100);
+        assertEquals(version_1, info2.getMaxVersion());
+    }
+
+    @Test
+    public void await_change_2() throws Exception {
+        DeltaLink dLink = getLink();
+        Id dsRef = dLink.newDataSource("await_change_2", "http://example/");
+        RDFPatch patch1 = RDFPatchOps.read(FILES_DIR+"/patch1.rdfp");
+        Thread thread = new Thread(()->{
+            Lib.sleep(200);
+            dLink.append(dsRef, patch1);
+        });
+        thread.start();
+        PatchLogInfo info = dLink.awaitChange(dsRef, Version.INIT, 10*1000);
+        thread.join();
+        assertEquals(version_1, info.getMaxVersion());
+    }
+
     @Test
     public void patch_add_add() {
         // patch1 then patch2, checking the versions advance as expected.
@@ -484,6 +544,39 @@ public abstract class AbstractTestDeltaLink {
         assertNull(dsd);
     }
 
+    @Test
+    public void datasource_concurrent_describe_01() throws Exception {
+        // Concurrent calls, which a remote link may send in batch requests.
+        DeltaLink dLink = getLink();
+        int N = 20;
+        List<Id> ids = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ )
+            ids.add(dLink.newDataSource("datasource_concurrent_"+i, "http://example/concurrent/"+i));
+        ids.add(Id.create());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for ( Id dsRef : ids ) {
+                boolean exists = futures.size() < N;
+                futures.add(executor.submit(()->{
+                    DataSourceDescription dsd = dLink.getDataSourceDescription(dsRef);
+                    if ( ! exists ) {
+                        assertNull(dsd);
+                        return;
+                    }
+                    PatchLogInfo info = dLink.getPatchLogInfo(dsRef);
+                    assertEquals(dsRef, dsd.getId());
+                    assertEquals(dsRef, info.getDataSourceId());
+                    assertTrue(LockState.isFree(dLink.readLock(dsRef)));
+                }));
+            }
+            for ( Future<?> f : futures )
+                f.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     //@Test
     // Feature Initial state not active.
     public void datasource_init_01() {
@@ -21,6 +21,9 @@ package org.seaborne.delta;
 import static org.apache.jena.atlas.lib.ThreadLib.async;
 import static org.junit.Assert.*;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -93,6 +96,38 @@ public abstract class AbstractTestLogLock {
         assertFalse("Lock refresh after releasing the lock", b2);
     }
 
+    @Test public void deltaLinkLock_refresh_batch_01() {
+        // Refresh several locks in one call.
+        Id dsRef2 = getDLink().newDataSource("ABC-batch", "http://example/ABC-batch");
+        try {
+            Id lockRef1 = getDLink().acquireLock(dsRef);
+            Id lockRef2 = getDLink().acquireLock(dsRef2);
+            Map<Id, Id> locks = new HashMap<>();
+            locks.put(dsRef, lockRef1);
+            locks.put(dsRef2, lockRef2);
+            Set<Id> failed = getDLink().refreshLocks(locks);
+            assertTrue(failed.isEmpty());
+            assertEquals(2L, getDLink().readLock(dsRef).ticks);
+            assertEquals(2L, getDLink().readLock(dsRef2).ticks);
+
+            getDLink().releaseLock(dsRef2, lockRef2);
+            failed = getDLink().refreshLocks(locks);
+            assertEquals(Set.of(dsRef2), failed);
+            assertEquals(3L, getDLink().readLock(dsRef).ticks);
+            getDLink().releaseLock(dsRef, lockRef1);
+        } finally {
+            getDLink().removeDataSource(dsRef2);
+        }
+    }
+
+    @Test public void deltaLinkLock_refresh_batch_02() {
+        // Unknown data source and empty set.
+        Id dsRefUnknown = Id.create();
+        Set<Id> failed = getDLink().refreshLocks(Map.of(dsRefUnknown, Id.create()));
+        assertEquals(Set.of(dsRefUnknown), failed);
+        assertTrue(getDLink().refreshLocks(Map.of()).isEmpty());
+    }
+
     @Test public void deltaLinkLock_read_01() {
         LockState state = getDLink().readLock(dsRef);
         assertEquals(LockState.UNLOCKED, state);
@@ -144,6 +144,16 @@ public class Setup {
         private DeltaServer server = null;
         private DeltaLink dlink = null;
         private int testPort = -999;
+        private final boolean binaryPatches;
+
+        public RemoteSetup() {
+            this(false);
+        }
+
+        /** Remote setup where the link sends and fetches patches in binary format. */
+        public RemoteSetup(boolean binaryPatches) {
+            this.binaryPatches = binaryPatches;
+        }
 
         @Override
         public void beforeClass() {
@@ -213,7 +223,7 @@ public class Setup {
 
         @Override
         public DeltaLink createLink() {
-            return DeltaLinkHTTP.connect("http://localhost:"+testPort+"/");
+            return DeltaLinkHTTP.connect("http://localhost:"+testPort+"/", binaryPatches);
         }
 
         private static void resetDefaultHttpClient() {
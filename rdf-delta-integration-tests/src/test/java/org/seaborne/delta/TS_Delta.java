@@ -37,11 +37,14 @@ import org.seaborne.delta.lib.LogX;
     TestLocalClient.class ,
 
     TestRemoteLink.class ,
+    TestRemoteLinkBinary.class ,
     TestRemoteConnection.class ,
     TestRemoteClient.class ,
+    TestRDFChangesHTTP.class ,
 
     TestZone.class ,
     TestRestart.class ,
+    TestConnectionSnapshot.class ,
 
     TestManagedDatasetBuilder.class,
     TestManagedDatasetBuilder2.class,
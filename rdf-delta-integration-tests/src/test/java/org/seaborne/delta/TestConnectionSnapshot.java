@@ -0,0 +1,143 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+
+package org.seaborne.delta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.junit.*;
+import org.seaborne.delta.client.DeltaClient;
+import org.seaborne.delta.client.DeltaConnection;
+import org.seaborne.delta.client.SyncPolicy;
+import org.seaborne.delta.client.Zone;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.delta.lib.LogX;
+import org.seaborne.delta.server.local.*;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+/** A new local copy of a dataset starting from a snapshot on the patch log server. */
+public class TestConnectionSnapshot {
+    static String DIR_ZONE = "target/ZoneSnapshot";
+    static String DIR_SNAPSHOTS = "target/test/snapshots-conn";
+
+    private static Node g = SSE.parseNode("<http://example/g>");
+    private static Node p = SSE.parseNode("<http://example/p>");
+    private static Node b1 = SSE.parseNode("_:b1");
+    private static Node b2 = SSE.parseNode("_:b2");
+
+    private DeltaLinkLocal deltaLink;
+    private Zone zone;
+    private DeltaClient deltaClient;
+
+    @BeforeClass public static void beforeClass() {
+        LogX.setJavaLogging("src/test/resources/logging.properties");
+    }
+
+    @Before public void before() {
+        FileOps.ensureDir(DIR_ZONE);
+        FileOps.clearAll(DIR_ZONE);
+        FileOps.ensureDir(DIR_SNAPSHOTS);
+        FileOps.clearAll(DIR_SNAPSHOTS);
+        LocalServerConfig config = LocalServerConfig.create(LocalServers.configMem())
+            .setSnapshots(DIR_SNAPSHOTS, 0)
+            .build();
+        deltaLink = (DeltaLinkLocal)DeltaLinkLocal.connect(LocalServers.create(config));
+        zone = Zone.connect(DIR_ZONE);
+        deltaClient = DeltaClient.create(zone, deltaLink);
+    }
+
+    @After public void after() {
+        deltaLink.close();
+        zone.shutdown();
+        IOX.deleteAll(Paths.get(DIR_SNAPSHOTS));
+    }
+
+    private void append(Id dsRef, boolean add, Node s, Node o) {
+        Id prev = deltaLink.getPatchLogInfo(dsRef).getLatestPatch();
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        if ( prev != null )
+            c.header(RDFPatchConst.PREV, prev.asNode());
+        c.txnBegin();
+        if ( add )
+            c.add(g, s, p, o);
+        else
+            c.delete(g, s, p, o);
+        c.txnCommit();
+        deltaLink.append(dsRef, c.getRDFPatch());
+    }
+
+    // Log: add (b1 p b2), add (b2 p 1), snapshot at version 2, delete (b1 p b2).
+    private Id setupLog() {
+        Id dsRef = deltaLink.newDataSource("ABC", "http://example/ABC");
+        append(dsRef, true, b1, b2);
+        append(dsRef, true, b2, SSE.parseNode("1"));
+        PatchLog patchLog = deltaLink.getLocalServer().getDataSource(dsRef).getPatchLog();
+        deltaLink.getLocalServer().getSnapshotManager().makeSnapshot(patchLog);
+        append(dsRef, false, b1, b2);
+        return dsRef;
+    }
+
+    @Test public void connection_snapshot_01() {
+        // Start from the snapshot; the patch after it deletes a blank node quad in the snapshot.
+        Id dsRef = setupLog();
+        DatasetGraph dsgBase = DatasetGraphFactory.createTxnMem();
+        deltaClient.registerExternal(dsRef, dsgBase, SyncPolicy.NONE);
+        try(DeltaConnection dConn = deltaClient.get(dsRef)) {
+            dConn.sync();
+            assertEquals(Version.create(3), dConn.getLocalVersion());
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeRead(dsg, ()->{
+                assertFalse(dsg.contains(g, b1, p, b2));
+                assertTrue(dsg.contains(g, b2, p, SSE.parseNode("1")));
+                assertEquals(1, dsg.getGraph(g).size());
+            });
+        }
+    }
+
+    @Test public void connection_snapshot_02() {
+        // A local dataset that is not empty is not loaded from the snapshot.
+        Id dsRef = setupLog();
+        Quad quad = SSE.parseQuad("(:g1 :s :p :o)");
+        DatasetGraph dsgBase = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsgBase, ()->dsgBase.add(quad));
+        deltaClient.registerExternal(dsRef, dsgBase, SyncPolicy.NONE);
+        try(DeltaConnection dConn = deltaClient.get(dsRef)) {
+            dConn.sync();
+            assertEquals(Version.create(3), dConn.getLocalVersion());
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeRead(dsg, ()->{
+                assertTrue(dsg.contains(quad));
+                assertFalse(dsg.contains(g, b1, p, b2));
+                assertEquals(1, dsg.getGraph(g).size());
+            });
+        }
+    }
+}
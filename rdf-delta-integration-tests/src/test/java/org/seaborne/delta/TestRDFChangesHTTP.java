@@ -0,0 +1,114 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+
+package org.seaborne.delta;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.seaborne.delta.client.RDFChangesHTTP;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+/** Tests of {@link RDFChangesHTTP}, sending to a server that records the request bodies. */
+public class TestRDFChangesHTTP {
+    private static HttpServer server;
+    private static String url;
+    private static List<byte[]> received = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeClass public static void beforeClass() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/patch", exchange->{
+            try ( InputStream in = exchange.getRequestBody() ) {
+                received.add(in.readAllBytes());
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://localhost:"+server.getAddress().getPort()+"/patch";
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop(0);
+    }
+
+    @Before public void beforeTest() {
+        received.clear();
+    }
+
+    private static Node g = SSE.parseNode("<http://example/g>");
+    private static Node s = SSE.parseNode("<http://example/s>");
+    private static Node p = SSE.parseNode("<http://example/p>");
+
+    private static void change(RDFChanges changes, boolean prefix, Node o) {
+        changes.txnBegin();
+        if ( prefix )
+            changes.addPrefix(null, "ex", "http://example/");
+        changes.add(g, s, p, o);
+        changes.txnCommit();
+    }
+
+    private static RDFPatch patch(boolean prefix, Node o) {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        change(changes, prefix, o);
+        return changes.getRDFPatch();
+    }
+
+    private static void twoPatches(boolean binary, boolean compress) {
+        RDFChangesHTTP changes = new RDFChangesHTTP("test", url, binary, compress);
+        // Each commit sends a patch. The second patch repeats terms of the first.
+        change(changes, true, SSE.parseNode("1"));
+        change(changes, false, SSE.parseNode("2"));
+        assertEquals(2, received.size());
+        for ( int i = 0 ; i < 2 ; i++ ) {
+            InputStream in = new ByteArrayInputStream(received.get(i));
+            RDFPatch patch = binary ? RDFPatchOps.readBinary(in) : RDFPatchOps.read(in);
+            RDFPatch expected = patch(i == 0, SSE.parseNode(Integer.toString(i+1)));
+            assertEquals(RDFPatchOps.str(expected), RDFPatchOps.str(patch));
+        }
+    }
+
+    @Test public void changes_http_text() {
+        twoPatches(false, false);
+    }
+
+    @Test public void changes_http_binary() {
+        twoPatches(true, false);
+    }
+
+    @Test public void changes_http_binary_compressed() {
+        twoPatches(true, true);
+    }
+}
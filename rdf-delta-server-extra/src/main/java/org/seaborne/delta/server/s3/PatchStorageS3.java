@@ -20,6 +20,8 @@ package org.seaborne.delta.server.s3;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Stream;
 
@@ -27,18 +29,24 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
 
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.web.HttpSC;
 import org.seaborne.delta.DeltaConfigException;
 import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
 
 public class PatchStorageS3 implements PatchStorage {
 
+    // The maximum number of keys in an S3 multi-object delete request.
+    private static final int DeleteBatch = 1000;
+
     private final AmazonS3 client;
     private String bucketName;
     private String prefix;
@@ -96,13 +104,23 @@ public class PatchStorageS3 implements PatchStorage {
 
     @Override
     public RDFPatch fetch(Id key) {
+        InputStream input = openStream(key);
+        if ( input == null )
+            return null;
+        try {
+            return RDFPatchOps.read(input);
+        } finally {
+            IO.close(input);
+        }
+    }
+
+    @Override
+    public InputStream openStream(Id key) {
         String s3Key = idToKey(key);
         try {
             S3Object x = client.getObject(bucketName, s3Key);
-            x.getObjectMetadata();
             S3ObjectInputStream input = x.getObjectContent();
-            RDFPatch patch = RDFPatchOps.read(input);
-            return patch;
+            return input;
         }
         catch (AmazonServiceException awsEx) {
             switch (awsEx.getStatusCode()) {
@@ -120,5 +138,42 @@ public class PatchStorageS3 implements PatchStorage {
     }
 
     @Override
-    public void delete(Id id) {}
+    public long lastModified(Id key) {
+        try {
+            ObjectMetadata metadata = client.getObjectMetadata(bucketName, idToKey(key));
+            return metadata.getLastModified() == null ? -1 : metadata.getLastModified().getTime();
+        }
+        catch (AmazonServiceException awsEx) {
+            if ( awsEx.getStatusCode() == HttpSC.NOT_FOUND_404 )
+                return -1;
+            throw awsEx;
+        }
+    }
+
+    @Override
+    public void delete(Id id) {
+        client.deleteObject(bucketName, idToKey(id));
+    }
+
+    /** Delete the patches in multi-object delete requests. */
+    @Override
+    public void deleteBefore(Version version, List<Pair<Version, Id>> patches) {
+        List<String> keys = new ArrayList<>(DeleteBatch);
+        for ( Pair<Version, Id> p : patches ) {
+            keys.add(idToKey(p.getRight()));
+            if ( keys.size() >= DeleteBatch ) {
+                deleteObjects(keys);
+                keys.clear();
+            }
+        }
+        if ( ! keys.isEmpty() )
+            deleteObjects(keys);
+    }
+
+    private void deleteObjects(List<String> keys) {
+        DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName)
+            .withKeys(keys.toArray(new String[0]))
+            .withQuiet(true);
+        client.deleteObjects(request);
+    }
 }
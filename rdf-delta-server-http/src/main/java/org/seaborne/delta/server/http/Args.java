@@ -39,6 +39,8 @@ import org.seaborne.delta.Id;
  *  <li><tt>dataset</tt> &ndash; Id or URI for the datasource
  *  <li><tt>patch</tt> &ndash; patch id (for fetch)
  *  <li><tt>version</tt> &ndash; version number
+ *  <li><tt>from</tt>, <tt>to</tt> &ndash; range of versions, inclusive (for fetch)
+ *  <li><tt>after</tt>, <tt>timeout</tt> &ndash; wait for a version later than <tt>after</tt>, for at most <tt>timeout</tt> milliseconds
  *  <li><tt>ref</tt> &ndash; pointer to predefined arguments [Not Implemented]
  *  <li><tt>zone</tt> &ndash; pointer to predefined arguments [Not Implemented]
  *  </ul>
@@ -104,6 +106,16 @@ public class Args {
             catch (NumberFormatException ex) { errorBadRequest("Can't parse version: "+versionStr) ; }
         }
 
+        Long fromVersion = parseRangeParam(request, DeltaConst.paramFrom);
+        Long toVersion = parseRangeParam(request, DeltaConst.paramTo);
+        if ( toVersion != null && fromVersion == null )
+            errorBadRequest("'"+DeltaConst.paramTo+"' without '"+DeltaConst.paramFrom+"'");
+
+        Long afterVersion = parseRangeParam(request, DeltaConst.paramAfter);
+        Long timeout = parseRangeParam(request, DeltaConst.paramTimeout);
+        if ( timeout != null && afterVersion == null )
+            errorBadRequest("'"+DeltaConst.paramTimeout+"' without '"+DeltaConst.paramAfter+"'");
+
         /* Now the preferred URI:
          *     /servlet/{name}/
          *     /servlet/{name}/patch/{version}
@@ -114,7 +126,7 @@ public class Args {
         String x = getTrailing(request);
         if ( x.isEmpty() ) {
             // No name.
-            return new Args(request, datasourceName, patchId, version, clientId, tokenStr);
+            return new Args(request, datasourceName, patchId, version, fromVersion, toVersion, afterVersion, timeout, clientId, tokenStr);
         }
 
         if ( ! x.startsWith("/") )
@@ -151,7 +163,17 @@ public class Args {
                 version = parseVersion(patchStr, null);
             }
         }
-        return new Args(request, datasourceName, patchId, version, clientId, tokenStr);
+        return new Args(request, datasourceName, patchId, version, fromVersion, toVersion, afterVersion, timeout, clientId, tokenStr);
+    }
+
+    private static Long parseRangeParam(HttpServletRequest request, String param) {
+        String str = request.getParameter(param);
+        if ( str == null )
+            return null;
+        Long x = parseVersion(str, null);
+        if ( x == null )
+            errorBadRequest("Can't parse '"+param+"': "+str);
+        return x;
     }
 
     private static UUID parseUUID(String patchStr, UUID dft) {
@@ -205,10 +227,19 @@ public class Args {
     public final String datasourceName;
     public final Id patchId;
     public final Long version;
+    public final Long fromVersion;
+    public final Long toVersion;
+    public final Long afterVersion;
+    public final Long timeout;
     public final Id clientId;
     public final String token;
 
     public Args(HttpServletRequest request, String datasourceName, Id patchId, Long verStr, Id clientId, String token) {
+        this(request, datasourceName, patchId, verStr, null, null, null, null, clientId, token);
+    }
+
+    public Args(HttpServletRequest request, String datasourceName, Id patchId, Long verStr,
+                Long fromVersion, Long toVersion, Long afterVersion, Long timeout, Id clientId, String token) {
         super();
         this.url = ServerLib.url(request);
         this.method = request.getMethod().toUpperCase(Locale.ROOT);
@@ -224,6 +255,10 @@ public class Args {
         this.datasourceName = datasourceName;
         this.patchId = patchId;
         this.version = verStr;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.afterVersion = afterVersion;
+        this.timeout = timeout;
         this.clientId = clientId;
         this.token = token;
     }
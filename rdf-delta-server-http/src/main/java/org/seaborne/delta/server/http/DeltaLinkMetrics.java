@@ -0,0 +1,243 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.seaborne.delta.server.http;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.link.DeltaLinkListener;
+import org.seaborne.delta.server.local.DataSource;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.seaborne.delta.server.local.LocalServer;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.system.RDFPatchSpooled;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Application metrics from the {@link DeltaLinkListener} events of a {@link DeltaLinkLocal}.
+ * <p>
+ * Meters for one patch log are tagged with the data source name ("log") and the
+ * kind of patch store ("store"). They are removed when the data source is removed.
+ */
+/*package*/ class DeltaLinkMetrics implements DeltaLinkListener {
+    // Range of the latency histogram buckets.
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(30);
+
+    private final MeterRegistry registry;
+    private final LocalServer localServer;
+    private final Timer appendTimer;
+    private final Timer lockAcquiredTimer;
+    private final Timer lockTimeoutTimer;
+    private final Timer lockHoldTimer;
+    private final Counter createdCounter;
+    private final Counter removedCounter;
+    private final Map<Id, LogMeters> logs = new ConcurrentHashMap<>();
+
+    /** Create the metrics and start listening to {@code dLink}. */
+    /*package*/ static DeltaLinkMetrics bind(MeterRegistry registry, DeltaLinkLocal dLink) {
+        DeltaLinkMetrics metrics = new DeltaLinkMetrics(registry, dLink.getLocalServer());
+        dLink.addListener(metrics);
+        return metrics;
+    }
+
+    private DeltaLinkMetrics(MeterRegistry registry, LocalServer localServer) {
+        this.registry = registry;
+        this.localServer = localServer;
+        this.appendTimer = latencyTimer("delta.append")
+            .description("Time to add a patch to a patch log")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        this.lockAcquiredTimer = latencyTimer("delta.lock.acquire")
+            .description("Time waiting to acquire a patch log lock").tag("result", "acquired")
+            .register(registry);
+        this.lockTimeoutTimer = latencyTimer("delta.lock.acquire")
+            .description("Time waiting to acquire a patch log lock").tag("result", "timeout")
+            .register(registry);
+        this.lockHoldTimer = latencyTimer("delta.lock.hold")
+            .description("Time a patch log lock is held, from acquire to release")
+            .register(registry);
+        this.createdCounter = Counter.builder("delta.log.created")
+            .description("Patch logs created, copied or renamed").register(registry);
+        this.removedCounter = Counter.builder("delta.log.removed")
+            .description("Patch logs removed").register(registry);
+        // Meters for the existing logs.
+        localServer.listDataSources().forEach(ds->logMeters(ds.getId()));
+    }
+
+    private static Timer.Builder latencyTimer(String name) {
+        return Timer.builder(name)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(MIN_EXPECTED)
+            .maximumExpectedValue(MAX_EXPECTED);
+    }
+
+    /** The meters of one patch log. */
+    private class LogMeters {
+        private final Timer append;
+        private final Timer fetch;
+        private final DistributionSummary patchSize;
+        private final Gauge versionGauge;
+        // The session holding the lock and when the lock was acquired.
+        // Protected by synchronized(this).
+        private Id lockSession = null;
+        private long lockStart = 0;
+
+        LogMeters(DataSource source) {
+            String log = source.getName();
+            String store = source.getPatchStore().getProvider().getShortName();
+            append = latencyTimer("delta.log.append")
+                .description("Time to add a patch to the patch log").tags("log", log, "store", store)
+                .register(registry);
+            fetch = latencyTimer("delta.log.fetch")
+                .description("Time to get a patch from the patch log").tags("log", log, "store", store)
+                .register(registry);
+            patchSize = DistributionSummary.builder("delta.log.append.size")
+                .description("Size of patches added to the patch log").baseUnit("bytes")
+                .tags("log", log, "store", store)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+            // Read from the patch log, which may have been changed by another server of a cluster.
+            versionGauge = Gauge.builder("delta.log.version", source, DeltaLinkMetrics::latestVersion)
+                .description("Latest version of the patch log").tags("log", log, "store", store)
+                .register(registry);
+        }
+
+        void remove() {
+            registry.remove(append);
+            registry.remove(fetch);
+            registry.remove(patchSize);
+            registry.remove(versionGauge);
+        }
+    }
+
+    private static double latestVersion(DataSource source) {
+        Version ver = source.getPatchLog().getLatestVersion();
+        return ver.isValid() ? ver.value() : 0;
+    }
+
+    /** The meters of a patch log; null if there is no such data source. */
+    private LogMeters logMeters(Id dsRef) {
+        LogMeters meters = logs.get(dsRef);
+        if ( meters != null )
+            return meters;
+        DataSource source = localServer.getDataSource(dsRef);
+        if ( source == null )
+            return null;
+        return logs.computeIfAbsent(dsRef, x->new LogMeters(source));
+    }
+
+    private void removeMeters(Id dsRef) {
+        LogMeters meters = logs.remove(dsRef);
+        if ( meters != null )
+            meters.remove();
+    }
+
+    @Override
+    public void newDataSource(Id dsRef, String name) {
+        createdCounter.increment();
+        logMeters(dsRef);
+    }
+
+    @Override
+    public void copyDataSource(Id dsRef, Id dsRef2, String oldName, String newName) {
+        createdCounter.increment();
+        logMeters(dsRef2);
+    }
+
+    @Override
+    public void renameDataSource(Id dsRef, Id dsRef2, String oldName, String newName) {
+        // The meters are tagged with the name.
+        createdCounter.increment();
+        removedCounter.increment();
+        removeMeters(dsRef);
+        logMeters(dsRef2);
+    }
+
+    @Override
+    public void removeDataSource(Id dsRef) {
+        removedCounter.increment();
+        removeMeters(dsRef);
+    }
+
+    @Override
+    public void appendTime(Id dsRef, Version version, RDFPatch patch, long nanos) {
+        appendTimer.record(nanos, TimeUnit.NANOSECONDS);
+        LogMeters meters = logMeters(dsRef);
+        if ( meters == null )
+            return;
+        meters.append.record(nanos, TimeUnit.NANOSECONDS);
+        // The size is known without writing the patch out for patches received over HTTP.
+        if ( patch instanceof RDFPatchSpooled )
+            meters.patchSize.record(((RDFPatchSpooled)patch).size());
+    }
+
+    @Override
+    public void fetchTime(Id dsRef, long nanos) {
+        LogMeters meters = logMeters(dsRef);
+        if ( meters != null )
+            meters.fetch.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void lockAcquired(Id dsRef, Id session, long nanos) {
+        if ( session == null ) {
+            lockTimeoutTimer.record(nanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        lockAcquiredTimer.record(nanos, TimeUnit.NANOSECONDS);
+        LogMeters meters = logMeters(dsRef);
+        if ( meters == null )
+            return;
+        // A lock that expired without a release is replaced, and its hold time not recorded.
+        synchronized(meters) {
+            meters.lockSession = session;
+            meters.lockStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void lockReleased(Id dsRef, Id session) {
+        LogMeters meters = logs.get(dsRef);
+        if ( meters == null )
+            return;
+        long held;
+        synchronized(meters) {
+            if ( ! session.equals(meters.lockSession) )
+                return;
+            held = System.nanoTime() - meters.lockStart;
+            meters.lockSession = null;
+        }
+        lockHoldTimer.record(held, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean fetchesPatches() {
+        return false;
+    }
+}
@@ -18,17 +18,22 @@
 package org.seaborne.delta.server.http;
 
 import java.io.IOException ;
+import java.io.InputStream ;
 import java.io.OutputStream ;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 
-import org.apache.commons.io.input.CountingInputStream;
 import org.apache.jena.atlas.io.IO ;
 import org.apache.jena.atlas.json.JSON ;
 import org.apache.jena.atlas.json.JsonBuilder ;
 import org.apache.jena.atlas.json.JsonValue ;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.atlas.web.AcceptList;
+import org.apache.jena.atlas.web.ContentType;
+import org.apache.jena.atlas.web.MediaType;
 import org.apache.jena.graph.Node;
 import org.apache.jena.riot.WebContent ;
 import org.apache.jena.riot.web.HttpNames ;
@@ -40,10 +45,15 @@ import org.seaborne.delta.DeltaBadPatchException;
 import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.DeltaNotFoundException;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogInfo;
 import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.PatchStreamIO;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
 import org.seaborne.patch.PatchException;
 import org.seaborne.patch.RDFPatch ;
 import org.seaborne.patch.RDFPatchOps ;
+import org.seaborne.patch.system.RDFPatchSpooled;
+import org.seaborne.patch.system.Spool;
 import org.slf4j.Logger ;
 
 /** Patch Log operations */
@@ -56,7 +66,7 @@ public class LogOp {
         if ( dsRef == null )
             throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
 
-        RDFPatch patch;
+        RDFPatchSpooled patch;
         try {
             patch = readPatch(action);
         } catch (IOException ex) {
@@ -71,7 +81,8 @@ public class LogOp {
         if ( false )
             RDFPatchOps.write(System.out, patch);
 
-        try {
+        // The temporary copy of the patch is not needed once it is in the log.
+        try ( patch ) {
             Version version = action.dLink.append(dsRef, patch);
 
             // Location of patch in "container/patch/id" form.
@@ -103,17 +114,38 @@ public class LogOp {
         }
     }
 
-    private static RDFPatch readPatch(DeltaAction action) throws IOException {
+    /**
+     * Read the patch in the request body. The bytes are copied to a {@link Spool}, so a
+     * large patch goes to a temporary file, and the syntax is checked by parsing them as
+     * they are read, so bad syntax is found now, not when the patch is being added to the
+     * log. The patch is parsed from the spool each time it is used, e.g. when it is
+     * written to the patch storage.
+     */
+    private static RDFPatchSpooled readPatch(DeltaAction action) throws IOException {
         HttpServletRequest request = action.request;
         long byteLength = request.getContentLengthLong();
-        try ( CountingInputStream in = new CountingInputStream(request.getInputStream()); ) {
-            RDFPatch patch = RDFPatchOps.read(in);
-            if ( byteLength != -1L ) {
-                if ( in.getByteCount() != byteLength )
-                    FmtLog.warn(LOG, "[%d] Length mismatch: Read: %d : Content-Length: %d", action.id, in.getByteCount(),  byteLength);
-            }
-            return patch;
+        boolean binary = isBinaryPatch(request.getContentType());
+        Spool spool = new Spool(DeltaConst.PATCH_SPOOL_BYTES);
+        RDFPatchSpooled patch;
+        try ( InputStream in = request.getInputStream() ) {
+            patch = RDFPatchSpooled.read(in, spool, binary);
+        } catch (IOException | RuntimeException ex) {
+            spool.reset();
+            throw ex;
         }
+        if ( byteLength != -1L ) {
+            if ( patch.size() != byteLength )
+                FmtLog.warn(LOG, "[%d] Length mismatch: Read: %d : Content-Length: %d", action.id, patch.size(),  byteLength);
+        }
+        return patch;
+    }
+
+    /** Is the request body a binary patch? No content type means text. */
+    private static boolean isBinaryPatch(String ctStr) {
+        if ( ctStr == null )
+            return false;
+        ContentType ct = ContentType.create(ctStr);
+        return DeltaConst.contentTypePatchBinary.equals(ct.getContentTypeStr());
     }
 
     private static Id idForDatasource(DeltaAction action) {
@@ -132,35 +164,185 @@ public class LogOp {
         return dsd != null ? dsd.getId() : null;
     }
 
+    /**
+     * Fetch one patch. If the client asks for the format the patch is stored in, the
+     * stored bytes are copied to the response without parsing the patch.
+     */
     public static void fetch(DeltaAction action) throws IOException {
         Id dsRef = idForDatasource(action);
         if ( dsRef == null )
             throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
-        RDFPatch patch;
+        Id patchId = action.httpArgs.patchId;
+        Version ver = null;
 
-        if ( action.httpArgs.patchId != null ) {
-            Id patchId = action.httpArgs.patchId;
+        if ( patchId != null ) {
             FmtLog.info(LOG, "[%d] Patch:fetch Dest=%s, Patch=%s", action.id, dsRef, patchId);
-            patch = action.dLink.fetch(dsRef, patchId);
-            if ( patch == null )
-                throw new DeltaNotFoundException("Patch not found: id="+patchId);
         } else if ( action.httpArgs.version != null ) {
-            Version ver = Version.create(action.httpArgs.version);
+            ver = Version.create(action.httpArgs.version);
             FmtLog.info(LOG, "[%d] Patch:fetch Dest=%s, Patch=%s", action.id, dsRef, ver);
-            patch = action.dLink.fetch(dsRef, ver);
-            if ( patch == null )
-                throw new DeltaNotFoundException("Patch not found: version="+action.httpArgs.version);
         } else {
             DeltaAction.errorBadRequest("No id and no version in patch fetch request");
-            patch = null;
         }
 
+        String contentType = acceptsBinaryPatch(action.request)
+            ? DeltaConst.contentTypePatchBinary
+            : DeltaConst.contentTypePatchText;
+
+        if ( action.dLink instanceof DeltaLinkLocal ) {
+            DeltaLinkLocal dLink = (DeltaLinkLocal)action.dLink;
+            if ( contentType.equals(dLink.storedContentType(dsRef)) ) {
+                OutputStream out = action.response.getOutputStream();
+                action.response.setStatus(HttpSC.OK_200);
+                action.response.setContentType(contentType);
+                // Nothing is written if the patch is not found so the response can still be a 404.
+                if ( ! dLink.fetchBytes(dsRef, patchId, ver, out) )
+                    throw patchNotFound(action);
+                // Not "close".
+                IO.flush(out);
+                return;
+            }
+        }
+
+        // Different format or not local: parse and write the patch.
+        RDFPatch patch = ( patchId != null )
+            ? action.dLink.fetch(dsRef, patchId)
+            : action.dLink.fetch(dsRef, ver);
+        if ( patch == null )
+            throw patchNotFound(action);
+
         OutputStream out = action.response.getOutputStream();
         //action.response.setCharacterEncoding(WebContent.charsetUTF8);
         action.response.setStatus(HttpSC.OK_200);
-        action.response.setContentType(DeltaConst.contentTypePatchText);
-        RDFPatchOps.write(out, patch);
+        action.response.setContentType(contentType);
+        if ( DeltaConst.contentTypePatchBinary.equals(contentType) )
+            RDFPatchOps.writeBinary(out, patch);
+        else
+            RDFPatchOps.write(out, patch);
         // Not "close".
         IO.flush(out);
     }
+
+    private static DeltaNotFoundException patchNotFound(DeltaAction action) {
+        if ( action.httpArgs.patchId != null )
+            return new DeltaNotFoundException("Patch not found: id="+action.httpArgs.patchId);
+        return new DeltaNotFoundException("Patch not found: version="+action.httpArgs.version);
+    }
+
+    /**
+     * Fetch the patches for a range of versions, as a sequence of length-prefixed patches
+     * (see {@link PatchStreamIO}). The response is streamed.
+     * With "squash=true", the server sends patches each covering several versions,
+     * squashed as they are sent.
+     */
+    public static void fetchRange(DeltaAction action) throws IOException {
+        Id dsRef = idForDatasource(action);
+        if ( dsRef == null )
+            throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
+        long from = action.httpArgs.fromVersion;
+        if ( from < DeltaConst.VERSION_INIT )
+            DeltaAction.errorBadRequest("Bad start of range: "+from);
+        Version start = Version.create(from);
+        Version finish = ( action.httpArgs.toVersion == null )
+            ? action.dLink.getCurrentVersion(dsRef)
+            : Version.create(action.httpArgs.toVersion);
+        if ( start.isAfter(finish) )
+            DeltaAction.errorBadRequest("Range start after finish: ["+start+", "+finish+"]");
+
+        boolean binary = acceptsBinaryRange(action.request);
+        boolean squash = "true".equalsIgnoreCase(action.request.getParameter(DeltaConst.paramSquash));
+        FmtLog.info(LOG, "[%d] Patch:range Dest=%s, Versions=[%s, %s]", action.id, dsRef, start, finish);
+
+        // Before the response starts so that errors, such as the patches having been
+        // removed from the log (410), are sent as the status code.
+        try ( Stream<RDFPatch> patches = squash
+                ? action.dLink.fetchRangeSquashed(dsRef, start, finish)
+                : action.dLink.fetchRange(dsRef, start, finish) ) {
+            OutputStream out = action.response.getOutputStream();
+            action.response.setStatus(HttpSC.OK_200);
+            action.response.setContentType(binary ? DeltaConst.contentTypePatchRangeBinary : DeltaConst.contentTypePatchRange);
+            // No Content-Length : the response is sent chunked.
+            patches.forEach(patch->PatchStreamIO.write(out, patch, binary));
+            // Not "close".
+            IO.flush(out);
+        }
+    }
+
+    /**
+     * Wait for the log to have a version later than the "after" version, then reply with
+     * the log details. The reply is sent anyway after a timeout; the client checks the
+     * version returned. The request is held by the server, so it replaces the client
+     * polling for changes.
+     * <p>
+     * With the local server, the request is suspended (servlet async) while waiting so a
+     * waiting request does not hold a server thread.
+     */
+    public static void awaitChange(DeltaAction action) throws IOException {
+        Id dsRef = idForDatasource(action);
+        if ( dsRef == null )
+            throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
+        Version after = Version.create(action.httpArgs.afterVersion);
+        long timeout = ( action.httpArgs.timeout == null )
+            ? DeltaConst.AWAIT_TIMEOUT_MS
+            : Math.min(action.httpArgs.timeout, DeltaConst.AWAIT_TIMEOUT_MAX_MS);
+        FmtLog.debug(LOG, "[%d] Patch:await Dest=%s, After=%s, Timeout=%dms", action.id, dsRef, after, timeout);
+        if ( action.dLink instanceof DeltaLinkLocal && action.request.isAsyncSupported() ) {
+            DeltaLinkLocal dLink = (DeltaLinkLocal)action.dLink;
+            AsyncContext async = action.request.startAsync();
+            // The wait has its own timeout.
+            async.setTimeout(0);
+            dLink.awaitChangeAsync(dsRef, after, timeout).whenComplete((info, ex)->
+                // Write the response on a server thread, not the notifier thread.
+                async.start(()->{
+                    try {
+                        if ( ex != null ) {
+                            FmtLog.warn(LOG, "[%d] Patch:await Dest=%s : %s", action.id, dsRef, ex.getMessage());
+                            action.response.sendError(HttpSC.INTERNAL_SERVER_ERROR_500, ex.getMessage());
+                        } else
+                            awaitReply(action, info);
+                    } catch (IOException ex2) {
+                        FmtLog.warn(LOG, "[%d] Patch:await Dest=%s : %s", action.id, dsRef, ex2.getMessage());
+                    } finally {
+                        async.complete();
+                    }
+                }));
+            return;
+        }
+        PatchLogInfo info = action.dLink.awaitChange(dsRef, after, timeout);
+        awaitReply(action, info);
+    }
+
+    private static void awaitReply(DeltaAction action, PatchLogInfo info) throws IOException {
+        if ( info == null ) {
+            action.response.sendError(HttpSC.NOT_FOUND_404, "No such datasource: '"+action.httpArgs.datasourceName+"'");
+            return;
+        }
+        OutputStream out = action.response.getOutputStream();
+        action.response.setContentType(WebContent.contentTypeJSON);
+        action.response.setStatus(HttpSC.OK_200);
+        JSON.write(out, info.asJson());
+        out.flush();
+    }
+
+    private static boolean acceptsBinaryRange(HttpServletRequest request) {
+        String accept = request.getHeader(HttpNames.hAccept);
+        if ( accept == null )
+            return false;
+        AcceptList acceptList = AcceptList.create(accept);
+        MediaType choice = AcceptList.match(acceptList, offerRange);
+        return choice != null && DeltaConst.contentTypePatchRangeBinary.equals(choice.getContentType());
+    }
+
+    /** Patch format for the response: text unless the client prefers binary. */
+    private static boolean acceptsBinaryPatch(HttpServletRequest request) {
+        String accept = request.getHeader(HttpNames.hAccept);
+        if ( accept == null )
+            return false;
+        AcceptList acceptList = AcceptList.create(accept);
+        MediaType choice = AcceptList.match(acceptList, offerPatch);
+        return choice != null && DeltaConst.contentTypePatchBinary.equals(choice.getContentType());
+    }
+
+    private static AcceptList offerPatch = AcceptList.create(DeltaConst.contentTypePatchText, DeltaConst.contentTypePatchBinary);
+
+    private static AcceptList offerRange = AcceptList.create(DeltaConst.contentTypePatchRange, DeltaConst.contentTypePatchRangeBinary);
 }
@@ -96,7 +96,7 @@ public /*package*/ class PatchLogServer {
 
         addServlet(handler, "/"+DeltaConst.EP_Ping, new S_Ping());  //-- See also the "ping" DRPC.
 
-        addServlet(handler, "/"+DeltaConst.EP_Metrics, new S_Metrics());
+        addServlet(handler, "/"+DeltaConst.EP_Metrics, new S_Metrics(this.deltaLink));
 
         // Initial data. "/init-data?datasource=..."
         addServlet(handler, "/"+DeltaConst.EP_InitData, new S_FetchData(this.deltaLink));
@@ -187,12 +187,18 @@ public /*package*/ class PatchLogServer {
         }
     }
 
+    // Async support is needed on the whole chain for a request to be suspended (see LogOp.awaitChange).
+
     private void addServlet(ServletContextHandler holder, String path, Servlet servlet) {
-        holder.addServlet(new ServletHolder(servlet), path);
+        ServletHolder servletHolder = new ServletHolder(servlet);
+        servletHolder.setAsyncSupported(true);
+        holder.addServlet(servletHolder, path);
     }
 
     private void addFilter(ServletContextHandler holder, String path, Filter filter) {
-        holder.addFilter(new FilterHolder(filter), path, null);
+        FilterHolder filterHolder = new FilterHolder(filter);
+        filterHolder.setAsyncSupported(true);
+        holder.addFilter(filterHolder, path, null);
     }
 
     // To be called via DeltaServer.
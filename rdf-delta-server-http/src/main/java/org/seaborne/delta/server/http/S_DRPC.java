@@ -24,7 +24,17 @@ import java.io.IOException ;
 import java.io.InputStream ;
 import java.io.OutputStream ;
 import java.io.PrintStream ;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest ;
@@ -115,6 +125,7 @@ public class S_DRPC extends DeltaServlet {
             case OP_LOCK_READ:
             case OP_LOCK_GRAB:
             case OP_UNLOCK:
+            case OP_BATCH:
                 break;
             default:
                 LOG.warn("Unknown operation: "+action.opName);
@@ -133,6 +144,17 @@ public class S_DRPC extends DeltaServlet {
 
     @Override
     protected void executeAction(DeltaAction action) throws IOException {
+        JsonValue rslt = OP_BATCH.equals(action.opName)
+            ? executeBatch(action)
+            : execute(action, false);
+        sendJsonResponse(action.response, rslt);
+    }
+
+    /**
+     * Perform one operation and return the result. An operation in a batch does not wait
+     * for a patch log lock: the rest of the batch would wait as well.
+     */
+    private JsonValue execute(DeltaAction action, boolean inBatch) {
         JsonValue rslt = null ;
         JsonObject arg = action.rpcArg;
         // Some operations are logged at DEBUG because they are high-volume polling.
@@ -184,7 +206,7 @@ public class S_DRPC extends DeltaServlet {
                     break;
                 case OP_LOCK:
                     infoLogThisRPC = false;
-                    rslt = acquirePatchLogLock(action);
+                    rslt = acquirePatchLogLock(action, inBatch);
                     break;
                 case OP_LOCK_REFRESH:
                     infoLogThisRPC = false;
@@ -218,7 +240,114 @@ public class S_DRPC extends DeltaServlet {
             FmtLog.info(LOG, "[%d] %s %s => %s", action.id, action.opName, JSON.toStringFlat(arg), JSON.toStringFlat(rslt)) ;
         else
             FmtLog.debug(LOG, "[%d] %s %s => %s", action.id, action.opName, JSON.toStringFlat(arg), JSON.toStringFlat(rslt)) ;
-        sendJsonResponse(action.response, rslt);
+        return rslt;
+    }
+
+    // Operations that do not change the server. A run of these in a batch are performed in parallel.
+    private static final Set<String> independentOps = Set.of(OP_PING, OP_LIST_DS, OP_LIST_DSD, OP_LIST_LOG_INFO,
+                                                               OP_DESCR_DS, OP_DESCR_LOG, OP_LOCK_READ);
+
+    private static final AtomicInteger batchThreadCounter = new AtomicInteger(0);
+    private static final ExecutorService batchExecutor = Executors.newFixedThreadPool(DeltaConst.DRPC_BATCH_THREADS, r->{
+        Thread thread = new Thread(r, "DeltaBatch-"+batchThreadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Perform a batch of operations: { "array": [ { "operation": ..., "opid": ..., "arg": ... } ... ] }
+     * <p>
+     * The result is an array, in the same order, of { "opid": ..., "value": result } or
+     * { "opid": ..., "status": code, "error": message }. Operations that change the
+     * server are performed in order, each after all earlier operations have finished.
+     * Operations between these are performed in parallel.
+     */
+    private JsonValue executeBatch(DeltaAction action) {
+        JsonArray array = getFieldAsArray(action, F_ARRAY);
+        if ( array.size() > DeltaConst.DRPC_BATCH_MAX )
+            throw new DeltaBadRequestException("Too many operations in batch: "+array.size()+" (max "+DeltaConst.DRPC_BATCH_MAX+")");
+        JsonObject[] results = new JsonObject[array.size()];
+        List<Future<?>> running = new ArrayList<>();
+        for ( int i = 0 ; i < array.size() ; i++ ) {
+            int idx = i;
+            JsonValue request = array.get(i);
+            if ( isIndependent(request) ) {
+                running.add(batchExecutor.submit(()->{ results[idx] = executeBatchElement(action, request); }));
+                continue;
+            }
+            awaitAll(running);
+            results[i] = executeBatchElement(action, request);
+        }
+        awaitAll(running);
+        FmtLog.debug(LOG, "[%d] %s %d operations", action.id, action.opName, results.length);
+        return JSONX.buildObject(b->{
+            b.key(F_ARRAY);
+            b.startArray();
+            for ( JsonObject obj : results )
+                b.value(obj);
+            b.finishArray();
+        });
+    }
+
+    private static boolean isIndependent(JsonValue request) {
+        if ( ! request.isObject() )
+            return false;
+        JsonValue op = request.getAsObject().get(F_OP);
+        return op != null && op.isString() && independentOps.contains(op.getAsString().value());
+    }
+
+    private static void awaitAll(List<Future<?>> running) {
+        try {
+            for ( Future<?> f : running )
+                f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DeltaException("Interrupted");
+        } catch (ExecutionException ex) {
+            // executeBatchElement does not throw exceptions.
+            throw new InternalErrorException(ex.getCause());
+        }
+        running.clear();
+    }
+
+    /** Perform one operation of a batch. Errors are returned in the result, not thrown. */
+    private JsonObject executeBatchElement(DeltaAction action, JsonValue request) {
+        String opId = null;
+        try {
+            if ( ! request.isObject() )
+                throw new DeltaBadRequestException("Batch element is not a JSON object: "+JSON.toStringFlat(request));
+            JsonObject input = request.getAsObject();
+            opId = getFieldAsString(input, F_OP_ID, false);
+            String op = getFieldAsString(input, F_OP);
+            JsonObject arg = getFieldAsObject(input, F_ARG);
+            if ( OP_BATCH.equals(op) )
+                throw new DeltaBadRequestException("Nested batch operation");
+            DeltaAction subAction = DeltaAction.create(action.request, action.response, action.dLink, action.token, op, opId, arg, input);
+            validateAction(subAction);
+            JsonValue rslt = execute(subAction, true);
+            String id = opId;
+            return JSONX.buildObject(b->{
+                if ( id != null )
+                    b.pair(F_OP_ID, id);
+                b.key(F_VALUE).value(rslt == null ? JsonNull.instance : rslt);
+            });
+        } catch (DeltaHttpException ex) {
+            return batchError(opId, ex.getStatusCode(), ex.getMessage());
+        } catch (JsonException ex) {
+            return batchError(opId, HttpSC.BAD_REQUEST_400, "Bad JSON in request: "+ex.getMessage());
+        } catch (Exception ex) {
+            LOG.warn("Batch operation: "+ex.getMessage(), ex);
+            return batchError(opId, HttpSC.INTERNAL_SERVER_ERROR_500, ex.getMessage());
+        }
+    }
+
+    private static JsonObject batchError(String opId, int statusCode, String message) {
+        return JSONX.buildObject(b->{
+            if ( opId != null )
+                b.pair(F_OP_ID, opId);
+            b.pair(F_STATUS, statusCode);
+            b.pair(F_ERROR, message == null ? HttpSC.getMessage(statusCode) : message);
+        });
     }
 
     static public void sendJsonResponse(HttpServletResponse resp, JsonValue rslt) {
@@ -357,9 +486,13 @@ public class S_DRPC extends DeltaServlet {
         return noResults;
     }
 
-    private JsonValue acquirePatchLogLock(DeltaAction action) {
+    private JsonValue acquirePatchLogLock(DeltaAction action, boolean inBatch) {
         Id dsRef = getFieldAsId(action, F_DATASOURCE);
-        Id session = action.dLink.acquireLock(dsRef);
+        // Optional: wait for the lock, for a short time because a server thread is held.
+        long timeout = inBatch ? 0 : getFieldAsLong(action.rpcArg, F_TIMEOUT, 0);
+        Id session = ( timeout > 0 )
+            ? action.dLink.acquireLock(dsRef, Math.min(timeout, DeltaConst.LOCK_WAIT_MAX_MS))
+            : action.dLink.acquireLock(dsRef);
         if ( session == null )
             return JSONX.buildObject(b->b.key(F_LOCK_REF).value(JsonNull.instance));
         return JSONX.buildObject(b->b.key(F_LOCK_REF).value(session.asPlainString()));
@@ -393,15 +526,20 @@ public class S_DRPC extends DeltaServlet {
             return emptyObjectArray;
             //throw new DeltaBadRequestException("Empty array in lock refresh "+ JSON.toStringFlat(action.rpcArg)) ;
         }
-        List<JsonObject> rslt =
-                array.stream().map(JsonValue::getAsObject).map(arg->{
-                    Id dsRef = getFieldAsId(arg, F_DATASOURCE);
-                    Id session = getFieldAsId(arg, F_LOCK_REF);
-                    boolean bRslt = action.dLink.refreshLock(dsRef, session);
-                    // If it did not refresh, pass arg back.
-                    return bRslt ? null : arg ;
-                })
-                .filter(x -> x != null )
+        // All the locks are refreshed in one operation.
+        Map<Id, Id> locks = new LinkedHashMap<>();
+        Map<Id, JsonObject> args = new HashMap<>();
+        array.stream().map(JsonValue::getAsObject).forEach(arg->{
+            Id dsRef = getFieldAsId(arg, F_DATASOURCE);
+            Id session = getFieldAsId(arg, F_LOCK_REF);
+            locks.put(dsRef, session);
+            args.put(dsRef, arg);
+        });
+        Set<Id> failed = action.dLink.refreshLocks(locks);
+        // For each lock that did not refresh, pass arg back.
+        List<JsonObject> rslt = locks.keySet().stream()
+                .filter(failed::contains)
+                .map(args::get)
                 .collect(Collectors.toList());
         return JSONX.buildObject(b->{
             b.key(F_ARRAY);
@@ -494,6 +632,17 @@ public class S_DRPC extends DeltaServlet {
         }
     }
 
+    private static long getFieldAsLong(JsonObject arg, String field, long dftValue) {
+        if ( ! arg.hasKey(field) )
+            return dftValue;
+        JsonValue jv = arg.get(field);
+        if ( ! jv.isNumber() ) {
+            LOG.warn("Bad request: Field not a number: "+field+" Arg: "+JSON.toStringFlat(arg)) ;
+            throw new DeltaBadRequestException("Bad field '"+field+"' : "+jv) ;
+        }
+        return jv.getAsNumber().value().longValue();
+    }
+
     private static Id getFieldAsId(JsonObject arg, String field) {
         return Id.fromString(getFieldAsString(arg, field));
     }
@@ -32,12 +32,18 @@ import org.apache.commons.io.IOUtils ;
 import org.apache.jena.atlas.lib.IRILib ;
 import org.apache.jena.atlas.web.ContentType ;
 import org.apache.jena.riot.RDFLanguages ;
+import org.apache.jena.riot.WebContent ;
+import org.apache.jena.riot.web.HttpNames ;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.Delta;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.DeltaNotFoundException ;
 import org.seaborne.delta.Id ;
+import org.seaborne.delta.SnapshotInfo;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.server.local.DataSource;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.seaborne.delta.server.local.SnapshotManager;
 import org.slf4j.Logger ;
 
 /** Data over HTTP. */
@@ -67,7 +73,16 @@ public class S_FetchData extends HttpOperationBase {
     protected void executeAction(DeltaAction action) throws IOException {
         LOG.info("GET "+action.getURL());
         Id dsRef = Id.fromString(action.httpArgs.datasourceName);
+        if ( action.dLink instanceof DeltaLinkLocal ) {
+            SnapshotManager.Snapshot snapshot = ((DeltaLinkLocal)action.dLink).getSnapshot(dsRef);
+            if ( snapshot != null ) {
+                sendSnapshot(action, snapshot);
+                return;
+            }
+        }
         String filenameIRI = determineData(action, dsRef);
+        if ( filenameIRI == null )
+            throw new DeltaNotFoundException(action.getURL());
         ContentType ct = RDFLanguages.guessContentType(filenameIRI) ;
         String fn = IRILib.IRIToFilename(filenameIRI);
         Path path = Paths.get(fn);
@@ -80,7 +95,26 @@ public class S_FetchData extends HttpOperationBase {
         }
     }
 
-    /** Decide which data to return.
+    /**
+     * Send a dataset snapshot: gzip-compressed N-Quads, with the version and the patch id
+     * that the snapshot includes in the response headers.
+     */
+    private void sendSnapshot(DeltaAction action, SnapshotManager.Snapshot snapshot) throws IOException {
+        SnapshotInfo info = snapshot.getInfo();
+        try ( InputStream in = Files.newInputStream(snapshot.getPath()) ) {
+            action.response.setStatus(HttpSC.OK_200);
+            action.response.setContentType(WebContent.contentTypeNQuads);
+            action.response.setHeader(HttpNames.hContentEncoding, "gzip");
+            action.response.setHeader(DeltaConst.hdrSnapshotVersion, info.version.asParam());
+            action.response.setHeader(DeltaConst.hdrSnapshotPatch, info.patchId.asParam());
+            IOUtils.copy(in, action.response.getOutputStream());
+        } catch (NoSuchFileException | FileNotFoundException ex) {
+            // Removed by a newer snapshot.
+            throw new DeltaNotFoundException(action.getURL());
+        }
+    }
+
+    /** Decide which data to return when there is no snapshot.
      *  Default is the initial data for a {@link DataSource}.
      */
     protected String determineData(DeltaAction action, Id dsRef) {
@@ -30,6 +30,8 @@ import org.slf4j.Logger;
 /** Servlet for both append and fetch patches - the RDF Patch protocol.
  *    <tt>GET  /{name}/id</tt> -- get patch
  *    <tt>GET  /{name}/version</tt> -- get patch
+ *    <tt>GET  /{name}/?from=N&amp;to=M</tt> -- get patches for a range of versions
+ *    <tt>GET  /{name}/?after=N</tt> -- wait for a version later than N, return the log info
  *    <tt>POST /{name}/</tt> -- append patch.
  */
 public class S_GetPostLog extends HttpOperationBase {
@@ -47,6 +49,10 @@ public class S_GetPostLog extends HttpOperationBase {
 
     @Override
     protected void validateAction(Args httpArgs) {
+        if ( isAwaitOperation(httpArgs) )
+            return ;
+        if ( isFetchRangeOperation(httpArgs) )
+            return ;
         if ( isFetchOperation(httpArgs) )
             return ;
         if ( isAppendOperation(httpArgs) )
@@ -56,7 +62,11 @@ public class S_GetPostLog extends HttpOperationBase {
 
     @Override
     protected void executeAction(DeltaAction action) throws IOException {
-        if ( isFetchOperation(action) )
+        if ( isAwaitOperation(action.httpArgs) )
+            LogOp.awaitChange(action);
+        else if ( isFetchRangeOperation(action.httpArgs) )
+            LogOp.fetchRange(action);
+        else if ( isFetchOperation(action) )
             LogOp.fetch(action);
         else
             LogOp.append(action);
@@ -101,6 +111,20 @@ public class S_GetPostLog extends HttpOperationBase {
             && (args.patchId != null || args.version != null ) ;
     }
 
+    private boolean isFetchRangeOperation(Args args) {
+        return isLogOperation(args)
+            && args.method.equals(HttpNames.METHOD_GET)
+            && args.fromVersion != null
+            && (args.patchId == null && args.version == null);
+    }
+
+    private boolean isAwaitOperation(Args args) {
+        return isLogOperation(args)
+            && args.method.equals(HttpNames.METHOD_GET)
+            && args.afterVersion != null
+            && (args.patchId == null && args.version == null && args.fromVersion == null);
+    }
+
     private boolean isAppendOperation(Args args) {
         return isLogOperation(args)
             && (args.method.equals(HttpNames.METHOD_POST) || args.method.equals(HttpNames.METHOD_PATCH))
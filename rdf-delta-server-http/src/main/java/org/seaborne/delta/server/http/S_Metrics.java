@@ -30,8 +30,16 @@ import org.apache.jena.riot.web.HttpNames ;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.Delta ;
 import org.seaborne.delta.DeltaConst ;
+import org.seaborne.delta.link.DeltaLink;
+import org.rocksdb.TickerType;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.seaborne.delta.server.local.PatchCache;
+import org.seaborne.delta.server.local.patchstores.rdb.RocksOptions;
 import org.slf4j.Logger ;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.binder.jvm.ClassLoaderMetrics;
 import io.micrometer.core.instrument.binder.jvm.DiskSpaceMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
@@ -49,6 +57,14 @@ public class S_Metrics extends HttpServlet {
     private PrometheusMeterRegistry meterRegistry;
 
     public S_Metrics() {
+        this(null);
+    }
+
+    /**
+     * Metrics including those for the operations on the patch logs, if {@code dLink} is
+     * the link to the local server.
+     */
+    public S_Metrics(DeltaLink dLink) {
         meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
         meterRegistry.config().commonTags("application", DeltaConst.pDeltaStore);
 
@@ -65,6 +81,51 @@ public class S_Metrics extends HttpServlet {
         x.bindTo(meterRegistry);
         new JvmMemoryMetrics().bindTo(meterRegistry);
         new JvmThreadMetrics().bindTo(meterRegistry);
+        patchCacheMetrics(meterRegistry, PatchCache.get());
+        rocksMetrics(meterRegistry);
+        if ( dLink instanceof DeltaLinkLocal )
+            DeltaLinkMetrics.bind(meterRegistry, (DeltaLinkLocal)dLink);
+    }
+
+    private static void patchCacheMetrics(MeterRegistry registry, PatchCache cache) {
+        FunctionCounter.builder("delta.patch.cache.hits", cache, PatchCache::hits)
+            .description("Patch fetches satisfied by the patch cache").register(registry);
+        FunctionCounter.builder("delta.patch.cache.misses", cache, PatchCache::misses)
+            .description("Patch fetches not in the patch cache").register(registry);
+        FunctionCounter.builder("delta.patch.cache.evictions", cache, PatchCache::evictions)
+            .description("Patches dropped from the patch cache").register(registry);
+        Gauge.builder("delta.patch.cache.bytes", cache, PatchCache::bytes)
+            .baseUnit("bytes").description("Size of the patches in the patch cache").register(registry);
+        Gauge.builder("delta.patch.cache.entries", cache, PatchCache::entries)
+            .description("Number of patches in the patch cache").register(registry);
+    }
+
+    // RocksDB statistics counters, summed over the RocksDB databases of the server.
+    private static void rocksMetrics(MeterRegistry registry) {
+        rocksCounter(registry, "delta.rocks.block.cache.hits", TickerType.BLOCK_CACHE_HIT, null);
+        rocksCounter(registry, "delta.rocks.block.cache.misses", TickerType.BLOCK_CACHE_MISS, null);
+        rocksCounter(registry, "delta.rocks.block.cache.read", TickerType.BLOCK_CACHE_BYTES_READ, "bytes");
+        rocksCounter(registry, "delta.rocks.bloom.filter.useful", TickerType.BLOOM_FILTER_USEFUL, null);
+        rocksCounter(registry, "delta.rocks.keys.written", TickerType.NUMBER_KEYS_WRITTEN, null);
+        rocksCounter(registry, "delta.rocks.keys.read", TickerType.NUMBER_KEYS_READ, null);
+        rocksCounter(registry, "delta.rocks.written", TickerType.BYTES_WRITTEN, "bytes");
+        rocksCounter(registry, "delta.rocks.read", TickerType.BYTES_READ, "bytes");
+        rocksCounter(registry, "delta.rocks.flush.written", TickerType.FLUSH_WRITE_BYTES, "bytes");
+        rocksCounter(registry, "delta.rocks.compaction.read", TickerType.COMPACT_READ_BYTES, "bytes");
+        rocksCounter(registry, "delta.rocks.compaction.written", TickerType.COMPACT_WRITE_BYTES, "bytes");
+        rocksCounter(registry, "delta.rocks.stall", TickerType.STALL_MICROS, "microseconds");
+        // Group commit: the average batch size is writes/batches.
+        FunctionCounter.builder("delta.rocks.commit.writes", RocksOptions.class, x->RocksOptions.commitWrites())
+            .description("Writes to the RocksDB databases").register(registry);
+        FunctionCounter.builder("delta.rocks.commit.batches", RocksOptions.class, x->RocksOptions.commitBatches())
+            .description("Group commits to the RocksDB databases").register(registry);
+        Gauge.builder("delta.rocks.commit.queue", RocksOptions.class, x->RocksOptions.commitQueueDepth())
+            .description("Writes waiting for a group commit").register(registry);
+    }
+
+    private static void rocksCounter(MeterRegistry registry, String name, TickerType ticker, String unit) {
+        FunctionCounter.builder(name, ticker, RocksOptions::tickerCount)
+            .baseUnit(unit).description("RocksDB statistic "+ticker.name()).register(registry);
     }
 
     @Override
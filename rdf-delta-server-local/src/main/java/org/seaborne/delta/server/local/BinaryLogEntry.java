@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.apache.jena.atlas.lib.Bytes;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.JSONX;
+
+/**
+ * To and from the binary representation of a LogEntry.
+ * <p>
+ * The encoding is:
+ * <pre>
+ *   byte   format ({@link #FORMAT})
+ *   byte   flags: id is a UUID, there is a previous id, previous id is a UUID
+ *   long   version
+ *   id:    16 bytes for a UUID, else short length + UTF-8 bytes
+ *   prev:  as for the id, absent if there is no previous id
+ * </pre>
+ * For the usual case of UUID ids, an entry is a fixed 42 bytes.
+ * <p>
+ * Entries written as JSON by {@link JsonLogEntry}, which start with a <tt>{</tt>, are
+ * also read.
+ */
+public class BinaryLogEntry {
+    /** Format byte of the current binary encoding. */
+    public static final byte FORMAT       = 1;
+
+    private static final byte JSON_START  = '{';
+    private static final int  F_ID_UUID   = 0x01;
+    private static final int  F_PREV      = 0x02;
+    private static final int  F_PREV_UUID = 0x04;
+
+    private static final int  UUID_LEN    = 2*Long.BYTES;
+    // Offset of the version.
+    private static final int  VERSION_IDX = 2;
+    // Offset of the id.
+    private static final int  ID_IDX      = VERSION_IDX+Long.BYTES;
+
+    /** Encode a log entry. */
+    public static byte[] encode(long version, Id patch, Id prev) {
+        if ( patch == null )
+            throw new DeltaException("No patch id for log entry at version "+version);
+        byte[] idBytes = patch.isUUID() ? null : patch.asBytes();
+        byte[] prevBytes = ( prev == null || prev.isUUID() ) ? null : prev.asBytes();
+        int flags = 0;
+        int len = ID_IDX + idLength(patch, idBytes);
+        if ( patch.isUUID() )
+            flags |= F_ID_UUID;
+        if ( prev != null ) {
+            flags |= F_PREV;
+            if ( prev.isUUID() )
+                flags |= F_PREV_UUID;
+            len += idLength(prev, prevBytes);
+        }
+        ByteBuffer bb = ByteBuffer.allocate(len);
+        bb.put(FORMAT);
+        bb.put((byte)flags);
+        bb.putLong(version);
+        putId(bb, patch, idBytes);
+        if ( prev != null )
+            putId(bb, prev, prevBytes);
+        return bb.array();
+    }
+
+    /** Encode a log entry. */
+    public static byte[] encode(LogEntry entry) {
+        return encode(entry.getVersion().value(), entry.getPatchId(), entry.getPrevious());
+    }
+
+    /** Decode a log entry, in the binary or the JSON encoding. */
+    public static LogEntry decode(byte[] bytes) {
+        if ( isJson(bytes) )
+            return JsonLogEntry.jsonToLogEntry(JSONX.fromBytes(bytes));
+        checkFormat(bytes);
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        int flags = bb.get(1);
+        bb.position(VERSION_IDX);
+        long version = bb.getLong();
+        Id patch = getId(bb, (flags & F_ID_UUID) != 0);
+        Id prev = ( (flags & F_PREV) != 0 ) ? getId(bb, (flags & F_PREV_UUID) != 0) : null;
+        return new LogEntry(patch, Version.create(version), prev);
+    }
+
+    /** Decode only the version of a log entry, in the binary or the JSON encoding. */
+    public static Version decodeVersion(byte[] bytes) {
+        if ( isJson(bytes) )
+            return decode(bytes).getVersion();
+        checkFormat(bytes);
+        return Version.create(Bytes.getLong(bytes, VERSION_IDX));
+    }
+
+    /** Is this a log entry in the older JSON encoding? */
+    public static boolean isJson(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == JSON_START;
+    }
+
+    private static void checkFormat(byte[] bytes) {
+        if ( bytes.length < ID_IDX || bytes[0] != FORMAT )
+            throw new DeltaException("Unrecognized log entry encoding");
+    }
+
+    private static int idLength(Id id, byte[] idBytes) {
+        return id.isUUID() ? UUID_LEN : Short.BYTES + idBytes.length;
+    }
+
+    private static void putId(ByteBuffer bb, Id id, byte[] idBytes) {
+        if ( id.isUUID() ) {
+            UUID uuid = id.asUUID();
+            bb.putLong(uuid.getMostSignificantBits());
+            bb.putLong(uuid.getLeastSignificantBits());
+        } else {
+            bb.putShort((short)idBytes.length);
+            bb.put(idBytes);
+        }
+    }
+
+    private static Id getId(ByteBuffer bb, boolean isUUID) {
+        if ( isUUID ) {
+            long mostSig = bb.getLong();
+            long leastSig = bb.getLong();
+            return Id.fromUUID(new UUID(mostSig, leastSig));
+        }
+        int len = bb.getShort() & 0xFFFF;
+        byte[] b = new byte[len];
+        bb.get(b);
+        return Id.fromStringBytes(b);
+    }
+}
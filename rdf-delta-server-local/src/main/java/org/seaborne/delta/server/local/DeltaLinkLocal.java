@@ -20,19 +20,32 @@ package org.seaborne.delta.server.local;
 import static org.apache.jena.atlas.lib.ListUtils.toList;
 import static org.seaborne.delta.Id.str;
 
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.riot.system.StreamRDF;
 import org.seaborne.delta.*;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.link.DeltaLinkListener;
 import org.seaborne.delta.link.DeltaNotConnectedException;
 import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +66,7 @@ public class DeltaLinkLocal implements DeltaLink {
     private volatile boolean  linkOpen = false;
 
     private Set<DeltaLinkListener> listeners = ConcurrentHashMap.newKeySet();
+    private final PatchLogNotifier notifier = new PatchLogNotifier();
 
     public static DeltaLink connect(LocalServer localServer) {
         return new DeltaLinkLocal(localServer);
@@ -61,6 +75,7 @@ public class DeltaLinkLocal implements DeltaLink {
     private DeltaLinkLocal(LocalServer localServer) {
         this.localServer = localServer;
         this.linkOpen = true;
+        this.listeners.add(notifier);
     }
 
     @Override
@@ -205,12 +220,19 @@ public class DeltaLinkLocal implements DeltaLink {
         try {
             beforeWrite(source, patchLog, rdfPatch);
 
-            long t1 = System.currentTimeMillis();
+            long t1 = System.nanoTime();
             Version version = patchLog.append(rdfPatch);
-            long t2 = System.currentTimeMillis();
+            long t2 = System.nanoTime();
 
-            afterWrite(source, rdfPatch, version, (t2 - t1));
+            afterWrite(source, rdfPatch, version, TimeUnit.NANOSECONDS.toMillis(t2 - t1));
             event(listener-> listener.append(dsRef, version, rdfPatch));
+            event(listener-> listener.appendTime(dsRef, version, rdfPatch, t2 - t1));
+            SnapshotManager snapshots = localServer.getSnapshotManager();
+            if ( snapshots != null )
+                snapshots.appended(source, version);
+            RetentionManager retention = localServer.getRetentionManager();
+            if ( retention != null )
+                retention.appended(source, version, rdfPatch);
             return version;
         }
         catch (RuntimeException ex) {
@@ -260,7 +282,10 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSourceOrNull(dsRef);
         if ( source == null )
             return null;
+        long t1 = System.nanoTime();
         RDFPatch patch = source.getPatchLog().fetch(patchId);
+        long t2 = System.nanoTime();
+        event(listener->listener.fetchTime(dsRef, t2 - t1));
         if ( patch == null )
             return null;
             //throw new DeltaNotFoundException("No such patch: " + patchId);
@@ -276,7 +301,12 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSourceOrNull(dsRef);
         if ( source == null )
             return null;
+        if ( source.getPatchLog().isPruned(version) )
+            throw new DeltaPatchesPrunedException("Patch removed from the log: version="+version);
+        long t1 = System.nanoTime();
         RDFPatch patch = source.getPatchLog().fetch(version);
+        long t2 = System.nanoTime();
+        event(listener->listener.fetchTime(dsRef, t2 - t1));
         if ( LOG.isInfoEnabled() ) {
             if ( patch == null ) {
                 devlog(LOG, "fetch: Dest=%s, %s, Not found", source, version);
@@ -289,6 +319,146 @@ public class DeltaLinkLocal implements DeltaLink {
         return patch;
     }
 
+    /**
+     * The content type of the patches as stored in a patch log:
+     * {@link DeltaConst#contentTypePatchText} or {@link DeltaConst#contentTypePatchBinary}.
+     * Return null if the patch log is not registered.
+     */
+    public String storedContentType(Id dsRef) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return null;
+        return source.getPatchLog().storedContentType();
+    }
+
+    /**
+     * Copy a patch to {@code out}, in the format given by {@link #storedContentType},
+     * without parsing it. The patch is given by {@code patchId} or, if that is null, by
+     * {@code version}. Return false, having written nothing, if there is no such patch.
+     * <p>
+     * Listeners may be given the parsed patch so, if there are any listeners that look at
+     * fetched patches, the patch is parsed and written out again.
+     */
+    public boolean fetchBytes(Id dsRef, Id patchId, Version version, OutputStream out) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return false;
+        PatchLog patchLog = source.getPatchLog();
+        if ( patchId == null && patchLog.isPruned(version) )
+            throw new DeltaPatchesPrunedException("Patch removed from the log: version="+version);
+        if ( listeners.stream().anyMatch(DeltaLinkListener::fetchesPatches) ) {
+            RDFPatch patch = ( patchId != null ) ? fetch(dsRef, patchId) : fetch(dsRef, version);
+            if ( patch == null )
+                return false;
+            if ( DeltaConst.contentTypePatchBinary.equals(patchLog.storedContentType()) )
+                RDFPatchOps.writeBinary(out, patch);
+            else
+                RDFPatchOps.write(out, patch);
+            return true;
+        }
+        Id id = ( patchId != null ) ? patchId : patchLog.find(version);
+        if ( id == null )
+            return false;
+        devlog(LOG, "fetchBytes: Dest=%s, Patch=%s", source, id);
+        long t1 = System.nanoTime();
+        boolean found = patchLog.fetchBytes(id, out);
+        long t2 = System.nanoTime();
+        event(listener->listener.fetchTime(dsRef, t2 - t1));
+        return found;
+    }
+
+    /** Retrieve patches by version range. The stream is lazy. */
+    @Override
+    public Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        return fetchRange(dsRef, start, finish, false);
+    }
+
+    /**
+     * Retrieve patches by version range, each patch the net effect of up to
+     * {@link DeltaConst#SQUASH_PATCHES} patches of the log. The stream is lazy.
+     */
+    @Override
+    public Stream<RDFPatch> fetchRangeSquashed(Id dsRef, Version start, Version finish) {
+        return fetchRange(dsRef, start, finish, true);
+    }
+
+    private Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish, boolean squashed) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return Stream.empty();
+        PatchLog patchLog = source.getPatchLog();
+        Version earliest = patchLog.getEarliestVersion();
+        Version latest = patchLog.getLatestVersion();
+        if ( patchLog.isPruned(start.isValid() ? start : Version.FIRST) )
+            throw new DeltaPatchesPrunedException("Patches removed from the log: range starts at "+start+", log starts at "+earliest);
+        if ( ! Version.isValid(latest) || start.isAfter(latest) || finish.isBefore(earliest) )
+            return Stream.empty();
+        devlog(LOG, "fetchRange: Dest=%s, [%s, %s]", source, start, finish);
+        Stream<RDFPatch> patches = squashed ? patchLog.rangeSquashed(start, finish, DeltaConst.SQUASH_PATCHES) : patchLog.range(start, finish);
+        // The stream is lazy: each patch is read (and squashed) as it is taken from the stream.
+        Iterator<RDFPatch> timed = new TimedIterator(dsRef, patches.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(timed, Spliterator.ORDERED|Spliterator.NONNULL), false)
+            .onClose(patches::close);
+    }
+
+    /** Record the time to get each patch from the log, and the patch, with the listeners. */
+    private class TimedIterator implements Iterator<RDFPatch> {
+        private final Id dsRef;
+        private final Iterator<RDFPatch> iter;
+        // Time in hasNext() for the next patch.
+        private long nanos = 0;
+
+        TimedIterator(Id dsRef, Iterator<RDFPatch> iter) {
+            this.dsRef = dsRef;
+            this.iter = iter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long t1 = System.nanoTime();
+            boolean b = iter.hasNext();
+            nanos += System.nanoTime() - t1;
+            return b;
+        }
+
+        @Override
+        public RDFPatch next() {
+            long t1 = System.nanoTime();
+            RDFPatch patch = iter.next();
+            long time = nanos + System.nanoTime() - t1;
+            nanos = 0;
+            event(listener->listener.fetchTime(dsRef, time));
+            event(listener->listener.fetchById(dsRef, Id.fromNode(patch.getId()), patch));
+            return patch;
+        }
+    }
+
+    /** Wait for a change to the patch log; appends through this link wake the waiting thread. */
+    @Override
+    public PatchLogInfo awaitChange(Id dsRef, Version after, long timeoutMillis) {
+        checkLink();
+        return notifier.await(dsRef, after, timeoutMillis, ()->currentInfo(dsRef));
+    }
+
+    /**
+     * As {@link #awaitChange}, without a thread waiting. The {@link CompletableFuture} is
+     * completed with the details of the log, or null if there is no such log, when the
+     * log has a version later than {@code after} or {@code timeoutMillis} has passed.
+     * Actions dependent on the result should not block.
+     */
+    public CompletableFuture<PatchLogInfo> awaitChangeAsync(Id dsRef, Version after, long timeoutMillis) {
+        checkLink();
+        return notifier.awaitAsync(dsRef, after, timeoutMillis, ()->currentInfo(dsRef));
+    }
+
+    private PatchLogInfo currentInfo(Id dsRef) {
+        DataSource source = getDataSourceOrNull(dsRef);
+        return ( source == null ) ? null : source.getPatchLog().getInfo();
+    }
+
     private RDFPatch fetchCommon(Id dsRef, Id patchId, Version version) {
         checkLink();
         DataSource source = getDataSourceOrNull(dsRef);
@@ -307,10 +477,34 @@ public class DeltaLinkLocal implements DeltaLink {
         return patch;
     }
 
+    /** The URL of the latest snapshot file, if any. */
     @Override
     public String initialState(Id dsRef) {
-        // Not implemented.
-        return null;
+        SnapshotManager.Snapshot snapshot = getSnapshot(dsRef);
+        if ( snapshot == null )
+            return null;
+        return snapshot.getPath().toUri().toString();
+    }
+
+    @Override
+    public SnapshotInfo fetchSnapshot(Id dsRef, StreamRDF dest) {
+        SnapshotManager.Snapshot snapshot = getSnapshot(dsRef);
+        if ( snapshot == null )
+            return null;
+        snapshot.parse(dest);
+        return snapshot.getInfo();
+    }
+
+    /** The latest snapshot of the dataset of a patch log, or null. */
+    public SnapshotManager.Snapshot getSnapshot(Id dsRef) {
+        checkLink();
+        SnapshotManager snapshots = localServer.getSnapshotManager();
+        if ( snapshots == null )
+            return null;
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return null;
+        return snapshots.getLatest(dsRef);
     }
 
     private <X> void event(Consumer<DeltaLinkListener> action) {
@@ -334,7 +528,24 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSource(datasourceId);
         if ( source == null )
             return null;
+        long t1 = System.nanoTime();
         Id session = source.getPatchLog().acquireLock();
+        long t2 = System.nanoTime();
+        event(listener->listener.lockAcquired(datasourceId, session, t2 - t1));
+        return session;
+    }
+
+    @Override
+    public Id acquireLock(Id datasourceId, long timeoutMillis) {
+        Objects.requireNonNull(datasourceId);
+        checkLink();
+        DataSource source = getDataSource(datasourceId);
+        if ( source == null )
+            return null;
+        long t1 = System.nanoTime();
+        Id session = source.getPatchLog().acquireLock(timeoutMillis);
+        long t2 = System.nanoTime();
+        event(listener->listener.lockAcquired(datasourceId, session, t2 - t1));
         return session;
     }
 
@@ -350,13 +561,30 @@ public class DeltaLinkLocal implements DeltaLink {
         return status;
     }
 
-//    @Override
-//    public Set<Id> refreshLocks(Set<Id> lockSet) {
-//        //Need Id -> datasource.
-//        // TEMP
-//        LOG.warn("refreshLocks - implementation required");
-//        return Collections.emptySet();
-//    }
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The locks are refreshed by one operation for each patch store.
+     */
+    @Override
+    public Set<Id> refreshLocks(Map<Id, Id> locks) {
+        Objects.requireNonNull(locks);
+        checkLink();
+        Set<Id> failed = new HashSet<>();
+        Map<PatchStore, Map<PatchLog, Id>> byStore = new LinkedHashMap<>();
+        locks.forEach((datasourceId, session)->{
+            DataSource source = getDataSourceOrNull(datasourceId);
+            if ( source == null ) {
+                failed.add(datasourceId);
+                return;
+            }
+            PatchLog patchLog = source.getPatchLog();
+            byStore.computeIfAbsent(patchLog.getPatchStore(), x->new LinkedHashMap<>()).put(patchLog, session);
+        });
+        byStore.forEach((patchStore, storeLocks)->
+            patchStore.refreshLocks(storeLocks).forEach(patchLog->failed.add(patchLog.getLogId())));
+        return failed;
+    }
 
     @Override
     public LockState readLock(Id datasourceId) {
@@ -372,7 +600,12 @@ public class DeltaLinkLocal implements DeltaLink {
         Objects.requireNonNull(oldSession);
         checkLink();
         DataSource source = getDataSource(datasourceId);
-        return source.getPatchLog().grabLock(oldSession);
+        Id session = source.getPatchLog().grabLock(oldSession);
+        if ( session != null ) {
+            event(listener->listener.lockReleased(datasourceId, oldSession));
+            event(listener->listener.lockAcquired(datasourceId, session, 0));
+        }
+        return session;
     }
 
     @Override
@@ -385,5 +618,6 @@ public class DeltaLinkLocal implements DeltaLink {
             return;
         PatchLog log = source.getPatchLog();
         log.releaseLock(session);
+        event(listener->listener.lockReleased(datasourceId, session));
     }
 }
@@ -80,6 +80,11 @@ public class LocalServer {
     // for example, if a choice when created has been made.
     private final PatchStore serverPatchStore;
 
+    // Dataset snapshots; null if not configured.
+    private final SnapshotManager snapshotManager;
+    // Patch log retention; null if not configured.
+    private final RetentionManager retentionManager;
+
     /** Create a {@code LocalServer} based on a configuration. */
     public static LocalServer create(LocalServerConfig conf) {
         Objects.requireNonNull(conf, "Null for configuation");
@@ -130,6 +135,7 @@ public class LocalServer {
 
     /** Make a LocalServer; this includes initializing the patch store */
     private static LocalServer newLocalServer(LocalServerConfig config, PatchStore patchStore, DataSourceRegistry dataSourceRegistry) {
+        PatchCache.get().setMaxBytes(config.getPatchCacheSize());
         initializePatchStore(patchStore, dataSourceRegistry, config);
         LocalServer lServer = new LocalServer(config, patchStore, dataSourceRegistry);
         servers.add(lServer);
@@ -155,6 +161,8 @@ public class LocalServer {
         this.serverConfig = config;
         this.dataSourceRegistry = dataSourceRegistry;
         this.serverPatchStore = patchStore;
+        this.snapshotManager = SnapshotManager.create(config);
+        this.retentionManager = RetentionManager.create(config, snapshotManager, this::listDataSources);
         // For multiple local servers in one process.
         this.label = "ls-"+instancecounter.incrementAndGet();
     }
@@ -183,6 +191,8 @@ public class LocalServer {
     public LocalServer start() {
         serverPatchStore.serverStarts();
         active.set(true);
+        if ( retentionManager != null )
+            retentionManager.start();
         return this;
     }
 
@@ -198,6 +208,10 @@ public class LocalServer {
     }
 
     private void shutdown$() {
+        if ( snapshotManager != null )
+            snapshotManager.shutdown();
+        if ( retentionManager != null )
+            retentionManager.shutdown();
         dataSourceRegistry.clear();
         getPatchStore().shutdown();
     }
@@ -233,6 +247,16 @@ public class LocalServer {
         serverPatchStore.sync();
     }
 
+    /** The dataset snapshots of this server, or null if snapshots are not configured. */
+    public SnapshotManager getSnapshotManager() {
+        return snapshotManager;
+    }
+
+    /** The patch log retention policy of this server, or null if retention is not configured. */
+    public RetentionManager getRetentionManager() {
+        return retentionManager;
+    }
+
     public PatchStore getPatchStore() {
         return serverPatchStore;
     }
@@ -25,6 +25,7 @@ import static org.seaborne.delta.DeltaConst.SYSTEM_VERSION ;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 import java.util.Objects ;
 import java.util.Properties;
 
@@ -72,6 +73,244 @@ public class LocalServerConfig {
         return properties.getProperty(key);
     }
 
+    /**
+     * Maximum size, in bytes, of the server-wide patch cache.
+     * Zero means no caching.
+     * Set by property {@link DeltaConst#pDeltaPatchCache}, default {@link DeltaConst#PATCH_CACHE_BYTES}.
+     */
+    public long getPatchCacheSize() {
+        return getLongProperty(DeltaConst.pDeltaPatchCache, DeltaConst.PATCH_CACHE_BYTES);
+    }
+
+    /**
+     * Whether the file patch store appends patches to segment files instead of writing one file per patch.
+     * Set by property {@link DeltaConst#pDeltaFileLayout}, default {@link DeltaConst#FILE_LAYOUT_FILES}.
+     */
+    public boolean isFileSegments() {
+        String x = getProperty(DeltaConst.pDeltaFileLayout);
+        if ( x == null )
+            return false;
+        x = x.trim();
+        if ( x.equalsIgnoreCase(DeltaConst.FILE_LAYOUT_SEGMENTS) )
+            return true;
+        if ( x.equalsIgnoreCase(DeltaConst.FILE_LAYOUT_FILES) )
+            return false;
+        throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaFileLayout+": "+x);
+    }
+
+    /**
+     * Whether the RocksDB patch store keeps all patch logs in one database instead of one database per log.
+     * Set by property {@link DeltaConst#pDeltaRocksLayout}, default {@link DeltaConst#ROCKS_LAYOUT_LOG}.
+     */
+    public boolean isRocksShared() {
+        String x = getProperty(DeltaConst.pDeltaRocksLayout);
+        if ( x == null )
+            return false;
+        x = x.trim();
+        if ( x.equalsIgnoreCase(DeltaConst.ROCKS_LAYOUT_SHARED) )
+            return true;
+        if ( x.equalsIgnoreCase(DeltaConst.ROCKS_LAYOUT_LOG) )
+            return false;
+        throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaRocksLayout+": "+x);
+    }
+
+    /**
+     * Size, in bytes, of the block cache shared by the RocksDB databases of the patch store.
+     * Zero means each column family has the RocksDB default cache.
+     * Set by property {@link DeltaConst#pDeltaRocksCacheBytes}, default {@link DeltaConst#ROCKS_CACHE_BYTES}.
+     */
+    public long getRocksCacheBytes() {
+        return getLongProperty(DeltaConst.pDeltaRocksCacheBytes, DeltaConst.ROCKS_CACHE_BYTES);
+    }
+
+    /**
+     * Limit, in bytes, on the memtables of all the RocksDB databases of the patch store,
+     * charged to the block cache. Zero means no limit.
+     * Set by property {@link DeltaConst#pDeltaRocksWriteBufferBytes}, default {@link DeltaConst#ROCKS_WRITE_BUFFER_BYTES}.
+     */
+    public long getRocksWriteBufferBytes() {
+        return getLongProperty(DeltaConst.pDeltaRocksWriteBufferBytes, DeltaConst.ROCKS_WRITE_BUFFER_BYTES);
+    }
+
+    /**
+     * Compression of patches in the RocksDB patch store: one of "none", "snappy", "lz4" or "zstd".
+     * Set by property {@link DeltaConst#pDeltaRocksCompression}, default {@link DeltaConst#ROCKS_COMPRESSION}.
+     */
+    public String getRocksCompression() {
+        String x = getProperty(DeltaConst.pDeltaRocksCompression);
+        if ( x == null )
+            return DeltaConst.ROCKS_COMPRESSION;
+        x = x.trim().toLowerCase(Locale.ROOT);
+        switch (x) {
+            case "none": case "snappy": case "lz4": case "zstd":
+                return x;
+            default:
+                throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaRocksCompression+": "+x);
+        }
+    }
+
+    /**
+     * Bits per key of the bloom filter on patch ids in the RocksDB patch store. Zero means no bloom filter.
+     * Set by property {@link DeltaConst#pDeltaRocksBloomBits}, default {@link DeltaConst#ROCKS_BLOOM_BITS}.
+     */
+    public int getRocksBloomBits() {
+        long x = getLongProperty(DeltaConst.pDeltaRocksBloomBits, DeltaConst.ROCKS_BLOOM_BITS);
+        if ( x > 64 )
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaRocksBloomBits+": "+x);
+        return (int)x;
+    }
+
+    /**
+     * Limit, in bytes per second, on the flush and compaction writes of the RocksDB patch store.
+     * Zero means no limit.
+     * Set by property {@link DeltaConst#pDeltaRocksCompactionRate}, default 0.
+     */
+    public long getRocksCompactionRate() {
+        return getLongProperty(DeltaConst.pDeltaRocksCompactionRate, 0);
+    }
+
+    /**
+     * Whether to collect RocksDB statistics for the metrics of the server.
+     * Set by property {@link DeltaConst#pDeltaRocksStatistics}, default true.
+     */
+    public boolean isRocksStatistics() {
+        String x = getProperty(DeltaConst.pDeltaRocksStatistics);
+        return x == null || ! x.trim().equalsIgnoreCase("false");
+    }
+
+    /**
+     * Whether a write to the RocksDB patch store waits for the write-ahead log to be synced to disk.
+     * Set by property {@link DeltaConst#pDeltaRocksSync}, default false.
+     */
+    public boolean isRocksSync() {
+        String x = getProperty(DeltaConst.pDeltaRocksSync);
+        return x != null && x.trim().equalsIgnoreCase("true");
+    }
+
+    /**
+     * Time, in milliseconds, a group commit to a RocksDB database waits for more writes
+     * before writing. Zero means writes queued while the previous group commit was in
+     * progress are written without waiting.
+     * Set by property {@link DeltaConst#pDeltaRocksCommitWindow}, default 0.
+     */
+    public long getRocksCommitWindow() {
+        return getLongProperty(DeltaConst.pDeltaRocksCommitWindow, 0);
+    }
+
+    /**
+     * Maximum number of writes in one group commit to a RocksDB database.
+     * Set by property {@link DeltaConst#pDeltaRocksCommitBatch}, default {@link DeltaConst#ROCKS_COMMIT_BATCH}.
+     */
+    public int getRocksCommitBatch() {
+        long x = getLongProperty(DeltaConst.pDeltaRocksCommitBatch, DeltaConst.ROCKS_COMMIT_BATCH);
+        if ( x == 0 || x > Integer.MAX_VALUE )
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaRocksCommitBatch+": "+x);
+        return (int)x;
+    }
+
+    /**
+     * Size, in bytes, at which the file patch store starts a new segment file.
+     * Set by property {@link DeltaConst#pDeltaSegmentBytes}, default {@link DeltaConst#SEGMENT_BYTES}.
+     */
+    public long getSegmentBytes() {
+        return getLongProperty(DeltaConst.pDeltaSegmentBytes, DeltaConst.SEGMENT_BYTES);
+    }
+
+    /**
+     * Number of patches at which the file patch store starts a new segment file.
+     * Set by property {@link DeltaConst#pDeltaSegmentPatches}, default {@link DeltaConst#SEGMENT_PATCHES}.
+     */
+    public int getSegmentPatches() {
+        long x = getLongProperty(DeltaConst.pDeltaSegmentPatches, DeltaConst.SEGMENT_PATCHES);
+        if ( x > Integer.MAX_VALUE )
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaSegmentPatches+": "+x);
+        return (int)x;
+    }
+
+    /**
+     * Directory for dataset snapshots, or null if snapshots are not made.
+     * Set by property {@link DeltaConst#pDeltaSnapshotDir}.
+     * @see SnapshotManager
+     */
+    public String getSnapshotDir() {
+        return getProperty(DeltaConst.pDeltaSnapshotDir);
+    }
+
+    /**
+     * Number of patches appended to a log between dataset snapshots. Zero means snapshots
+     * are not made automatically.
+     * Set by property {@link DeltaConst#pDeltaSnapshotInterval}, default {@link DeltaConst#SNAPSHOT_INTERVAL}.
+     */
+    public long getSnapshotInterval() {
+        return getLongProperty(DeltaConst.pDeltaSnapshotInterval, DeltaConst.SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Number of patches to keep in each log; earlier patches are removed. Zero means no limit.
+     * Set by property {@link DeltaConst#pDeltaRetainPatches}.
+     * @see RetentionManager
+     */
+    public long getRetainPatches() {
+        return getLongProperty(DeltaConst.pDeltaRetainPatches, 0);
+    }
+
+    /**
+     * Age, in seconds, of the patches to keep in each log. Zero means no limit.
+     * Set by property {@link DeltaConst#pDeltaRetainAge}.
+     */
+    public long getRetainAge() {
+        return getLongProperty(DeltaConst.pDeltaRetainAge, 0);
+    }
+
+    /**
+     * Total size, in bytes, of the patches to keep in each log. Zero means no limit.
+     * Set by property {@link DeltaConst#pDeltaRetainBytes}.
+     */
+    public long getRetainBytes() {
+        return getLongProperty(DeltaConst.pDeltaRetainBytes, 0);
+    }
+
+    /**
+     * Whether the ZooKeeper patch store writes patch headers in the binary encoding
+     * instead of JSON. Both are read.
+     * Set by property {@link DeltaConst#pDeltaZkHeadersBinary}, default false.
+     */
+    public boolean isZkHeadersBinary() {
+        String x = getProperty(DeltaConst.pDeltaZkHeadersBinary);
+        return x != null && x.trim().equalsIgnoreCase("true");
+    }
+
+    /**
+     * Whether the patches included in the latest dataset snapshot of a log are removed.
+     * Set by property {@link DeltaConst#pDeltaRetainSnapshot}, default false.
+     */
+    public boolean isRetainSnapshot() {
+        String x = getProperty(DeltaConst.pDeltaRetainSnapshot);
+        return x != null && x.trim().equalsIgnoreCase("true");
+    }
+
+    /**
+     * Time, in seconds, between applying the retention policy to the patch logs.
+     * Set by property {@link DeltaConst#pDeltaRetainInterval}, default {@link DeltaConst#RETAIN_INTERVAL}.
+     */
+    public long getRetainInterval() {
+        return getLongProperty(DeltaConst.pDeltaRetainInterval, DeltaConst.RETAIN_INTERVAL);
+    }
+
+    private long getLongProperty(String key, long dftValue) {
+        String x = getProperty(key);
+        if ( x == null )
+            return dftValue;
+        try {
+            long v = Long.parseLong(x.trim());
+            if ( v < 0 )
+                throw new DeltaConfigException("Negative value for "+key+": "+x);
+            return v;
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+key+": "+x);
+        }
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -138,6 +377,66 @@ public class LocalServerConfig {
             return this;
         }
 
+        /** Set the maximum size, in bytes, of the server-wide patch cache. Zero disables the cache. */
+        public Builder setPatchCacheSize(long bytes) {
+            if ( bytes < 0 )
+                throw new DeltaConfigException("Negative patch cache size: "+bytes);
+            return setProperty(DeltaConst.pDeltaPatchCache, Long.toString(bytes));
+        }
+
+        /** Make the RocksDB patch store keep all patch logs in one database. */
+        public Builder setRocksShared(boolean shared) {
+            return setProperty(DeltaConst.pDeltaRocksLayout, shared ? DeltaConst.ROCKS_LAYOUT_SHARED : DeltaConst.ROCKS_LAYOUT_LOG);
+        }
+
+        /**
+         * Set the size, in bytes, of the block cache shared by the RocksDB databases of the
+         * patch store and the limit, in bytes, on their memtables. Zero means the RocksDB defaults.
+         */
+        public Builder setRocksMemory(long cacheBytes, long writeBufferBytes) {
+            if ( cacheBytes < 0 || writeBufferBytes < 0 )
+                throw new DeltaConfigException("Negative RocksDB memory size: "+cacheBytes+", "+writeBufferBytes);
+            setProperty(DeltaConst.pDeltaRocksCacheBytes, Long.toString(cacheBytes));
+            return setProperty(DeltaConst.pDeltaRocksWriteBufferBytes, Long.toString(writeBufferBytes));
+        }
+
+        /**
+         * Make the file patch store append patches to segment files, starting a new segment
+         * file after {@code maxBytes} bytes or {@code maxPatches} patches. Zero means no limit.
+         */
+        public Builder setFileSegments(long maxBytes, int maxPatches) {
+            if ( maxBytes < 0 || maxPatches < 0 )
+                throw new DeltaConfigException("Negative segment size: "+maxBytes+", "+maxPatches);
+            setProperty(DeltaConst.pDeltaFileLayout, DeltaConst.FILE_LAYOUT_SEGMENTS);
+            setProperty(DeltaConst.pDeltaSegmentBytes, Long.toString(maxBytes));
+            return setProperty(DeltaConst.pDeltaSegmentPatches, Integer.toString(maxPatches));
+        }
+
+        /**
+         * Make dataset snapshots in {@code directory} every {@code interval} patches.
+         * Zero means snapshots are not made automatically.
+         */
+        public Builder setSnapshots(String directory, long interval) {
+            Objects.requireNonNull(directory, "Snapshot directory");
+            if ( interval < 0 )
+                throw new DeltaConfigException("Negative snapshot interval: "+interval);
+            setProperty(DeltaConst.pDeltaSnapshotDir, directory);
+            return setProperty(DeltaConst.pDeltaSnapshotInterval, Long.toString(interval));
+        }
+
+        /**
+         * Keep at most {@code maxPatches} patches, patches at most {@code maxAgeSeconds}
+         * old, and at most {@code maxBytes} bytes of patches in each log. Zero means no
+         * limit. The latest patch of a log is always kept.
+         */
+        public Builder setRetention(long maxPatches, long maxAgeSeconds, long maxBytes) {
+            if ( maxPatches < 0 || maxAgeSeconds < 0 || maxBytes < 0 )
+                throw new DeltaConfigException("Negative retention limit: "+maxPatches+", "+maxAgeSeconds+", "+maxBytes);
+            setProperty(DeltaConst.pDeltaRetainPatches, Long.toString(maxPatches));
+            setProperty(DeltaConst.pDeltaRetainAge, Long.toString(maxAgeSeconds));
+            return setProperty(DeltaConst.pDeltaRetainBytes, Long.toString(maxBytes));
+        }
+
         public Builder jettyConfigFile(String jettyConfigFile) {
             this.jettyConfigFile  = jettyConfigFile;
             return this;
@@ -17,36 +17,95 @@
 
 package org.seaborne.delta.server.local;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.graph.Node;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.Id;
 import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Server-wide cache of patches */
+/**
+ * Server-wide cache of patches.
+ * <p>
+ * The cache is bounded by the total size of the patches held, measured as the size of
+ * each patch as read from patch storage or, if that is not known, of its binary (Thrift)
+ * serialization, and evicts the least recently used
+ * patch when over the limit. Patches are immutable and patch ids are unique so one
+ * cache can be shared by all patch logs.
+ * <p>
+ * A maximum size of zero disables the cache.
+ */
 public class PatchCache {
     private static Logger  LOG     = LoggerFactory.getLogger(PatchCache.class);
 
-//    private Cache<Node, RDFPatch> patchCache;
-//    private PatchCache() {
-//        patchCache = CacheFactory.createCache(DPConst.PATCH_CACHE_SIZE);
-//        patchCache.setDropHandler((node,patch)->LOG.info("Cache drop patch: "+Id.fromNode(node)));
-//    }
+    private static class Entry {
+        final RDFPatch patch;
+        final long size;
+        Entry(RDFPatch patch, long size) { this.patch = patch; this.size = size; }
+    }
+
+    // Access order LinkedHashMap - iteration order is least recently used first.
+    private final LinkedHashMap<Node, Entry> patchCache = new LinkedHashMap<>(1000, 0.75f, true);
+    private long maxBytes;
+    private long currentBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static PatchCache singleton = new PatchCache(DeltaConst.PATCH_CACHE_BYTES);
 
-    private ConcurrentHashMap<Node, RDFPatch> patchCache;
-    private PatchCache() {
-        patchCache = new ConcurrentHashMap<>();
-        //patchCache.setDropHandler((node,patch)->LOG.info("Cache drop patch: "+Id.fromNode(node)));
+    /** The server-wide patch cache. */
+    public static PatchCache get() { return singleton ; }
+
+    public PatchCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
     }
-    private static PatchCache singleton = new PatchCache();
 
-    private static  PatchCache get() { return singleton ; }
+    /** Is the cache in use? */
+    public boolean isEnabled() {
+        synchronized(patchCache) {
+            return maxBytes > 0;
+        }
+    }
+
+    /** Set the maximum size, in bytes, of the cache. Zero disables the cache. */
+    public void setMaxBytes(long bytes) {
+        synchronized(patchCache) {
+            if ( bytes == maxBytes )
+                return;
+            FmtLog.debug(LOG, "Patch cache size: %,d bytes", bytes);
+            maxBytes = Math.max(0, bytes);
+            trim();
+        }
+    }
+
+    public long getMaxBytes() {
+        synchronized(patchCache) {
+            return maxBytes;
+        }
+    }
 
     public RDFPatch get(Id id) {
-        //return patchCache.getIfPresent(id.asNode());
-        return patchCache.get(id.asNode());
+        Entry e;
+        synchronized(patchCache) {
+            e = patchCache.get(id.asNode());
+        }
+        if ( e == null ) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return e.patch;
     }
 
     public void put(Id id, RDFPatch patch) {
@@ -54,6 +113,118 @@ public class PatchCache {
     }
 
     public void put(Node node, RDFPatch patch) {
-        patchCache.put(node, patch);
+        if ( ! isEnabled() )
+            return;
+        // Calculate the size outside the lock.
+        put(node, patch, sizeOf(patch));
+    }
+
+    /**
+     * Put a patch in the cache, giving its size in bytes. The patch should be held in
+     * memory, not read from storage or a temporary file each time it is used.
+     */
+    public void put(Id id, RDFPatch patch, long size) {
+        put(id.asNode(), patch, size);
+    }
+
+    private void put(Node node, RDFPatch patch, long size) {
+        if ( ! isEnabled() )
+            return;
+        synchronized(patchCache) {
+            if ( size > maxBytes ) {
+                // Too big to cache. Don't flush everything else.
+                remove$(node);
+                return;
+            }
+            Entry e = new Entry(patch, size);
+            Entry old = patchCache.put(node, e);
+            if ( old != null )
+                currentBytes -= old.size;
+            currentBytes += size;
+            trim();
+        }
+    }
+
+    /** Remove a patch from the cache. */
+    public void remove(Id id) {
+        synchronized(patchCache) {
+            remove$(id.asNode());
+        }
+    }
+
+    /** Empty the cache. Statistics are not reset. */
+    public void clear() {
+        synchronized(patchCache) {
+            patchCache.clear();
+            currentBytes = 0;
+        }
+    }
+
+    private void remove$(Node node) {
+        Entry e = patchCache.remove(node);
+        if ( e != null )
+            currentBytes -= e.size;
+    }
+
+    // Called inside the lock.
+    private void trim() {
+        Iterator<Map.Entry<Node, Entry>> iter = patchCache.entrySet().iterator();
+        while ( currentBytes > maxBytes && iter.hasNext() ) {
+            Map.Entry<Node, Entry> e = iter.next();
+            iter.remove();
+            currentBytes -= e.getValue().size;
+            evictions.increment();
+        }
+    }
+
+    // -- Statistics
+
+    /** Number of requests that found the patch in the cache. */
+    public long hits()          { return hits.sum(); }
+
+    /** Number of requests that did not find the patch in the cache. */
+    public long misses()        { return misses.sum(); }
+
+    /** Number of patches dropped to keep the cache within its size limit. */
+    public long evictions()     { return evictions.sum(); }
+
+    /** Current total size, in bytes, of the cached patches. */
+    public long bytes() {
+        synchronized(patchCache) {
+            return currentBytes;
+        }
+    }
+
+    /** Number of patches currently in the cache. */
+    public long entries() {
+        synchronized(patchCache) {
+            return patchCache.size();
+        }
+    }
+
+    /** Reset the statistics counters. */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Size of the patch, in bytes. This is the size it was read from if that is known,
+     * otherwise the size when written in binary format.
+     */
+    public static long sizeOf(RDFPatch patch) {
+        if ( patch instanceof RDFPatchSized )
+            return ((RDFPatchSized)patch).size();
+        CountingOutputStream out = new CountingOutputStream();
+        RDFPatchOps.writeBinary(out, patch);
+        return out.count;
+    }
+
+    /** Output stream that discards the bytes, only counting them. */
+    private static class CountingOutputStream extends OutputStream {
+        long count = 0;
+        @Override public void write(int b)                      { count++; }
+        @Override public void write(byte[] b, int off, int len) { count += len; }
     }
 }
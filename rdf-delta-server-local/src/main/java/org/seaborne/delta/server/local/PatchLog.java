@@ -17,12 +17,20 @@
 
 package org.seaborne.delta.server.local;
 
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects ;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.seaborne.delta.*;
 import org.seaborne.patch.PatchHeader ;
 import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
 
 /** A {@code PatchLog} is the sequence of {@link RDFPatch}es for one {@link DataSource}.
  * <p>
@@ -89,12 +97,85 @@ public interface PatchLog {
     /** Get a patch by version (version number may change across restarts). */
     public RDFPatch fetch(Version version) ;
 
+    /**
+     * The content type of the bytes written by {@link #fetchBytes}:
+     * {@link DeltaConst#contentTypePatchText} or {@link DeltaConst#contentTypePatchBinary}.
+     */
+    public default String storedContentType() {
+        return DeltaConst.contentTypePatchText;
+    }
+
+    /**
+     * Copy a patch, as stored, to {@code out} without parsing it. Return false, having
+     * written nothing, if there is no such patch.
+     */
+    public default boolean fetchBytes(Id patchId, OutputStream out) {
+        RDFPatch patch = fetch(patchId);
+        if ( patch == null )
+            return false;
+        RDFPatchOps.write(out, patch);
+        return true;
+    }
+
+    /**
+     * The time, in milliseconds since the epoch, that the patch was stored, or -1 if not
+     * known or there is no such patch.
+     */
+    public default long lastModified(Id patchId) {
+        return -1;
+    }
+
     /** Get patches by range - start/finish are inclusive */
     public Stream<RDFPatch> range(Id start, Id finish) ;
 
     /** Get patches by range - start/finish are inclusive */
     public Stream<RDFPatch> range(Version start, Version finish) ;
 
+    /**
+     * Return one patch with the net effect of the patches for versions {@code start} to
+     * {@code finish} inclusive (see {@link RDFPatchOps#squash}). The patch has the id of
+     * the patch at {@code finish}.
+     */
+    public default RDFPatch squash(Version start, Version finish) {
+        try ( Stream<RDFPatch> patches = range(start, finish) ) {
+            return RDFPatchOps.squash(patches.iterator());
+        }
+    }
+
+    /**
+     * Get patches by range - start/finish are inclusive - where each patch is the net
+     * effect of up to {@code maxPatches} consecutive patches of the log (see
+     * {@link RDFPatchOps#squash}). A squashed patch has a
+     * {@link org.seaborne.patch.RDFPatchConst#SQUASH} header of the number of versions it
+     * covers. The patches are squashed as the stream is consumed; nothing is kept.
+     */
+    public default Stream<RDFPatch> rangeSquashed(Version start, Version finish, int maxPatches) {
+        Stream<RDFPatch> patches = range(start, finish);
+        if ( maxPatches <= 1 )
+            return patches;
+        Iterator<RDFPatch> iter = patches.iterator();
+        Iterator<RDFPatch> squashed = new Iterator<RDFPatch>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public RDFPatch next() {
+                RDFPatch first = iter.next();
+                if ( ! iter.hasNext() )
+                    return first;
+                List<RDFPatch> group = new ArrayList<>();
+                group.add(first);
+                while ( iter.hasNext() && group.size() < maxPatches )
+                    group.add(iter.next());
+                return RDFPatchOps.squash(group.iterator());
+            }
+        };
+        Spliterator<RDFPatch> spliterator = Spliterators.spliteratorUnknownSize(squashed, Spliterator.ORDERED|Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(patches::close);
+    }
+
     /** Get a {@link PatchHeader} by {@code Id}.*/
     public default PatchHeader fetchHeader(Id patchId) {
         RDFPatch p = fetch(patchId) ;
@@ -117,10 +198,29 @@ public interface PatchLog {
         return range(start, finish).filter(Objects::nonNull).map(RDFPatch::header);
     }
 
+    /**
+     * Remove the patches for versions before {@code version} from the log and from
+     * storage, so that {@code version} becomes the earliest version. The latest patch is
+     * never removed. Return the number of patches removed.
+     * <p>
+     * Asking for a removed version is an error ({@link DeltaPatchesPrunedException}); a
+     * copy of the dataset that needs those patches has to start again from a snapshot.
+     */
+    public long truncate(Version version);
+
+    /**
+     * Has the patch for {@code version} been removed from the start of the log by
+     * {@link #truncate}?
+     */
+    public default boolean isPruned(Version version) {
+        Version earliest = getEarliestVersion();
+        return version.isValid() && Version.isValid(earliest) && version.isBefore(earliest);
+    }
+
     /** Translate a version number into its stable patch id. */
     public Id find(Version version);
 
-    /** Translate a patch id to version. */
+    /** Translate a patch id to version. Returns null if the patch is not in the log. */
     public Version find(Id id);
 
     /** Delete - do not use again. */
@@ -132,6 +232,13 @@ public interface PatchLog {
     /** Acquire the PatchLog mutex. */
     public Id acquireLock();
 
+    /**
+     * Acquire the PatchLog mutex, waiting up to {@code timeoutMillis} for it to be free.
+     * Waiting requests get the mutex in the order they started waiting.
+     * Return null if the mutex was not acquired.
+     */
+    public Id acquireLock(long timeoutMillis);
+
     /** Refresh the PatchLog mutex. */
     public boolean refreshLock(Id session);
 
@@ -0,0 +1,223 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.Delta;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogInfo;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.link.DeltaLinkListener;
+import org.seaborne.patch.RDFPatch;
+import org.slf4j.Logger;
+
+/**
+ * Tell requests waiting for a patch log to change that it has changed.
+ * <p>
+ * A waiting request is a {@link CompletableFuture}, not a waiting thread, so a server can
+ * have many requests waiting (e.g. HTTP long-polls from many replicas) without a thread
+ * for each one.
+ * <p>
+ * This is a {@link DeltaLinkListener} so that appends through a {@code DeltaLink}
+ * complete the waiting requests immediately. The log may also change without an event on
+ * this server (for example, another server appending to a shared, replicated log) so a log
+ * with waiting requests is also checked every {@link DeltaConst#AWAIT_POLL_MS} milliseconds.
+ */
+public class PatchLogNotifier implements DeltaLinkListener {
+    private static Logger LOG = Delta.DELTA_LOG;
+
+    // Timeouts, polling and checking logs after a change.
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads());
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, "PatchLogNotifier-"+counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // A request waiting for a change.
+    private static class Waiter {
+        final Version after;
+        final CompletableFuture<PatchLogInfo> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = null;
+        Waiter(Version after) { this.after = after; }
+    }
+
+    // The requests waiting for one log.
+    private static class LogWaiters {
+        final Id dsRef;
+        final Supplier<PatchLogInfo> current;
+        // Protected by synchronized(this).
+        final Set<Waiter> waiters = new HashSet<>();
+        ScheduledFuture<?> poll = null;
+        boolean finished = false;
+        LogWaiters(Id dsRef, Supplier<PatchLogInfo> current) {
+            this.dsRef = dsRef;
+            this.current = current;
+        }
+    }
+
+    private final Map<Id, LogWaiters> logs = new ConcurrentHashMap<>();
+    private final long checkInterval;
+
+    public PatchLogNotifier() {
+        this(DeltaConst.AWAIT_POLL_MS);
+    }
+
+    /*package*/ PatchLogNotifier(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Wait until the log has a version later than {@code after}, or {@code timeoutMillis} has passed.
+     * {@code current} gets the details of the log and returns null if the log does not exist.
+     * Return the last details of the log seen.
+     */
+    public PatchLogInfo await(Id dsRef, Version after, long timeoutMillis, Supplier<PatchLogInfo> current) {
+        CompletableFuture<PatchLogInfo> result = awaitAsync(dsRef, after, timeoutMillis, current);
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            return current.get();
+        } catch (ExecutionException ex) {
+            if ( ex.getCause() instanceof RuntimeException )
+                throw (RuntimeException)ex.getCause();
+            throw new CompletionException(ex.getCause());
+        }
+    }
+
+    /**
+     * Return a {@link CompletableFuture} that is completed, with the details of the log,
+     * when the log has a version later than {@code after} or when {@code timeoutMillis}
+     * has passed. {@code current} gets the details of the log and returns null if the
+     * log does not exist. It is called on the notifier's thread and should be the same
+     * for all requests waiting on a log.
+     * <p>
+     * Actions dependent on the result should not block; they run on a thread shared by
+     * all waiting requests.
+     */
+    public CompletableFuture<PatchLogInfo> awaitAsync(Id dsRef, Version after, long timeoutMillis, Supplier<PatchLogInfo> current) {
+        PatchLogInfo info = current.get();
+        if ( info == null || info.getMaxVersion().isAfter(after) || timeoutMillis <= 0 )
+            return CompletableFuture.completedFuture(info);
+        Waiter waiter = new Waiter(after);
+        LogWaiters logWaiters = add(dsRef, current, waiter);
+        waiter.timeout = scheduler.schedule(()->complete(waiter, current), timeoutMillis, TimeUnit.MILLISECONDS);
+        waiter.result.whenComplete((x, ex)->remove(logWaiters, waiter));
+        // Check for a change between the first check and adding the waiter.
+        scheduler.execute(()->check(logWaiters));
+        return waiter.result;
+    }
+
+    private LogWaiters add(Id dsRef, Supplier<PatchLogInfo> current, Waiter waiter) {
+        for(;;) {
+            LogWaiters logWaiters = logs.computeIfAbsent(dsRef, x->new LogWaiters(dsRef, current));
+            synchronized(logWaiters) {
+                // Lost a race with the last waiter leaving.
+                if ( logWaiters.finished )
+                    continue;
+                logWaiters.waiters.add(waiter);
+                if ( logWaiters.poll == null )
+                    logWaiters.poll = scheduler.scheduleWithFixedDelay(()->check(logWaiters), checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+                return logWaiters;
+            }
+        }
+    }
+
+    private void remove(LogWaiters logWaiters, Waiter waiter) {
+        waiter.timeout.cancel(false);
+        synchronized(logWaiters) {
+            logWaiters.waiters.remove(waiter);
+            if ( ! logWaiters.waiters.isEmpty() )
+                return;
+            logWaiters.poll.cancel(false);
+            logWaiters.finished = true;
+            logs.remove(logWaiters.dsRef, logWaiters);
+        }
+    }
+
+    // Timeout.
+    private static void complete(Waiter waiter, Supplier<PatchLogInfo> current) {
+        try {
+            waiter.result.complete(current.get());
+        } catch (RuntimeException ex) {
+            waiter.result.completeExceptionally(ex);
+        }
+    }
+
+    // Complete the requests for which the log has changed.
+    private static void check(LogWaiters logWaiters) {
+        List<Waiter> waiters;
+        synchronized(logWaiters) {
+            if ( logWaiters.waiters.isEmpty() )
+                return;
+            waiters = new ArrayList<>(logWaiters.waiters);
+        }
+        PatchLogInfo info;
+        try {
+            info = logWaiters.current.get();
+        } catch (RuntimeException ex) {
+            FmtLog.warn(LOG, "Failed to check patch log %s: %s", logWaiters.dsRef, ex.getMessage());
+            waiters.forEach(w->w.result.completeExceptionally(ex));
+            return;
+        }
+        for ( Waiter waiter : waiters ) {
+            if ( info == null || info.getMaxVersion().isAfter(waiter.after) )
+                waiter.result.complete(info);
+        }
+    }
+
+    /** Complete any requests waiting on this log that it has changed. */
+    public void notifyChange(Id dsRef) {
+        LogWaiters logWaiters = logs.get(dsRef);
+        if ( logWaiters == null )
+            return;
+        // Not on the caller's thread: that may be appending to the log.
+        scheduler.execute(()->check(logWaiters));
+    }
+
+    @Override
+    public void append(Id dsRef, Version version, RDFPatch patch) {
+        notifyChange(dsRef);
+    }
+
+    @Override
+    public void removeDataSource(Id dsRef) {
+        notifyChange(dsRef);
+    }
+
+    @Override
+    public boolean fetchesPatches() {
+        return false;
+    }
+}
@@ -17,8 +17,10 @@
 
 package org.seaborne.delta.server.local;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -31,6 +33,8 @@ import org.seaborne.delta.*;
 import org.seaborne.delta.server.local.patchstores.PatchLogBase;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.PatchStorageCached;
+import org.seaborne.delta.server.local.patchstores.mem.PatchStorageMem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -189,6 +193,9 @@ public abstract class PatchStore {
     protected PatchLog newPatchLogFromIndexAndStorage(DataSourceDescription dsd) {
         PatchLogIndex patchLogIndex = newPatchLogIndex(dsd, this, configuration);
         PatchStorage patchStorage = newPatchStorage(dsd, this, configuration);
+        // Patches in memory storage are already held in memory.
+        if ( PatchCache.get().isEnabled() && ! ( patchStorage instanceof PatchStorageMem ) )
+            patchStorage = new PatchStorageCached(patchStorage, PatchCache.get());
         return new PatchLogBase(dsd, patchLogIndex, patchStorage, this);
     }
 
@@ -315,6 +322,22 @@ public abstract class PatchStore {
         return patchLog;
     }
 
+    /**
+     * Refresh the locks of patch logs in this patch store, given as a map from patch log
+     * to lock session. Return the patch logs whose locks were not refreshed.
+     * <p>
+     * Patch stores that can refresh several locks in one operation override this; the
+     * default implementation refreshes each lock in turn.
+     */
+    public Set<PatchLog> refreshLocks(Map<PatchLog, Id> locks) {
+        Set<PatchLog> failed = new HashSet<>();
+        locks.forEach((patchLog, session)->{
+            if ( ! patchLog.refreshLock(session) )
+                failed.add(patchLog);
+        });
+        return failed;
+    }
+
     /**
      * Release ("delete") the {@link PatchLog}.
      * This call removes both the local registration and the persistent state (in the case of a cluster
@@ -0,0 +1,304 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSpooled;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retention policy for patch logs.
+ * <p>
+ * Every {@link LocalServerConfig#getRetainInterval} seconds, the start of each log is
+ * removed with {@link PatchLog#truncate} so that the log keeps:
+ * <ul>
+ * <li>at most {@link LocalServerConfig#getRetainPatches} patches,
+ * <li>only the patches stored within the last {@link LocalServerConfig#getRetainAge} seconds,
+ * <li>at most {@link LocalServerConfig#getRetainBytes} bytes of patches,
+ * <li>only the patches after the latest snapshot if {@link LocalServerConfig#isRetainSnapshot}.
+ * </ul>
+ * The latest patch of a log is always kept. When the server makes snapshots, patches
+ * after the latest snapshot are always kept so that a new copy of the dataset can start
+ * from the snapshot and apply the rest of the log.
+ * <p>
+ * The age of a patch is the time the patch storage records for it
+ * ({@link PatchLog#lastModified}). Age limits are not applied to logs whose storage does
+ * not record a time.
+ * <p>
+ * For the bytes limit, the size of each patch is recorded as it is added to the log
+ * ({@link #appended}). Patches added before the server started, or by another server,
+ * are written out once to find their size.
+ */
+public class RetentionManager {
+    private static Logger LOG = LoggerFactory.getLogger(RetentionManager.class);
+
+    private final long maxPatches;
+    private final long maxAgeMillis;
+    private final long maxBytes;
+    private final boolean toSnapshot;
+    private final long interval;
+    // May be null.
+    private final SnapshotManager snapshotManager;
+    private final Supplier<List<DataSource>> dataSources;
+    private ScheduledExecutorService executor = null;
+    // Sizes of the patches of each log for the bytes limit, by log id.
+    private final Map<Id, LogSizes> logSizes = new ConcurrentHashMap<>();
+
+    /** The sizes of the patches of one log, by version, and their total. */
+    private static class LogSizes {
+        private final NavigableMap<Long, Long> sizes = new TreeMap<>();
+        private long total = 0;
+
+        synchronized void put(long version, long size) {
+            Long old = sizes.put(version, size);
+            total += size - ( old == null ? 0 : old );
+        }
+
+        synchronized Long get(long version) {
+            return sizes.get(version);
+        }
+
+        /** The total size if every version from earliest to latest has a size, else -1. */
+        synchronized long total(long earliest, long latest) {
+            boolean complete = ! sizes.isEmpty() && sizes.firstKey() == earliest && sizes.lastKey() == latest
+                               && sizes.size() == latest - earliest + 1;
+            return complete ? total : -1;
+        }
+
+        /** Forget the patches before {@code version}. */
+        synchronized void removeBefore(long version) {
+            NavigableMap<Long, Long> head = sizes.headMap(version, false);
+            head.values().forEach(x->total -= x);
+            head.clear();
+        }
+    }
+
+    /**
+     * Create a {@code RetentionManager} for the server configuration, or return null if
+     * no retention limits are configured.
+     */
+    public static RetentionManager create(LocalServerConfig config, SnapshotManager snapshotManager, Supplier<List<DataSource>> dataSources) {
+        long maxPatches = config.getRetainPatches();
+        long maxAge = config.getRetainAge();
+        long maxBytes = config.getRetainBytes();
+        boolean toSnapshot = config.isRetainSnapshot();
+        if ( maxPatches <= 0 && maxAge <= 0 && maxBytes <= 0 && ! toSnapshot )
+            return null;
+        if ( toSnapshot && snapshotManager == null )
+            FmtLog.warn(LOG, "%s is set but snapshots are not configured", DeltaConst.pDeltaRetainSnapshot);
+        return new RetentionManager(maxPatches, maxAge*1000, maxBytes, toSnapshot, config.getRetainInterval(), snapshotManager, dataSources);
+    }
+
+    /*package*/ RetentionManager(long maxPatches, long maxAgeMillis, long maxBytes, boolean toSnapshot, long interval,
+                                 SnapshotManager snapshotManager, Supplier<List<DataSource>> dataSources) {
+        this.maxPatches = maxPatches;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxBytes = maxBytes;
+        this.toSnapshot = toSnapshot;
+        this.interval = interval;
+        this.snapshotManager = snapshotManager;
+        this.dataSources = dataSources;
+    }
+
+    /** Start applying the retention policy every {@link LocalServerConfig#getRetainInterval} seconds. */
+    public synchronized void start() {
+        if ( executor != null || interval <= 0 )
+            return;
+        executor = Executors.newSingleThreadScheduledExecutor(r->{
+            Thread thread = new Thread(r, "DeltaRetention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::applyAll, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if ( executor != null )
+            executor.shutdownNow();
+        executor = null;
+    }
+
+    /** Apply the retention policy to all the logs of the server. */
+    public void applyAll() {
+        List<DataSource> sources;
+        try {
+            sources = dataSources.get();
+        } catch (Throwable th) {
+            FmtLog.warn(LOG, th, "Failed to get the data sources");
+            return;
+        }
+        // Forget removed logs.
+        Set<Id> logIds = sources.stream().map(DataSource::getId).collect(Collectors.toSet());
+        logSizes.keySet().retainAll(logIds);
+        for ( DataSource source : sources ) {
+            try {
+                apply(source.getPatchLog());
+            } catch (Throwable th) {
+                FmtLog.warn(LOG, th, "[%s] Failed to apply the retention policy", source.getId());
+            }
+        }
+    }
+
+    /** Apply the retention policy to a log. Return the number of patches removed. */
+    public long apply(PatchLog patchLog) {
+        Version earliest = patchLog.getEarliestVersion();
+        Version target = truncationPoint(patchLog);
+        if ( target == null || ! target.isAfter(earliest) )
+            return 0;
+        long count = patchLog.truncate(target);
+        LogSizes sizes = logSizes.get(patchLog.getLogId());
+        if ( sizes != null )
+            sizes.removeBefore(target.value());
+        return count;
+    }
+
+    /**
+     * Record a patch added to a log for the bytes limit. The size is the size of the
+     * patch as received if it was spooled, otherwise the size of the patch written as text.
+     */
+    public void appended(DataSource source, Version version, RDFPatch patch) {
+        if ( maxBytes <= 0 || ! Version.isValid(version) )
+            return;
+        long size;
+        if ( patch instanceof RDFPatchSpooled )
+            size = ((RDFPatchSpooled)patch).size();
+        else {
+            CountingOutputStream out = new CountingOutputStream();
+            RDFPatchOps.write(out, patch);
+            size = out.count;
+        }
+        logSizes.computeIfAbsent(source.getId(), x->new LogSizes()).put(version.value(), size);
+    }
+
+    /**
+     * The version that becomes the earliest version of the log under the retention
+     * policy, or null if the log is empty.
+     */
+    /*package*/ Version truncationPoint(PatchLog patchLog) {
+        Version earliestVer = patchLog.getEarliestVersion();
+        Version latestVer = patchLog.getLatestVersion();
+        if ( ! Version.isValid(earliestVer) || ! Version.isValid(latestVer) )
+            return null;
+        long earliest = earliestVer.value();
+        long latest = latestVer.value();
+        long keepFrom = earliest;
+
+        if ( maxPatches > 0 )
+            keepFrom = Math.max(keepFrom, latest - maxPatches + 1);
+
+        if ( maxAgeMillis > 0 ) {
+            long cutoff = System.currentTimeMillis() - maxAgeMillis;
+            // Patches are stored in version order; stop at the first patch young enough
+            // to keep or with no time recorded.
+            for ( long v = Math.max(keepFrom, earliest) ; v < latest ; v++ ) {
+                Id id = patchLog.find(Version.create(v));
+                if ( id == null )
+                    continue;
+                long timestamp = patchLog.lastModified(id);
+                if ( timestamp < 0 || timestamp >= cutoff )
+                    break;
+                keepFrom = v+1;
+            }
+        }
+
+        if ( maxBytes > 0 )
+            keepFrom = Math.max(keepFrom, keepFromBytes(patchLog, earliest, latest));
+
+        if ( snapshotManager != null ) {
+            SnapshotManager.Snapshot snapshot = snapshotManager.getLatest(patchLog.getLogId());
+            // Patches after the latest snapshot are needed to bring a copy of the dataset
+            // started from the snapshot up to date.
+            long snapshotVersion = ( snapshot == null ) ? DeltaConst.VERSION_INIT : snapshot.getInfo().version.value();
+            if ( toSnapshot )
+                keepFrom = Math.max(keepFrom, snapshotVersion+1);
+            keepFrom = Math.min(keepFrom, Math.max(earliest, snapshotVersion+1));
+        }
+
+        keepFrom = Math.min(keepFrom, latest);
+        return Version.create(keepFrom);
+    }
+
+    /** The earliest version for which the patches to the latest fit in the bytes limit. */
+    private long keepFromBytes(PatchLog patchLog, long earliest, long latest) {
+        LogSizes log = logSizes.computeIfAbsent(patchLog.getLogId(), x->new LogSizes());
+        log.removeBefore(earliest);
+        // Every size is known: use the running total.
+        long known = log.total(earliest, latest);
+        if ( known >= 0 && known <= maxBytes )
+            return earliest;
+        // Sizes not yet known are read from patch storage without holding the LogSizes
+        // monitor, which appended() needs when a patch is added to the log.
+        long total = 0;
+        for ( long v = latest ; v >= earliest ; v-- ) {
+            Long size = log.get(v);
+            if ( size == null ) {
+                size = fetchSize(patchLog, v);
+                if ( size < 0 )
+                    continue;
+                log.put(v, size);
+            }
+            total += size;
+            if ( total > maxBytes )
+                return v+1;
+        }
+        return earliest;
+    }
+
+    /** The size of the stored patch for a version, or -1 if there is no such patch. */
+    private static long fetchSize(PatchLog patchLog, long version) {
+        Id id = patchLog.find(Version.create(version));
+        if ( id == null )
+            return -1;
+        CountingOutputStream out = new CountingOutputStream();
+        patchLog.fetchBytes(id, out);
+        return out.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.system.Txn;
+import org.seaborne.delta.*;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.changes.RDFChangesApply;
+import org.seaborne.patch.changes.RDFChangesExternalTxn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dataset snapshots for patch logs.
+ * <p>
+ * A snapshot is the dataset that results from applying the patches of a log up to some
+ * version, written as gzip-compressed N-Quads with encoded blank node labels so that
+ * blank nodes keep their labels when the snapshot is read. A new copy of the dataset can start from
+ * the latest snapshot and apply only the later patches instead of replaying the whole log.
+ * <p>
+ * Snapshots are made on a background thread when {@link LocalServerConfig#getSnapshotInterval}
+ * patches have been appended to a log since its last snapshot. A new snapshot is made by
+ * loading the previous snapshot into a scratch in-memory dataset and applying the patches
+ * since then. The latest {@link #KEEP} snapshots of each log are kept.
+ * <p>
+ * Snapshots of a log are in the directory {@code <snapshot dir>/<log id>}:
+ * {@code snapshot-NNNN.nq.gz} is the data for version NNNN and {@code snapshot-NNNN.id}
+ * holds the id of the patch at version NNNN. The id file is written after the data file,
+ * so a snapshot is complete if its id file exists.
+ */
+public class SnapshotManager {
+    private static Logger LOG = LoggerFactory.getLogger(SnapshotManager.class);
+
+    private static final String  PREFIX   = "snapshot-";
+    private static final String  DATA_EXT = ".nq.gz";
+    private static final String  ID_EXT   = ".id";
+    private static final Pattern ID_FILE  = Pattern.compile("^"+PREFIX+"(\\d+)\\"+ID_EXT+"$");
+    private static final int     BUF_SIZE = 128*1024;
+    /** Number of snapshots kept for each log. */
+    public static final int      KEEP     = 2;
+
+    /** A complete snapshot in the snapshot area. */
+    public static class Snapshot {
+        private final SnapshotInfo info;
+        private final Path path;
+
+        private Snapshot(SnapshotInfo info, Path path) {
+            this.info = info;
+            this.path = path;
+        }
+
+        public SnapshotInfo getInfo() {
+            return info;
+        }
+
+        /** The gzip-compressed N-Quads file. */
+        public Path getPath() {
+            return path;
+        }
+
+        /** Send the contents of the snapshot to a {@link StreamRDF}. */
+        public void parse(StreamRDF dest) {
+            try ( InputStream in = open() ) {
+                DeltaOps.parseSnapshot(in, dest);
+            } catch (IOException ex) { throw IOX.exception(ex); }
+        }
+
+        private InputStream open() throws IOException {
+            return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path), BUF_SIZE), BUF_SIZE);
+        }
+
+        @Override
+        public String toString() {
+            return info.toString();
+        }
+    }
+
+    private final Path directory;
+    private final long interval;
+    private final ExecutorService executor;
+    // Logs with a snapshot queued or being made.
+    private final Set<Id> pending = ConcurrentHashMap.newKeySet();
+    // The latest snapshot of each log seen so far.
+    private final Map<Id, Optional<Snapshot>> latest = new ConcurrentHashMap<>();
+
+    /**
+     * Create a {@code SnapshotManager} for the server configuration, or return null if
+     * snapshots are not configured.
+     */
+    public static SnapshotManager create(LocalServerConfig config) {
+        String dir = config.getSnapshotDir();
+        if ( dir == null )
+            return null;
+        return new SnapshotManager(Paths.get(dir), config.getSnapshotInterval());
+    }
+
+    /**
+     * Snapshots in {@code directory}, made every {@code interval} patches.
+     * If {@code interval} is zero, snapshots are only made by calling {@link #makeSnapshot}.
+     */
+    public SnapshotManager(Path directory, long interval) {
+        IOX.ensureDirectory(directory);
+        this.directory = directory;
+        this.interval = interval;
+        this.executor = Executors.newSingleThreadExecutor(r->{
+            Thread thread = new Thread(r, "DeltaSnapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * A patch has been appended to a log. Start making a new snapshot in the background
+     * if there have been enough patches since the last snapshot.
+     */
+    public void appended(DataSource source, Version version) {
+        if ( interval <= 0 || ! Version.isValid(version) )
+            return;
+        Id dsRef = source.getId();
+        Snapshot snapshot = getLatest(dsRef);
+        long last = ( snapshot == null ) ? DeltaConst.VERSION_INIT : snapshot.getInfo().version.value();
+        if ( version.value() - last < interval )
+            return;
+        if ( ! pending.add(dsRef) )
+            return;
+        try {
+            executor.execute(()->{
+                try {
+                    makeSnapshot(source.getPatchLog());
+                } catch (Throwable th) {
+                    FmtLog.warn(LOG, th, "[%s] Failed to make a snapshot", dsRef);
+                } finally {
+                    pending.remove(dsRef);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // Shutting down.
+            pending.remove(dsRef);
+        }
+    }
+
+    /** Return the latest complete snapshot of a log, or null if there is none. */
+    public Snapshot getLatest(Id dsRef) {
+        return latest.computeIfAbsent(dsRef, x->Optional.ofNullable(scan(x))).orElse(null);
+    }
+
+    /**
+     * Make a snapshot of a log at its latest version. Return the snapshot, or null if the
+     * log is empty. If there is already a snapshot at the latest version, return it.
+     */
+    public synchronized Snapshot makeSnapshot(PatchLog patchLog) {
+        Id dsRef = patchLog.getLogId();
+        Version target = patchLog.getLatestVersion();
+        if ( ! Version.isValid(target) || target.value() < DeltaConst.VERSION_FIRST )
+            return null;
+        Snapshot previous = getLatest(dsRef);
+        if ( previous != null && ! target.isAfter(previous.getInfo().version) )
+            return previous;
+        Id targetId = patchLog.find(target);
+        if ( targetId == null )
+            throw new DeltaException("No patch for version "+target+" in "+patchLog.getDescription());
+
+        long startTime = System.currentTimeMillis();
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsg, ()->{
+            Version start = Version.FIRST;
+            if ( previous != null ) {
+                previous.parse(StreamRDFLib.dataset(dsg));
+                start = Version.create(previous.getInfo().version.value()+1);
+            }
+            RDFChanges changes = new RDFChangesExternalTxn(new RDFChangesApply(dsg));
+            try ( Stream<RDFPatch> patches = patchLog.range(start, target) ) {
+                patches.forEach(patch->patch.apply(changes));
+            }
+        });
+
+        Path logDir = logDirectory(dsRef);
+        IOX.ensureDirectory(logDir);
+        String basename = String.format("%s%012d", PREFIX, target.value());
+        Path dataFile = logDir.resolve(basename+DATA_EXT);
+        Path idFile = logDir.resolve(basename+ID_EXT);
+        Path tmpFile = logDir.resolve(basename+DATA_EXT+".tmp");
+        try {
+            try ( OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile), BUF_SIZE), BUF_SIZE) ) {
+                Txn.executeRead(dsg, ()->RDFDataMgr.write(out, dsg, Lang.NQUADS));
+            }
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        IOX.move(tmpFile, dataFile);
+        IOX.safeWrite(idFile, out->out.write(targetId.asString().getBytes(StandardCharsets.UTF_8)));
+
+        Snapshot snapshot = new Snapshot(SnapshotInfo.create(target, targetId), dataFile);
+        latest.put(dsRef, Optional.of(snapshot));
+        FmtLog.info(LOG, "[%s] Snapshot at version %s (%d ms)", dsRef, target, System.currentTimeMillis()-startTime);
+        prune(logDir);
+        return snapshot;
+    }
+
+    /** Stop making snapshots. */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Path logDirectory(Id dsRef) {
+        return directory.resolve(dsRef.asPlainString());
+    }
+
+    /** Find the latest complete snapshot on disk. */
+    private Snapshot scan(Id dsRef) {
+        List<Long> versions = versions(logDirectory(dsRef));
+        for ( int i = versions.size()-1 ; i >= 0 ; i-- ) {
+            Snapshot snapshot = read(dsRef, versions.get(i));
+            if ( snapshot != null )
+                return snapshot;
+        }
+        return null;
+    }
+
+    private Snapshot read(Id dsRef, long version) {
+        Path logDir = logDirectory(dsRef);
+        String basename = String.format("%s%012d", PREFIX, version);
+        Path dataFile = logDir.resolve(basename+DATA_EXT);
+        Path idFile = logDir.resolve(basename+ID_EXT);
+        if ( ! Files.exists(dataFile) || ! Files.exists(idFile) )
+            return null;
+        try {
+            String idStr = new String(IOX.readAll(idFile), StandardCharsets.UTF_8).trim();
+            return new Snapshot(SnapshotInfo.create(Version.create(version), Id.fromString(idStr)), dataFile);
+        } catch (RuntimeException ex) {
+            FmtLog.warn(LOG, "[%s] Bad snapshot id file: %s", dsRef, idFile);
+            return null;
+        }
+    }
+
+    /** Versions of the snapshots with an id file, in increasing order. */
+    private static List<Long> versions(Path logDir) {
+        List<Long> versions = new ArrayList<>();
+        if ( ! Files.isDirectory(logDir) )
+            return versions;
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream(logDir, PREFIX+"*"+ID_EXT) ) {
+            for ( Path p : stream ) {
+                Matcher m = ID_FILE.matcher(p.getFileName().toString());
+                if ( m.matches() )
+                    versions.add(Long.parseLong(m.group(1)));
+            }
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        versions.sort(null);
+        return versions;
+    }
+
+    /** Remove all but the latest {@link #KEEP} snapshots. */
+    private static void prune(Path logDir) {
+        List<Long> versions = versions(logDir);
+        for ( int i = 0 ; i < versions.size()-KEEP ; i++ ) {
+            String basename = String.format("%s%012d", PREFIX, versions.get(i));
+            try {
+                // Id file first so a partly removed snapshot is not used.
+                Files.deleteIfExists(logDir.resolve(basename+ID_EXT));
+                Files.deleteIfExists(logDir.resolve(basename+DATA_EXT));
+            } catch (IOException ex) {
+                FmtLog.warn(LOG, "Failed to remove snapshot %s: %s", logDir.resolve(basename), ex.getMessage());
+            }
+        }
+    }
+}
@@ -24,4 +24,7 @@ public class FileNames {
 
     /** Marker file for "deletes" data sources (they are only hidden) */
     public static final String DISABLED        = "disabled";
+
+    /** Index of the patches (version, id, previous) of a file-based patch log. */
+    public static final String PATCH_INDEX     = "index.dat";
 }
@@ -18,8 +18,11 @@
 
 package org.seaborne.delta.server.local.patchstores;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
+import org.apache.jena.atlas.lib.Pair;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.LogEntry;
@@ -49,6 +52,25 @@ public interface LogIndex {
      */
     public Id versionToId(Version version);
 
+    /**
+     * Map a range of versions, {@code start} to {@code finish} inclusive, to ids, in
+     * version order, returning at most {@code max} entries. Versions with no entry are
+     * skipped.
+     * <p>
+     * Implementations with storage ordered by version should override this to scan the
+     * storage rather than look up each version.
+     */
+    public default List<Pair<Version, Id>> versionToIds(Version start, Version finish, int max) {
+        List<Pair<Version, Id>> rows = new ArrayList<>();
+        for ( long v = start.value() ; v <= finish.value() && rows.size() < max ; v++ ) {
+            Version version = Version.create(v);
+            Id id = versionToId(version);
+            if ( id != null )
+                rows.add(Pair.create(version, id));
+        }
+        return rows;
+    }
+
     /** Return the next version.
      *
      * This must return the same value each time until the call of {@link #save}
@@ -62,6 +84,12 @@ public interface LogIndex {
      */
     public LogEntry getPatchInfo(Id id);
 
+    /** Return the version of a patch, or null if the patch is not in the index. */
+    public default Version idToVersion(Id id) {
+        LogEntry entry = getPatchInfo(id);
+        return ( entry == null ) ? null : entry.getVersion();
+    }
+
     /** Earliest version in the index.
      *
      * When there are no versions, returns null.
@@ -71,4 +99,12 @@ public interface LogIndex {
 
     /** Current latest version in the index. */
     public Version current();
+
+    /**
+     * Remove the entries for versions before {@code version}, which becomes the earliest
+     * version. There is an entry for {@code version}.
+     * <p>
+     * It is called inside the {@link PatchLogIndex} lock.
+     */
+    public void truncate(Version version);
 }
@@ -19,13 +19,15 @@ package org.seaborne.delta.server.local.patchstores;
 
 import static java.lang.String.format;
 
-import java.util.ArrayList;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.apache.jena.atlas.lib.NotImplemented;
+import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.seaborne.delta.*;
 import org.seaborne.delta.server.local.PatchLog;
@@ -48,6 +50,12 @@ public class PatchLogBase implements PatchLog {
 
     private Object lock = new Object();
 
+    /** Number of index entries read at a time by {@link #range(Version, Version)}. */
+    private static final int RangeReadAhead = 100;
+
+    /** Number of versions removed from the start of the log at a time by {@link #truncate(Version)}. */
+    private static final int TruncateBatch = 1000;
+
     private final DataSourceDescription dsd;
     private final Id logId;
     private final PatchLogIndex logIndex;
@@ -191,30 +199,103 @@ public class PatchLogBase implements PatchLog {
         return fetch(id);
     }
 
+    @Override
+    public String storedContentType() {
+        return patchStorage.storedContentType();
+    }
+
+    @Override
+    public boolean fetchBytes(Id patchId, OutputStream out) {
+        return patchStorage.fetchBytes(patchId, out);
+    }
+
+    @Override
+    public long lastModified(Id patchId) {
+        return patchStorage.lastModified(patchId);
+    }
+
     @Override
     public Stream<RDFPatch> range(Id start, Id finish) {
-        // Assuming start < finish.
-        throw new NotImplemented();
-        //return null;
+        Version vStart = find(start);
+        if ( vStart == null )
+            throw new DeltaException(format("range(%s,%s) : start not in the log", start, finish));
+        Version vFinish = find(finish);
+        if ( vFinish == null )
+            throw new DeltaException(format("range(%s,%s) : finish not in the log", start, finish));
+        return range(vStart, vFinish);
+    }
+
+    // Asking for the patches from "start" onwards when the log no longer has them.
+    private void checkNotPruned(Version start, Version finish) {
+        Version first = start.isValid() ? start : Version.FIRST;
+        if ( isPruned(first) )
+            throw new DeltaPatchesPrunedException(format("range(%s,%s) : log starts at version %s", start, finish, getEarliestVersion()));
     }
 
     @Override
     public Stream<RDFPatch> range(Version start, Version finish) {
-        // Brute force implementation.
+        if ( finish.isAfter(logIndex.getCurrentVersion()) )
+            logIndex.syncVersionInfo();
+        checkNotPruned(start, finish);
         if ( start.isValid() && start.isAfter(logIndex.getCurrentVersion()) )
             throw new DeltaException(format("start out of range: range(%s,%s) but log is %s", start, finish, getInfo()));
         if ( finish.isValid() && finish.isBefore(logIndex.getEarliestVersion()) )
             throw new DeltaException(format("finish out of range: range(%s,%s) but log is %s", start, finish, getInfo()));
         if ( start.isAfter(finish) )
             throw new DeltaException(format("Range start after finish: range(%s,%s)", start, finish));
-        List<RDFPatch> x = new ArrayList<>();
-        // Range is inclusive.
-        for ( long v = start.value() ; v <= finish.value() ; v++ ) {
-            RDFPatch patch = fetch(Version.create(v));
-            if ( patch != null )
-                x.add(patch);
+        // Range is inclusive. Nothing before the earliest version.
+        Version earliest = logIndex.getEarliestVersion();
+        if ( earliest.isValid() && start.isBefore(earliest) )
+            start = earliest;
+        if ( ! start.isValid() )
+            start = Version.FIRST;
+        if ( start.isAfter(finish) )
+            return Stream.empty();
+        // Lazy - patches are fetched as the stream is consumed.
+        Spliterator<RDFPatch> spliterator = new PatchRangeSpliterator(logIndex, this::fetch, start, finish, RangeReadAhead);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    @Override
+    public long truncate(Version version) {
+        // Each batch moves the start of the index under the log lock, then deletes
+        // those patches from storage after the lock is released so appends are not held up.
+        long count = 0;
+        for(;;) {
+            List<Pair<Version, Id>> patches = patchLogLockRtn(()->truncateBatch(version));
+            if ( patches == null )
+                break;
+            if ( patches.isEmpty() )
+                continue;
+            Version batchEnd = Version.create(patches.get(patches.size()-1).getLeft().value()+1);
+            patchStorage.deleteBefore(batchEnd, patches);
+            count += patches.size();
         }
-        return x.stream();
+        if ( count > 0 )
+            FmtLog.info(LOG, "[%s] Truncated: %d patches removed, earliest version %s", dsd.getName(), count, getEarliestVersion());
+        return count;
+    }
+
+    /**
+     * Truncate the index by at most {@link #TruncateBatch} versions towards
+     * {@code version}. Call with the log lock held. Return the (version, id) of the
+     * entries removed from the index, or null when there is nothing more to do.
+     */
+    private List<Pair<Version, Id>> truncateBatch(Version version) {
+        logIndex.syncVersionInfo();
+        Version earliest = logIndex.getEarliestVersion();
+        if ( ! earliest.isValid() || ! version.isAfter(earliest) )
+            return null;
+        // Always keep the latest patch.
+        Version newEarliest = version.isAfter(getLatestVersion()) ? getLatestVersion() : version;
+        if ( ! newEarliest.isAfter(earliest) )
+            return null;
+        if ( newEarliest.value() - earliest.value() > TruncateBatch )
+            newEarliest = Version.create(earliest.value() + TruncateBatch);
+        List<Pair<Version, Id>> patches = logIndex.versionToIds(earliest, Version.create(newEarliest.value()-1), TruncateBatch);
+        // Index first: from now on, requests for these versions are told they have gone.
+        logIndex.truncate(newEarliest);
+        return patches;
     }
 
     @Override
@@ -229,8 +310,9 @@ public class PatchLogBase implements PatchLog {
 
     @Override
     public Version find(Id id) {
-        FmtLog.warn(LOG, "Not implemented (yet). find(Id)");
-        return Version.UNSET;
+        if ( id == null )
+            return null;
+        return logIndex.idToVersion(id);
     }
 
     @Override
@@ -242,6 +324,9 @@ public class PatchLogBase implements PatchLog {
     @Override
     public Id acquireLock()                 { return logIndex.acquireLock(); }
 
+    @Override
+    public Id acquireLock(long timeoutMillis) { return logIndex.acquireLock(timeoutMillis); }
+
     @Override
     public boolean refreshLock(Id session)  { return logIndex.refreshLock(session); }
 
@@ -17,8 +17,11 @@
 
 package org.seaborne.delta.server.local.patchstores;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 
+import org.apache.jena.atlas.lib.Pair;
 import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.LockState;
@@ -74,12 +77,36 @@ public interface PatchLogIndex {
     /** Map version number to the {@link Id} for the patch it refers to. */
     public Id versionToId(Version version);
 
-    /** Map {@link Id} to version for the patch it refers to. */
+    /**
+     * Map a range of versions, {@code start} to {@code finish} inclusive, to ids, in
+     * version order, returning at most {@code max} entries. Versions with no entry are
+     * skipped.
+     */
+    public default List<Pair<Version, Id>> versionToIds(Version start, Version finish, int max) {
+        List<Pair<Version, Id>> rows = new ArrayList<>();
+        for ( long v = start.value() ; v <= finish.value() && rows.size() < max ; v++ ) {
+            Version version = Version.create(v);
+            Id id = versionToId(version);
+            if ( id != null )
+                rows.add(Pair.create(version, id));
+        }
+        return rows;
+    }
+
+    /** Map {@link Id} to version for the patch it refers to. Returns null if the id is not in the log. */
     public Version idToVersion(Id id);
 
     /** Map {@link Id} to information about the patch. */
     public LogEntry getPatchInfo(Id id);
 
+    /**
+     * Remove the entries for versions before {@code version}, which becomes the earliest
+     * version, with its id the earliest id. The current version can not be removed.
+     * <p>
+     * This changes the index only; the caller deletes the patches from storage.
+     */
+    public void truncate(Version version);
+
     /** Make sure the version information is up to date. */
     public void syncVersionInfo();
 
@@ -89,6 +116,13 @@ public interface PatchLogIndex {
      */
     public Id acquireLock();
 
+    /**
+     * Acquire the mutex, waiting up to {@code timeoutMillis} for it to be free, and
+     * return the session id. Waiting requests get the mutex in FIFO order.
+     * Returns null for failure to get the lock.
+     */
+    public Id acquireLock(long timeoutMillis);
+
     /** Refresh the mutex. */
     public boolean refreshLock(Id session);
 
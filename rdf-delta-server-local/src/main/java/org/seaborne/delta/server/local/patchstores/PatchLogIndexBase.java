@@ -20,10 +20,13 @@ package org.seaborne.delta.server.local.patchstores;
 
 import static java.lang.String.format;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+import org.apache.jena.atlas.lib.Pair;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.LockState;
@@ -73,6 +76,11 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
         return logIndex.versionToId(version);
     }
 
+    @Override
+    public List<Pair<Version, Id>> versionToIds(Version start, Version finish, int max) {
+        return logIndex.versionToIds(start, finish, max);
+    }
+
     //    @Override
     //    public  Version nextVersion() {}
 
@@ -82,7 +90,7 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
     public Version idToVersion(Id id) {
         if ( Objects.equals(currentId, id) )
             return currentVersion;
-        return logIndex.getPatchInfo(id).getVersion();
+        return logIndex.idToVersion(id);
     }
 
     @Override
@@ -147,6 +155,24 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
         }
     }
 
+    @Override
+    final public void truncate(Version newEarliest) {
+        Objects.requireNonNull(newEarliest);
+        synchronized(lock) {
+            if ( ! earliestVersion.isValid() || ! newEarliest.isAfter(earliestVersion) )
+                return;
+            if ( newEarliest.isAfter(currentVersion) )
+                throw new DeltaException(
+                    format("truncate: Attempt to truncate to version %s after the current version %s", newEarliest, currentVersion));
+            Id id = logIndex.versionToId(newEarliest);
+            if ( id == null )
+                throw new DeltaException(format("truncate: No entry for version %s", newEarliest));
+            logIndex.truncate(newEarliest);
+            this.earliestVersion = newEarliest;
+            this.earliestId = id;
+        }
+    }
+
     @Override
     final public Version getEarliestVersion() {
         return earliestVersion;
@@ -178,7 +204,8 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
 
     private final Object lockSync = new Object();
 
-    private Semaphore sema = new Semaphore(1);
+    // Fair: threads waiting in acquireLock(timeout) get the lock in FIFO order.
+    private Semaphore sema = new Semaphore(1, true);
     private Id lockToken = null;
     private long refresh = -1;
 
@@ -194,22 +221,42 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
 //            return null;
 //        }
 
-        // No wait
-        synchronized(lockSync) {
-            boolean b = sema.tryAcquire();
+        // No wait. The timed tryAcquire of a fair semaphore does not jump the queue of
+        // waiting requests (the untimed tryAcquire does).
+        return acquireLock$(0);
+    }
+
+    @Override
+    public Id acquireLock(long timeoutMillis) {
+        return acquireLock$(Math.max(0, timeoutMillis));
+    }
+
+    private Id acquireLock$(long timeoutMillis) {
+        try {
+            boolean b = sema.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
             if (! b )
                 return null;
-            Id here = lockToken;
-            if ( here != null )
-                throw new DeltaException("Inconsistent. Got Semaphore but ownership token was present");
-            // May be readers/grabbers
-            Id token = Id.create();
-            refresh = 1;
-            lockToken = token;
-            return token;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        synchronized(lockSync) {
+            return newLockSession();
         }
     }
 
+    // Called holding the semaphore and lockSync.
+    private Id newLockSession() {
+        Id here = lockToken;
+        if ( here != null )
+            throw new DeltaException("Inconsistent. Got Semaphore but ownership token was present");
+        // May be readers/grabbers
+        Id token = Id.create();
+        refresh = 1;
+        lockToken = token;
+        return token;
+    }
+
     @Override
     public boolean refreshLock(Id session) {
         // read once
@@ -240,14 +287,14 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
             if ( here == null )
                 // No lock.
                 return null;
-            if ( here != null ) {
-                // Release if taken.
-                if ( ! here.equals(oldLockSession) )
-                    return null;
-                releaseLock(oldLockSession);
-            }
-            // New lock session.
-            return acquireLock();
+            if ( ! here.equals(oldLockSession) )
+                return null;
+            // New lock session. The semaphore is not released so the lock
+            // is not passed to a waiting request.
+            Id token = Id.create();
+            refresh = 1;
+            lockToken = token;
+            return token;
         }
      }
 
@@ -0,0 +1,90 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.jena.atlas.lib.Pair;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.patch.RDFPatch;
+
+/**
+ * Lazy {@link Spliterator} over the patches for a range of versions of a patch log.
+ * <p>
+ * The index is read in blocks of at most {@code readAhead} entries using
+ * {@link PatchLogIndex#versionToIds}; each patch is fetched from storage only when the
+ * stream consumer asks for it. At most one block of ids is held at any one time so
+ * memory use does not depend on the length of the range.
+ * <p>
+ * Versions with no patch are skipped.
+ */
+/*package*/ class PatchRangeSpliterator extends Spliterators.AbstractSpliterator<RDFPatch> {
+
+    private final PatchLogIndex logIndex;
+    private final Function<Id, RDFPatch> fetcher;
+    private final long finish;
+    private final int readAhead;
+    private final Deque<Id> buffer;
+    private long next;
+    private boolean exhausted = false;
+
+    /*package*/ PatchRangeSpliterator(PatchLogIndex logIndex, Function<Id, RDFPatch> fetcher, Version start, Version finish, int readAhead) {
+        super(Math.max(0, finish.value()-start.value()+1), Spliterator.ORDERED | Spliterator.NONNULL);
+        this.logIndex = logIndex;
+        this.fetcher = fetcher;
+        this.next = start.value();
+        this.finish = finish.value();
+        this.readAhead = Math.max(1, readAhead);
+        this.buffer = new ArrayDeque<>(this.readAhead);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super RDFPatch> action) {
+        for(;;) {
+            if ( buffer.isEmpty() && ! fill() )
+                return false;
+            Id id = buffer.poll();
+            RDFPatch patch = fetcher.apply(id);
+            if ( patch == null )
+                continue;
+            action.accept(patch);
+            return true;
+        }
+    }
+
+    /** Read the next block of the index. Return false if there are no more entries. */
+    private boolean fill() {
+        if ( exhausted || next > finish )
+            return false;
+        List<Pair<Version, Id>> rows = logIndex.versionToIds(Version.create(next), Version.create(finish), readAhead);
+        if ( rows.size() < readAhead )
+            exhausted = true;
+        if ( rows.isEmpty() )
+            return false;
+        rows.forEach(row->buffer.add(row.getRight()));
+        next = rows.get(rows.size()-1).getLeft().value()+1;
+        return true;
+    }
+}
@@ -17,13 +17,22 @@
 
 package org.seaborne.delta.server.local.patchstores;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.stream.Stream;
 
 import org.apache.jena.atlas.lib.ListUtils;
+import org.apache.jena.atlas.lib.Pair;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.IOX;
 import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
 
 /**
  * Interface for the bulk storage of patches.
@@ -44,9 +53,66 @@ public interface PatchStorage {
     /** Get a patch */
     public RDFPatch fetch(Id key);
 
+    /**
+     * The content type of the bytes from {@link #openStream} and {@link #fetchBytes}:
+     * {@link DeltaConst#contentTypePatchText} or {@link DeltaConst#contentTypePatchBinary}.
+     */
+    public default String storedContentType() {
+        return DeltaConst.contentTypePatchText;
+    }
+
+    /**
+     * Open the stored bytes of a patch, in the format given by {@link #storedContentType},
+     * without parsing the patch. Return null if there is no such patch.
+     * <p>
+     * The default implementation writes the patch from {@link #fetch}.
+     */
+    public default InputStream openStream(Id key) {
+        RDFPatch patch = fetch(key);
+        if ( patch == null )
+            return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8*1024);
+        RDFPatchOps.write(out, patch);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    /**
+     * Copy the stored bytes of a patch, in the format given by {@link #storedContentType},
+     * to {@code out}, without parsing the patch. Return false, having written nothing,
+     * if there is no such patch.
+     */
+    public default boolean fetchBytes(Id key, OutputStream out) {
+        InputStream in = openStream(key);
+        if ( in == null )
+            return false;
+        try ( InputStream in2 = in ) {
+            in2.transferTo(out);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        return true;
+    }
+
+    /**
+     * The time, in milliseconds since the epoch, that the patch was stored, or -1 if not
+     * known or there is no such patch. The default implementation returns -1.
+     */
+    public default long lastModified(Id key) {
+        return -1;
+    }
+
     /** Delete a patch */
     public void delete(Id id);
 
+    /**
+     * Delete the patches removed from the start of the log when the log is truncated to
+     * start at {@code version}. {@code patches} are the (version, id) of those patches, in
+     * version order. The log index has already been changed.
+     * <p>
+     * The default implementation calls {@link #delete(Id)} for each patch.
+     */
+    public default void deleteBefore(Version version, List<Pair<Version, Id>> patches) {
+        patches.forEach(p->delete(p.getRight()));
+    }
+
     /** Release all the patches and any other state for this {@code PatchStorage} */
     public default void release() { }
 
@@ -0,0 +1,139 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.lib.Pair;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.PatchCache;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.system.RDFPatchSized;
+
+/**
+ * {@link PatchStorage} that puts a {@link PatchCache} in front of another
+ * {@code PatchStorage}. Newly stored patches go into the cache because clients
+ * catching up are most likely to ask for the recent patches.
+ */
+public class PatchStorageCached implements PatchStorage {
+
+    private final PatchStorage other;
+    private final PatchCache cache;
+
+    public PatchStorageCached(PatchStorage other, PatchCache cache) {
+        this.other = other;
+        this.cache = cache;
+    }
+
+    /** The underlying {@link PatchStorage}. */
+    public PatchStorage getWrapped() {
+        return other;
+    }
+
+    @Override
+    public Stream<Id> find() {
+        return other.find();
+    }
+
+    @Override
+    public void store(Id key, RDFPatch patch) {
+        other.store(key, patch);
+        cacheStored(key, patch);
+    }
+
+    @Override
+    public void store(Version version, Id key, RDFPatch patch) {
+        other.store(version, key, patch);
+        cacheStored(key, patch);
+    }
+
+    // A patch is cached when it is stored only if its size is known. Otherwise, and for
+    // a patch read from a temporary file each time it is used, it is cached, in memory,
+    // when it is first fetched: the storage gives the size it was read from, so the
+    // patch is not written out to find its size.
+    private void cacheStored(Id key, RDFPatch patch) {
+        if ( patch instanceof RDFPatchSized )
+            cache.put(key, ((RDFPatchSized)patch).get(), ((RDFPatchSized)patch).size());
+    }
+
+    @Override
+    public RDFPatch fetch(Id key) {
+        RDFPatch patch = cache.get(key);
+        if ( patch != null )
+            return patch;
+        patch = other.fetch(key);
+        if ( patch == null )
+            return null;
+        if ( patch instanceof RDFPatchSized ) {
+            RDFPatchSized sized = (RDFPatchSized)patch;
+            cache.put(key, sized.get(), sized.size());
+            return sized.get();
+        }
+        cache.put(key, patch);
+        return patch;
+    }
+
+    // The stored bytes come from the underlying storage, not the cache of parsed patches.
+
+    @Override
+    public String storedContentType() {
+        return other.storedContentType();
+    }
+
+    @Override
+    public InputStream openStream(Id key) {
+        return other.openStream(key);
+    }
+
+    @Override
+    public boolean fetchBytes(Id key, OutputStream out) {
+        return other.fetchBytes(key, out);
+    }
+
+    @Override
+    public long lastModified(Id key) {
+        return other.lastModified(key);
+    }
+
+    @Override
+    public void delete(Id id) {
+        cache.remove(id);
+        other.delete(id);
+    }
+
+    @Override
+    public void deleteBefore(Version version, List<Pair<Version, Id>> patches) {
+        patches.forEach(p->cache.remove(p.getRight()));
+        other.deleteBefore(version, patches);
+    }
+
+    @Override
+    public void release() {
+        other.release();
+    }
+
+    @Override
+    public void delete() {
+        find().forEach(cache::remove);
+        other.delete();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.file;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.delta.server.local.LogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only file recording the (version, id, previous) of each patch in a file-based
+ * patch log so that the log index can be rebuilt at startup without reading every patch
+ * file.
+ * <p>
+ * Each record is:
+ * <pre>
+ *   int    length of the body
+ *   body:  long version, short length + bytes of the id, short length + bytes of the previous id (length 0 for none)
+ *   int    CRC32 of the body
+ * </pre>
+ * Records are in version order with no gaps. A partial or corrupt record at the end of the file,
+ * caused by a crash during an append, is removed by {@link #recover}.
+ */
+public class CheckpointIndex {
+    private static Logger LOG = LoggerFactory.getLogger(CheckpointIndex.class);
+
+    // Upper bound on a record body; ids are UUIDs (16 bytes) or short strings.
+    private static final int MAX_RECORD = 64*1024;
+
+    private final Path path;
+    private FileChannel channel;
+    private long lastVersion = Version.INIT.value();
+    // Length of the last record read by readRecord.
+    private int lastRecordLength = 0;
+
+    /** Open the index file, creating it if it does not exist. */
+    public static CheckpointIndex open(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new CheckpointIndex(path, channel);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    private CheckpointIndex(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /** Is the index file empty? */
+    public synchronized boolean isEmpty() {
+        try {
+            return channel == null || channel.size() == 0;
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /**
+     * Read the index, in version order. Any partial or corrupt records at the end of the
+     * file are removed.
+     */
+    public synchronized List<LogEntry> recover() {
+        List<LogEntry> entries = new ArrayList<>();
+        long goodPosition = 0;
+        long expected = -1;
+        try {
+            long size = channel.size();
+            channel.position(0);
+            InputStream in0 = new BufferedInputStream(Channels.newInputStream(channel), 128*1024);
+            DataInputStream in = new DataInputStream(in0);
+            while ( goodPosition < size ) {
+                LogEntry entry = readRecord(in);
+                if ( entry == null )
+                    break;
+                long ver = entry.getVersion().value();
+                if ( expected >= 0 && ver != expected ) {
+                    FmtLog.warn(LOG, "Out of sequence entry in %s: expected version %d, got %d", path, expected, ver);
+                    break;
+                }
+                entries.add(entry);
+                expected = ver+1;
+                goodPosition += lastRecordLength;
+            }
+            if ( goodPosition < size ) {
+                FmtLog.warn(LOG, "Truncating %s from %d to %d bytes", path, size, goodPosition);
+                channel.truncate(goodPosition);
+            }
+            channel.position(goodPosition);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        if ( ! entries.isEmpty() )
+            lastVersion = entries.get(entries.size()-1).getVersion().value();
+        return entries;
+    }
+
+    // Return null for a partial or bad record.
+    private LogEntry readRecord(DataInputStream in) throws IOException {
+        try {
+            int len = in.readInt();
+            if ( len <= 0 || len > MAX_RECORD )
+                return null;
+            byte[] body = new byte[len];
+            in.readFully(body);
+            int crc = in.readInt();
+            if ( crc != crc(body) )
+                return null;
+            ByteBuffer bb = ByteBuffer.wrap(body);
+            long version = bb.getLong();
+            Id id = readId(bb);
+            Id prev = readId(bb);
+            if ( id == null )
+                return null;
+            lastRecordLength = Integer.BYTES+len+Integer.BYTES;
+            return new LogEntry(id, Version.create(version), prev);
+        } catch (EOFException ex) {
+            return null;
+        } catch (RuntimeException ex) {
+            // Bad lengths inside a body that passed the CRC check.
+            return null;
+        }
+    }
+
+    /** Append an entry. The version must follow on from the last entry. */
+    public synchronized void append(Version version, Id id, Id prev) {
+        if ( channel == null )
+            return;
+        if ( lastVersion >= version.value() ) {
+            // Already recorded, e.g. by the recovery of the tail of the log.
+            return;
+        }
+        ByteBuffer record = record(version, id, prev);
+        try {
+            long position = channel.size();
+            while ( record.hasRemaining() )
+                position += channel.write(record, position);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        lastVersion = version.value();
+    }
+
+    /** Append an entry. The version must follow on from the last entry. */
+    public void append(LogEntry entry) {
+        append(entry.getVersion(), entry.getPatchId(), entry.getPrevious());
+    }
+
+    private static ByteBuffer record(Version version, Id id, Id prev) {
+        byte[] idBytes = id.asBytes();
+        byte[] prevBytes = ( prev == null ) ? new byte[0] : prev.asBytes();
+        int bodyLen = bodyLength(idBytes.length, prevBytes.length);
+        ByteBuffer body = ByteBuffer.allocate(bodyLen);
+        body.putLong(version.value());
+        body.putShort((short)idBytes.length).put(idBytes);
+        body.putShort((short)prevBytes.length).put(prevBytes);
+        byte[] bodyBytes = body.array();
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES+bodyLen+Integer.BYTES);
+        record.putInt(bodyLen).put(bodyBytes).putInt(crc(bodyBytes));
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Replace the index with {@code entries}, which are in version order with no gaps.
+     * Used when entries are removed from the start of the log. The new index is written
+     * to a temporary file, then moved into place.
+     */
+    public synchronized void rewrite(List<LogEntry> entries) {
+        if ( channel == null )
+            return;
+        Path tmp = path.resolveSibling(path.getFileName().toString()+".tmp");
+        try {
+            try ( FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE) ) {
+                for ( LogEntry entry : entries ) {
+                    ByteBuffer record = record(entry.getVersion(), entry.getPatchId(), entry.getPrevious());
+                    while ( record.hasRemaining() )
+                        out.write(record);
+                }
+                out.force(true);
+            }
+            channel.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        lastVersion = entries.isEmpty() ? Version.INIT.value() : entries.get(entries.size()-1).getVersion().value();
+    }
+
+    /** Remove all entries. */
+    public synchronized void clear() {
+        if ( channel == null )
+            return;
+        try {
+            channel.truncate(0);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        lastVersion = Version.INIT.value();
+    }
+
+    /**
+     * Stop using the index and remove the file. It will be rebuilt from the patch files on
+     * the next start up. Used when the patch files are changed other than by appending.
+     */
+    public synchronized void discard() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    public synchronized void close() {
+        if ( channel == null )
+            return;
+        try {
+            channel.close();
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        channel = null;
+    }
+
+    private static Id readId(ByteBuffer bb) {
+        int len = bb.getShort() & 0xFFFF;
+        if ( len == 0 )
+            return null;
+        byte[] bytes = new byte[len];
+        bb.get(bytes);
+        return Id.fromBytes(bytes);
+    }
+
+    private static int bodyLength(int idLen, int prevLen) {
+        return Long.BYTES + Short.BYTES + idLen + Short.BYTES + prevLen;
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int)crc.getValue();
+    }
+}
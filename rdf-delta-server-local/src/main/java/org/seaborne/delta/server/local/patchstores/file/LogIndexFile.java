@@ -29,6 +29,7 @@ import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.LogEntry;
 import org.seaborne.delta.server.local.patchstores.LogIndex;
 import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
+import org.seaborne.delta.server.local.patchstores.filestore.SegmentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,8 +39,12 @@ public class LogIndexFile implements LogIndex {
 
     //Use LogIndexMem?
 
-    // For reference.
+    private final Path directory;
+    // For reference. One of fileStore and segments is null.
     private final FileStore fileStore;
+    private final SegmentStore segments;
+    // May be null.
+    private final CheckpointIndex checkpoint;
     private final Map<Version, Id> versionToId;
     private final Map<Id, LogEntry> logEntries;
 
@@ -55,9 +60,29 @@ public class LogIndexFile implements LogIndex {
         return logIndexFile;
     }
 
-    /*package*/ LogIndexFile(FileStore fileStore, Map<Version, Id> versionToId,
+    /**
+     * Create a {@code LogIndexFile} for the patch files in a directory,
+     * using and maintaining a {@link CheckpointIndex} to make startup fast.
+     */
+    public static LogIndexFile create(Path dir, String basename) {
+        return LogIndexFileBuilder.initFromCheckpoint(dir, basename);
+    }
+
+    /**
+     * Create a {@code LogIndexFile} for patches stored in segment files in a directory,
+     * using and maintaining a {@link CheckpointIndex} to make startup fast. Any
+     * patch files in the directory are first moved into the segment files.
+     */
+    public static LogIndexFile createSegments(Path dir, String basename, long maxSegmentBytes, int maxSegmentPatches) {
+        return LogIndexFileBuilder.initFromSegments(dir, basename, maxSegmentBytes, maxSegmentPatches);
+    }
+
+    /*package*/ LogIndexFile(Path directory, FileStore fileStore, SegmentStore segments, CheckpointIndex checkpoint, Map<Version, Id> versionToId,
                              Version latestVersion, Version latestPrevious, Version earliestVersion, Map<Id, LogEntry> logEntries) {
+        this.directory = directory;
         this.fileStore = fileStore;
+        this.segments = segments;
+        this.checkpoint = checkpoint;
         this.versionToId = versionToId;
         this.currentVersion = versionOrDft(latestVersion, Version.INIT);
         this.currentId = versionToId(currentVersion);
@@ -65,22 +90,42 @@ public class LogIndexFile implements LogIndex {
         this.earliestId = versionToId(earliestVersion);
         this.logEntries = logEntries;
 
-        // FileStore is not used again except to be carried around for PatchStorageFile.
+        // FileStore/SegmentStore are not used again except to be carried around for the PatchStorage.
     }
 
     private Version versionOrDft(Version ver, Version verDefault) {
         return ( ver == null ) ? verDefault : ver ;
     }
 
+    /** The {@link FileStore}, or null if the patches are in segment files. */
     public FileStore fileStore() {
         return fileStore;
     }
 
+    /** The {@link SegmentStore}, or null if the patches are one per file. */
+    public SegmentStore segmentStore() {
+        return segments;
+    }
+
     public Path getPath() {
-        return fileStore.getPath();
+        return directory;
+    }
+
+    /** The {@link CheckpointIndex}, or null if there isn't one. */
+    public CheckpointIndex checkpoint() {
+        return checkpoint;
     }
 
-    /*package*/ Version idToVersion(Id id) {
+    /** Release resources. */
+    public void close() {
+        if ( checkpoint != null )
+            checkpoint.close();
+        if ( segments != null )
+            segments.close();
+    }
+
+    @Override
+    public Version idToVersion(Id id) {
         if ( id == null )
             return null;
         LogEntry entry = logEntries.get(id);
@@ -101,7 +146,7 @@ public class LogIndexFile implements LogIndex {
     }
 
     @Override
-    public void save(Version version, Id id, Id previous) {
+    public synchronized void save(Version version, Id id, Id previous) {
         // Does not update FileStore.
         // The update to the PatchStorageFile updates the on-disk recovery state.
         currentId = id;
@@ -140,4 +185,17 @@ public class LogIndexFile implements LogIndex {
     public Version current() {
         return currentVersion;
     }
+
+    @Override
+    public synchronized void truncate(Version version) {
+        logEntries.values().removeIf(e->e.getVersion().isBefore(version));
+        versionToId.keySet().removeIf(v->v.isBefore(version));
+        earliestVersion = version;
+        earliestId = versionToId(version);
+        if ( checkpoint != null ) {
+            List<LogEntry> x = new ArrayList<>(logEntries.values());
+            x.sort((e1, e2)->e1.getVersion().compareTo(e2.getVersion()));
+            checkpoint.rewrite(x);
+        }
+    }
 }
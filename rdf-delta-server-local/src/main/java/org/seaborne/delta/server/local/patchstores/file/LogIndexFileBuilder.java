@@ -18,20 +18,28 @@
 
 package org.seaborne.delta.server.local.patchstores.file;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.seaborne.delta.lib.IOX;
 import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.FileNames;
 import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
+import org.seaborne.delta.server.local.patchstores.filestore.SegmentStore;
 import org.seaborne.patch.PatchHeader;
 import org.seaborne.patch.text.RDFPatchReaderText;
 import org.slf4j.Logger;
@@ -41,11 +49,158 @@ import org.slf4j.LoggerFactory;
 public class LogIndexFileBuilder {
     private static Logger LOG = LoggerFactory.getLogger(LogIndexFile.class);
 
+    /**
+     * Build the {@link LogIndexFile} for the patch files in a directory, using the
+     * {@link CheckpointIndex} in the directory. Only patches written after the last
+     * entry in the checkpoint index are read. If there is no usable checkpoint index, all
+     * the patch files are read and a new checkpoint index written.
+     */
+    /*package*/ static LogIndexFile initFromCheckpoint(Path dir, String basename) {
+        CheckpointIndex checkpoint = CheckpointIndex.open(dir.resolve(FileNames.PATCH_INDEX));
+        if ( ! checkpoint.isEmpty() ) {
+            List<LogEntry> entries = checkpoint.recover();
+            if ( ! entries.isEmpty() && checkStart(dir, basename, entries.get(0)) ) {
+                recoverTail(dir, basename, checkpoint, entries);
+                List<Long> indexes = new ArrayList<>(entries.size());
+                entries.forEach(e->indexes.add(e.getVersion().value()));
+                FileStore fileStore = FileStore.attach(dir, basename, indexes);
+                return fromEntries(dir, fileStore, null, checkpoint, entries);
+            }
+            FmtLog.warn(LOG, "Checkpoint index does not match the patch files - rebuilding: %s", dir);
+        }
+        // No checkpoint (or not usable) - scan the patch files.
+        FileStore fileStore = FileStore.attach(dir, basename);
+        LogIndexFile logIndexFile = initFromFileStore(fileStore, checkpoint);
+        checkpoint.clear();
+        Version earliest = logIndexFile.earliest();
+        Version current = logIndexFile.current();
+        if ( Version.isValid(earliest) && earliest.value() >= Version.FIRST.value() ) {
+            for ( long v = earliest.value() ; v <= current.value() ; v++ ) {
+                Id id = logIndexFile.versionToId(Version.create(v));
+                if ( id == null )
+                    // A gap. The checkpoint index records dense versions only.
+                    break;
+                checkpoint.append(logIndexFile.getPatchInfo(id));
+            }
+        }
+        return logIndexFile;
+    }
+
+    /** Check the first patch file recorded in the checkpoint index still exists. */
+    private static boolean checkStart(Path dir, String basename, LogEntry first) {
+        return Files.exists(FileStore.filename(dir, basename, first.getVersion().value()));
+    }
+
+    /**
+     * Add patch files written after the last entry in the checkpoint index,
+     * for example, if the server stopped after writing the patch file but
+     * before updating the checkpoint index.
+     */
+    private static void recoverTail(Path dir, String basename, CheckpointIndex checkpoint, List<LogEntry> entries) {
+        LogEntry last = entries.get(entries.size()-1);
+        for ( long idx = last.getVersion().value()+1 ; ; idx++ ) {
+            Path path = FileStore.filename(dir, basename, idx);
+            if ( ! Files.exists(path) )
+                break;
+            PatchHeader patchHeader;
+            try ( InputStream in = Files.newInputStream(path) ) {
+                patchHeader = RDFPatchReaderText.readerHeader(in);
+            } catch (IOException ex) { throw IOX.exception(ex); }
+            Id id = ( patchHeader == null ) ? null : Id.fromNode(patchHeader.getId());
+            if ( id == null ) {
+                FmtLog.error(LOG, "Can't read header: idx=%d", idx);
+                break;
+            }
+            Id prev = Id.fromNode(patchHeader.getPrevious());
+            LogEntry entry = new LogEntry(id, Version.create(idx), prev);
+            FmtLog.info(LOG, "Checkpoint index: add %s", entry);
+            checkpoint.append(entry);
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Build the {@link LogIndexFile} for patches in the segment files in a directory. Any
+     * patch files in the directory are moved into the segment files first. The
+     * {@link CheckpointIndex} is used as for patch files; only patches after the last
+     * entry in the checkpoint index are read from the segment files.
+     */
+    /*package*/ static LogIndexFile initFromSegments(Path dir, String basename, long maxSegmentBytes, int maxSegmentPatches) {
+        SegmentStore segments = SegmentStore.open(dir, maxSegmentBytes, maxSegmentPatches);
+        migrate(dir, basename, segments);
+        CheckpointIndex checkpoint = CheckpointIndex.open(dir.resolve(FileNames.PATCH_INDEX));
+        List<LogEntry> entries = checkpoint.isEmpty() ? new ArrayList<>() : checkpoint.recover();
+        if ( ! entries.isEmpty() ) {
+            long first = entries.get(0).getVersion().value();
+            long last = entries.get(entries.size()-1).getVersion().value();
+            // The checkpoint index may start part way through the first segment file
+            // if the start of the log has been truncated.
+            if ( first < segments.getFirstVersion() || last > segments.getLastVersion() ) {
+                FmtLog.warn(LOG, "Checkpoint index does not match the segment files - rebuilding: %s", dir);
+                checkpoint.clear();
+                entries.clear();
+            }
+        }
+        // Patches after the checkpoint index, or all of them if there isn't one.
+        long start = entries.isEmpty() ? 0 : entries.get(entries.size()-1).getVersion().value()+1;
+        segments.forEach(start, (idx, bytes)->{
+            PatchHeader patchHeader = RDFPatchReaderText.readerHeader(new ByteArrayInputStream(bytes));
+            Id id = ( patchHeader == null ) ? null : Id.fromNode(patchHeader.getId());
+            if ( id == null )
+                throw new DeltaException("Can't read header: idx="+idx+" in "+dir);
+            Id prev = Id.fromNode(patchHeader.getPrevious());
+            LogEntry entry = new LogEntry(id, Version.create(idx), prev);
+            checkpoint.append(entry);
+            entries.add(entry);
+        });
+        return fromEntries(dir, null, segments, checkpoint, entries);
+    }
+
+    /**
+     * Move any patch files into the segment files, in version order, then delete the
+     * patch files. This is safe to repeat if interrupted: patches already in the segment
+     * files are not added again.
+     */
+    private static void migrate(Path dir, String basename, SegmentStore segments) {
+        List<Long> indexes = FileStore.scanIndex(dir, basename);
+        if ( indexes.isEmpty() )
+            return;
+        FmtLog.info(LOG, "Moving %d patch files into segment files: %s", indexes.size(), dir);
+        for ( long idx : indexes ) {
+            if ( idx > segments.getLastVersion() )
+                segments.append(idx, IOX.readAll(FileStore.filename(dir, basename, idx)));
+        }
+        segments.sync();
+        try {
+            for ( long idx : indexes )
+                Files.deleteIfExists(FileStore.filename(dir, basename, idx));
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    private static LogIndexFile fromEntries(Path dir, FileStore fileStore, SegmentStore segments, CheckpointIndex checkpoint, List<LogEntry> entries) {
+        Map<Version, Id> versionToId = new ConcurrentHashMap<>();
+        Map<Id, LogEntry> logEntries = new ConcurrentHashMap<>();
+        Version currentPreviousVersion = null;
+        Version currentVersion = null;
+        for ( LogEntry entry : entries ) {
+            versionToId.put(entry.getVersion(), entry.getPatchId());
+            logEntries.put(entry.getPatchId(), entry);
+            currentPreviousVersion = currentVersion;
+            currentVersion = entry.getVersion();
+        }
+        Version earliestVersion = entries.isEmpty() ? null : entries.get(0).getVersion();
+        return new LogIndexFile(dir, fileStore, segments, checkpoint, versionToId, currentVersion, currentPreviousVersion, earliestVersion, logEntries);
+    }
+
     /**
      * Inspect a {@link FileStore} and build the in-memory maps.
      * Return the latest version or null if no patches.
      */
     /*package*/ static LogIndexFile initFromFileStore(FileStore fileStore) {
+        return initFromFileStore(fileStore, null);
+    }
+
+    private static LogIndexFile initFromFileStore(FileStore fileStore, CheckpointIndex checkpoint) {
         Map<Version, Id> versionToId = new ConcurrentHashMap<>();
         Map<Id, LogEntry> logEntries = new ConcurrentHashMap<>();
 
@@ -86,7 +241,9 @@ public class LogIndexFileBuilder {
                 }
 
                 Id prev = Id.fromNode(patchHeader.getPrevious());
-                if ( prev != null ) {
+                // The first patch may have a previous that is not in the log
+                // if the start of the log has been truncated.
+                if ( prev != null && ! first ) {
                     // We process entries in order so we should have seen previous by now.
                     if ( ! trackIdToVersion.containsKey(prev) ) {
                         FmtLog.error(LOG, "Can't find previous: idx=%d: id=%s, prev=%s", idx, id, prev);
@@ -101,6 +258,7 @@ public class LogIndexFileBuilder {
                 }
                 trackIdToVersion.put(id, ver);
                 versionToId.put(ver, id);
+                first = false;
                 if ( earliestVersion == null )
                     earliestVersion = ver;
                 currentPreviousVersion = currentVersion;
@@ -109,6 +267,6 @@ public class LogIndexFileBuilder {
             catch (NoSuchFileException ex) { throw IOX.exception(ex); }
             catch (IOException ex)  { throw IOX.exception(ex); }
         }
-        return new LogIndexFile(fileStore, versionToId, currentVersion, currentPreviousVersion, earliestVersion, logEntries);
+        return new LogIndexFile(fileStore.getPath(), fileStore, null, checkpoint, versionToId, currentVersion, currentPreviousVersion, earliestVersion, logEntries);
     }
 }
@@ -21,8 +21,13 @@ package org.seaborne.delta.server.local.patchstores.file;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -30,6 +35,7 @@ import java.util.function.Function;
 import java.util.stream.Stream;
 
 import org.apache.jena.atlas.lib.InternalErrorException;
+import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.graph.Node;
 import org.seaborne.delta.DeltaNotFoundException;
 import org.seaborne.delta.Id;
@@ -42,6 +48,7 @@ import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
 import org.seaborne.patch.PatchHeader;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSized;
 import org.seaborne.patch.changes.RDFChangesWriter;
 import org.seaborne.patch.text.RDFPatchReaderText;
 import org.seaborne.patch.text.TokenWriter;
@@ -52,10 +59,17 @@ public class PatchStorageFile implements PatchStorage {
 
     private final Function<Id, Version> id2version;
     private final FileStore fileStore;
+    // May be null.
+    private final CheckpointIndex checkpoint;
 
     public PatchStorageFile(FileStore fileStore, Function<Id, Version> id2version) {
+        this(fileStore, null, id2version);
+    }
+
+    public PatchStorageFile(FileStore fileStore, CheckpointIndex checkpoint, Function<Id, Version> id2version) {
         // File-based patch storage is by version number, hence "id2version" required.
         this.fileStore = fileStore;
+        this.checkpoint = checkpoint;
         this.id2version = id2version;
     }
 
@@ -92,6 +106,10 @@ public class PatchStorageFile implements PatchStorage {
         FileEntry file = fileStore.allocateFilename(version.value());
         file.write(action);
         fileStore.completeWrite(file);
+        // After the patch file is in place. On restart, a patch file without an entry
+        // in the checkpoint index is found and added.
+        if ( checkpoint != null )
+            checkpoint.append(version, key, Id.fromNode(patch.getPrevious()));
     }
 
     private Version idToVersion(Id id) {
@@ -101,9 +119,12 @@ public class PatchStorageFile implements PatchStorage {
     @Override
     public RDFPatch fetch(Id id) {
         Version ver = idToVersion(id);
+        if ( ver == null )
+            return null;
         try ( InputStream in = fileStore.open(ver.value()) ) {
             RDFPatch patch = RDFPatchOps.read(in) ;
-            return patch;
+            // The file is open so it has not been deleted.
+            return new RDFPatchSized(patch, Files.size(fileStore.filename(ver.value())));
         }
         catch ( DeltaNotFoundException ex)  // Our internal 404.
         { return null; }
@@ -112,10 +133,65 @@ public class PatchStorageFile implements PatchStorage {
         }
     }
 
+    @Override
+    public InputStream openStream(Id id) {
+        Version ver = idToVersion(id);
+        if ( ver == null )
+            return null;
+        try {
+            return fileStore.open(ver.value());
+        } catch ( DeltaNotFoundException ex) { return null; }
+    }
+
+    @Override
+    public boolean fetchBytes(Id id, OutputStream out) {
+        Version ver = idToVersion(id);
+        if ( ver == null )
+            return false;
+        Path p = fileStore.filename(ver.value());
+        try ( FileChannel channel = FileChannel.open(p, StandardOpenOption.READ) ) {
+            // Copy directly from the file to the output.
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            long size = channel.size();
+            while ( position < size )
+                position += channel.transferTo(position, size-position, target);
+            return true;
+        }
+        catch (NoSuchFileException ex) { return false; }
+        catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    @Override
+    public long lastModified(Id id) {
+        Version ver = idToVersion(id);
+        if ( ver == null )
+            return -1;
+        try {
+            return Files.getLastModifiedTime(fileStore.filename(ver.value())).toMillis();
+        }
+        catch (NoSuchFileException ex) { return -1; }
+        catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    @Override
+    public void deleteBefore(Version version, List<Pair<Version, Id>> patches) {
+        // The log index, and the checkpoint index, have already been changed.
+        patches.forEach(p->fileStore.delete(p.getLeft().value()));
+    }
+
     @Override
     public void delete(Id id) {
         Version ver = idToVersion(id);
         Path p = fileStore.filename(ver.value());
+        // The checkpoint index no longer matches the patch files.
+        // Drop it; it is rebuilt by scanning the patch files on restart.
+        if ( checkpoint != null )
+            checkpoint.discard();
         try {
             Files.delete(p);
         } catch (IOException ex) {
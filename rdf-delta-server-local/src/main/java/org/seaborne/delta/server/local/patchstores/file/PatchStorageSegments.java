@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.server.local.patchstores.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.lib.InternalErrorException;
+import org.apache.jena.atlas.lib.Pair;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.filestore.SegmentStore;
+import org.seaborne.patch.PatchHeader;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSized;
+import org.seaborne.patch.text.RDFPatchReaderText;
+
+/**
+ * {@link PatchStorage} that appends patches, in text format, to the segment files of a
+ * {@link SegmentStore}. Patches can not be deleted individually ({@link #delete(Id)} does
+ * nothing); truncating the log deletes the segment files that only have patches before
+ * the new start of the log.
+ */
+public class PatchStorageSegments implements PatchStorage {
+
+    private final Function<Id, Version> id2version;
+    private final SegmentStore segments;
+    // May be null.
+    private final CheckpointIndex checkpoint;
+
+    public PatchStorageSegments(SegmentStore segments, CheckpointIndex checkpoint, Function<Id, Version> id2version) {
+        this.segments = segments;
+        this.checkpoint = checkpoint;
+        this.id2version = id2version;
+    }
+
+    @Override
+    public Stream<Id> find() {
+        // Reads the segment files to find the ids. For testing.
+        List<Id> ids = new ArrayList<>();
+        segments.forEach(0, (v, bytes)->{
+            PatchHeader patchHeader = RDFPatchReaderText.readerHeader(new ByteArrayInputStream(bytes));
+            ids.add(Id.fromNode(patchHeader.getId()));
+        });
+        return ids.stream();
+    }
+
+    @Override
+    public void store(Id key, RDFPatch patch) {
+        throw new InternalErrorException("Call to PatchStorageSegments.store(id, patch)");
+    }
+
+    @Override
+    public void store(Version version, Id key, RDFPatch patch) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8*1024);
+        RDFPatchOps.write(out, patch);
+        segments.append(version.value(), out.toByteArray());
+        // After the patch is in the segment file. On restart, a patch in the segment
+        // files without an entry in the checkpoint index is found and added.
+        if ( checkpoint != null )
+            checkpoint.append(version, key, Id.fromNode(patch.getPrevious()));
+    }
+
+    @Override
+    public RDFPatch fetch(Id id) {
+        Version ver = id2version.apply(id);
+        if ( ver == null )
+            return null;
+        byte[] bytes = segments.fetch(ver.value());
+        if ( bytes == null )
+            return null;
+        return new RDFPatchSized(RDFPatchOps.read(new ByteArrayInputStream(bytes)), bytes.length);
+    }
+
+    @Override
+    public InputStream openStream(Id id) {
+        Version ver = id2version.apply(id);
+        if ( ver == null )
+            return null;
+        byte[] bytes = segments.fetch(ver.value());
+        if ( bytes == null )
+            return null;
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public boolean fetchBytes(Id id, OutputStream out) {
+        Version ver = id2version.apply(id);
+        if ( ver == null )
+            return false;
+        return segments.transferTo(ver.value(), Channels.newChannel(out));
+    }
+
+    @Override
+    public void deleteBefore(Version version, List<Pair<Version, Id>> patches) {
+        segments.deleteBefore(version.value());
+    }
+
+    @Override
+    public void delete(Id id) {
+        // No-op. Segment files are append-only and a single patch can not be removed.
+        // Patches are removed when the log is truncated: see deleteBefore.
+    }
+
+    @Override
+    public void delete() {
+        // The segment files are removed with the patch log directory.
+    }
+}
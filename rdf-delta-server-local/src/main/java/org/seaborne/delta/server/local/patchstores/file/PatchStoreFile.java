@@ -36,7 +36,7 @@ import org.seaborne.delta.server.local.PatchStoreProvider;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.delta.server.local.patchstores.filestore.FileArea;
-import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
+import org.seaborne.delta.server.local.patchstores.filestore.SegmentStore;
 
 public class PatchStoreFile extends PatchStore {
     /*   Server Root
@@ -51,6 +51,10 @@ public class PatchStoreFile extends PatchStore {
     private static Map<Id, LogIndexFile> logIndexes = new ConcurrentHashMap<>();
 
     private final Path patchLogDirectory;
+    // Set from the server configuration.
+    private boolean useSegments = false;
+    private long maxSegmentBytes = DeltaConst.SEGMENT_BYTES;
+    private int maxSegmentPatches = DeltaConst.SEGMENT_PATCHES;
 
     public PatchStoreFile(String patchLogDirectory, PatchStoreProvider provider) {
         super(provider);
@@ -59,6 +63,7 @@ public class PatchStoreFile extends PatchStore {
     }
 
     public static void resetTracked() {
+        logIndexes.values().forEach(LogIndexFile::close);
         logIndexes.clear();
     }
 
@@ -68,7 +73,9 @@ public class PatchStoreFile extends PatchStore {
 
     @Override
     protected void initialize(LocalServerConfig config) {
-        return;
+        useSegments = config.isFileSegments();
+        maxSegmentBytes = config.getSegmentBytes();
+        maxSegmentPatches = config.getSegmentPatches();
     }
 
     @Override
@@ -83,8 +90,10 @@ public class PatchStoreFile extends PatchStore {
             Path fileStoreDir = patchLogDirectory.resolve(dsd.getName());
             if ( ! Files.exists(fileStoreDir) )
                 FileArea.setupDataSourceByFile(patchLogDirectory, this, dsd);
-            FileStore fileStore = FileStore.attach(fileStoreDir, DeltaConst.FilePatchBasename);
-            return LogIndexFile.create(fileStore);
+            // A log already in segment files stays in segment files.
+            if ( useSegments || SegmentStore.exists(fileStoreDir) )
+                return LogIndexFile.createSegments(fileStoreDir, DeltaConst.FilePatchBasename, maxSegmentBytes, maxSegmentPatches);
+            return LogIndexFile.create(fileStoreDir, DeltaConst.FilePatchBasename);
         });
         // The LogIndexFile will be picked up by newPatchLogIndex, newPatchStorage
         // calls in PatchStoreProviderFile.
@@ -103,14 +112,18 @@ public class PatchStoreFile extends PatchStore {
     protected PatchStorage newPatchStorage(DataSourceDescription dsd, PatchStore patchStore, LocalServerConfig configuration) {
         PatchStoreFile patchStoreFile = (PatchStoreFile)patchStore;
         LogIndexFile logIndexFile = patchStoreFile.getLogIndex(dsd.getId());
-        return new PatchStorageFile(logIndexFile.fileStore(), logIndexFile::idToVersion);
+        if ( logIndexFile.segmentStore() != null )
+            return new PatchStorageSegments(logIndexFile.segmentStore(), logIndexFile.checkpoint(), logIndexFile::idToVersion);
+        return new PatchStorageFile(logIndexFile.fileStore(), logIndexFile.checkpoint(), logIndexFile::idToVersion);
     }
 
     @Override
     protected void delete(PatchLog patchLog) {
         Id id = patchLog.getDescription().getId();
         LogIndexFile logIndexFile = logIndexes.remove(id);
-        logIndexFile.fileStore().release();
+        logIndexFile.close();
+        if ( logIndexFile.fileStore() != null )
+            logIndexFile.fileStore().release();
         Path path = logIndexFile.getPath();
         FileArea.retire(path);
     }
@@ -85,7 +85,11 @@ public class FileArea {
      */
     private static Pair<List<Path>/*enabled*/, List<Path>/*disabled*/> scanDirectory(Path directory) {
         try {
-            List<Path> directoryEntries = ListUtils.toList( Files.list(directory).filter(p->Files.isDirectory(p)).sorted() );
+            // Names starting "." are not data sources (e.g. the shared RocksDB database).
+            List<Path> directoryEntries = ListUtils.toList( Files.list(directory)
+                                                                 .filter(p->Files.isDirectory(p))
+                                                                 .filter(p->!p.getFileName().toString().startsWith("."))
+                                                                 .sorted() );
             List<Path> enabled = directoryEntries.stream()
                 .filter(path -> isEnabled(path))
                 .collect(Collectors.toList());
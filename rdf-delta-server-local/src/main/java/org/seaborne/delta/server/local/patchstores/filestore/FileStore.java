@@ -84,6 +84,13 @@ public class FileStore {
     private final String        basename;
 
     public static FileStore attach(Path dirPath, String basename) {
+        checkAttach(dirPath, basename);
+        Path k = key(dirPath, basename);
+        FileStore fs = areas.computeIfAbsent(k, key->createFileStoreObject(dirPath, basename));
+        return fs;
+    }
+
+    private static void checkAttach(Path dirPath, String basename) {
         Objects.requireNonNull(dirPath, "argument 'dirname' is null");
         Objects.requireNonNull(basename, "argument 'basename' is null");
         if ( basename.equals(tmpBasename) )
@@ -94,8 +101,17 @@ public class FileStore {
             throw new IllegalArgumentException("FileStore.attach: basename does not match the regex "+basenamePattern);
         if ( ! Files.exists(dirPath) || ! Files.isDirectory(dirPath) )
             throw new IllegalArgumentException("FileStore.attach: Path '" + dirPath + "' does not name a directory");
+    }
+
+    /**
+     * Attach to a {@code FileStore} where the indexes of the files are already known,
+     * for example, from a persistent index of the files. The directory is not scanned.
+     * {@code indexes} must be sorted, low to high.
+     */
+    public static FileStore attach(Path dirPath, String basename, List<Long> indexes) {
+        checkAttach(dirPath, basename);
         Path k = key(dirPath, basename);
-        FileStore fs = areas.computeIfAbsent(k, key->createFileStoreObject(dirPath, basename));
+        FileStore fs = areas.computeIfAbsent(k, key->createFileStoreObject(dirPath, basename, new ArrayList<>(indexes)));
         return fs;
     }
 
@@ -104,6 +120,7 @@ public class FileStore {
         // Delete any tmp files left lying around.
         List<String> tmpFiles = scanForTmpFiles(dirPath);
         tmpFiles.forEach(FileOps::delete);
+        deleteFiles(dirPath, tmpBasename);
         // Find existing files.
         List<Long> indexes = scanForIndex(dirPath, basename);
         long min;
@@ -120,7 +137,28 @@ public class FileStore {
         }
         FileStore fs = new FileStore(dirPath, basename, indexes, min, max);
         return fs;
+    }
 
+    /** Create a FileStore object with known indexes, after the checking in "attach". */
+    private static FileStore createFileStoreObject(Path dirPath, String basename, List<Long> indexes) {
+        long min;
+        long max;
+        if ( indexes.isEmpty() ) {
+            min = DeltaConst.VERSION_INIT;
+            max = DeltaConst.VERSION_FIRST - 1;
+        } else {
+            min = indexes.get(0);
+            max = indexes.get(indexes.size()-1);
+        }
+        // Temporary files are only left by an interrupted write of the next file.
+        for ( long idx = max+1 ; ; idx++ ) {
+            Path tmpFn = filename(dirPath, tmpBasename, idx);
+            if ( ! Files.exists(tmpFn) )
+                break;
+            FileOps.delete(tmpFn.toString());
+        }
+        FmtLog.debug(LOG, "FileStore : index [%d,%d] %s (known)", min, max, dirPath);
+        return new FileStore(dirPath, basename, indexes, min, max);
     }
 
     private static Path key(Path path, String basename) {
@@ -136,7 +174,6 @@ public class FileStore {
         // Version management.
         this.indexes = indexes;
         this.counter = new AtomicLong(maxIndex);
-        deleteFiles(directory, tmpBasename);
     }
 
     /**
@@ -278,6 +315,21 @@ public class FileStore {
             minIndex = entry.version;
     }
 
+    /**
+     * Delete the file for {@code idx}, if it exists. Files are deleted from the start of
+     * the file store, in index order.
+     */
+    public void delete(long idx) {
+        synchronized(this) {
+            indexes.remove(Long.valueOf(idx));
+            if ( idx == minIndex )
+                minIndex = idx+1;
+        }
+        try {
+            Files.deleteIfExists(filename(idx));
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
     /** Release this {@code FileStore} - do not use again. */
     public void release() {
         // Overlapping outstanding operations can continue.
@@ -329,7 +381,11 @@ public class FileStore {
         return filename(directory, basename, idx);
     }
 
-    private static Path filename(Path dir, String basename, long idx) {
+    /**
+     * Return an absolute filename for the file with index {@code idx} in a {@code FileStore}
+     * for the directory and basename. There is no guarantee that the file exists.
+     */
+    public static Path filename(Path dir, String basename, long idx) {
         String fn = basename(basename, idx);
         return dir.resolve(fn);
     }
@@ -352,6 +408,14 @@ public class FileStore {
        return scanForIndex(directory, basename);
     }
 
+    /**
+     * Find the indexes of files with the basename in a directory, without attaching a
+     * {@code FileStore}. Return sorted, low to high.
+     */
+    public static List<Long> scanIndex(Path directory, String basename) {
+        return scanForIndex(directory, basename);
+    }
+
     /** Find the indexes of files in this FileStore. Return sorted, low to high. */
     private static List<Long> scanForIndex(Path directory, String namebase) {
         List<Long> indexes = new ArrayList<>();
@@ -0,0 +1,527 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.filestore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.lib.IOX;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage of a sequence of versioned records (patches) in a small number of large,
+ * append-only, segment files, rather than one file per record as in {@link FileStore}.
+ * <p>
+ * A segment file is named "segment-NNNNNNNNNNNN.log" where the number is the
+ * first version in the segment. Each record is:
+ * <pre>
+ *   int    length of the data
+ *   long   version
+ *   bytes  data
+ *   int    CRC32 of the version and data
+ * </pre>
+ * When the current segment reaches the maximum size in bytes or number of records, it is
+ * sealed and a new segment started. A sealed segment has a sparse index file,
+ * "segment-NNNNNNNNNNNN.idx", of (version, offset) for every {@link #SPARSE}-th record, so
+ * opening the store only reads the last segment. Reads are positional, and do not
+ * interfere with appends. Deleting segments waits for reads in progress to finish.
+ * <p>
+ * Records are appended in increasing version order. A partial or corrupt record at the
+ * end of the last segment, left by a crash during an append, is removed when the store is
+ * opened.
+ */
+public class SegmentStore {
+    private static Logger LOG = LoggerFactory.getLogger(SegmentStore.class);
+
+    /** Record one (version, offset) entry in the sparse index every SPARSE records. */
+    public static final int SPARSE = 32;
+
+    private static final String PREFIX = "segment-";
+    private static final String DATA_EXT = ".log";
+    private static final String INDEX_EXT = ".idx";
+    private static final Pattern segmentPattern = Pattern.compile(PREFIX+"([0-9]+)\\"+DATA_EXT);
+
+    // Record overhead: length, version, CRC.
+    private static final int HEADER = Integer.BYTES+Long.BYTES;
+    private static final int TRAILER = Integer.BYTES;
+
+    private static class Segment {
+        final long firstVersion;
+        final Path dataPath;
+        final FileChannel channel;
+        // Version -> offset, every SPARSE records.
+        final NavigableMap<Long, Long> sparse = new ConcurrentSkipListMap<>();
+        volatile long size;
+        volatile long lastVersion;
+        volatile int count;
+
+        Segment(long firstVersion, Path dataPath, FileChannel channel) {
+            this.firstVersion = firstVersion;
+            this.dataPath = dataPath;
+            this.channel = channel;
+        }
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final int maxSegmentRecords;
+    // First version of segment -> segment.
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment current = null;
+    // Read lock: reading from segment channels. Write lock: closing segment channels.
+    private final ReadWriteLock channelLock = new ReentrantReadWriteLock();
+
+    /** Does the directory have any segment files? */
+    public static boolean exists(Path directory) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX+"*"+DATA_EXT)) {
+            return stream.iterator().hasNext();
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /**
+     * Open the segment store in a directory. A new segment is started when the current
+     * segment has {@code maxSegmentBytes} bytes or {@code maxSegmentRecords} records;
+     * zero means no limit.
+     */
+    public static SegmentStore open(Path directory, long maxSegmentBytes, int maxSegmentRecords) {
+        SegmentStore store = new SegmentStore(directory, maxSegmentBytes, maxSegmentRecords);
+        store.init();
+        return store;
+    }
+
+    private SegmentStore(Path directory, long maxSegmentBytes, int maxSegmentRecords) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentRecords = maxSegmentRecords;
+    }
+
+    public Path getPath() {
+        return directory;
+    }
+
+    private void init() {
+        NavigableMap<Long, Path> files = new ConcurrentSkipListMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX+"*"+DATA_EXT)) {
+            for ( Path f : stream ) {
+                Matcher m = segmentPattern.matcher(f.getFileName().toString());
+                if ( ! m.matches() ) {
+                    FmtLog.warn(LOG, "Can't parse segment filename: %s", f);
+                    continue;
+                }
+                files.put(Long.parseLong(m.group(1)), f);
+            }
+        } catch (IOException ex) { throw IOX.exception(ex); }
+
+        for ( Map.Entry<Long, Path> e : files.entrySet() ) {
+            boolean last = ( e.getKey().equals(files.lastKey()) );
+            Segment segment = openSegment(e.getKey(), e.getValue(), last);
+            segments.put(e.getKey(), segment);
+            if ( last )
+                current = segment;
+        }
+    }
+
+    private Segment openSegment(long firstVersion, Path dataPath, boolean last) {
+        try {
+            FileChannel channel = last
+                ? FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(dataPath, StandardOpenOption.READ);
+            Segment segment = new Segment(firstVersion, dataPath, channel);
+            segment.size = channel.size();
+            segment.lastVersion = firstVersion-1;
+            if ( ! last && readSparseIndex(segment) )
+                return segment;
+            // Last segment, or no usable sparse index: read the segment.
+            scanSegment(segment, last);
+            if ( ! last )
+                writeSparseIndex(segment);
+            return segment;
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /** Read all the records of a segment, building the sparse index. Truncate a bad tail if allowed. */
+    private void scanSegment(Segment segment, boolean repair) throws IOException {
+        long position = 0;
+        long fileSize = segment.channel.size();
+        long lastVersion = segment.firstVersion-1;
+        int count = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while ( position < fileSize ) {
+            header.clear();
+            if ( ! readFully(segment.channel, header, position) )
+                break;
+            header.flip();
+            int len = header.getInt();
+            long version = header.getLong();
+            if ( len < 0 || position+HEADER+len+TRAILER > fileSize || version <= lastVersion )
+                break;
+            byte[] data = readData(segment.channel, position, len, version);
+            if ( data == null )
+                break;
+            if ( count % SPARSE == 0 )
+                segment.sparse.put(version, position);
+            lastVersion = version;
+            count++;
+            position += HEADER+len+TRAILER;
+        }
+        if ( position < fileSize ) {
+            if ( ! repair )
+                throw new DeltaException("Corrupt segment file: "+segment.dataPath+" at offset "+position);
+            FmtLog.warn(LOG, "Truncating %s from %d to %d bytes", segment.dataPath, fileSize, position);
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+        segment.lastVersion = lastVersion;
+        segment.count = count;
+    }
+
+    // Sparse index file: (long version, long offset)* then long lastVersion, int count, int CRC32.
+
+    private static Path indexPath(Segment segment) {
+        Path p = segment.dataPath;
+        String fn = p.getFileName().toString();
+        return p.resolveSibling(fn.substring(0, fn.length()-DATA_EXT.length())+INDEX_EXT);
+    }
+
+    private boolean readSparseIndex(Segment segment) throws IOException {
+        Path idx = indexPath(segment);
+        if ( ! Files.exists(idx) )
+            return false;
+        byte[] bytes = Files.readAllBytes(idx);
+        int tail = Long.BYTES+Integer.BYTES+Integer.BYTES;
+        if ( bytes.length < tail || (bytes.length-tail) % (2*Long.BYTES) != 0 )
+            return false;
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length-Integer.BYTES);
+        if ( bb.getInt(bytes.length-Integer.BYTES) != (int)crc.getValue() ) {
+            FmtLog.warn(LOG, "Bad segment index: %s", idx);
+            return false;
+        }
+        int n = (bytes.length-tail)/(2*Long.BYTES);
+        for ( int i = 0 ; i < n ; i++ ) {
+            long version = bb.getLong();
+            long offset = bb.getLong();
+            segment.sparse.put(version, offset);
+        }
+        segment.lastVersion = bb.getLong();
+        segment.count = bb.getInt();
+        return true;
+    }
+
+    private void writeSparseIndex(Segment segment) {
+        int n = segment.sparse.size();
+        ByteBuffer bb = ByteBuffer.allocate(n*2*Long.BYTES+Long.BYTES+Integer.BYTES+Integer.BYTES);
+        segment.sparse.forEach((v,offset)->bb.putLong(v).putLong(offset));
+        bb.putLong(segment.lastVersion);
+        bb.putInt(segment.count);
+        CRC32 crc = new CRC32();
+        crc.update(bb.array(), 0, bb.position());
+        bb.putInt((int)crc.getValue());
+        Path idx = indexPath(segment);
+        IOX.safeWrite(idx, out->out.write(bb.array()));
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty() || ( segments.size() == 1 && current.count == 0 );
+    }
+
+    /** First version in the store, or -1 if the store is empty. */
+    public long getFirstVersion() {
+        if ( isEmpty() )
+            return -1;
+        return segments.firstKey();
+    }
+
+    /** Last version in the store, or -1 if the store is empty. */
+    public long getLastVersion() {
+        if ( isEmpty() )
+            return -1;
+        return current.lastVersion;
+    }
+
+    /** Append a record. The version must be greater than the last version in the store. */
+    public synchronized void append(long version, byte[] data) {
+        if ( current != null && version <= current.lastVersion )
+            throw new DeltaException("SegmentStore.append: version "+version+" is not after "+current.lastVersion);
+        try {
+            if ( current == null || isFull(current) )
+                startSegment(version);
+            Segment segment = current;
+            ByteBuffer record = ByteBuffer.allocate(HEADER+data.length+TRAILER);
+            record.putInt(data.length).putLong(version).put(data).putInt(crc(version, data));
+            record.flip();
+            long position = segment.size;
+            long p = position;
+            while ( record.hasRemaining() )
+                p += segment.channel.write(record, p);
+            if ( segment.count % SPARSE == 0 )
+                segment.sparse.put(version, position);
+            // Size before lastVersion: a reader checks lastVersion then reads up to size.
+            segment.size = p;
+            segment.count++;
+            segment.lastVersion = version;
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    private boolean isFull(Segment segment) {
+        if ( segment.count == 0 )
+            return false;
+        if ( maxSegmentBytes > 0 && segment.size >= maxSegmentBytes )
+            return true;
+        if ( maxSegmentRecords > 0 && segment.count >= maxSegmentRecords )
+            return true;
+        return false;
+    }
+
+    private void startSegment(long firstVersion) throws IOException {
+        if ( current != null ) {
+            // Seal the current segment.
+            current.channel.force(true);
+            writeSparseIndex(current);
+        }
+        Path dataPath = directory.resolve(String.format("%s%012d%s", PREFIX, firstVersion, DATA_EXT));
+        FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(firstVersion, dataPath, channel);
+        segment.size = 0;
+        segment.lastVersion = firstVersion-1;
+        segment.count = 0;
+        segments.put(firstVersion, segment);
+        current = segment;
+        FmtLog.debug(LOG, "New segment: %s", dataPath);
+    }
+
+    /** Fetch the data for a version, or return null if there is no such version. */
+    public byte[] fetch(long version) {
+        Lock lock = channelLock.readLock();
+        lock.lock();
+        try {
+            Segment segment = segmentFor(version);
+            if ( segment == null )
+                return null;
+            long[] record = locate(segment, version);
+            if ( record == null )
+                return null;
+            return readData(segment.channel, record[0], (int)record[1], version);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        finally { lock.unlock(); }
+    }
+
+    /**
+     * Copy the data for a version to a channel, without checking the CRC. This uses
+     * {@link FileChannel#transferTo} so the data need not be copied through the JVM heap.
+     * Return false, having written nothing, if there is no such version.
+     */
+    public boolean transferTo(long version, WritableByteChannel target) {
+        Lock lock = channelLock.readLock();
+        lock.lock();
+        try {
+            Segment segment = segmentFor(version);
+            if ( segment == null )
+                return false;
+            long[] record = locate(segment, version);
+            if ( record == null )
+                return false;
+            long position = record[0]+HEADER;
+            long remaining = record[1];
+            while ( remaining > 0 ) {
+                long n = segment.channel.transferTo(position, remaining, target);
+                position += n;
+                remaining -= n;
+            }
+            return true;
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        finally { lock.unlock(); }
+    }
+
+    private Segment segmentFor(long version) {
+        Map.Entry<Long, Segment> e = segments.floorEntry(version);
+        if ( e == null )
+            return null;
+        Segment segment = e.getValue();
+        if ( version > segment.lastVersion )
+            return null;
+        return segment;
+    }
+
+    /** Find a record: return (offset, data length) or null. */
+    private static long[] locate(Segment segment, long version) throws IOException {
+        Map.Entry<Long, Long> start = segment.sparse.floorEntry(version);
+        if ( start == null )
+            return null;
+        long position = start.getValue();
+        long limit = segment.size;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while ( position < limit ) {
+            header.clear();
+            if ( ! readFully(segment.channel, header, position) )
+                return null;
+            header.flip();
+            int len = header.getInt();
+            long ver = header.getLong();
+            if ( ver == version )
+                return new long[] {position, len};
+            if ( ver > version )
+                return null;
+            position += HEADER+len+TRAILER;
+        }
+        return null;
+    }
+
+    /**
+     * Call {@code action} for each record from version {@code start} onwards, in version order.
+     */
+    public void forEach(long start, BiConsumer<Long, byte[]> action) {
+        Lock lock = channelLock.readLock();
+        lock.lock();
+        try {
+            Long firstKey = segments.floorKey(start);
+            NavigableMap<Long, Segment> x = ( firstKey == null ) ? segments : segments.tailMap(firstKey, true);
+            for ( Segment segment : x.values() ) {
+                long position = 0;
+                long limit = segment.size;
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                while ( position < limit ) {
+                    header.clear();
+                    if ( ! readFully(segment.channel, header, position) )
+                        break;
+                    header.flip();
+                    int len = header.getInt();
+                    long ver = header.getLong();
+                    if ( ver >= start ) {
+                        byte[] data = readData(segment.channel, position, len, ver);
+                        if ( data == null )
+                            throw new DeltaException("Corrupt record: "+segment.dataPath+" at offset "+position);
+                        action.accept(ver, data);
+                    }
+                    position += HEADER+len+TRAILER;
+                }
+            }
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        finally { lock.unlock(); }
+    }
+
+    /**
+     * Delete the segment files that only have records for versions before {@code version}.
+     * The current segment is not deleted. Return the number of segment files deleted.
+     * This waits for reads in progress to finish.
+     */
+    public synchronized int deleteBefore(long version) {
+        Lock lock = channelLock.writeLock();
+        lock.lock();
+        try {
+            int count = 0;
+            for ( Segment segment : new ArrayList<>(segments.values()) ) {
+                if ( segment == current || segment.lastVersion >= version )
+                    break;
+                segments.remove(segment.firstVersion);
+                try {
+                    segment.channel.close();
+                    Files.deleteIfExists(indexPath(segment));
+                    Files.deleteIfExists(segment.dataPath);
+                } catch (IOException ex) { throw IOX.exception(ex); }
+                FmtLog.debug(LOG, "Deleted segment: %s", segment.dataPath);
+                count++;
+            }
+            return count;
+        } finally { lock.unlock(); }
+    }
+
+    /** Force all changes to disk. */
+    public synchronized void sync() {
+        if ( current == null )
+            return;
+        try {
+            current.channel.force(true);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /** Release resources. */
+    public synchronized void close() {
+        Lock lock = channelLock.writeLock();
+        lock.lock();
+        try {
+            for ( Segment segment : segments.values() ) {
+                try {
+                    if ( segment.channel.isOpen() )
+                        segment.channel.close();
+                } catch (IOException ex) {
+                    FmtLog.warn(LOG, "Failed to close %s", segment.dataPath);
+                }
+            }
+            segments.clear();
+            current = null;
+        } finally { lock.unlock(); }
+    }
+
+    /** Read the data of a record and check the CRC; return null if the CRC does not match. */
+    private static byte[] readData(FileChannel channel, long position, int len, long version) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(len+TRAILER);
+        if ( ! readFully(channel, bb, position+HEADER) )
+            return null;
+        bb.flip();
+        byte[] data = new byte[len];
+        bb.get(data);
+        int crc = bb.getInt();
+        if ( crc != crc(version, data) ) {
+            FmtLog.warn(LOG, "CRC mismatch: version=%d", version);
+            return null;
+        }
+        return data;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        long p = position;
+        while ( bb.hasRemaining() ) {
+            int n = channel.read(bb, p);
+            if ( n < 0 )
+                return false;
+            p += n;
+        }
+        return true;
+    }
+
+    private static int crc(long version, byte[] data) {
+        CRC32 crc = new CRC32();
+        ByteBuffer bb = ByteBuffer.allocate(Long.BYTES);
+        bb.putLong(version);
+        crc.update(bb.array(), 0, Long.BYTES);
+        crc.update(data, 0, data.length);
+        return (int)crc.getValue();
+    }
+}
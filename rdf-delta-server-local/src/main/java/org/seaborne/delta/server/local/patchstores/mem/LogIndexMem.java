@@ -80,4 +80,11 @@ public class LogIndexMem implements LogIndex {
     public Version current() {
         return currentVersion;
     }
+
+    @Override
+    public void truncate(Version version) {
+        entries.values().removeIf(e->e.getVersion().isBefore(version));
+        versionToId.keySet().removeIf(v->v.isBefore(version));
+        earliest = version;
+    }
 }
@@ -25,30 +25,40 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 
-import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.logging.FmtLog;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
-import org.seaborne.delta.lib.JSONX;
-import org.seaborne.delta.server.local.JsonLogEntry;
+import org.seaborne.delta.server.local.BinaryLogEntry;
 import org.seaborne.delta.server.local.LogEntry;
 import org.seaborne.delta.server.local.patchstores.LogIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class LogIndexRocks implements LogIndex {
+    private static Logger LOG = LoggerFactory.getLogger(LogIndexRocks.class);
 
     //   RocksDB: index:
     //     (version, id)
     //     (id, PatchInfo)  ?? for PatchLogIndex.getPatchInfo(Id)
     //   RocksDB: patch storage
     //     (id, patch)
+    // The (id, PatchInfo) rows are encoded by BinaryLogEntry. Databases from before the
+    // binary encoding have JSON rows; these are rewritten when the database is opened.
+    // In a database shared by several logs, every key starts with the prefix of the log
+    // (see RocksKey); the prefix is empty in a database for one log.
+
+    // Rows rewritten in one write batch by the migration from JSON rows.
+    private static final int MigrateBatch = 10_000;
 
     // Assumes calling code (PatchLogIndexBase) makes thread safe calls.
     private final RocksDatabase rdb;
+    private final byte[] prefix;
     private Version current;
     private Version earliest = null;
 
@@ -56,11 +66,18 @@ public class LogIndexRocks implements LogIndex {
     private final ColumnFamilyHandle cfh_versionToId;
 
     public LogIndexRocks(RocksDatabase database) {
+        this(database, RocksKey.NO_PREFIX);
+    }
+
+    /** An index in a database shared by several logs: the keys of this log start with {@code prefix}. */
+    /*package*/ LogIndexRocks(RocksDatabase database, byte[] prefix) {
         rdb = requireNonNull(database);
+        this.prefix = requireNonNull(prefix);
         cfh_idToLogEntry = rdb.columnFamilyHandles.get(RocksConst.CF_ID_ENTRY);
         cfh_versionToId = rdb.columnFamilyHandles.get(RocksConst.CF_VERSION_ID);
-        long ver = findLatest(rdb);
-        long verFirst = findEarliest(rdb);
+        migrate();
+        long ver = findLatest();
+        long verFirst = findEarliest();
 
         current = (ver > 0 ) ? Version.create(ver) : Version.INIT;
         earliest = verFirst > 0 ? Version.create(verFirst) : Version.INIT;
@@ -74,10 +91,14 @@ public class LogIndexRocks implements LogIndex {
         return rdb;
     }
 
+    /*package*/ byte[] prefix() {
+        return prefix;
+    }
+
     @Override
     public void save(Version version, Id id, Id previous) {
         LogEntry entry = new LogEntry(id, version, previous);
-        putLogEntry(rdb, entry);
+        putLogEntry(entry);
         if ( earliest == null )
             earliest = version;
         current = version;
@@ -87,14 +108,9 @@ public class LogIndexRocks implements LogIndex {
     public Stream<LogEntry> entries() {
         List<LogEntry> entries = new ArrayList<>();
         try( RocksIterator iter = rdb.iterator(RocksConst.CF_ID_ENTRY) ) {
-            iter.seekToFirst();
-            while(iter.isValid()) {
-                // e = getEntry(long)
-                byte[] k = iter.key();
-                Id id = Id.fromBytes(k);
-                byte[] v = iter.value();
-                JsonObject obj = JSONX.fromBytes(v);
-                LogEntry e = JsonLogEntry.jsonToLogEntry(obj);
+            iter.seek(prefix);
+            while(iter.isValid() && RocksKey.hasPrefix(prefix, iter.key())) {
+                LogEntry e = BinaryLogEntry.decode(iter.value());
                 entries.add(e);
                 iter.next();
             }
@@ -103,26 +119,37 @@ public class LogIndexRocks implements LogIndex {
     }
 
     public Stream<Pair<Version, Id>> versions() {
-        List<Pair<Version, Id>> rows = new ArrayList<>();
-        try( RocksIterator iter = rdb.iterator(RocksConst.CF_VERSION_ID) ) {
-            iter.seekToFirst();
-            while(iter.isValid()) {
-                byte[] k = iter.key();
-                long ver = Bytes.getLong(k);
-                byte[] v = iter.value();
-                Id id = Id.fromBytes(v);
-                rows.add(Pair.create(Version.create(ver), id));
-                iter.next();
-            }
-        }
-        return rows.stream();
+        return versionToIds(Version.FIRST, Version.create(Long.MAX_VALUE), Integer.MAX_VALUE).stream();
     }
 
     @Override
     public Id versionToId(Version version) {
         if ( ! version.isValid() )
             return null;
-        return versionToId(rdb, version.value());
+        byte[] v = rdb.get(RocksConst.CF_VERSION_ID, versionKey(version.value()));
+        if ( v == null )
+            return null;
+        return Id.fromBytes(v);
+    }
+
+    @Override
+    public List<Pair<Version, Id>> versionToIds(Version start, Version finish, int max) {
+        // Keys are big-endian longs so the column family is in version order.
+        List<Pair<Version, Id>> rows = new ArrayList<>();
+        try( RocksIterator iter = rdb.iterator(RocksConst.CF_VERSION_ID) ) {
+            iter.seek(versionKey(Math.max(0, start.value())));
+            while(iter.isValid() && rows.size() < max) {
+                byte[] k = iter.key();
+                if ( ! RocksKey.hasPrefix(prefix, k) )
+                    break;
+                long ver = Bytes.getLong(k, prefix.length);
+                if ( ver > finish.value() )
+                    break;
+                rows.add(Pair.create(Version.create(ver), Id.fromBytes(iter.value())));
+                iter.next();
+            }
+        }
+        return rows;
     }
 
     @Override
@@ -135,7 +162,20 @@ public class LogIndexRocks implements LogIndex {
     @Override
     public LogEntry getPatchInfo(Id id) {
         requireNonNull(id);
-        return getLogEntry(rdb, id);
+        byte[] v = rdb.get(RocksConst.CF_ID_ENTRY, idKey(id));
+        if ( v == null )
+            return null;
+        return BinaryLogEntry.decode(v);
+    }
+
+    @Override
+    public Version idToVersion(Id id) {
+        requireNonNull(id);
+        // Decode only the version.
+        byte[] v = rdb.get(RocksConst.CF_ID_ENTRY, idKey(id));
+        if ( v == null )
+            return null;
+        return BinaryLogEntry.decodeVersion(v);
     }
 
     @Override
@@ -148,68 +188,110 @@ public class LogIndexRocks implements LogIndex {
         return current;
     }
 
+    @Override
+    public void truncate(Version version) {
+        if ( version.value() <= 0 )
+            return;
+        // Keys are big-endian longs so the versions before "version" are the start of the
+        // log in the column family. Both entries of each version are removed in one batch.
+        List<Pair<Version, Id>> rows = versionToIds(Version.FIRST, Version.create(version.value()-1), Integer.MAX_VALUE);
+        rdb.update(wb->{
+            try {
+                for ( Pair<Version, Id> row : rows ) {
+                    wb.delete(cfh_versionToId, versionKey(row.getLeft().value()));
+                    wb.delete(cfh_idToLogEntry, idKey(row.getRight()));
+                }
+            } catch (RocksDBException ex) { throw new DeltaException(ex); }
+        });
+        earliest = version;
+    }
+
     public void shutdown() {
         rdb.close();
     }
 
-    private static long findLatest(RocksDatabase rdb) {
-        byte[] ver = findEnd(rdb, RocksConst.CF_VERSION_ID, true);
-        if ( ver == null )
-            return -1;
-        return Bytes.getLong(ver);
+    private byte[] versionKey(long version) {
+        return RocksKey.key(prefix, Bytes.packLong(version));
     }
 
-    private static long findEarliest(RocksDatabase rdb) {
-        byte[] ver = findEnd(rdb, RocksConst.CF_VERSION_ID, false);
-        if ( ver == null )
-            return -1;
-        return Bytes.getLong(ver);
+    private byte[] idKey(Id id) {
+        return RocksKey.key(prefix, id.asBytes());
     }
 
-    private static byte[] findEnd(RocksDatabase rdb, String cfName, boolean highest) {
+    private long findLatest() {
         try( RocksIterator iter = rdb.iterator(RocksConst.CF_VERSION_ID) ) {
-            if ( highest )
-                iter.seekToLast();
-            else
-                iter.seekToFirst();
-            if ( iter.isValid() )
-                return iter.key();
-            return null;
+            // Versions are positive so this is after all the keys of the log.
+            iter.seekForPrev(versionKey(Long.MAX_VALUE));
+            if ( iter.isValid() && RocksKey.hasPrefix(prefix, iter.key()) )
+                return Bytes.getLong(iter.key(), prefix.length);
+            return -1;
         }
     }
 
-    private static Id versionToId(RocksDatabase rdb, long latest) {
-        byte[] k = Bytes.packLong(latest);
-        byte[] v = rdb.get(RocksConst.CF_VERSION_ID, k);
-        if ( v == null )
-            return null;
-        Id id = Id.fromBytes(v);
-        return id;
+    private long findEarliest() {
+        try( RocksIterator iter = rdb.iterator(RocksConst.CF_VERSION_ID) ) {
+            iter.seek(prefix);
+            if ( iter.isValid() && RocksKey.hasPrefix(prefix, iter.key()) )
+                return Bytes.getLong(iter.key(), prefix.length);
+            return -1;
+        }
     }
 
-    private static LogEntry getLogEntry(RocksDatabase rdb, Id id) {
-        byte[] k = id.asBytes();
-        byte[] v = rdb.get(RocksConst.CF_ID_ENTRY, k);
-        JsonObject obj = JSONX.fromBytes(v);
-        LogEntry e = JsonLogEntry.jsonToLogEntry(obj);
-        return e;
+    private void putLogEntry(LogEntry entry) {
+        byte[] kVer = versionKey(entry.getVersion().value());
+        byte[] kId = idKey(entry.getPatchId());
+        byte[] idBytes = entry.getPatchId().asBytes();
+        byte[] value = BinaryLogEntry.encode(entry);
+        rdb.update(wb->{
+            try {
+                wb.put(cfh_idToLogEntry, kId, value);
+                wb.put(cfh_versionToId, kVer, idBytes);
+            } catch (RocksDBException ex) { throw new DeltaException(ex); }
+        });
     }
 
-    private static void putLogEntry(RocksDatabase rdb, LogEntry entry) {
-        byte[] kVer = new byte[Long.BYTES];
-        Bytes.setLong(entry.getVersion().value(), kVer);
-
-        ColumnFamilyHandle cfh_idToLogEntry = rdb.columnFamilyHandles.get(RocksConst.CF_ID_ENTRY);
-        ColumnFamilyHandle cfh_versionToId = rdb.columnFamilyHandles.get(RocksConst.CF_VERSION_ID);
+    /**
+     * Rewrite (id, LogEntry) rows in the JSON encoding into the binary encoding, then
+     * record the format so later opens of the database do not scan the rows.
+     */
+    private void migrate() {
+        byte[] formatKey = RocksKey.key(prefix, RocksConst.K_INDEX_FORMAT);
+        byte[] format = rdb.get(RocksConst.CF_DEFAULT, formatKey);
+        if ( format != null && format.length == 1 && format[0] == BinaryLogEntry.FORMAT )
+            return;
+        ColumnFamilyHandle cfh_default = rdb.columnFamilyHandles.get(RocksConst.CF_DEFAULT);
+        List<Pair<byte[], byte[]>> rows = new ArrayList<>();
+        long count = 0;
+        try( RocksIterator iter = rdb.iterator(RocksConst.CF_ID_ENTRY) ) {
+            iter.seek(prefix);
+            while(iter.isValid() && RocksKey.hasPrefix(prefix, iter.key())) {
+                byte[] v = iter.value();
+                if ( BinaryLogEntry.isJson(v) ) {
+                    rows.add(Pair.create(iter.key(), BinaryLogEntry.encode(BinaryLogEntry.decode(v))));
+                    if ( rows.size() >= MigrateBatch ) {
+                        count += rows.size();
+                        writeRows(rows, null, null);
+                        rows.clear();
+                    }
+                }
+                iter.next();
+            }
+        }
+        count += rows.size();
+        // The last rows and the format marker in one batch.
+        writeRows(rows, cfh_default, formatKey);
+        if ( count > 0 )
+            FmtLog.info(LOG, "Converted %d index entries to the binary format: %s", count, rdb.getPath());
+    }
 
-        byte[] idBytes = entry.getPatchId().asBytes();
-        JsonObject obj = JsonLogEntry.logEntryToJson(entry);
-        byte[] value = JSONX.asBytes(obj);
+    private void writeRows(List<Pair<byte[], byte[]>> rows, ColumnFamilyHandle cfh_default, byte[] formatKey) {
         rdb.update(wb->{
             try {
-                wb.put(cfh_idToLogEntry, idBytes, value);
-                wb.put(cfh_versionToId, kVer, idBytes);
+                for ( Pair<byte[], byte[]> row : rows )
+                    wb.put(cfh_idToLogEntry, row.getLeft(), row.getRight());
+                if ( formatKey != null )
+                    wb.put(cfh_default, formatKey, new byte[] {BinaryLogEntry.FORMAT});
             } catch (RocksDBException ex) { throw new DeltaException(ex); }
         });
     }
-}
\ No newline at end of file
+}
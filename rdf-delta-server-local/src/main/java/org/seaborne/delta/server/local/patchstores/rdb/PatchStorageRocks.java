@@ -28,11 +28,13 @@ import java.util.stream.Stream;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSized;
 
 /**
  * Patch store in-memory, nothing persisted.
@@ -41,19 +43,27 @@ public class PatchStorageRocks implements PatchStorage {
 
     private final RocksDatabase rdb;
     private final ColumnFamilyHandle handle;
+    // Key prefix of the log in a database shared by several logs.
+    private final byte[] prefix;
 
     public PatchStorageRocks(RocksDatabase rdb) {
+        this(rdb, RocksKey.NO_PREFIX);
+    }
+
+    /** Patch storage in a database shared by several logs: the keys of this log start with {@code prefix}. */
+    /*package*/ PatchStorageRocks(RocksDatabase rdb, byte[] prefix) {
         this.rdb = Objects.requireNonNull(rdb);
         this.handle = rdb.getColumnFamilyHandle(RocksConst.CF_PATCH);
+        this.prefix = Objects.requireNonNull(prefix);
     }
 
     @Override
     public Stream<Id> find() {
         List<Id> ids = new ArrayList<>();
         try( RocksIterator iter = rdb.iterator(RocksConst.CF_PATCH) ) {
-            iter.seekToFirst();
-            while(iter.isValid()) {
-                byte[] k = iter.key();
+            iter.seek(prefix);
+            while(iter.isValid() && RocksKey.hasPrefix(prefix, iter.key())) {
+                byte[] k = RocksKey.strip(prefix, iter.key());
                 Id id = Id.fromBytes(k);
                 ids.add(id);
                 iter.next();
@@ -66,7 +76,7 @@ public class PatchStorageRocks implements PatchStorage {
     public void store(Id id, RDFPatch value) {
         ByteArrayOutputStream out = new ByteArrayOutputStream(1024*1024);
         RDFPatchOps.writeBinary(out, value);
-        byte[] key = id.asBytes();
+        byte[] key = RocksKey.key(prefix, id.asBytes());
         byte[] data = out.toByteArray();
         rdb.update(batch-> {
             try {
@@ -79,18 +89,31 @@ public class PatchStorageRocks implements PatchStorage {
 
     @Override
     public RDFPatch fetch(Id id) {
-        byte[] key = id.asBytes();
+        byte[] key = RocksKey.key(prefix, id.asBytes());
         byte[] value = rdb.get(RocksConst.CF_PATCH, key);
         if ( value == null )
             return null;
         InputStream in = new ByteArrayInputStream(value);
         RDFPatch patch = RDFPatchOps.readBinary(in);
-        return patch;
+        return new RDFPatchSized(patch, value.length);
+    }
+
+    @Override
+    public String storedContentType() {
+        return DeltaConst.contentTypePatchBinary;
+    }
+
+    @Override
+    public InputStream openStream(Id id) {
+        byte[] value = rdb.get(RocksConst.CF_PATCH, RocksKey.key(prefix, id.asBytes()));
+        if ( value == null )
+            return null;
+        return new ByteArrayInputStream(value);
     }
 
     @Override
     public void delete(Id id) {
-        byte[] key = id.asBytes();
+        byte[] key = RocksKey.key(prefix, id.asBytes());
         rdb.update(batch-> {
             try {
                 batch.delete(handle, key);
@@ -102,6 +125,8 @@ public class PatchStorageRocks implements PatchStorage {
 
     @Override
     public void release() {
-        rdb.close();
+        // A shared database is closed by the patch store.
+        if ( prefix.length == 0 )
+            rdb.close();
     }
 }
@@ -25,8 +25,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.apache.jena.atlas.logging.FmtLog;
+import org.rocksdb.RocksDBException;
 import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.server.local.LocalServerConfig;
 import org.seaborne.delta.server.local.PatchLog;
@@ -35,8 +40,12 @@ import org.seaborne.delta.server.local.PatchStoreProvider;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.delta.server.local.patchstores.filestore.FileArea;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PatchStoreRocks extends PatchStore {
+    private static Logger LOG = LoggerFactory.getLogger(PatchStoreRocks.class);
+
     /*
      *  / server root
      *    delta.cfg
@@ -44,18 +53,32 @@ public class PatchStoreRocks extends PatchStore {
      *       / source.cfg
      *       / logs / Rocks database
      *       / disabled
+     *    / .rdb  -- Rocks database shared by all logs (shared layout)
      *   RocksDB: index:
      *     (version, id)
      *     (id, PatchInfo)  ?? for PatchLogIndex.getPatchInfo(Id)
      *   RocksDB: patch storage
      *     (id, patch)
+     *
+     * In the shared layout ({@link LocalServerConfig#isRocksShared}) there is one
+     * database for all the logs and the keys of each log start with a prefix made
+     * from the log id. The logs share one write-ahead log and the background threads.
+     *
+     * In both layouts, all the databases of the patch store share one block cache, one
+     * limit on memtable memory and one rate limiter for compaction ({@link RocksOptions}).
      */
 
     // Singletons.
     // "static" so two PatchStoreRocks go to the same databases.
     private static Map<Id, LogIndexRocks> logIndexes = new ConcurrentHashMap<>();
+    // Databases shared by all the logs of a patch store area.
+    private static Map<Path, RocksDatabase> sharedDatabases = new ConcurrentHashMap<>();
+    // Block caches etc. of the databases; freed after the databases are closed.
+    private static List<RocksOptions> trackedOptions = new CopyOnWriteArrayList<>();
 
     private final Path patchLogDirectory;
+    private boolean shared = false;
+    private RocksOptions options = null;
 
     public PatchStoreRocks(String patchLogDirectory, PatchStoreProvider provider) {
         super(provider);
@@ -66,6 +89,10 @@ public class PatchStoreRocks extends PatchStore {
     public static void resetTracked() {
         logIndexes.values().forEach(idx->idx.shutdown());
         logIndexes.clear();
+        sharedDatabases.values().forEach(db->db.close());
+        sharedDatabases.clear();
+        trackedOptions.forEach(opts->opts.close());
+        trackedOptions.clear();
     }
 
     /*package*/ LogIndexRocks getLogIndex(Id id) {
@@ -73,7 +100,18 @@ public class PatchStoreRocks extends PatchStore {
     }
 
     @Override
-    protected void initialize(LocalServerConfig config) {}
+    protected void initialize(LocalServerConfig config) {
+        shared = config.isRocksShared();
+        options = RocksOptions.create(config);
+        trackedOptions.add(options);
+    }
+
+    /** The database shared by all the logs of this patch store. */
+    private RocksDatabase sharedDatabase() {
+        Path dbPath = patchLogDirectory.resolve(RocksConst.sharedDatabaseFilename).toAbsolutePath();
+        return sharedDatabases.computeIfAbsent(dbPath,
+            p->new RocksDatabase(p, options));
+    }
 
     @Override
     protected List<DataSourceDescription> initialDataSources() {
@@ -88,7 +126,19 @@ public class PatchStoreRocks extends PatchStore {
             if ( ! Files.exists(fileStoreDir) )
                 FileArea.setupDataSourceByFile(patchLogDirectory, this, dsd);
             Path dbPath = fileStoreDir.resolve(RocksConst.databaseFilename).toAbsolutePath();
-            RocksDatabase db = new RocksDatabase(dbPath);
+            // A log stays in the layout it is in on disk, whatever the configuration, so
+            // an existing log is not seen as empty and then given a different history.
+            // A log with its own database has not been migrated; a log whose database
+            // has been migrated is in the shared database.
+            boolean sharedLog = shared
+                ? ! Files.exists(dbPath)
+                : ! Files.exists(dbPath) && Files.exists(fileStoreDir.resolve(RocksMigrate.migratedFilename));
+            if ( sharedLog != shared )
+                FmtLog.warn(LOG, "[%s] Log is in the %s layout, not the configured layout", dsd.getName(),
+                            sharedLog ? DeltaConst.ROCKS_LAYOUT_SHARED : DeltaConst.ROCKS_LAYOUT_LOG);
+            if ( sharedLog )
+                return new LogIndexRocks(sharedDatabase(), RocksKey.prefix(id));
+            RocksDatabase db = new RocksDatabase(dbPath, options);
             LogIndexRocks idx = new LogIndexRocks(db);
             return idx;
         });
@@ -108,7 +158,7 @@ public class PatchStoreRocks extends PatchStore {
     protected PatchStorage newPatchStorage(DataSourceDescription dsd, PatchStore patchStore, LocalServerConfig configuration) {
         PatchStoreRocks patchStoreRocks = (PatchStoreRocks)patchStore;
         LogIndexRocks rIdx = patchStoreRocks.getLogIndex(dsd.getId());
-        return new PatchStorageRocks(rIdx.database());
+        return new PatchStorageRocks(rIdx.database(), rIdx.prefix());
     }
 
     @Override
@@ -117,10 +167,24 @@ public class PatchStoreRocks extends PatchStore {
         Path patchLogArea = patchLogDirectory.resolve(logName);
         Id id = patchLog.getDescription().getId();
         LogIndexRocks idx = logIndexes.remove(id);
-        idx.database().close();
+        if ( idx.prefix().length == 0 )
+            idx.database().close();
+        else
+            deleteLog(idx.database(), idx.prefix());
         FileArea.retire(patchLogArea);
     }
 
+    /** Remove all the keys of a log from a shared database. */
+    /*package*/ static void deleteLog(RocksDatabase db, byte[] prefix) {
+        byte[] end = RocksKey.prefixEnd(prefix);
+        db.update(wb->{
+            try {
+                for ( String cf : RocksConst.columnFamilies )
+                    wb.deleteRange(db.getColumnFamilyHandle(cf), prefix, end);
+            } catch (RocksDBException ex) { throw new DeltaException(ex); }
+        });
+    }
+
     @Override
     protected void shutdownSub() {}
 
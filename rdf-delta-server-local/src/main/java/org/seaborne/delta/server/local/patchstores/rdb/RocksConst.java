@@ -23,13 +23,26 @@ import static org.apache.jena.atlas.lib.StrUtils.asUTF8bytes;
 public class RocksConst {
 
     public static final String databaseFilename = "rdb";
+    /**
+     * Directory, in the patch store area, of the database shared by all logs. Log names
+     * can not start with a "." so this does not clash with a log area.
+     */
+    public static final String sharedDatabaseFilename = ".rdb";
 
+    // The default column family holds database-wide settings such as the index format.
+    public static final String CF_DEFAULT      = "default";
     public static final String CF_VERSION_ID   = "versionToId";
     public static final String CF_ID_ENTRY     = "idToLogEntry";
     public static final String CF_PATCH        = "patchStorage";
 
+    /** All the column families. */
+    public static final String[] columnFamilies = { CF_DEFAULT, CF_VERSION_ID, CF_ID_ENTRY, CF_PATCH };
+
     public static final byte[] B_CF_VERSION_ID = asUTF8bytes(CF_VERSION_ID);
     public static final byte[] B_CF_ID_ENTRY   = asUTF8bytes(CF_ID_ENTRY);
     public static final byte[] B_CF_PATCH      = asUTF8bytes(CF_PATCH);
 
+    /** Key, in the default column family, of the encoding of the (id, LogEntry) rows. */
+    public static final byte[] K_INDEX_FORMAT  = asUTF8bytes("indexFormat");
+
 }
@@ -39,25 +39,39 @@ public class RocksDatabase {
 
     private List<AutoCloseable> closeables = new ArrayList<>();
     private final Path path;
+    private final RocksOptions options;
     //May not need a TransactionDB
     // [TransactionDB]
     private RocksDB rocksDB;
     private boolean closed = false;
 
     public RocksDatabase(Path database) {
+        this(database, RocksOptions.plain());
+    }
+
+    /**
+     * Open a database with the settings and shared block cache, memtable limit, rate
+     * limiter and statistics of {@code options}. Patches are compressed with the
+     * {@link RocksOptions#getCompression() compression} of the options and the
+     * (id, log entry) column family has a bloom filter for lookups by patch id.
+     */
+    public RocksDatabase(Path database, RocksOptions options) {
         Objects.requireNonNull(database, "database");
+        Objects.requireNonNull(options, "options");
         path = database;
+        this.options = options;
         try {
-            ColumnFamilyOptions cfOpts = new ColumnFamilyOptions();
-            cfOpts.optimizeUniversalStyleCompaction();
-            closeables.add(cfOpts);
+            Cache cache = options.blockCache();
+            ColumnFamilyOptions cfOpts = columnFamilyOptions(cache, null, 0);
+            ColumnFamilyOptions cfOptsIdEntry = columnFamilyOptions(cache, null, options.getBloomBits());
+            ColumnFamilyOptions cfOptsPatch = columnFamilyOptions(cache, options.getCompression(), 0);
 
             // list of column family descriptors, first entry must always be default column family
             List<ColumnFamilyDescriptor> cfDescriptors = Arrays.asList(
                 new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, cfOpts),
                 new ColumnFamilyDescriptor(RocksConst.B_CF_VERSION_ID, cfOpts),
-                new ColumnFamilyDescriptor(RocksConst.B_CF_ID_ENTRY, cfOpts),
-                new ColumnFamilyDescriptor(RocksConst.B_CF_PATCH, cfOpts)
+                new ColumnFamilyDescriptor(RocksConst.B_CF_ID_ENTRY, cfOptsIdEntry),
+                new ColumnFamilyDescriptor(RocksConst.B_CF_PATCH, cfOptsPatch)
                 );
 
             // a list which will hold the handles for the column families once the db is opened
@@ -66,6 +80,12 @@ public class RocksDatabase {
             dbOptions.setCreateIfMissing(true)
                      .setCreateMissingColumnFamilies(true)
                      .setCompactionReadaheadSize(2*1024*1024);
+            if ( options.writeBufferManager() != null )
+                dbOptions.setWriteBufferManager(options.writeBufferManager());
+            if ( options.rateLimiter() != null )
+                dbOptions.setRateLimiter(options.rateLimiter());
+            if ( options.statistics() != null )
+                dbOptions.setStatistics(options.statistics());
             closeables.add(dbOptions);
 
             TransactionDBOptions txnOpt = new TransactionDBOptions();
@@ -80,6 +100,7 @@ public class RocksDatabase {
             //rocksDB = TransactionDB.open(dbOptions, txnOpt, database.toString(),  cfDescriptors, columnFamilyHandleList);
             rocksDB = RocksDB.open(dbOptions, database.toString(),  cfDescriptors, columnFamilyHandleList);
             // For order, see cfDescriptors. 0 is the default column.
+            columnFamilyHandles.put(RocksConst.CF_DEFAULT, columnFamilyHandleList.get(0));
             columnFamilyHandles.put(RocksConst.CF_VERSION_ID, columnFamilyHandleList.get(1));
             columnFamilyHandles.put(RocksConst.CF_ID_ENTRY, columnFamilyHandleList.get(2));
             columnFamilyHandles.put(RocksConst.CF_PATCH, columnFamilyHandleList.get(3));
@@ -91,6 +112,30 @@ public class RocksDatabase {
         }
     }
 
+    private ColumnFamilyOptions columnFamilyOptions(Cache cache, CompressionType compression, int bloomBits) {
+        ColumnFamilyOptions cfOpts = new ColumnFamilyOptions();
+        closeables.add(cfOpts);
+        cfOpts.optimizeUniversalStyleCompaction();
+        if ( compression != null )
+            cfOpts.setCompressionType(compression);
+        if ( cache == null && bloomBits <= 0 )
+            return cfOpts;
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        if ( cache != null ) {
+            // Index and filter blocks count towards the shared cache.
+            tableConfig.setBlockCache(cache)
+                       .setCacheIndexAndFilterBlocks(true)
+                       .setPinL0FilterAndIndexBlocksInCache(true);
+        }
+        if ( bloomBits > 0 ) {
+            BloomFilter bloomFilter = new BloomFilter(bloomBits, false);
+            closeables.add(bloomFilter);
+            tableConfig.setFilterPolicy(bloomFilter);
+        }
+        cfOpts.setTableFormatConfig(tableConfig);
+        return cfOpts;
+    }
+
     /** Return the RocksDB database handle. */
     public Path getPath() {
         return path;
@@ -122,15 +167,139 @@ public class RocksDatabase {
 //        }
 //    }
 
+    // Group commit.
+    // Writers queue their updates. One writer at a time, the leader, takes the queued
+    // updates, applies them to one WriteBatch and makes one write, with one sync of the
+    // write-ahead log if the options ask for it. Other writers wait for their update to
+    // be written or for their turn to be the leader.
+
+    private static class Commit {
+        final Consumer<WriteBatch> action;
+        // Protected by synchronized(commitQueue).
+        boolean done = false;
+        RuntimeException error = null;
+        Commit(Consumer<WriteBatch> action) { this.action = action; }
+    }
+
+    private final Deque<Commit> commitQueue = new ArrayDeque<>();
+    // Protected by synchronized(commitQueue).
+    private boolean writing = false;
+
+    /**
+     * Apply the changes made by {@code action} to a {@link WriteBatch}. Returns when the
+     * changes have been written. Concurrent calls are written together in one group commit
+     * so {@code action} may be called on another thread.
+     */
     public void update(Consumer<WriteBatch> action) {
-        try ( WriteBatch batch = new WriteBatch() ) {
-            try ( WriteOptions wOpt = new WriteOptions() ) {
-                action.accept(batch);
-                rocksDB.write(wOpt, batch);
+        Commit commit = new Commit(action);
+        // Writes are not interrupted; the interrupt status is restored at the end.
+        boolean interrupted = false;
+        synchronized(commitQueue) {
+            commitQueue.add(commit);
+            options.commitQueued(1);
+            // Wake a leader waiting for a full batch.
+            commitQueue.notifyAll();
+        }
+        for(;;) {
+            List<Commit> batch;
+            synchronized(commitQueue) {
+                while ( writing && ! commit.done )
+                    interrupted |= waitCommit(0);
+                if ( commit.done )
+                    break;
+                writing = true;
+                interrupted |= awaitBatch();
+                batch = takeBatch();
             }
+            List<RuntimeException> errors = null;
+            try {
+                errors = write(batch);
+            } finally {
+                synchronized(commitQueue) {
+                    for ( int i = 0 ; i < batch.size() ; i++ ) {
+                        Commit c = batch.get(i);
+                        c.error = ( errors == null ) ? new DeltaException("RocksDB write failed") : errors.get(i);
+                        c.done = true;
+                    }
+                    writing = false;
+                    commitQueue.notifyAll();
+                }
+            }
+        }
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+        if ( commit.error != null )
+            throw commit.error;
+    }
+
+    // Wait for more writes until the commit window has passed or the batch is full.
+    // Return true if interrupted.
+    private boolean awaitBatch() {
+        long window = options.getCommitWindow();
+        if ( window <= 0 )
+            return false;
+        long finish = System.currentTimeMillis() + window;
+        for(;;) {
+            if ( commitQueue.size() >= options.getCommitBatch() )
+                return false;
+            long remaining = finish - System.currentTimeMillis();
+            if ( remaining <= 0 )
+                return false;
+            if ( waitCommit(remaining) )
+                return true;
+        }
+    }
+
+    // Return true if interrupted.
+    private boolean waitCommit(long millis) {
+        try {
+            commitQueue.wait(millis);
+            return false;
+        } catch (InterruptedException ex) {
+            return true;
+        }
+    }
+
+    private List<Commit> takeBatch() {
+        int max = options.getCommitBatch();
+        List<Commit> batch = new ArrayList<>(Math.min(max, commitQueue.size()));
+        while ( ! commitQueue.isEmpty() && batch.size() < max )
+            batch.add(commitQueue.poll());
+        options.commitQueued(-batch.size());
+        return batch;
+    }
+
+    // Write the updates of a batch. Return the error for each update, null for none.
+    private List<RuntimeException> write(List<Commit> batch) {
+        List<RuntimeException> errors = new ArrayList<>(batch.size());
+        try ( WriteBatch writeBatch = new WriteBatch();
+              WriteOptions wOpt = new WriteOptions().setSync(options.isSync()) ) {
+            boolean changes = false;
+            for ( Commit c : batch ) {
+                // A failed update is removed from the WriteBatch; the others are written.
+                writeBatch.setSavePoint();
+                try {
+                    c.action.accept(writeBatch);
+                    errors.add(null);
+                    changes = true;
+                } catch (Exception ex) {
+                    errors.add(new RuntimeException(ex));
+                    writeBatch.rollbackToSavePoint();
+                }
+            }
+            if ( changes )
+                rocksDB.write(wOpt, writeBatch);
+            options.committed(batch.size());
         } catch (Exception ex) {
-            throw new RuntimeException(ex);
+            RuntimeException rex = new RuntimeException(ex);
+            for ( int i = 0 ; i < errors.size() ; i++ ) {
+                if ( errors.get(i) == null )
+                    errors.set(i, rex);
+            }
+            while ( errors.size() < batch.size() )
+                errors.add(rex);
         }
+        return errors;
     }
 
     public void close() {
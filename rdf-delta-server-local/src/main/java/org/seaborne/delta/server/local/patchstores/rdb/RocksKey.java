@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.server.local.patchstores.rdb;
+
+import java.util.Arrays;
+
+import org.seaborne.delta.Id;
+
+/**
+ * Keys of a patch log in a RocksDB database shared by several logs. Each key starts with
+ * a prefix for the log: the length of the log id, as one byte, then the log id. A
+ * database used by one log has an empty prefix.
+ */
+/*package*/ class RocksKey {
+    /*package*/ static final byte[] NO_PREFIX = new byte[0];
+
+    /** The key prefix for a log. */
+    /*package*/ static byte[] prefix(Id logId) {
+        byte[] id = logId.asBytes();
+        if ( id.length > 255 )
+            throw new IllegalArgumentException("Log id too long for a key prefix: "+logId);
+        byte[] prefix = new byte[1+id.length];
+        prefix[0] = (byte)id.length;
+        System.arraycopy(id, 0, prefix, 1, id.length);
+        return prefix;
+    }
+
+    /** The key with the prefix. */
+    /*package*/ static byte[] key(byte[] prefix, byte[] key) {
+        if ( prefix.length == 0 )
+            return key;
+        byte[] k = Arrays.copyOf(prefix, prefix.length+key.length);
+        System.arraycopy(key, 0, k, prefix.length, key.length);
+        return k;
+    }
+
+    /** The key without the prefix. */
+    /*package*/ static byte[] strip(byte[] prefix, byte[] key) {
+        if ( prefix.length == 0 )
+            return key;
+        return Arrays.copyOfRange(key, prefix.length, key.length);
+    }
+
+    /** Does the key start with the prefix? */
+    /*package*/ static boolean hasPrefix(byte[] prefix, byte[] key) {
+        if ( key.length < prefix.length )
+            return false;
+        return Arrays.equals(prefix, 0, prefix.length, key, 0, prefix.length);
+    }
+
+    /** The first key after all the keys that start with the prefix, for a range delete. */
+    /*package*/ static byte[] prefixEnd(byte[] prefix) {
+        byte[] end = Arrays.copyOf(prefix, prefix.length);
+        for ( int i = end.length-1 ; i >= 0 ; i-- ) {
+            if ( end[i] != (byte)0xFF ) {
+                end[i]++;
+                return Arrays.copyOf(end, i+1);
+            }
+        }
+        throw new IllegalArgumentException("No end key for prefix");
+    }
+}
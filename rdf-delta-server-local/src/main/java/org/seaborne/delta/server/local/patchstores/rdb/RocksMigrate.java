@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.server.local.patchstores.rdb;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.delta.server.local.patchstores.filestore.FileArea;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Convert a RocksDB patch store area from one database per log to one database shared
+ * by all the logs ({@link DeltaConst#ROCKS_LAYOUT_SHARED}). The server must not be
+ * running.
+ * <p>
+ * The rows of each log are copied into the shared database with the key prefix of the
+ * log. The database of each log is then renamed to {@code rdb.migrated}; it is not used
+ * again and can be deleted once the server has been checked with the shared layout.
+ * If the migration stops part way, running it again copies each log whose database
+ * has not been renamed from the start.
+ */
+public class RocksMigrate {
+    private static Logger LOG = LoggerFactory.getLogger(RocksMigrate.class);
+
+    /** Name of the database of a log after it has been copied to the shared database. */
+    public static final String migratedFilename = RocksConst.databaseFilename+".migrated";
+
+    // Rows copied in one write batch.
+    private static final int CopyBatch = 10_000;
+
+    /**
+     * Copy the logs of the patch store area {@code area} into the shared database.
+     * Return the number of logs copied.
+     */
+    public static int toShared(Path area) {
+        List<DataSourceDescription> logs = FileArea.scanForLogs(area);
+        Path sharedPath = area.resolve(RocksConst.sharedDatabaseFilename).toAbsolutePath();
+        RocksOptions options = RocksOptions.create();
+        RocksDatabase shared = new RocksDatabase(sharedPath, options);
+        int count = 0;
+        try {
+            for ( DataSourceDescription dsd : logs ) {
+                Path logArea = area.resolve(dsd.getName());
+                Path dbPath = logArea.resolve(RocksConst.databaseFilename).toAbsolutePath();
+                if ( ! Files.exists(dbPath) ) {
+                    FmtLog.info(LOG, "[%s] No database: %s", dsd.getName(), dbPath);
+                    continue;
+                }
+                byte[] prefix = RocksKey.prefix(dsd.getId());
+                // The source database is renamed only after the copy has finished, so
+                // rows here are from a copy that did not finish. Start again.
+                if ( hasLog(shared, prefix) ) {
+                    FmtLog.info(LOG, "[%s] Removing the rows of an unfinished copy", dsd.getName());
+                    PatchStoreRocks.deleteLog(shared, prefix);
+                }
+                long rows = copyLog(dbPath, shared, prefix);
+                IOX.move(dbPath, logArea.resolve(migratedFilename));
+                FmtLog.info(LOG, "[%s] Copied %d rows", dsd.getName(), rows);
+                count++;
+            }
+        } finally {
+            shared.close();
+            options.close();
+        }
+        return count;
+    }
+
+    private static boolean hasLog(RocksDatabase db, byte[] prefix) {
+        try( RocksIterator iter = db.iterator(RocksConst.CF_VERSION_ID) ) {
+            iter.seek(prefix);
+            return iter.isValid() && RocksKey.hasPrefix(prefix, iter.key());
+        }
+    }
+
+    private static long copyLog(Path dbPath, RocksDatabase shared, byte[] prefix) {
+        RocksDatabase db = new RocksDatabase(dbPath);
+        try {
+            // Convert any JSON index entries first.
+            new LogIndexRocks(db);
+            long rows = 0;
+            for ( String cf : RocksConst.columnFamilies )
+                rows += copyColumnFamily(db, shared, cf, prefix);
+            return rows;
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long copyColumnFamily(RocksDatabase src, RocksDatabase dst, String cf, byte[] prefix) {
+        ColumnFamilyHandle cfh = dst.getColumnFamilyHandle(cf);
+        List<Pair<byte[], byte[]>> rows = new ArrayList<>();
+        long count = 0;
+        try( RocksIterator iter = src.iterator(cf) ) {
+            iter.seekToFirst();
+            while(iter.isValid()) {
+                rows.add(Pair.create(RocksKey.key(prefix, iter.key()), iter.value()));
+                if ( rows.size() >= CopyBatch ) {
+                    count += write(dst, cfh, rows);
+                    rows.clear();
+                }
+                iter.next();
+            }
+        }
+        count += write(dst, cfh, rows);
+        return count;
+    }
+
+    private static int write(RocksDatabase db, ColumnFamilyHandle cfh, List<Pair<byte[], byte[]>> rows) {
+        if ( rows.isEmpty() )
+            return 0;
+        db.update(wb->{
+            try {
+                for ( Pair<byte[], byte[]> row : rows )
+                    wb.put(cfh, row.getLeft(), row.getRight());
+            } catch (RocksDBException ex) { throw new DeltaException(ex); }
+        });
+        return rows.size();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.server.local.patchstores.rdb;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.rocksdb.*;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.server.local.LocalServerConfig;
+
+/**
+ * Settings for the RocksDB databases of a patch store, and the RocksDB objects shared by
+ * all the databases opened with these settings: the LRU block cache, the limit on
+ * memtable memory, the rate limiter for flush and compaction writes, and the statistics.
+ * <p>
+ * The shared objects are created when first needed and freed by {@link #close}, which
+ * must be called after all the databases using them have been closed.
+ * <p>
+ * The settings also control how the databases write: whether a write waits for the
+ * write-ahead log to be synced to disk, and the group commit of concurrent writes (see
+ * {@link RocksDatabase#update}).
+ * <p>
+ * {@link #tickerCount} and the {@code commit*} operations report totals over all the
+ * open {@code RocksOptions} for the server metrics.
+ */
+public class RocksOptions {
+
+    /** Settings with nothing shared and the RocksDB defaults. */
+    public static RocksOptions plain() {
+        return new RocksOptions(0, 0, null, 0, 0, false, false, 0, DeltaConst.ROCKS_COMMIT_BATCH);
+    }
+
+    /** Settings from the configuration of the server. */
+    public static RocksOptions create(LocalServerConfig config) {
+        return new RocksOptions(config.getRocksCacheBytes(), config.getRocksWriteBufferBytes(),
+                                compression(config.getRocksCompression()), config.getRocksBloomBits(),
+                                config.getRocksCompactionRate(), config.isRocksStatistics(),
+                                config.isRocksSync(), config.getRocksCommitWindow(), config.getRocksCommitBatch());
+    }
+
+    /** Settings of the server defaults. */
+    public static RocksOptions create() {
+        return new RocksOptions(DeltaConst.ROCKS_CACHE_BYTES, DeltaConst.ROCKS_WRITE_BUFFER_BYTES,
+                                compression(DeltaConst.ROCKS_COMPRESSION), DeltaConst.ROCKS_BLOOM_BITS,
+                                0, true, false, 0, DeltaConst.ROCKS_COMMIT_BATCH);
+    }
+
+    /*package*/ static CompressionType compression(String name) {
+        switch (name) {
+            case "none":    return CompressionType.NO_COMPRESSION;
+            case "snappy":  return CompressionType.SNAPPY_COMPRESSION;
+            case "lz4":     return CompressionType.LZ4_COMPRESSION;
+            case "zstd":    return CompressionType.ZSTD_COMPRESSION;
+            default:
+                throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaRocksCompression+": "+name);
+        }
+    }
+
+    // All the RocksOptions with shared objects.
+    private static final List<RocksOptions> active = new CopyOnWriteArrayList<>();
+
+    private final long cacheBytes;
+    private final long writeBufferBytes;
+    private final CompressionType compression;
+    private final int bloomBits;
+    private final long compactionRate;
+    private final boolean collectStatistics;
+    private final boolean sync;
+    private final long commitWindow;
+    private final int commitBatch;
+
+    // Group commit metrics of the databases using these settings.
+    private final LongAdder commitWrites = new LongAdder();
+    private final LongAdder commitBatches = new LongAdder();
+    private final AtomicLong commitQueued = new AtomicLong(0);
+
+    private Cache cache = null;
+    private WriteBufferManager writeBufferManager = null;
+    private RateLimiter rateLimiter = null;
+    private Statistics statistics = null;
+    private boolean started = false;
+
+    private RocksOptions(long cacheBytes, long writeBufferBytes, CompressionType compression,
+                         int bloomBits, long compactionRate, boolean collectStatistics,
+                         boolean sync, long commitWindow, int commitBatch) {
+        this.cacheBytes = cacheBytes;
+        this.writeBufferBytes = writeBufferBytes;
+        this.compression = compression;
+        this.bloomBits = bloomBits;
+        this.compactionRate = compactionRate;
+        this.collectStatistics = collectStatistics;
+        this.sync = sync;
+        this.commitWindow = commitWindow;
+        this.commitBatch = commitBatch;
+    }
+
+    /** Compression of patches, or null for the RocksDB default. */
+    public CompressionType getCompression() {
+        return compression;
+    }
+
+    /** Bits per key of the bloom filter on patch ids; zero for none. */
+    public int getBloomBits() {
+        return bloomBits;
+    }
+
+    /** Whether a write waits for the write-ahead log to be synced to disk. */
+    public boolean isSync() {
+        return sync;
+    }
+
+    /** Time, in milliseconds, a group commit waits for more writes. */
+    public long getCommitWindow() {
+        return commitWindow;
+    }
+
+    /** Maximum number of writes in one group commit. */
+    public int getCommitBatch() {
+        return commitBatch;
+    }
+
+    /*package*/ void commitQueued(int delta) {
+        commitQueued.addAndGet(delta);
+    }
+
+    /*package*/ void committed(int writes) {
+        commitWrites.add(writes);
+        commitBatches.increment();
+    }
+
+    /** The block cache shared by the databases, or null for the RocksDB default of a cache per column family. */
+    public synchronized Cache blockCache() {
+        start();
+        return cache;
+    }
+
+    /** The limit on the memtables of the databases, or null for none. */
+    public synchronized WriteBufferManager writeBufferManager() {
+        start();
+        return writeBufferManager;
+    }
+
+    /** The rate limiter for flushes and compactions, or null for none. */
+    public synchronized RateLimiter rateLimiter() {
+        start();
+        return rateLimiter;
+    }
+
+    /** The statistics collected for the databases, or null if not collected. */
+    public synchronized Statistics statistics() {
+        start();
+        return statistics;
+    }
+
+    private void start() {
+        if ( started )
+            return;
+        started = true;
+        if ( cacheBytes > 0 ) {
+            cache = new LRUCache(cacheBytes);
+            // The memtable limit is charged to the block cache.
+            if ( writeBufferBytes > 0 )
+                writeBufferManager = new WriteBufferManager(writeBufferBytes, cache);
+        }
+        if ( compactionRate > 0 )
+            rateLimiter = new RateLimiter(compactionRate);
+        if ( collectStatistics ) {
+            statistics = new Statistics();
+            statistics.setStatsLevel(StatsLevel.EXCEPT_DETAILED_TIMERS);
+        }
+        active.add(this);
+    }
+
+    /** Free the shared objects. The databases using them must be closed first. */
+    public synchronized void close() {
+        if ( ! started )
+            return;
+        active.remove(this);
+        if ( statistics != null )
+            statistics.close();
+        if ( rateLimiter != null )
+            rateLimiter.close();
+        if ( writeBufferManager != null )
+            writeBufferManager.close();
+        if ( cache != null )
+            cache.close();
+        statistics = null;
+        rateLimiter = null;
+        writeBufferManager = null;
+        cache = null;
+        started = false;
+    }
+
+    /** Total of a RocksDB statistics counter over all the databases collecting statistics. */
+    public static long tickerCount(TickerType ticker) {
+        long x = 0;
+        for ( RocksOptions opts : active ) {
+            synchronized(opts) {
+                if ( opts.statistics != null )
+                    x += opts.statistics.getTickerCount(ticker);
+            }
+        }
+        return x;
+    }
+
+    /** Total number of writes to the databases. */
+    public static long commitWrites() {
+        return active.stream().mapToLong(opts->opts.commitWrites.sum()).sum();
+    }
+
+    /** Total number of group commits to the databases, each of one or more writes. */
+    public static long commitBatches() {
+        return active.stream().mapToLong(opts->opts.commitBatches.sum()).sum();
+    }
+
+    /** Number of writes waiting for a group commit. */
+    public static long commitQueueDepth() {
+        return active.stream().mapToLong(opts->opts.commitQueued.get()).sum();
+    }
+}
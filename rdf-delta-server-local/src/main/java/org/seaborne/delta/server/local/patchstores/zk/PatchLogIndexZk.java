@@ -26,14 +26,22 @@ import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.lib.DateTimeUtils;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.data.Stat;
 import org.seaborne.delta.*;
 import org.seaborne.delta.lib.JSONX;
+import org.seaborne.delta.server.local.BinaryLogEntry;
 import org.seaborne.delta.server.local.JsonLogEntry;
 import org.seaborne.delta.server.local.LogEntry;
 import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.seaborne.delta.zk.UncheckedZkConnection;
+import org.seaborne.delta.zk.ZkException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +49,9 @@ import org.slf4j.LoggerFactory;
 public class PatchLogIndexZk implements PatchLogIndex {
     private static final Logger LOG = LoggerFactory.getLogger(PatchLogIndexZk.class);
 
+    // Maximum number of versions removed in one ZooKeeper transaction when truncating the log.
+    private static final int TruncateBatch = 500;
+
     private final Object lock = new Object();
     private final UncheckedZkConnection zk;
 
@@ -48,8 +59,13 @@ public class PatchLogIndexZk implements PatchLogIndex {
     private final String statePath;
     private final String lockPath;
     private final String lockStatePath;
+    private final String lockQueuePath;
+    // Set when the lock queue znode is known to exist.
+    private volatile boolean lockQueueExists = false;
     private final String versionsPath;
     private final String headersPath;
+    // Write the headers in the binary encoding, else in JSON. Both are read.
+    private final boolean binaryHeaders;
 
     // null => no watching.
     //private Watcher logStateWatcher = null;
@@ -62,6 +78,9 @@ public class PatchLogIndexZk implements PatchLogIndex {
     private volatile long version = Version.UNSET.value();
     private volatile Id current = null;
     private volatile Id previous = null;
+    // The znode version of the state znode when last read or written; -1 for unknown.
+    // Used to check nothing else has changed the state when committing a new entry.
+    private int stateZNodeVersion = -1;
 
     /** {@code PatchLogIndexZk}
      * <ul>
@@ -70,12 +89,23 @@ public class PatchLogIndexZk implements PatchLogIndex {
      * </ul>
      */
     public PatchLogIndexZk(UncheckedZkConnection client, String instance, DataSourceDescription dsd, String logPath) {
+        this(client, instance, dsd, logPath, false);
+    }
+
+    /**
+     * As {@link #PatchLogIndexZk(UncheckedZkConnection, String, DataSourceDescription, String)},
+     * choosing the encoding of the {@code /headers} entries written: JSON, readable by
+     * all servers, or the binary encoding of {@link BinaryLogEntry}.
+     */
+    public PatchLogIndexZk(UncheckedZkConnection client, String instance, DataSourceDescription dsd, String logPath, boolean binaryHeaders) {
         // THis gets called twice in the creator - sees its own create via ZK watcher.
         this.zk = client;
+        this.binaryHeaders = binaryHeaders;
         this.logName = dsd.getName();
         this.statePath      = ZKPaths.makePath(logPath, ZkConst.nState, new String[]{});
         this.lockPath       = ZKPaths.makePath(logPath, ZkConst.nLock, new String[]{});
         this.lockStatePath  = ZKPaths.makePath(logPath, ZkConst.nLockState, new String[]{});
+        this.lockQueuePath  = ZKPaths.makePath(logPath, ZkConst.nLockQueue, new String[]{});
         this.versionsPath   = ZKPaths.makePath(logPath, ZkConst.nVersions, new String[]{});
         this.headersPath    = ZKPaths.makePath(logPath, ZkConst.nHeaders, new String[]{});
         this.logStateWatcher = (event)->{
@@ -85,8 +115,13 @@ public class PatchLogIndexZk implements PatchLogIndex {
           }
         };
 
-        // Find earliest.
-        List<String> versions = client.fetchChildren(versionsPath);
+        findEarliest();
+        // Initialize, start watching
+        stateOrInit();
+    }
+
+    private void findEarliest() {
+        List<String> versions = this.zk.fetchChildren(versionsPath);
         //Guess: 1
         if (versions.isEmpty())
             earliestVersion = Version.INIT;
@@ -100,8 +135,6 @@ public class PatchLogIndexZk implements PatchLogIndex {
             } catch (final NoSuchElementException ignored) {  }
         }
         earliestId = versionToId(earliestVersion);
-        // Initialize, start watching
-        stateOrInit();
     }
 
     @Override
@@ -150,10 +183,16 @@ public class PatchLogIndexZk implements PatchLogIndex {
         save(version.value(), patch, prev);
     }
 
+    /**
+     * Commit the new state in one ZooKeeper transaction. For a patch, the transaction
+     * writes the header (version, id, prev), the version to id mapping and the log state.
+     * The log state update is conditional on the state znode not having changed since it
+     * was last read, so the commit also checks no other server has appended to the log.
+     */
     private void save(long version, Id patch, Id prev) {
-        newState(version, patch, prev);
         JsonObject x = stateToJson(version, patch, prev);
         byte[] bytes = JSONX.asBytes(x);
+        List<Op> ops = new ArrayList<>(3);
         if ( patch != null ) {
             // [META]
             // Record the basic header - (version, id, prev) - for validation.
@@ -161,12 +200,32 @@ public class PatchLogIndexZk implements PatchLogIndex {
              * /versions/NNNN which as just id.
              * This isn't necessary for operation.
              * It can be used to check the patch store.
+             * It is JSON, as the log state, unless the binary encoding of BinaryLogEntry
+             * has been configured; both are read.
              */
-            this.zk.createAndSetZNode(headerPath(patch), bytes);
+            byte[] header = binaryHeaders ? BinaryLogEntry.encode(version, patch, prev) : bytes;
+            ops.add(Op.create(headerPath(patch), header, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
             // Write version->id mapping.
-            this.zk.createAndSetZNode(versionPath(version), patch.asBytes());
+            ops.add(Op.create(versionPath(version), patch.asBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+        }
+        ops.add(Op.setData(statePath, bytes, stateZNodeVersion));
+        try {
+            List<OpResult> results = this.zk.multi(ops);
+            OpResult stateResult = results.get(results.size()-1);
+            if ( stateResult instanceof OpResult.SetDataResult )
+                stateZNodeVersion = ((OpResult.SetDataResult)stateResult).getStat().getVersion();
+        } catch (ZkException ex) {
+            if ( ex.getCause() instanceof KeeperException.BadVersionException ) {
+                // Resync so the next attempt starts from the current state.
+                syncState();
+                throw new DeltaException("Patch log index changed concurrently: "+logName+" version="+version);
+            }
+            if ( patch != null )
+                throw ex;
+            // Initial state, no patch: as before, log and carry on.
+            FmtLog.error(LOG, "Did not set: %s", statePath);
         }
-        this.zk.setZNode(statePath, bytes);
+        newState(version, patch, prev);
     }
 
     private void syncState() {
@@ -176,12 +235,77 @@ public class PatchLogIndexZk implements PatchLogIndex {
     }
 
     private JsonObject getWatchedState() {
-        return this.zk.fetchJson(logStateWatcher, statePath);
+        Stat stat = new Stat();
+        JsonObject obj = this.zk.fetchJson(logStateWatcher, statePath, stat);
+        if ( obj != null ) {
+            synchronized(lock) {
+                stateZNodeVersion = stat.getVersion();
+            }
+        }
+        return obj;
     }
 
     @Override
     public void syncVersionInfo() {
         syncState();
+        // Another server may have truncated the log.
+        synchronized(lock) {
+            if ( earliestVersion.isValid() && ! this.zk.pathExists(versionPath(earliestVersion)) )
+                findEarliest();
+        }
+    }
+
+    /**
+     * Remove the entries before {@code newEarliest}, in version order, in ZooKeeper
+     * transactions of at most {@link #TruncateBatch} versions. Each batch reads the patch
+     * ids and then the headers in one request each, and deletes in one transaction. If
+     * interrupted, the entries left are still a contiguous range of versions.
+     */
+    @Override
+    public void truncate(Version newEarliest) {
+        Objects.requireNonNull(newEarliest);
+        synchronized(lock) {
+            if ( ! earliestVersion.isValid() || ! newEarliest.isAfter(earliestVersion) )
+                return;
+            if ( newEarliest.value() > version )
+                throw new DeltaException("truncate: Attempt to truncate to version "+newEarliest+" after the current version "+version);
+            Id id = versionToId(newEarliest);
+            if ( id == null )
+                throw new DeltaException("truncate: No entry for version "+newEarliest);
+            for ( long v = earliestVersion.value() ; v < newEarliest.value() ; v += TruncateBatch ) {
+                long end = Math.min(v+TruncateBatch, newEarliest.value());
+                // Version -> id
+                List<Op> reads = new ArrayList<>();
+                for ( long v2 = v ; v2 < end ; v2++ )
+                    reads.add(Op.getData(versionPath(v2)));
+                List<String> paths = new ArrayList<>();
+                List<String> headers = new ArrayList<>();
+                List<OpResult> results = this.zk.multi(reads);
+                for ( int i = 0 ; i < results.size() ; i++ ) {
+                    if ( ! ( results.get(i) instanceof OpResult.GetDataResult ) )
+                        continue;
+                    paths.add(versionPath(v+i));
+                    headers.add(headerPath(Id.fromBytes(((OpResult.GetDataResult)results.get(i)).getData())));
+                }
+                // Only delete headers that exist: a delete of a missing znode fails the transaction.
+                if ( ! headers.isEmpty() ) {
+                    reads.clear();
+                    headers.forEach(path->reads.add(Op.getData(path)));
+                    results = this.zk.multi(reads);
+                    for ( int i = 0 ; i < results.size() ; i++ ) {
+                        if ( results.get(i) instanceof OpResult.GetDataResult )
+                            paths.add(headers.get(i));
+                    }
+                }
+                if ( paths.isEmpty() )
+                    continue;
+                List<Op> deletes = new ArrayList<>(paths.size());
+                paths.forEach(path->deletes.add(Op.delete(path, -1)));
+                this.zk.multi(deletes);
+            }
+            earliestVersion = newEarliest;
+            earliestId = id;
+        }
     }
 
     private void stateOrInit() {
@@ -270,17 +394,18 @@ public class PatchLogIndexZk implements PatchLogIndex {
 
     @Override
     public Version idToVersion(Id id) {
-        String p = headerPath(id);
-        JsonObject obj = this.zk.fetchJson(p);
-        LogEntry entry = JsonLogEntry.jsonToLogEntry(obj);
-        return entry.getVersion();
+        byte[] b = this.zk.fetch(headerPath(id));
+        if ( b == null )
+            return null;
+        return BinaryLogEntry.decodeVersion(b);
     }
 
     @Override
     public LogEntry getPatchInfo(Id id) {
-        String p = headerPath(id);
-        JsonObject obj = this.zk.fetchJson(p);
-        return JsonLogEntry.jsonToLogEntry(obj);
+        byte[] b = this.zk.fetch(headerPath(id));
+        if ( b == null )
+            return null;
+        return BinaryLogEntry.decode(b);
    }
 
     private String versionPath(Version ver) { return versionPath(ver.value()) ; }
@@ -327,6 +452,95 @@ public class PatchLogIndexZk implements PatchLogIndex {
 
     @Override
     public Id acquireLock() {
+        // Do not jump the queue of waiting requests.
+        if ( ! lockQueueEmpty() )
+            return null;
+        return acquireLock$();
+    }
+
+    /**
+     * Wait for the lock, in FIFO order across all the servers. Each waiting request has
+     * an ephemeral, sequential znode in the lock queue. The request with the lowest
+     * sequence number waits for the lock state to change; the others wait for the
+     * request before them to leave the queue.
+     */
+    @Override
+    public Id acquireLock(long timeoutMillis) {
+        if ( timeoutMillis <= 0 )
+            return acquireLock();
+        if ( lockQueueEmpty() ) {
+            Id session = acquireLock$();
+            if ( session != null )
+                return session;
+        }
+        long finishTime = System.currentTimeMillis() + timeoutMillis;
+        String waiterPath = this.zk.createZNode(ZKPaths.makePath(lockQueuePath, ZkConst.nLockWaiter), CreateMode.EPHEMERAL_SEQUENTIAL);
+        String waiter = ZKPaths.getNodeFromPath(waiterPath);
+        Object monitor = new Object();
+        Watcher watcher = (event)->{
+            synchronized(monitor) {
+                monitor.notifyAll();
+            }
+        };
+        try {
+            for(;;) {
+                List<String> waiters = this.zk.fetchChildren(lockQueuePath);
+                if ( waiters == null || ! waiters.contains(waiter) ) {
+                    // Lost the znode (e.g. session expired).
+                    FmtLog.warn(LOG, "[%s] Lock queue entry lost: %s", logName, waiterPath);
+                    return null;
+                }
+                Collections.sort(waiters);
+                int idx = waiters.indexOf(waiter);
+                if ( idx == 0 ) {
+                    Id session = acquireLock$();
+                    if ( session != null )
+                        return session;
+                }
+                long remaining = finishTime - System.currentTimeMillis();
+                if ( remaining <= 0 )
+                    return null;
+                synchronized(monitor) {
+                    // Set the watch, then wait. The watcher can not run until this thread waits.
+                    boolean changed = ( idx == 0 )
+                        ? watchLockFree(watcher)
+                        : watchGone(watcher, ZKPaths.makePath(lockQueuePath, waiters.get(idx-1)));
+                    if ( changed )
+                        continue;
+                    try { monitor.wait(Math.min(remaining, DeltaConst.AWAIT_POLL_MS)); }
+                    catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+            }
+        } finally {
+            try { this.zk.deleteZNodeAndChildren(waiterPath); }
+            catch (ZkException ex) { FmtLog.warn(LOG, "[%s] Failed to remove lock queue entry: %s", logName, waiterPath); }
+        }
+    }
+
+    private boolean lockQueueEmpty() {
+        if ( ! lockQueueExists ) {
+            this.zk.ensurePathExists(lockQueuePath);
+            lockQueueExists = true;
+        }
+        List<String> waiters = this.zk.fetchChildren(lockQueuePath);
+        return waiters == null || waiters.isEmpty();
+    }
+
+    /** Watch the lock state. Return true if the lock is already free. */
+    private boolean watchLockFree(Watcher watcher) {
+        byte[] bytes = this.zk.fetch(watcher, lockStatePath);
+        return bytes == null || bytes.length == 0;
+    }
+
+    /** Watch a znode. Return true if it has already gone. */
+    private boolean watchGone(Watcher watcher, String path) {
+        return this.zk.fetch(watcher, path) == null;
+    }
+
+    private Id acquireLock$() {
         // And createSet
 
         // Short or long term lock?
@@ -361,18 +575,38 @@ public class PatchLogIndexZk implements PatchLogIndex {
         return true;
     }
 
+    /**
+     * The operation to refresh the lock, for use in a ZooKeeper transaction, or null if
+     * the lock is not held by {@code session}. The operation fails if the lock state
+     * changes after it has been read here.
+     */
+    /*package*/ Op refreshLockOp(Id session) {
+        Stat stat = new Stat();
+        LockState lockState = lockState(this.zk.fetchJson(null, lockStatePath, stat));
+        if ( LockState.isFree(lockState) || ! session.equals(lockState.session) )
+            return null;
+        byte[] bytes = JSONX.asBytes(lockStateJson(session, lockState.ticks+1));
+        return Op.setData(lockStatePath, bytes, stat.getVersion());
+    }
+
     private void writeLockState(Id session, long ticks) {
-        JsonObject value = JSON.buildObject(builder->{
+        this.zk.setZNode(lockStatePath, lockStateJson(session, ticks));
+    }
+
+    private static JsonObject lockStateJson(Id session, long ticks) {
+        return JSON.buildObject(builder->{
             builder.pair(jTimestamp, DateTimeUtils.nowAsXSDDateTimeString());
             builder.pair(jLockId, session.asPlainString());
             builder.pair(jTicks, ticks);
         });
-        this.zk.setZNode(lockStatePath, value);
     }
 
     @Override
     public LockState readLock() {
-        JsonObject value = this.zk.fetchJson(lockStatePath);
+        return lockState(this.zk.fetchJson(lockStatePath));
+    }
+
+    private static LockState lockState(JsonObject value) {
         if ( value == null || value.isEmpty() )
             return LockState.UNLOCKED;
         // Validate?
@@ -19,6 +19,7 @@ package org.seaborne.delta.server.local.patchstores.zk;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -29,6 +30,7 @@ import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.delta.zk.UncheckedZkConnection;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,7 +76,16 @@ public class PatchStorageZk implements PatchStorage {
             return null;
         if ( b.length == 0 )
             FmtLog.warn(LOG, "fetch(%s) : Zero bytes", key);
-        return RDFPatchOps.read(new ByteArrayInputStream(b));
+        return new RDFPatchSized(RDFPatchOps.read(new ByteArrayInputStream(b)), b.length);
+    }
+
+    @Override
+    public InputStream openStream(Id key) {
+        String p = ZKPaths.makePath(patches, key.asPlainString(), new String[]{});
+        byte[] b = this.zk.fetch(p);
+        if ( b == null )
+            return null;
+        return new ByteArrayInputStream(b);
     }
 
     @Override
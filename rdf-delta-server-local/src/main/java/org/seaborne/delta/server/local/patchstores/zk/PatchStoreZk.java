@@ -29,16 +29,20 @@ import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.lib.SetUtils;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.zookeeper.Op;
 import org.apache.zookeeper.Watcher;
 import org.seaborne.delta.DataSourceDescription;
 import org.seaborne.delta.DeltaBadRequestException;
+import org.seaborne.delta.Id;
 import org.seaborne.delta.server.local.LocalServerConfig;
 import org.seaborne.delta.server.local.PatchLog;
 import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.PatchStoreProvider;
+import org.seaborne.delta.server.local.patchstores.PatchLogBase;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.delta.zk.UncheckedZkConnection;
+import org.seaborne.delta.zk.ZkException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -293,7 +297,8 @@ public class PatchStoreZk extends PatchStore {
     protected PatchLogIndex newPatchLogIndex(DataSourceDescription dsd, PatchStore patchStore, LocalServerConfig configuration) {
         PatchStoreZk patchStoreZk = (PatchStoreZk)patchStore;
         String logPath = ZKPaths.makePath(ZkConst.pLogs, dsd.getName(), new String[]{});
-        return new PatchLogIndexZk(patchStoreZk.getClient(), patchStoreZk.getInstance(), dsd, logPath);
+        return new PatchLogIndexZk(patchStoreZk.getClient(), patchStoreZk.getInstance(), dsd, logPath,
+                                   configuration != null && configuration.isZkHeadersBinary());
     }
 
     @Override
@@ -324,6 +329,46 @@ public class PatchStoreZk extends PatchStore {
         });
     }
 
+    /**
+     * Refresh the locks in one ZooKeeper transaction. The lock state of each patch log is
+     * read, then the new lock states are written together, each conditional on the lock
+     * state not having changed since it was read. If any lock state has changed (e.g. the
+     * lock has been grabbed), the locks are refreshed one at a time.
+     */
+    @Override
+    public Set<PatchLog> refreshLocks(Map<PatchLog, Id> locks) {
+        Set<PatchLog> failed = new HashSet<>();
+        List<PatchLog> batched = new ArrayList<>();
+        List<Op> ops = new ArrayList<>();
+        locks.forEach((patchLog, session)->{
+            PatchLogIndex logIndex = ( patchLog instanceof PatchLogBase ) ? ((PatchLogBase)patchLog).getPatchLogIndex() : null;
+            if ( ! ( logIndex instanceof PatchLogIndexZk ) ) {
+                if ( ! patchLog.refreshLock(session) )
+                    failed.add(patchLog);
+                return;
+            }
+            Op op = ((PatchLogIndexZk)logIndex).refreshLockOp(session);
+            if ( op == null ) {
+                failed.add(patchLog);
+                return;
+            }
+            batched.add(patchLog);
+            ops.add(op);
+        });
+        if ( ops.isEmpty() )
+            return failed;
+        try {
+            this.zk.multi(ops);
+        } catch (ZkException ex) {
+            FmtLog.debug(LOGZK, "[%s] Batch lock refresh failed: %s", instance, ex.getMessage());
+            batched.forEach(patchLog->{
+                if ( ! patchLog.refreshLock(locks.get(patchLog)) )
+                    failed.add(patchLog);
+            });
+        }
+        return failed;
+    }
+
     /**
      * Format an area for a new patch log. The log area is expected not to exist
      * initially.
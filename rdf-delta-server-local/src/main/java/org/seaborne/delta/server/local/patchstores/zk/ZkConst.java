@@ -29,6 +29,7 @@ public class ZkConst {
      * /delta/logs/NAME
      * /delta/logs/NAME/dsd
      * /delta/logs/NAME/lock
+     * /delta/logs/NAME/lockQueue/w-0000000000   Requests waiting for the patch log lock (ephemeral, sequential).
      * /delta/logs/NAME/state               (first_version: ,  DataSourceDescription)
      * /delta/logs/NAME/versions/00000000   Patch ids.
      * /delta/logs/NAME/header/00000000     Patches, JSON state (optional).
@@ -52,6 +53,8 @@ public class ZkConst {
     static final String nPatches        = "patches";
     static final String nLock           = "lock";
     static final String nLockState      = "noprefixlockState";
+    static final String nLockQueue      = "lockQueue";
+    static final String nLockWaiter     = "w-";
 
     // Version to id.
     static final String nVersions       = "versions";
@@ -19,7 +19,10 @@ package org.seaborne.delta.zk;
 
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
 
 import java.util.List;
 
@@ -50,6 +53,9 @@ public interface UncheckedZkConnection extends ZkConnection {
     @Override
     public JsonObject fetchJson(Watcher watcher, String path);
 
+    @Override
+    public JsonObject fetchJson(Watcher watcher, String path, Stat stat);
+
     @Override
     public List<String> fetchChildren(String path);
 
@@ -77,6 +83,9 @@ public interface UncheckedZkConnection extends ZkConnection {
     @Override
     public void deleteZNodeAndChildren(String path);
 
+    @Override
+    public List<OpResult> multi(Iterable<Op> ops);
+
     @Override
     public void close();
 }
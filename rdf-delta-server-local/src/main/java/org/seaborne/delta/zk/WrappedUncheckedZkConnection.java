@@ -20,7 +20,10 @@ package org.seaborne.delta.zk;
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
 import java.util.List;
 import java.util.function.Supplier;
 
@@ -75,6 +78,11 @@ public final class WrappedUncheckedZkConnection implements UncheckedZkConnection
         return hideException(() -> this.decorated.fetchJson(watcher, path));
     }
 
+    @Override
+    public JsonObject fetchJson(final Watcher watcher, final String path, final Stat stat) {
+        return hideException(() -> this.decorated.fetchJson(watcher, path, stat));
+    }
+
     @Override
     public List<String> fetchChildren(final String path) {
         try {
@@ -133,6 +141,11 @@ public final class WrappedUncheckedZkConnection implements UncheckedZkConnection
         );
     }
 
+    @Override
+    public List<OpResult> multi(final Iterable<Op> ops) {
+        return wrapException(() -> this.decorated.multi(ops));
+    }
+
     @Override
     public void runWithLock(final String path, final Runnable action) {
         this.decorated.runWithLock(path, action);
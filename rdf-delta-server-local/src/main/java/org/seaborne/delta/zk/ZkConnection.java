@@ -19,7 +19,10 @@ package org.seaborne.delta.zk;
 
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
 
 import java.util.List;
 import java.util.function.Supplier;
@@ -37,6 +40,9 @@ public interface ZkConnection extends AutoCloseable {
 
     JsonObject fetchJson(Watcher watcher, String path) throws Exception;
 
+    /** Fetch, setting a watch, and fill in the {@link Stat} of the znode. */
+    JsonObject fetchJson(Watcher watcher, String path, Stat stat) throws Exception;
+
     List<String> fetchChildren(String path) throws Exception;
 
     List<String> fetchChildren(Watcher watcher, String path) throws Exception;
@@ -55,6 +61,12 @@ public interface ZkConnection extends AutoCloseable {
 
     void deleteZNodeAndChildren(String path) throws Exception;
 
+    /**
+     * Perform the operations as one ZooKeeper transaction: either all the operations
+     * succeed or none of them are applied.
+     */
+    List<OpResult> multi(Iterable<Op> ops) throws Exception;
+
     void runWithLock(String path, Runnable action);
 
     <X> X runWithLock(String path, Supplier<X> action);
@@ -20,6 +20,7 @@ package org.seaborne.delta.zk.direct;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.zookeeper.*;
+import org.apache.zookeeper.data.Stat;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.lib.JSONX;
 import org.seaborne.delta.zk.ZkConnection;
@@ -108,6 +109,12 @@ public final class DirectZkConnection implements ZkConnection {
         return JSONX.fromBytes(this.fetch(watcher, path));
     }
 
+    @Override
+    public JsonObject fetchJson(final Watcher watcher, final String path, final Stat stat) throws Exception {
+        LOG.debug("Fetching {}.", path);
+        return JSONX.fromBytes(this.client.zooKeeper().getData(path, watcher, stat));
+    }
+
     @Override
     public List<String> fetchChildren(final String path) throws KeeperException, InterruptedException {
         LOG.debug("Fetching the children of {}.", path);
@@ -179,6 +186,12 @@ public final class DirectZkConnection implements ZkConnection {
         transaction.delete(path, this.client.zooKeeper().exists(path, false).getVersion());
     }
 
+    @Override
+    public List<OpResult> multi(final Iterable<Op> ops) throws KeeperException, InterruptedException {
+        LOG.debug("Multi-operation transaction.");
+        return this.client.zooKeeper().multi(ops);
+    }
+
     @Override
     public void runWithLock(final String path, final Runnable action) {
         this.runWithLock(path, () -> {
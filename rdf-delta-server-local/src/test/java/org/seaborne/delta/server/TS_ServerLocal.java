@@ -27,10 +27,19 @@ import org.seaborne.delta.server.patchstores.*;
 @Suite.SuiteClasses( {
     TestLocalServerBuildConfig.class
     , TestFileStore.class
+    , TestCheckpointIndex.class
+    , TestBinaryLogEntry.class
+    , TestSegmentStore.class
+    , TestPatchCache.class
+    , TestPatchLogNotifier.class
+    , TestSnapshots.class
+    , TestRetention.class
+    , TestLinkListenerTimes.class
 
     , TestPatchStorageMem.class
     // , TestPatchStorageFile.class :: TestFileStore covers it.
     , TestPatchStorageRocks.class
+    , TestPatchStorageRocksTuned.class
     , TestPatchStorageZk.class
 
     , TestPatchLogIndexMem.class
@@ -42,11 +51,14 @@ import org.seaborne.delta.server.patchstores.*;
     // TestPatchLog* and TestPatchStore* should be enough.
     , TestPatchLogMem.class
     , TestPatchLogFile.class   // New
+    , TestPatchLogFileSegments.class
+    , TestPatchLogRocksShared.class
     , TestPatchLogZk.class
 
     , TestPatchStoreMem.class
     , TestPatchStoreFile.class
     , TestPatchStoreRocks.class
+    , TestPatchStoreRocksShared.class
     , TestPatchStoreZk.class
 
     , TestLocalServer.class
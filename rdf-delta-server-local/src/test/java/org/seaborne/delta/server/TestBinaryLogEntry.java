@@ -0,0 +1,85 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.JSONX;
+import org.seaborne.delta.server.local.BinaryLogEntry;
+import org.seaborne.delta.server.local.JsonLogEntry;
+import org.seaborne.delta.server.local.LogEntry;
+
+public class TestBinaryLogEntry {
+
+    private static void roundTrip(LogEntry entry) {
+        byte[] bytes = BinaryLogEntry.encode(entry);
+        assertFalse(BinaryLogEntry.isJson(bytes));
+        LogEntry entry2 = BinaryLogEntry.decode(bytes);
+        assertEquals(entry.getPatchId(), entry2.getPatchId());
+        assertEquals(entry.getVersion(), entry2.getVersion());
+        assertEquals(entry.getPrevious(), entry2.getPrevious());
+        assertEquals(entry.getVersion(), BinaryLogEntry.decodeVersion(bytes));
+    }
+
+    @Test public void logEntry_uuid() {
+        LogEntry entry = new LogEntry(Id.create(), Version.create(12), Id.create());
+        roundTrip(entry);
+        // Fixed width.
+        assertEquals(42, BinaryLogEntry.encode(entry).length);
+    }
+
+    @Test public void logEntry_noPrevious() {
+        LogEntry entry = new LogEntry(Id.create(), Version.FIRST, null);
+        roundTrip(entry);
+        assertNull(BinaryLogEntry.decode(BinaryLogEntry.encode(entry)).getPrevious());
+    }
+
+    @Test public void logEntry_stringIds() {
+        Id id1 = Id.fromBytes("patch-1".getBytes(StandardCharsets.UTF_8));
+        Id id2 = Id.fromBytes("patch-2".getBytes(StandardCharsets.UTF_8));
+        roundTrip(new LogEntry(id2, Version.create(2), id1));
+        roundTrip(new LogEntry(id2, Version.create(2), Id.create()));
+    }
+
+    @Test public void logEntry_stringIds_16() {
+        // A string id of 16 bytes is not a UUID.
+        Id id = Id.fromStringBytes("patch-0123456789".getBytes(StandardCharsets.UTF_8));
+        assertFalse(id.isUUID());
+        LogEntry entry2 = BinaryLogEntry.decode(BinaryLogEntry.encode(new LogEntry(id, Version.create(3), id)));
+        assertEquals(id, entry2.getPatchId());
+        assertEquals(id, entry2.getPrevious());
+    }
+
+    @Test public void logEntry_json() {
+        LogEntry entry = new LogEntry(Id.create(), Version.create(7), Id.create());
+        byte[] bytes = JSONX.asBytes(JsonLogEntry.logEntryToJson(entry));
+        assertTrue(BinaryLogEntry.isJson(bytes));
+        LogEntry entry2 = BinaryLogEntry.decode(bytes);
+        assertEquals(entry.getPatchId(), entry2.getPatchId());
+        assertEquals(entry.getPrevious(), entry2.getPrevious());
+        assertEquals(Version.create(7), BinaryLogEntry.decodeVersion(bytes));
+    }
+}
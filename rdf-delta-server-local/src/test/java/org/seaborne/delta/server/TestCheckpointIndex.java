@@ -0,0 +1,128 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.file.CheckpointIndex;
+
+public class TestCheckpointIndex {
+    static final Path DIR = Paths.get("target/test/checkpoint");
+    static final Path FILE = DIR.resolve("index.dat");
+
+    @BeforeClass
+    static public void beforeClass() {
+        FileOps.ensureDir(DIR.toString());
+    }
+
+    @After
+    public void afterTest() {
+        FileOps.clearDirectory(DIR.toString());
+    }
+
+    @Test
+    public void checkpoint_01() {
+        CheckpointIndex index = CheckpointIndex.open(FILE);
+        assertTrue(index.isEmpty());
+        assertTrue(index.recover().isEmpty());
+        index.close();
+    }
+
+    @Test
+    public void checkpoint_02() {
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        CheckpointIndex index = CheckpointIndex.open(FILE);
+        index.append(Version.create(1), id1, null);
+        index.append(Version.create(2), id2, id1);
+        index.close();
+
+        CheckpointIndex index2 = CheckpointIndex.open(FILE);
+        List<LogEntry> entries = index2.recover();
+        index2.close();
+        assertEquals(2, entries.size());
+        assertEquals(id1, entries.get(0).getPatchId());
+        assertNull(entries.get(0).getPrevious());
+        assertEquals(Version.create(2), entries.get(1).getVersion());
+        assertEquals(id2, entries.get(1).getPatchId());
+        assertEquals(id1, entries.get(1).getPrevious());
+    }
+
+    @Test
+    public void checkpoint_03() throws Exception {
+        // Partial record at the end.
+        Id id1 = Id.create();
+        CheckpointIndex index = CheckpointIndex.open(FILE);
+        index.append(Version.create(1), id1, null);
+        index.close();
+        long size = Files.size(FILE);
+        try ( OutputStream out = Files.newOutputStream(FILE, StandardOpenOption.APPEND) ) {
+            out.write(new byte[] {0, 0, 0, 40, 1, 2, 3});
+        }
+
+        CheckpointIndex index2 = CheckpointIndex.open(FILE);
+        List<LogEntry> entries = index2.recover();
+        assertEquals(1, entries.size());
+        assertEquals(size, Files.size(FILE));
+        // Append after repair.
+        Id id2 = Id.create();
+        index2.append(Version.create(2), id2, id1);
+        index2.close();
+
+        CheckpointIndex index3 = CheckpointIndex.open(FILE);
+        assertEquals(2, index3.recover().size());
+        index3.close();
+    }
+
+    @Test
+    public void checkpoint_04() throws Exception {
+        // Corrupt record.
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        CheckpointIndex index = CheckpointIndex.open(FILE);
+        index.append(Version.create(1), id1, null);
+        long size = Files.size(FILE);
+        index.append(Version.create(2), id2, id1);
+        index.close();
+        byte[] bytes = Files.readAllBytes(FILE);
+        bytes[bytes.length-6] ^= 0x01;
+        Files.write(FILE, bytes);
+
+        CheckpointIndex index2 = CheckpointIndex.open(FILE);
+        List<LogEntry> entries = index2.recover();
+        index2.close();
+        assertEquals(1, entries.size());
+        assertEquals(size, Files.size(FILE));
+    }
+}
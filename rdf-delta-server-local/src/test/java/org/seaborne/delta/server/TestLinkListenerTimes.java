@@ -0,0 +1,161 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.link.DeltaLinkListener;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.seaborne.delta.server.local.LocalServers;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+
+/** The timing and lock events of {@link DeltaLinkLocal}. */
+public class TestLinkListenerTimes {
+
+    // Records the timing and lock events.
+    static class Recorder implements DeltaLinkListener {
+        final List<Version> appends = new ArrayList<>();
+        int fetches = 0;
+        final List<Id> acquired = new ArrayList<>();
+        final List<Id> released = new ArrayList<>();
+
+        @Override
+        public void appendTime(Id dsRef, Version version, RDFPatch patch, long nanos) {
+            assertTrue(nanos >= 0);
+            appends.add(version);
+        }
+
+        @Override
+        public void fetchTime(Id dsRef, long nanos) {
+            assertTrue(nanos >= 0);
+            fetches++;
+        }
+
+        @Override
+        public void lockAcquired(Id dsRef, Id session, long nanos) {
+            assertTrue(nanos >= 0);
+            acquired.add(session);
+        }
+
+        @Override
+        public void lockReleased(Id dsRef, Id session) {
+            released.add(session);
+        }
+
+        @Override
+        public boolean fetchesPatches() {
+            return false;
+        }
+    }
+
+    private DeltaLinkLocal dLink;
+    private Recorder recorder;
+    private Id dsRef;
+
+    @Before
+    public void beforeTest() {
+        dLink = (DeltaLinkLocal)DeltaLinkLocal.connect(LocalServers.createMem());
+        dsRef = dLink.newDataSource("ABC", "http://example/ABC");
+        recorder = new Recorder();
+        dLink.addListener(recorder);
+    }
+
+    @After
+    public void afterTest() {
+        dLink.close();
+    }
+
+    private Version append() {
+        Id prev = dLink.getPatchLogInfo(dsRef).getLatestPatch();
+        RDFPatch patch = RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), Id.create().asNode(), prev == null ? null : prev.asNode());
+        return dLink.append(dsRef, patch);
+    }
+
+    @Test public void listener_append_fetch() {
+        Version version = append();
+        assertEquals(1, recorder.appends.size());
+        assertEquals(version, recorder.appends.get(0));
+
+        RDFPatch patch = dLink.fetch(dsRef, version);
+        assertEquals(1, recorder.fetches);
+        dLink.fetch(dsRef, Id.fromNode(patch.getId()));
+        assertEquals(2, recorder.fetches);
+    }
+
+    @Test public void listener_fetch_bytes() {
+        Version version = append();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // No listener looks at the patches so the bytes are copied.
+        assertTrue(dLink.fetchBytes(dsRef, null, version, out));
+        assertTrue(out.size() > 0);
+        assertEquals(1, recorder.fetches);
+    }
+
+    @Test public void listener_fetch_range() {
+        append();
+        append();
+        Version version = append();
+        try ( Stream<RDFPatch> patches = dLink.fetchRange(dsRef, Version.FIRST, version) ) {
+            // Lazy: nothing fetched yet.
+            assertEquals(0, recorder.fetches);
+            assertEquals(3, patches.count());
+        }
+        assertEquals(3, recorder.fetches);
+    }
+
+    @Test public void listener_fetch_range_squashed() {
+        append();
+        append();
+        Version version = append();
+        try ( Stream<RDFPatch> patches = dLink.fetchRangeSquashed(dsRef, Version.FIRST, version) ) {
+            assertEquals(1, patches.count());
+        }
+        assertEquals(1, recorder.fetches);
+    }
+
+    @Test public void listener_lock() {
+        Id session = dLink.acquireLock(dsRef);
+        assertNotNull(session);
+        assertEquals(1, recorder.acquired.size());
+        assertEquals(session, recorder.acquired.get(0));
+
+        // Held: times out.
+        Id session2 = dLink.acquireLock(dsRef, 10);
+        assertNull(session2);
+        assertEquals(2, recorder.acquired.size());
+        assertNull(recorder.acquired.get(1));
+
+        dLink.releaseLock(dsRef, session);
+        assertEquals(1, recorder.released.size());
+        assertEquals(session, recorder.released.get(0));
+    }
+}
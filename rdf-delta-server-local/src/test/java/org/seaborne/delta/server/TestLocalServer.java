@@ -19,10 +19,15 @@ package org.seaborne.delta.server;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.atlas.lib.FileOps;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.seaborne.delta.lib.IOX;
 import org.seaborne.delta.server.local.*;
 
 /**
@@ -34,13 +39,24 @@ public class TestLocalServer {
     
     // This is the pre-setup testing area and is not modified in tests.
     public static String SERVER_DIR = "testing/DeltaServer";
-    
+    // Copy of the testing area. Starting a server writes files into the area (index.dat).
+    private static String DIR = "target/testing/DeltaServer";
+
     @BeforeClass public static void beforeClass() {
         DPS.resetSystem();
+        copyServerDir(DIR);
+    }
+
+    /** Copy the pre-setup testing area to {@code dir}, replacing any previous contents. */
+    /*package*/ static void copyServerDir(String dir) {
+        FileOps.ensureDir(dir);
+        FileOps.clearAll(dir);
+        try { FileUtils.copyDirectory(new File(SERVER_DIR), new File(dir)); }
+        catch (IOException ex) { throw IOX.exception(ex); }
     }
 
     @Test public void local_server_01() {
-        LocalServer server = LocalServers.createFile(SERVER_DIR);
+        LocalServer server = LocalServers.createFile(DIR);
         List<DataSource> sources = server.listDataSources();
         assertEquals(2, sources.size());
         test(sources.get(0));
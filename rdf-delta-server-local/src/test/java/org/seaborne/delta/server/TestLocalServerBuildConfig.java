@@ -60,7 +60,10 @@ public class TestLocalServerBuildConfig {
     }
 
     @Test public void local_server_config_02() {
-        LocalServer server = LocalServers.createFromConf(TESTING+"DeltaServer/delta.cfg");
+        // Starting the server writes to the area so use a copy.
+        String DIR = "target/testing/DeltaServerConfig";
+        TestLocalServer.copyServerDir(DIR);
+        LocalServer server = LocalServers.createFromConf(DIR+"/delta.cfg");
         assertEquals(Provider.LOCAL, server.getPatchStore().getProvider().getType());
     }
 
@@ -22,13 +22,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.tdb.base.file.Location;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -36,7 +32,6 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
-import org.seaborne.delta.lib.IOX;
 import org.seaborne.delta.lib.LogX;
 import org.seaborne.delta.server.local.DPS;
 import org.seaborne.delta.server.local.LocalServer;
@@ -60,11 +55,8 @@ public class TestLocalServerCreateDelete {
     }
 
     private static void initialize() {
-        Location loc = Location.create(DIR);
-        FileOps.clearAll(DIR);
         // Copy in test setup.
-        try { FileUtils.copyDirectory(new File(TestLocalServer.SERVER_DIR), new File(DIR)); }
-        catch (IOException ex) { throw IOX.exception(ex); }
+        TestLocalServer.copyServerDir(DIR);
 
         DPS.resetSystem();
     }
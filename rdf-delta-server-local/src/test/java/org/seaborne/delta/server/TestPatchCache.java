@@ -0,0 +1,184 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.server.local.PatchCache;
+import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.PatchStorageCached;
+import org.seaborne.delta.server.local.patchstores.mem.PatchStorageMem;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSized;
+import org.seaborne.patch.system.RDFPatchSpooled;
+import org.seaborne.patch.system.Spool;
+
+public class TestPatchCache {
+
+    private static RDFPatch patch(Id id) {
+        Node s = SSE.parseNode(":s");
+        Node p = SSE.parseNode(":p");
+        Node o = SSE.parseNode("'"+id.asPlainString()+"'");
+        return RDFPatchOps.build(c->{
+            c.header(RDFPatchConst.ID, id.asNode());
+            c.txnBegin();
+            c.add(null, s, p, o);
+            c.txnCommit();
+        });
+    }
+
+    @Test public void patchCache_1() {
+        PatchCache cache = new PatchCache(1024*1024);
+        Id id = Id.create();
+        assertNull(cache.get(id));
+        assertEquals(1, cache.misses());
+
+        RDFPatch patch = patch(id);
+        cache.put(id, patch);
+        assertSame(patch, cache.get(id));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.entries());
+        assertEquals(PatchCache.sizeOf(patch), cache.bytes());
+
+        cache.remove(id);
+        assertNull(cache.get(id));
+        assertEquals(0, cache.entries());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test public void patchCache_bounded() {
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        Id id3 = Id.create();
+        RDFPatch patch1 = patch(id1);
+        long size = PatchCache.sizeOf(patch1);
+        // Room for two patches.
+        PatchCache cache = new PatchCache(2*size+size/2);
+        cache.put(id1, patch1);
+        cache.put(id2, patch(id2));
+        // Touch id1 so id2 is the least recently used.
+        assertNotNull(cache.get(id1));
+        cache.put(id3, patch(id3));
+
+        assertEquals(2, cache.entries());
+        assertEquals(1, cache.evictions());
+        assertTrue(cache.bytes() <= cache.getMaxBytes());
+        assertNotNull(cache.get(id1));
+        assertNull(cache.get(id2));
+        assertNotNull(cache.get(id3));
+    }
+
+    @Test public void patchCache_tooBig() {
+        Id id = Id.create();
+        RDFPatch patch = patch(id);
+        PatchCache cache = new PatchCache(PatchCache.sizeOf(patch)-1);
+        cache.put(id, patch);
+        assertEquals(0, cache.entries());
+        assertNull(cache.get(id));
+    }
+
+    @Test public void patchCache_disabled() {
+        PatchCache cache = new PatchCache(0);
+        assertFalse(cache.isEnabled());
+        Id id = Id.create();
+        cache.put(id, patch(id));
+        assertEquals(0, cache.entries());
+    }
+
+    @Test public void patchCache_resize() {
+        PatchCache cache = new PatchCache(1024*1024);
+        for ( int i = 0 ; i < 10 ; i++ ) {
+            Id id = Id.create();
+            cache.put(id, patch(id));
+        }
+        assertEquals(10, cache.entries());
+        cache.setMaxBytes(0);
+        assertEquals(0, cache.entries());
+        assertEquals(0, cache.bytes());
+        assertEquals(10, cache.evictions());
+    }
+
+    @Test public void patchStorageCached() {
+        PatchCache cache = new PatchCache(1024*1024);
+        PatchStorage storage = new PatchStorageMem();
+        PatchStorage patchStorage = new PatchStorageCached(storage, cache);
+        Id id = Id.create();
+        // Size known: cached when stored.
+        RDFPatch patch = new RDFPatchSized(patch(id), 100);
+        patchStorage.store(id, patch);
+        assertEquals(1, cache.entries());
+        assertEquals(100, cache.bytes());
+        assertNotNull(patchStorage.fetch(id));
+        assertEquals(1, cache.hits());
+
+        // Not in the cache - goes to storage and is then cached, with the size from storage.
+        cache.clear();
+        RDFPatch patch2 = patchStorage.fetch(id);
+        assertNotNull(patch2);
+        assertFalse(patch2 instanceof RDFPatchSized);
+        assertEquals(1, cache.misses());
+        assertEquals(100, cache.bytes());
+        assertNotNull(patchStorage.fetch(id));
+        assertEquals(2, cache.hits());
+
+        patchStorage.delete(id);
+        assertEquals(0, cache.entries());
+        assertNull(patchStorage.fetch(id));
+        assertNull(storage.fetch(id));
+    }
+
+    @Test public void patchStorageCached_unsized() {
+        PatchCache cache = new PatchCache(1024*1024);
+        PatchStorage patchStorage = new PatchStorageCached(new PatchStorageMem(), cache);
+        Id id = Id.create();
+        patchStorage.store(id, patch(id));
+        // Size not known: not cached until fetched.
+        assertEquals(0, cache.entries());
+        assertNotNull(patchStorage.fetch(id));
+        assertEquals(1, cache.entries());
+    }
+
+    @Test public void patchCache_sized() {
+        PatchCache cache = new PatchCache(1024*1024);
+        Id id = Id.create();
+        RDFPatch patch = new RDFPatchSized(patch(id), 1234);
+        assertEquals(1234, PatchCache.sizeOf(patch));
+        cache.put(id, patch);
+        assertEquals(1234, cache.bytes());
+        cache.put(id, patch(id), 100);
+        assertEquals(100, cache.bytes());
+    }
+
+    @Test public void patchStorageCached_spooled() {
+        PatchCache cache = new PatchCache(1024*1024);
+        PatchStorage patchStorage = new PatchStorageCached(new PatchStorageMem(), cache);
+        Id id = Id.create();
+        Spool spool = new Spool();
+        RDFPatchOps.writeBinary(spool, patch(id));
+        RDFPatch patch = RDFPatchSpooled.create(spool, true);
+        patchStorage.store(id, patch);
+        // Not cached when stored.
+        assertEquals(0, cache.entries());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.atlas.lib.Lib;
+import org.junit.Test;
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogInfo;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.PatchLogNotifier;
+
+public class TestPatchLogNotifier {
+    private static Id dsRef = Id.create();
+    private static DataSourceDescription dsd = new DataSourceDescription(dsRef, "ABC", "http://example/ABC");
+
+    private static PatchLogInfo info(long version) {
+        return new PatchLogInfo(dsd, Version.FIRST, Version.create(version), null);
+    }
+
+    @Test public void notifier_1() {
+        // Already past the version.
+        PatchLogNotifier notifier = new PatchLogNotifier();
+        PatchLogInfo info = notifier.await(dsRef, Version.create(1), 10*1000, ()->info(2));
+        assertEquals(2, info.getMaxVersion().value());
+    }
+
+    @Test public void notifier_2() {
+        // Timeout.
+        PatchLogNotifier notifier = new PatchLogNotifier();
+        long start = System.currentTimeMillis();
+        PatchLogInfo info = notifier.await(dsRef, Version.create(2), 100, ()->info(2));
+        assertEquals(2, info.getMaxVersion().value());
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+
+    @Test public void notifier_3() throws Exception {
+        // Woken by an append event.
+        PatchLogNotifier notifier = new PatchLogNotifier();
+        AtomicReference<PatchLogInfo> current = new AtomicReference<>(info(1));
+        Thread thread = new Thread(()->{
+            Lib.sleep(100);
+            current.set(info(2));
+            notifier.append(dsRef, Version.create(2), null);
+        });
+        thread.start();
+        PatchLogInfo info = notifier.await(dsRef, Version.create(1), 10*1000, current::get);
+        thread.join();
+        assertEquals(2, info.getMaxVersion().value());
+    }
+
+    @Test public void notifier_4() {
+        // No such log.
+        PatchLogNotifier notifier = new PatchLogNotifier();
+        PatchLogInfo info = notifier.await(dsRef, Version.create(1), 10*1000, ()->null);
+        assertNull(info);
+    }
+
+    @Test public void notifier_async_1() throws Exception {
+        // Completed by an append event, without a thread waiting.
+        PatchLogNotifier notifier = new PatchLogNotifier();
+        AtomicReference<PatchLogInfo> current = new AtomicReference<>(info(1));
+        CompletableFuture<PatchLogInfo> result = notifier.awaitAsync(dsRef, Version.create(1), 10*1000, current::get);
+        Lib.sleep(50);
+        assertFalse(result.isDone());
+        current.set(info(2));
+        notifier.append(dsRef, Version.create(2), null);
+        PatchLogInfo info = result.get(5, TimeUnit.SECONDS);
+        assertEquals(2, info.getMaxVersion().value());
+    }
+
+    @Test public void notifier_async_2() throws Exception {
+        // Timeout.
+        PatchLogNotifier notifier = new PatchLogNotifier();
+        CompletableFuture<PatchLogInfo> result = notifier.awaitAsync(dsRef, Version.create(2), 100, ()->info(2));
+        PatchLogInfo info = result.get(5, TimeUnit.SECONDS);
+        assertEquals(2, info.getMaxVersion().value());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Test;
+import org.seaborne.delta.DeltaPatchesPrunedException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.*;
+import org.seaborne.patch.RDFPatchOps;
+
+public class TestRetention {
+    static final Path DIR = Paths.get("target/test/retention");
+
+    private DeltaLink dLink = null;
+
+    @After
+    public void afterTest() {
+        if ( dLink != null )
+            dLink.close();
+        dLink = null;
+        if ( Files.exists(DIR) )
+            IOX.deleteAll(DIR);
+    }
+
+    private DeltaLinkLocal link(LocalServerConfig.Builder builder) {
+        LocalServer server = LocalServers.create(builder.build());
+        dLink = DeltaLinkLocal.connect(server);
+        return (DeltaLinkLocal)dLink;
+    }
+
+    private static void append(DeltaLink link, Id dsRef, int count) {
+        Id prev = link.getPatchLogInfo(dsRef).getLatestPatch();
+        for ( int i = 0 ; i < count ; i++ ) {
+            Id id = Id.create();
+            link.append(dsRef, RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), prev == null ? null : prev.asNode()));
+            prev = id;
+        }
+    }
+
+    @Test public void retention_patches() {
+        DeltaLinkLocal link = link(LocalServerConfig.create(LocalServers.configMem()).setRetention(3, 0, 0));
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        RetentionManager retention = link.getLocalServer().getRetentionManager();
+        assertNotNull(retention);
+        PatchLog patchLog = link.getLocalServer().getDataSource(dsRef).getPatchLog();
+
+        // Empty log.
+        assertEquals(0, retention.apply(patchLog));
+        append(link, dsRef, 5);
+        assertEquals(2, retention.apply(patchLog));
+        assertEquals(Version.create(3), link.getPatchLogInfo(dsRef).getMinVersion());
+        assertEquals(Version.create(5), link.getPatchLogInfo(dsRef).getMaxVersion());
+        // Nothing more to do.
+        assertEquals(0, retention.apply(patchLog));
+
+        try {
+            link.fetch(dsRef, Version.create(2));
+            fail("Expected DeltaPatchesPrunedException");
+        } catch (DeltaPatchesPrunedException ex) {}
+        assertNotNull(link.fetch(dsRef, Version.create(3)));
+    }
+
+    @Test public void retention_snapshot() {
+        DeltaLinkLocal link = link(LocalServerConfig.create(LocalServers.configMem())
+            .setSnapshots(DIR.toString(), 0)
+            .setRetention(2, 0, 0));
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        RetentionManager retention = link.getLocalServer().getRetentionManager();
+        PatchLog patchLog = link.getLocalServer().getDataSource(dsRef).getPatchLog();
+
+        // No snapshot - all the patches are needed to build the dataset.
+        append(link, dsRef, 5);
+        assertEquals(0, retention.apply(patchLog));
+        assertEquals(Version.create(1), patchLog.getEarliestVersion());
+
+        // Snapshot at version 5: the patches after it are kept.
+        link.getLocalServer().getSnapshotManager().makeSnapshot(patchLog);
+        append(link, dsRef, 3);
+        assertEquals(5, retention.apply(patchLog));
+        assertEquals(Version.create(6), patchLog.getEarliestVersion());
+        assertEquals(Version.create(8), patchLog.getLatestVersion());
+    }
+
+    private static long size(PatchLog patchLog, long version) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        patchLog.fetchBytes(patchLog.find(Version.create(version)), out);
+        return out.size();
+    }
+
+    // The earliest version kept for a bytes limit.
+    private static long keepFromBytes(PatchLog patchLog, long maxBytes) {
+        long total = 0;
+        for ( long v = patchLog.getLatestVersion().value() ; v >= patchLog.getEarliestVersion().value() ; v-- ) {
+            total += size(patchLog, v);
+            if ( total > maxBytes )
+                return v+1;
+        }
+        return patchLog.getEarliestVersion().value();
+    }
+
+    @Test public void retention_bytes() {
+        long maxBytes = 500;
+        DeltaLinkLocal link = link(LocalServerConfig.create(LocalServers.configMem()).setRetention(0, 0, maxBytes));
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        RetentionManager retention = link.getLocalServer().getRetentionManager();
+        PatchLog patchLog = link.getLocalServer().getDataSource(dsRef).getPatchLog();
+
+        append(link, dsRef, 2);
+        assertEquals(0, retention.apply(patchLog));
+        append(link, dsRef, 8);
+        long keepFrom = keepFromBytes(patchLog, maxBytes);
+        assertTrue(keepFrom > 1);
+        assertEquals(keepFrom-1, retention.apply(patchLog));
+        assertEquals(Version.create(keepFrom), patchLog.getEarliestVersion());
+        assertEquals(0, retention.apply(patchLog));
+
+        // Added more than the limit since the last time.
+        append(link, dsRef, 10);
+        keepFrom = keepFromBytes(patchLog, maxBytes);
+        long earliest = patchLog.getEarliestVersion().value();
+        assertEquals(keepFrom-earliest, retention.apply(patchLog));
+        assertEquals(Version.create(keepFrom), patchLog.getEarliestVersion());
+    }
+
+    @Test public void retention_bytes_unseen() {
+        // Patches not added through the link: the sizes are found from the log.
+        long maxBytes = 500;
+        DeltaLinkLocal link = link(LocalServerConfig.create(LocalServers.configMem()).setRetention(0, 0, maxBytes));
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        RetentionManager retention = link.getLocalServer().getRetentionManager();
+        PatchLog patchLog = link.getLocalServer().getDataSource(dsRef).getPatchLog();
+        Id prev = null;
+        for ( int i = 0 ; i < 10 ; i++ ) {
+            Id id = Id.create();
+            patchLog.append(RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), prev == null ? null : prev.asNode()));
+            prev = id;
+        }
+        long keepFrom = keepFromBytes(patchLog, maxBytes);
+        assertTrue(keepFrom > 1);
+        assertEquals(keepFrom-1, retention.apply(patchLog));
+        assertEquals(Version.create(keepFrom), patchLog.getEarliestVersion());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.seaborne.delta.server.local.patchstores.filestore.SegmentStore;
+
+public class TestSegmentStore {
+    static final Path DIR = Paths.get("target/test/segments");
+
+    @BeforeClass
+    static public void beforeClass() {
+        FileOps.ensureDir(DIR.toString());
+    }
+
+    @After
+    public void afterTest() {
+        FileOps.clearDirectory(DIR.toString());
+    }
+
+    private static byte[] data(long v) {
+        return ("Patch data "+v).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long countFiles(String ext) throws Exception {
+        try ( Stream<Path> s = Files.list(DIR) ) {
+            return s.filter(p->p.getFileName().toString().endsWith(ext)).count();
+        }
+    }
+
+    @Test
+    public void segments_01() {
+        assertTrue(!SegmentStore.exists(DIR));
+        SegmentStore store = SegmentStore.open(DIR, 0, 0);
+        assertTrue(store.isEmpty());
+        assertEquals(-1, store.getLastVersion());
+        assertNull(store.fetch(1));
+        store.close();
+    }
+
+    @Test
+    public void segments_02() {
+        SegmentStore store = SegmentStore.open(DIR, 0, 0);
+        for ( long v = 1 ; v <= 5 ; v++ )
+            store.append(v, data(v));
+        assertArrayEquals(data(3), store.fetch(3));
+        assertNull(store.fetch(6));
+        store.close();
+
+        assertTrue(SegmentStore.exists(DIR));
+        SegmentStore store2 = SegmentStore.open(DIR, 0, 0);
+        assertEquals(1, store2.getFirstVersion());
+        assertEquals(5, store2.getLastVersion());
+        for ( long v = 1 ; v <= 5 ; v++ )
+            assertArrayEquals(data(v), store2.fetch(v));
+        store2.append(6, data(6));
+        assertArrayEquals(data(6), store2.fetch(6));
+        store2.close();
+    }
+
+    @Test
+    public void segments_03() throws Exception {
+        // Roll over to new segments, with sparse index entries in each segment.
+        int N = 200;
+        SegmentStore store = SegmentStore.open(DIR, 0, 2*SegmentStore.SPARSE+5);
+        for ( long v = 1 ; v <= N ; v++ )
+            store.append(v, data(v));
+        store.close();
+        assertEquals(3, countFiles(".log"));
+        assertEquals(2, countFiles(".idx"));
+
+        SegmentStore store2 = SegmentStore.open(DIR, 0, 2*SegmentStore.SPARSE+5);
+        assertEquals(N, store2.getLastVersion());
+        for ( long v = 1 ; v <= N ; v++ )
+            assertArrayEquals(data(v), store2.fetch(v));
+        List<Long> versions = new ArrayList<>();
+        store2.forEach(100, (v, bytes)->{
+            assertArrayEquals(data(v), bytes);
+            versions.add(v);
+        });
+        assertEquals(N-100+1, versions.size());
+        assertEquals(100L, (long)versions.get(0));
+        store2.close();
+    }
+
+    @Test
+    public void segments_04() throws Exception {
+        // Roll over by size.
+        SegmentStore store = SegmentStore.open(DIR, 100, 0);
+        for ( long v = 1 ; v <= 10 ; v++ )
+            store.append(v, data(v));
+        store.close();
+        assertTrue(countFiles(".log") > 1);
+        SegmentStore store2 = SegmentStore.open(DIR, 100, 0);
+        for ( long v = 1 ; v <= 10 ; v++ )
+            assertArrayEquals(data(v), store2.fetch(v));
+        store2.close();
+    }
+
+    @Test
+    public void segments_05() throws Exception {
+        // Partial record at the end.
+        SegmentStore store = SegmentStore.open(DIR, 0, 0);
+        store.append(1, data(1));
+        store.append(2, data(2));
+        store.close();
+        Path segment;
+        try ( Stream<Path> s = Files.list(DIR) ) {
+            segment = s.filter(p->p.getFileName().toString().endsWith(".log")).findFirst().get();
+        }
+        long size = Files.size(segment);
+        try ( OutputStream out = Files.newOutputStream(segment, StandardOpenOption.APPEND) ) {
+            out.write(new byte[] {0, 0, 0, 40, 0, 0, 0, 0, 0, 0, 0, 3, 1, 2});
+        }
+
+        SegmentStore store2 = SegmentStore.open(DIR, 0, 0);
+        assertEquals(2, store2.getLastVersion());
+        assertEquals(size, Files.size(segment));
+        store2.append(3, data(3));
+        store2.close();
+
+        SegmentStore store3 = SegmentStore.open(DIR, 0, 0);
+        assertEquals(3, store3.getLastVersion());
+        assertArrayEquals(data(3), store3.fetch(3));
+        store3.close();
+    }
+
+    @Test
+    public void segments_06() throws Exception {
+        // Deleting segments waits for a read in progress.
+        SegmentStore store = SegmentStore.open(DIR, 0, 2);
+        for ( long v = 1 ; v <= 6 ; v++ )
+            store.append(v, data(v));
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableByteChannel out = Channels.newChannel(bytes);
+        WritableByteChannel slow = new WritableByteChannel() {
+            @Override public boolean isOpen() { return true; }
+            @Override public void close() {}
+            @Override public int write(ByteBuffer src) throws java.io.IOException {
+                reading.countDown();
+                try { release.await(); } catch (InterruptedException ex) {}
+                return out.write(src);
+            }
+        };
+        CompletableFuture<Boolean> transfer = CompletableFuture.supplyAsync(()->store.transferTo(1, slow));
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> delete = CompletableFuture.supplyAsync(()->store.deleteBefore(5));
+        Thread.sleep(100);
+        assertFalse(delete.isDone());
+        release.countDown();
+        assertTrue(transfer.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(data(1), bytes.toByteArray());
+        assertEquals(2, (int)delete.get(5, TimeUnit.SECONDS));
+        assertNull(store.fetch(1));
+        assertArrayEquals(data(5), store.fetch(5));
+        store.close();
+    }
+}
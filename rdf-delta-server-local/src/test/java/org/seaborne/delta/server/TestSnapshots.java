@@ -0,0 +1,201 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.After;
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.SnapshotInfo;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.*;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+public class TestSnapshots {
+    static final Path DIR = Paths.get("target/test/snapshots");
+
+    private static Node g = SSE.parseNode("<http://example/g>");
+    private static Node p = SSE.parseNode("<http://example/p>");
+
+    private DeltaLink dLink = null;
+
+    @After
+    public void afterTest() {
+        if ( dLink != null )
+            dLink.close();
+        dLink = null;
+        if ( Files.exists(DIR) )
+            IOX.deleteAll(DIR);
+    }
+
+    private DeltaLinkLocal link(long interval) {
+        LocalServerConfig config = LocalServerConfig.create(LocalServers.configMem())
+            .setSnapshots(DIR.toString(), interval)
+            .build();
+        LocalServer server = LocalServers.create(config);
+        dLink = DeltaLinkLocal.connect(server);
+        return (DeltaLinkLocal)dLink;
+    }
+
+    // Append patches; each adds one quad, with the subject numbered by the version.
+    private static Id append(DeltaLink link, Id dsRef, int count) {
+        Id prev = link.getPatchLogInfo(dsRef).getLatestPatch();
+        for ( int i = 0 ; i < count ; i++ ) {
+            Version ver = link.getCurrentVersion(dsRef);
+            Id id = Id.create();
+            RDFChangesCollector c = new RDFChangesCollector();
+            c.header(RDFPatchConst.ID, id.asNode());
+            if ( prev != null )
+                c.header(RDFPatchConst.PREV, prev.asNode());
+            c.txnBegin();
+            c.add(g, SSE.parseNode("<http://example/s"+(ver.value()+1)+">"), p, SSE.parseNode(Long.toString(ver.value()+1)));
+            c.txnCommit();
+            RDFPatch patch = c.getRDFPatch();
+            link.append(dsRef, patch);
+            prev = id;
+        }
+        return prev;
+    }
+
+    private static DatasetGraph fetchSnapshot(DeltaLink link, Id dsRef, Version expected) {
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        SnapshotInfo info = link.fetchSnapshot(dsRef, StreamRDFLib.dataset(dsg));
+        assertNotNull(info);
+        assertEquals(expected, info.version);
+        return dsg;
+    }
+
+    @Test public void snapshot_01() {
+        DeltaLinkLocal link = link(0);
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        SnapshotManager snapshots = link.getLocalServer().getSnapshotManager();
+        assertNotNull(snapshots);
+        PatchLog patchLog = link.getLocalServer().getDataSource(dsRef).getPatchLog();
+
+        // Empty log - no snapshot.
+        assertNull(snapshots.makeSnapshot(patchLog));
+        assertNull(link.fetchSnapshot(dsRef, StreamRDFLib.sinkNull()));
+        assertNull(link.initialState(dsRef));
+
+        Id id3 = append(link, dsRef, 3);
+        SnapshotManager.Snapshot snapshot = snapshots.makeSnapshot(patchLog);
+        assertEquals(Version.create(3), snapshot.getInfo().version);
+        assertEquals(id3, snapshot.getInfo().patchId);
+        assertNotNull(link.initialState(dsRef));
+
+        DatasetGraph dsg = fetchSnapshot(link, dsRef, Version.create(3));
+        assertEquals(3, dsg.getGraph(g).size());
+    }
+
+    @Test public void snapshot_02() {
+        // Snapshot from the previous snapshot, and removal of old snapshots.
+        DeltaLinkLocal link = link(0);
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        SnapshotManager snapshots = link.getLocalServer().getSnapshotManager();
+        PatchLog patchLog = link.getLocalServer().getDataSource(dsRef).getPatchLog();
+        for ( int i = 1 ; i <= SnapshotManager.KEEP+1 ; i++ ) {
+            append(link, dsRef, 2);
+            snapshots.makeSnapshot(patchLog);
+        }
+        long version = 2*(SnapshotManager.KEEP+1);
+        DatasetGraph dsg = fetchSnapshot(link, dsRef, Version.create(version));
+        assertEquals(version, dsg.getGraph(g).size());
+        assertTrue(dsg.contains(g, SSE.parseNode("<http://example/s1>"), p, SSE.parseNode("1")));
+
+        Path logDir = snapshots.getDirectory().resolve(dsRef.asPlainString());
+        assertFalse(Files.exists(logDir.resolve(String.format("snapshot-%012d.nq.gz", 2))));
+        assertTrue(Files.exists(logDir.resolve(String.format("snapshot-%012d.nq.gz", version))));
+
+        // Found on disk by a new manager.
+        SnapshotManager snapshots2 = new SnapshotManager(snapshots.getDirectory(), 0);
+        assertEquals(Version.create(version), snapshots2.getLatest(dsRef).getInfo().version);
+        snapshots2.shutdown();
+    }
+
+    @Test public void snapshot_03() {
+        // Background snapshots.
+        DeltaLinkLocal link = link(5);
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        SnapshotManager snapshots = link.getLocalServer().getSnapshotManager();
+        append(link, dsRef, 4);
+        Lib.sleep(100);
+        assertNull(snapshots.getLatest(dsRef));
+        append(link, dsRef, 1);
+        for ( int i = 0 ; i < 100 && snapshots.getLatest(dsRef) == null ; i++ )
+            Lib.sleep(50);
+        assertNotNull(snapshots.getLatest(dsRef));
+        assertEquals(Version.create(5), snapshots.getLatest(dsRef).getInfo().version);
+    }
+
+    private static void appendPatch(DeltaLink link, Id dsRef, boolean add, Node s, Node o) {
+        Id prev = link.getPatchLogInfo(dsRef).getLatestPatch();
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        if ( prev != null )
+            c.header(RDFPatchConst.PREV, prev.asNode());
+        c.txnBegin();
+        if ( add )
+            c.add(g, s, p, o);
+        else
+            c.delete(g, s, p, o);
+        c.txnCommit();
+        link.append(dsRef, c.getRDFPatch());
+    }
+
+    @Test public void snapshot_04() {
+        // Blank nodes keep their labels, so later patches apply to the same blank nodes.
+        DeltaLinkLocal link = link(0);
+        Id dsRef = link.newDataSource("ABC", "http://example/ABC");
+        SnapshotManager snapshots = link.getLocalServer().getSnapshotManager();
+        PatchLog patchLog = link.getLocalServer().getDataSource(dsRef).getPatchLog();
+        Node b1 = SSE.parseNode("_:b1");
+        Node b2 = SSE.parseNode("_:b2");
+        appendPatch(link, dsRef, true, b1, b2);
+        appendPatch(link, dsRef, true, b2, SSE.parseNode("1"));
+        snapshots.makeSnapshot(patchLog);
+        DatasetGraph dsg1 = fetchSnapshot(link, dsRef, Version.create(2));
+        assertTrue(dsg1.contains(g, b1, p, b2));
+        assertTrue(dsg1.contains(g, b2, p, SSE.parseNode("1")));
+
+        // The next snapshot starts from this one and applies a delete of a blank node quad.
+        appendPatch(link, dsRef, false, b1, b2);
+        snapshots.makeSnapshot(patchLog);
+        DatasetGraph dsg2 = fetchSnapshot(link, dsRef, Version.create(3));
+        assertEquals(1, dsg2.getGraph(g).size());
+        assertTrue(dsg2.contains(g, b2, p, SSE.parseNode("1")));
+    }
+}
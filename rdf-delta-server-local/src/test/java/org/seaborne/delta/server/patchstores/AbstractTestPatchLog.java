@@ -19,7 +19,16 @@ package org.seaborne.delta.server.patchstores;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.sse.SSE;
 import org.junit.Test;
+import org.seaborne.delta.DeltaPatchesPrunedException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.PatchLogInfo;
 import org.seaborne.delta.Version;
@@ -107,4 +116,156 @@ public abstract class AbstractTestPatchLog {
         assertEquals(version_2, x.getMaxVersion());
         assertEquals(Version.FIRST, x.getMinVersion());
     }
+
+    @Test
+    public void patchLog_4_range() {
+        PatchLog patchLog = patchLog();
+        // More than one block of the index.
+        int N = 120;
+        List<Id> ids = new ArrayList<>();
+        RDFPatch body = RDFPatchOps.emptyPatch();
+        for ( int i = 0 ; i < N ; i++ ) {
+            Id prev = ids.isEmpty() ? null : ids.get(ids.size()-1);
+            Id id = Id.create();
+            RDFPatch patch = RDFPatchOps.withHeader(body, id.asNode(), prev == null ? null : prev.asNode());
+            patchLog.append(patch);
+            ids.add(id);
+        }
+
+        List<Id> x = patchLog.range(Version.FIRST, Version.create(N))
+            .map(p->Id.fromNode(p.getId())).collect(Collectors.toList());
+        assertEquals(ids, x);
+
+        List<Id> x2 = patchLog.range(Version.create(10), Version.create(20))
+            .map(p->Id.fromNode(p.getId())).collect(Collectors.toList());
+        assertEquals(ids.subList(9, 20), x2);
+
+        List<Id> x3 = patchLog.range(ids.get(9), ids.get(19))
+            .map(p->Id.fromNode(p.getId())).collect(Collectors.toList());
+        assertEquals(ids.subList(9, 20), x3);
+
+        assertEquals(Version.create(10), patchLog.find(ids.get(9)));
+    }
+
+    @Test
+    public void patchLog_5_squash() {
+        PatchLog patchLog = patchLog();
+        Node g = SSE.parseNode("<http://example/g>");
+        Node s = SSE.parseNode("<http://example/s>");
+        Node p = SSE.parseNode("<http://example/p>");
+        Node o1 = SSE.parseNode("1");
+        Node o2 = SSE.parseNode("2");
+        Node o3 = SSE.parseNode("3");
+        List<RDFPatch> bodies = List.of(
+            RDFPatchOps.build(x->{ x.txnBegin(); x.add(g, s, p, o1); x.txnCommit(); }),
+            RDFPatchOps.build(x->{ x.txnBegin(); x.add(g, s, p, o2); x.delete(g, s, p, o1); x.txnCommit(); }),
+            RDFPatchOps.build(x->{ x.txnBegin(); x.add(g, s, p, o1); x.delete(g, s, p, o2); x.txnCommit(); }),
+            RDFPatchOps.build(x->{ x.txnBegin(); x.add(g, s, p, o3); x.txnCommit(); }),
+            RDFPatchOps.build(x->{ x.txnBegin(); x.delete(g, s, p, o3); x.txnCommit(); })
+            );
+        List<Id> ids = new ArrayList<>();
+        for ( RDFPatch body : bodies ) {
+            Id prev = ids.isEmpty() ? null : ids.get(ids.size()-1);
+            Id id = Id.create();
+            patchLog.append(RDFPatchOps.withHeader(body, id.asNode(), prev == null ? null : prev.asNode()));
+            ids.add(id);
+        }
+
+        Version v5 = Version.create(5);
+        List<RDFPatch> patches = patchLog.rangeSquashed(Version.FIRST, v5, 3).collect(Collectors.toList());
+        assertEquals(2, patches.size());
+        RDFPatch squashed1 = patches.get(0);
+        assertEquals(ids.get(2).asNode(), squashed1.getId());
+        assertNull(squashed1.getPrevious());
+        assertEquals(3, RDFPatchOps.squashCount(squashed1));
+        RDFPatch squashed2 = patches.get(1);
+        assertEquals(ids.get(4).asNode(), squashed2.getId());
+        assertEquals(ids.get(2).asNode(), squashed2.getPrevious());
+        assertEquals(2, RDFPatchOps.squashCount(squashed2));
+        assertEquals(5, patches.stream().mapToLong(RDFPatchOps::squashCount).sum());
+
+        // Same outcome.
+        DatasetGraph dsg1 = DatasetGraphFactory.createTxnMem();
+        patchLog.range(Version.FIRST, v5).forEach(patch->RDFPatchOps.applyChange(dsg1, patch));
+        DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+        patches.forEach(patch->RDFPatchOps.applyChange(dsg2, patch));
+        assertTrue(dsg2.contains(g, s, p, o1));
+        assertEquals(dsg1.getGraph(g).size(), dsg2.getGraph(g).size());
+
+        // Originals are still available.
+        assertEquals(ids.get(2).asNode(), patchLog.fetch(version_3).getId());
+        assertEquals(5, patchLog.range(Version.FIRST, v5).count());
+        // A single patch is sent as it is.
+        List<RDFPatch> patches2 = patchLog.rangeSquashed(version_2, version_3, 1).collect(Collectors.toList());
+        assertEquals(2, patches2.size());
+        assertEquals(ids.get(1).asNode(), patches2.get(0).getId());
+        assertEquals(2, patchLog.rangeSquashed(version_2, v5, 2).count());
+    }
+
+    @Test
+    public void patchLog_6_truncate() {
+        PatchLog patchLog = patchLog();
+        List<Id> ids = new ArrayList<>();
+        for ( int i = 0 ; i < 5 ; i++ ) {
+            Id prev = ids.isEmpty() ? null : ids.get(ids.size()-1);
+            Id id = Id.create();
+            patchLog.append(RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), prev == null ? null : prev.asNode()));
+            ids.add(id);
+        }
+        Version v4 = Version.create(4);
+        Version v5 = Version.create(5);
+
+        long count = patchLog.truncate(version_3);
+        assertEquals(2, count);
+        assertEquals(version_3, patchLog.getEarliestVersion());
+        assertEquals(ids.get(2), patchLog.getEarliestId());
+        assertEquals(version_3, patchLog.getInfo().getMinVersion());
+        assertEquals(v5, patchLog.getLatestVersion());
+
+        assertTrue(patchLog.isPruned(version_1));
+        assertFalse(patchLog.isPruned(version_3));
+        assertNull(patchLog.find(version_2));
+        try {
+            patchLog.range(version_1, v5).count();
+            fail("Expected DeltaPatchesPrunedException");
+        } catch (DeltaPatchesPrunedException ex) {}
+        assertEquals(3, patchLog.range(version_3, v5).count());
+
+        // Truncating to an earlier version does nothing.
+        assertEquals(0, patchLog.truncate(version_2));
+        // The latest patch is always kept.
+        patchLog.truncate(Version.create(10));
+        assertEquals(v5, patchLog.getEarliestVersion());
+        assertEquals(ids.get(4), patchLog.getEarliestId());
+        assertNotNull(patchLog.fetch(v5));
+        assertTrue(patchLog.isPruned(v4));
+
+        // Appending continues the log.
+        Id id6 = Id.create();
+        Version v6 = patchLog.append(RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id6.asNode(), ids.get(4).asNode()));
+        assertEquals(Version.create(6), v6);
+        assertEquals(2, patchLog.range(v5, v6).count());
+    }
+
+    @Test
+    public void patchLog_7_truncateBatches() {
+        // More patches than are removed in one batch.
+        PatchLog patchLog = patchLog();
+        List<Id> ids = new ArrayList<>();
+        int N = 2005;
+        for ( int i = 0 ; i < N ; i++ ) {
+            Id prev = ids.isEmpty() ? null : ids.get(ids.size()-1);
+            Id id = Id.create();
+            patchLog.append(RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), prev == null ? null : prev.asNode()));
+            ids.add(id);
+        }
+        Version target = Version.create(N-2);
+        long count = patchLog.truncate(target);
+        assertEquals(N-3, count);
+        assertEquals(target, patchLog.getEarliestVersion());
+        assertNull(patchLog.fetch(ids.get(0)));
+        assertNull(patchLog.fetch(ids.get(1500)));
+        assertNotNull(patchLog.fetch(ids.get(N-3)));
+        assertEquals(3, patchLog.range(target, Version.create(N)).count());
+    }
 }
@@ -19,9 +19,16 @@ package org.seaborne.delta.server.patchstores;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.LockState;
 import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.LogEntry;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
@@ -176,4 +183,64 @@ public abstract class AbstractTestPatchLogIndex {
         patchLogIdx.save(version_2, id2, id1);
         patchLogIdx.save(version_1, id3, id2);
     }
+
+    @Test
+    public void patchLogIndex_lock_1() {
+        PatchLogIndex patchLogIdx = patchLogIndex();
+        Id session = patchLogIdx.acquireLock();
+        assertNotNull(session);
+        assertNull(patchLogIdx.acquireLock());
+        assertNull(patchLogIdx.acquireLock(100));
+        assertEquals(session, patchLogIdx.readLock().session);
+        patchLogIdx.releaseLock(session);
+        assertTrue(LockState.isFree(patchLogIdx.readLock()));
+        Id session2 = patchLogIdx.acquireLock(100);
+        assertNotNull(session2);
+        patchLogIdx.releaseLock(session2);
+    }
+
+    @Test
+    public void patchLogIndex_lock_2_grab() {
+        PatchLogIndex patchLogIdx = patchLogIndex();
+        Id session = patchLogIdx.acquireLock();
+        Id session2 = patchLogIdx.grabLock(session);
+        assertNotNull(session2);
+        assertNotEquals(session, session2);
+        assertNull(patchLogIdx.grabLock(session));
+        assertFalse(patchLogIdx.refreshLock(session));
+        assertTrue(patchLogIdx.refreshLock(session2));
+        patchLogIdx.releaseLock(session2);
+        assertTrue(LockState.isFree(patchLogIdx.readLock()));
+    }
+
+    @Test
+    public void patchLogIndex_lock_3_waiters() throws InterruptedException {
+        // Waiting requests get the lock in the order they started waiting.
+        PatchLogIndex patchLogIdx = patchLogIndex();
+        Id session = patchLogIdx.acquireLock();
+        int N = 4;
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(N);
+        for ( int i = 0 ; i < N ; i++ ) {
+            int x = i;
+            Thread thread = new Thread(()->{
+                Id s = patchLogIdx.acquireLock(10_000);
+                if ( s != null ) {
+                    order.add(x);
+                    patchLogIdx.releaseLock(s);
+                }
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+            // Let the thread start waiting.
+            Thread.sleep(100);
+        }
+        // Waiting requests are not overtaken.
+        assertNull(patchLogIdx.acquireLock());
+        patchLogIdx.releaseLock(session);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1, 2, 3), order);
+        assertTrue(LockState.isFree(patchLogIdx.readLock()));
+    }
 }
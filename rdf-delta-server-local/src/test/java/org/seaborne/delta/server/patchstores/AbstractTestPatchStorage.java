@@ -19,15 +19,19 @@ package org.seaborne.delta.server.patchstores;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.List;
 
 import org.apache.jena.atlas.lib.ListUtils;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.system.RDFPatchSized;
 
 @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
 public abstract class AbstractTestPatchStorage {
@@ -84,4 +88,29 @@ public abstract class AbstractTestPatchStorage {
         assertNotNull(patch1f_a);
         assertEquals(patch1f_a.getId(), patch1f_a.getId());
     }
+
+    @Test public void patchStorage_4_fetchBytes() {
+        PatchStorage patchStorage = patchStorage();
+        RDFPatch patch = RDFPatchOps.emptyPatch();
+        Id id = Id.create();
+        patchStorage.store(id, patch);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(patchStorage.fetchBytes(id, out));
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        RDFPatch patch1 = DeltaConst.contentTypePatchBinary.equals(patchStorage.storedContentType())
+            ? RDFPatchOps.readBinary(in)
+            : RDFPatchOps.read(in);
+        assertEquals(patch.getId(), patch1.getId());
+
+        // Storage that reads from bytes reports the stored length.
+        RDFPatch patch2 = patchStorage.fetch(id);
+        if ( patch2 instanceof RDFPatchSized )
+            assertEquals(out.size(), ((RDFPatchSized)patch2).size());
+
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        assertFalse(patchStorage.fetchBytes(Id.create(), out2));
+        assertEquals(0, out2.size());
+        assertNull(patchStorage.openStream(Id.create()));
+    }
 }
@@ -0,0 +1,166 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.patchstores;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.rocksdb.CompressionType;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.TickerType;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.server.Provider;
+import org.seaborne.delta.server.local.LocalServerConfig;
+import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.rdb.PatchStorageRocks;
+import org.seaborne.delta.server.local.patchstores.rdb.RocksDatabase;
+import org.seaborne.delta.server.local.patchstores.rdb.RocksOptions;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+
+/** Patch storage in a RocksDB database with compression, bloom filter, shared cache, rate limit, statistics and synced group commit. */
+public class TestPatchStorageRocksTuned extends AbstractTestPatchStorage {
+    private static String DIR = "target/test/patch-store-rocks-tuned/db";
+
+    private static LocalServerConfig config = LocalServerConfig.create()
+        .setLogProvider(Provider.ROCKS)
+        .setRocksMemory(8*1024*1024, 4*1024*1024)
+        .setProperty(DeltaConst.pDeltaRocksCompression, "zstd")
+        .setProperty(DeltaConst.pDeltaRocksBloomBits, "10")
+        .setProperty(DeltaConst.pDeltaRocksCompactionRate, Long.toString(16*1024*1024))
+        .setProperty(DeltaConst.pDeltaRocksSync, "true")
+        .setProperty(DeltaConst.pDeltaRocksCommitWindow, "1")
+        .build();
+
+    @BeforeClass public static void beforeClass() {
+        FileOps.ensureDir(DIR);
+        FileOps.clearAll(DIR);
+    }
+
+    private RocksOptions options = null;
+    private RocksDatabase rdb = null;
+    @Before public void before() {
+        options = RocksOptions.create(config);
+        rdb = new RocksDatabase(Paths.get(DIR), options);
+    }
+
+    @After public void after() {
+        rdb.close();
+        options.close();
+        FileOps.clearAll(DIR);
+    }
+
+    @Override
+    protected PatchStorage patchStorage() {
+        return new PatchStorageRocks(rdb);
+    }
+
+    @Test public void rocksOptions_config() {
+        assertEquals(CompressionType.ZSTD_COMPRESSION, options.getCompression());
+        assertEquals(10, options.getBloomBits());
+        assertNotNull(options.blockCache());
+        assertNotNull(options.writeBufferManager());
+        assertNotNull(options.rateLimiter());
+        assertNotNull(options.statistics());
+
+        LocalServerConfig dft = LocalServerConfig.create().setLogProvider(Provider.ROCKS).build();
+        assertEquals(DeltaConst.ROCKS_CACHE_BYTES, dft.getRocksCacheBytes());
+        assertEquals(DeltaConst.ROCKS_COMPRESSION, dft.getRocksCompression());
+        assertEquals(0, dft.getRocksCompactionRate());
+        assertTrue(dft.isRocksStatistics());
+    }
+
+    @Test(expected=DeltaConfigException.class)
+    public void rocksOptions_badCompression() {
+        LocalServerConfig.create().setLogProvider(Provider.ROCKS).setProperty(DeltaConst.pDeltaRocksCompression, "gzip").build().getRocksCompression();
+    }
+
+    @Test public void rocksOptions_flushAndRead() throws Exception {
+        PatchStorage storage = patchStorage();
+        Id id = Id.create();
+        RDFPatch patch = RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), null);
+        storage.store(id, patch);
+        // Write the patch to a compressed table file.
+        try ( FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true) ) {
+            rdb.getDatabase().flush(flushOptions, rdb.getColumnFamilyHandle("patchStorage"));
+        }
+        assertNotNull(storage.fetch(id));
+        assertNull(storage.fetch(Id.create()));
+        assertTrue(RocksOptions.tickerCount(TickerType.BYTES_WRITTEN) > 0);
+        assertTrue(RocksOptions.tickerCount(TickerType.FLUSH_WRITE_BYTES) > 0);
+    }
+
+    @Test public void rocksOptions_groupCommit() throws Exception {
+        PatchStorage storage = patchStorage();
+        int N = 8;
+        int M = 50;
+        long writes0 = RocksOptions.commitWrites();
+        List<Id> ids = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(N);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for ( int i = 0 ; i < N ; i++ ) {
+                results.add(executor.submit(()->{
+                    for ( int j = 0 ; j < M ; j++ ) {
+                        Id id = Id.create();
+                        storage.store(id, RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), null));
+                        ids.add(id);
+                    }
+                }));
+            }
+            for ( Future<?> f : results )
+                f.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(N*M, ids.size());
+        ids.forEach(id->assertNotNull(storage.fetch(id)));
+        assertEquals(N*M, RocksOptions.commitWrites()-writes0);
+        assertEquals(0, RocksOptions.commitQueueDepth());
+    }
+
+    @Test public void rocksOptions_failedUpdate() {
+        try {
+            rdb.update(wb->{ throw new DeltaException("Bad update"); });
+            fail("Expected exception");
+        } catch (RuntimeException ex) {}
+        PatchStorage storage = patchStorage();
+        Id id = Id.create();
+        storage.store(id, RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), null));
+        assertNotNull(storage.fetch(id));
+    }
+}
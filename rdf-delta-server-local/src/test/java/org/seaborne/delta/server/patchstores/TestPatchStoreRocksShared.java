@@ -0,0 +1,173 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.patchstores;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.junit.After;
+import org.junit.Test;
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.delta.server.Provider;
+import org.seaborne.delta.server.local.*;
+import org.seaborne.delta.server.local.patchstores.rdb.PatchStoreRocks;
+import org.seaborne.delta.server.local.patchstores.rdb.RocksMigrate;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+
+public class TestPatchStoreRocksShared extends AbstractTestPatchStore {
+    private static String DIR = "target/test/patch-store-rocks-shared";
+
+    @After public void afterPatchStoreRocks() {
+        PatchStoreRocks.resetTracked();
+    }
+
+    @Override
+    protected PatchStore patchStore(DataSourceRegistry dataRegistry) {
+        FileOps.ensureDir(DIR);
+        FileOps.clearAll(DIR);
+        LocalServerConfig conf = LocalServerConfig.create(LocalServers.configFile(DIR)).setRocksShared(true).build();
+        PatchStoreRocks patchStore = (PatchStoreRocks)PatchStoreMgr
+                                            .getPatchStoreProvider(Provider.ROCKS)
+                                            .create(conf);
+        patchStore.initialize(dataRegistry, conf);
+        return patchStore;
+    }
+
+    @Test public void migrateToShared() {
+        String dir = "target/test/patch-store-rocks-migrate";
+        FileOps.ensureDir(dir);
+        FileOps.clearAll(dir);
+
+        // Per-log layout: two logs, each with its own database.
+        LocalServerConfig conf1 = LocalServers.configFile(dir);
+        PatchStore store1 = PatchStoreMgr.getPatchStoreProvider(Provider.ROCKS).create(conf1);
+        store1.initialize(new DataSourceRegistry("X"), conf1);
+        DataSourceDescription dsd1 = new DataSourceDescription(Id.create(), "ABC", "http://test/ABC");
+        DataSourceDescription dsd2 = new DataSourceDescription(Id.create(), "XYZ", "http://test/XYZ");
+        PatchLog log1 = store1.createLog(dsd1);
+        PatchLog log2 = store1.createLog(dsd2);
+        Id id1 = append(log1, 3);
+        Id id2 = append(log2, 1);
+        log1.releaseLog();
+        log2.releaseLog();
+        PatchStoreRocks.resetTracked();
+
+        int count = RocksMigrate.toShared(Paths.get(dir));
+        assertEquals(2, count);
+        Path dbPath = Paths.get(dir, "ABC", "rdb");
+        assertFalse(Files.exists(dbPath));
+
+        // Shared layout.
+        LocalServerConfig conf2 = LocalServerConfig.create(conf1).setRocksShared(true).build();
+        PatchStore store2 = PatchStoreMgr.getPatchStoreProvider(Provider.ROCKS).create(conf2);
+        store2.initialize(new DataSourceRegistry("X"), conf2);
+        PatchLog log1a = store2.connectLog(dsd1);
+        PatchLog log2a = store2.connectLog(dsd2);
+        assertNotNull(log1a);
+        assertNotNull(log2a);
+        assertEquals(Version.create(3), log1a.getLatestVersion());
+        assertEquals(id1, log1a.getLatestId());
+        assertEquals(Version.create(1), log2a.getLatestVersion());
+        assertEquals(id2, log2a.getLatestId());
+        assertEquals(Version.create(3), log1a.find(id1));
+        assertNull(log1a.find(id2));
+        assertNotNull(log1a.fetch(Version.create(2)));
+    }
+
+    // A log is used in the layout it is on disk, not the configured layout.
+    @Test public void layoutOnDisk() {
+        String dir = "target/test/patch-store-rocks-layout";
+        FileOps.ensureDir(dir);
+        FileOps.clearAll(dir);
+        LocalServerConfig confLog = LocalServers.configFile(dir);
+        LocalServerConfig confShared = LocalServerConfig.create(confLog).setRocksShared(true).build();
+        DataSourceDescription dsd = new DataSourceDescription(Id.create(), "ABC", "http://test/ABC");
+
+        PatchLog log1 = rocksStore(confLog).createLog(dsd);
+        Id id = append(log1, 3);
+        log1.releaseLog();
+        PatchStoreRocks.resetTracked();
+
+        // Not migrated: configured as shared, still in its own database.
+        PatchLog log2 = rocksStore(confShared).connectLog(dsd);
+        assertEquals(Version.create(3), log2.getLatestVersion());
+        assertEquals(id, log2.getLatestId());
+        log2.releaseLog();
+        PatchStoreRocks.resetTracked();
+
+        RocksMigrate.toShared(Paths.get(dir));
+        // Migrated: configured as one database per log, still in the shared database.
+        PatchLog log3 = rocksStore(confLog).connectLog(dsd);
+        assertEquals(Version.create(3), log3.getLatestVersion());
+        assertEquals(id, log3.getLatestId());
+        assertFalse(Files.exists(Paths.get(dir, "ABC", "rdb")));
+    }
+
+    // A migration that stopped before the database of a log was renamed can be run again.
+    @Test public void migrateResume() {
+        String dir = "target/test/patch-store-rocks-migrate-resume";
+        FileOps.ensureDir(dir);
+        FileOps.clearAll(dir);
+        LocalServerConfig confLog = LocalServers.configFile(dir);
+        DataSourceDescription dsd = new DataSourceDescription(Id.create(), "ABC", "http://test/ABC");
+        PatchLog log1 = rocksStore(confLog).createLog(dsd);
+        Id id = append(log1, 3);
+        log1.releaseLog();
+        PatchStoreRocks.resetTracked();
+
+        assertEquals(1, RocksMigrate.toShared(Paths.get(dir)));
+        // As if the migration stopped after copying the rows: the rows are in the
+        // shared database and the database of the log has not been renamed.
+        Path logArea = Paths.get(dir, "ABC");
+        IOX.move(logArea.resolve(RocksMigrate.migratedFilename), logArea.resolve("rdb"));
+        assertEquals(1, RocksMigrate.toShared(Paths.get(dir)));
+
+        LocalServerConfig confShared = LocalServerConfig.create(confLog).setRocksShared(true).build();
+        PatchLog log2 = rocksStore(confShared).connectLog(dsd);
+        assertEquals(Version.create(3), log2.getLatestVersion());
+        assertEquals(id, log2.getLatestId());
+    }
+
+    private static PatchStore rocksStore(LocalServerConfig conf) {
+        PatchStore store = PatchStoreMgr.getPatchStoreProvider(Provider.ROCKS).create(conf);
+        store.initialize(new DataSourceRegistry("X"), conf);
+        return store;
+    }
+
+    private static Id append(PatchLog log, int n) {
+        Id prev = null;
+        for ( int i = 0 ; i < n ; i++ ) {
+            Id id = Id.create();
+            RDFPatch patch = RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), prev == null ? null : prev.asNode());
+            log.append(patch);
+            prev = id;
+        }
+        return prev;
+    }
+}
@@ -27,4 +27,10 @@ public class RDFPatchConst {
     public static final String ID       = "id";
 
     public static final String PREV     = "prev";
+
+    /**
+     * Header of a patch that is the net effect of several patches (see
+     * {@link RDFPatchOps#squash}); the value is the number of patches, as an integer.
+     */
+    public static final String SQUASH   = "squash";
 }
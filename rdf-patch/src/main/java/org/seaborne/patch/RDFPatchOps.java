@@ -20,13 +20,16 @@ package org.seaborne.patch;
 import java.io.*;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 
 import org.apache.jena.atlas.io.IO;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.sparql.core.DatasetGraph;
@@ -114,7 +117,7 @@ public class RDFPatchOps {
      *  to an external resource like an {@link InputStream}.
      */
     public static RDFPatch collect(RDFPatch patch) {
-        if ( patch instanceof RDFChangesCollector )
+        if ( patch instanceof RDFChangesCollector.RDFPatchStored )
             return patch;
         return build( x-> patch.apply(x));
     }
@@ -128,6 +131,39 @@ public class RDFPatchOps {
         return x.getRDFPatch();
     }
 
+    /**
+     * Merge a sequence of patches into one patch with the same net effect.
+     * The merged patch has the id of the last patch, the previous of the first patch and
+     * a {@link RDFPatchConst#SQUASH} header of the number of patches merged.
+     * See {@link RDFChangesSquash}.
+     */
+    public static RDFPatch squash(Iterator<RDFPatch> patches) {
+        RDFChangesSquash squash = new RDFChangesSquash();
+        long count = 0;
+        while ( patches.hasNext() ) {
+            RDFPatch patch = patches.next();
+            patch.apply(squash);
+            count += squashCount(patch);
+        }
+        squash.header(RDFPatchConst.SQUASH, NodeFactory.createLiteral(Long.toString(count), XSDDatatype.XSDinteger));
+        return squash.getRDFPatch();
+    }
+
+    /**
+     * The number of patches merged to make this patch: the value of the
+     * {@link RDFPatchConst#SQUASH} header, or 1 if there is no such header.
+     */
+    public static long squashCount(RDFPatch patch) {
+        Node n = patch.getHeader(RDFPatchConst.SQUASH);
+        if ( n == null || ! n.isLiteral() )
+            return 1;
+        try {
+            return Long.parseLong(n.getLiteralLexicalForm());
+        } catch (NumberFormatException ex) {
+            return 1;
+        }
+    }
+
     /** RDF data file to patch.
      * The patch has no Id or Previous - see {@link #withHeader}.
      */
@@ -19,6 +19,8 @@ package org.seaborne.patch.binary;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import org.apache.jena.JenaRuntime;
@@ -38,6 +40,16 @@ import org.seaborne.patch.changes.RDFChangesWriter;
 /**
  * Write RDF Patch in binary (thrift encoded).
  * <p>
+ * If compression is requested, a graph, subject or predicate that is the same as in the
+ * previous data row is written as {@link RDF_REPEAT}, and an IRI (or literal datatype)
+ * that starts with the IRI of a prefix declared earlier in the patch by {@code PA} is
+ * written as an {@link RDF_PrefixName}. {@link RDFPatchReaderBinary} reads both
+ * compressed and uncompressed patches, but readers before compression was added only
+ * read uncompressed patches, so compression is off by default.
+ * <p>
+ * The compression state is for one patch: it is cleared by {@link #start()} and
+ * {@link #finish()} so a writer can be used for a series of patches.
+ * <p>
  * This class is not thread safe.
  *
  * @see RDFChangesWriter
@@ -86,10 +98,33 @@ public class RDFChangesWriterBinary implements RDFChanges {
     private final Patch_Prefix_Add prefixAdd = new Patch_Prefix_Add();
     private final Patch_Prefix_Del prefixDel = new Patch_Prefix_Del();
     private final RDF_Patch_Row row = new RDF_Patch_Row();
+    private static final RDF_REPEAT REPEAT = new RDF_REPEAT();
 
     private final TProtocol protocol;
+    private final boolean compress;
+
+    // Compression state: the last G, S and P written, and the prefixes declared so far.
+    // The reader tracks the same state as it reads rows.
+    private Node lastG = null;
+    private Node lastS = null;
+    private Node lastP = null;
+    // prefix -> IRI, and IRI -> prefix for the reverse lookup.
+    private final Map<String, String> prefixes = new HashMap<>();
+    private final Map<String, String> namespaces = new HashMap<>();
+
+    /** Binary writer, without compression. */
     public RDFChangesWriterBinary(TProtocol protocol) {
+        this(protocol, false);
+    }
+
+    /**
+     * Binary writer. If {@code compress} is false, every term is written in full, which
+     * is the format written by versions before compression was added and is the only
+     * format they can read.
+     */
+    public RDFChangesWriterBinary(TProtocol protocol, boolean compress) {
         this.protocol = protocol;
+        this.compress = compress;
     }
 
     private void write() {
@@ -101,10 +136,24 @@ public class RDFChangesWriterBinary implements RDFChanges {
     }
 
     @Override
-    public void start() {}
+    public void start() {
+        resetCompression();
+    }
 
     @Override
-    public void finish() { TRDF.flush(protocol); }
+    public void finish() {
+        TRDF.flush(protocol);
+        resetCompression();
+    }
+
+    // The reader starts each patch with no compression state.
+    private void resetCompression() {
+        lastG = null;
+        lastS = null;
+        lastP = null;
+        prefixes.clear();
+        namespaces.clear();
+    }
 
     @Override
     public void header(String field, Node value) {
@@ -131,12 +180,68 @@ public class RDFChangesWriterBinary implements RDFChanges {
     }
 
     private void set(Node g, Node s, Node p, Node o) {
-        ts.clear(); RDFChangesWriterBinary.toThrift(s, ts);
-        tp.clear(); RDFChangesWriterBinary.toThrift(p, tp);
-        to.clear(); RDFChangesWriterBinary.toThrift(o, to);
+        term(s, lastS, ts);
+        term(p, lastP, tp);
+        term(o, null, to);
         tg.clear();
         if ( g != null )
-           RDFChangesWriterBinary.toThrift(g, tg);
+            term(g, lastG, tg);
+        lastG = g;
+        lastS = s;
+        lastP = p;
+    }
+
+    private void term(Node node, Node previous, RDF_Term term) {
+        term.clear();
+        if ( ! compress ) {
+            toThrift(node, term);
+            return;
+        }
+        if ( node.equals(previous) ) {
+            term.setRepeat(REPEAT);
+            return;
+        }
+        if ( node.isURI() ) {
+            RDF_PrefixName pn = abbreviate(node.getURI());
+            if ( pn != null ) {
+                term.setPrefixName(pn);
+                return;
+            }
+        }
+        toThrift(node, term);
+        if ( term.isSetLiteral() && term.getLiteral().isSetDatatype() ) {
+            RDF_PrefixName pn = abbreviate(term.getLiteral().getDatatype());
+            if ( pn != null ) {
+                term.getLiteral().unsetDatatype();
+                term.getLiteral().setDtPrefix(pn);
+            }
+        }
+    }
+
+    /** Prefix name for an IRI, or null if no declared prefix applies. */
+    private RDF_PrefixName abbreviate(String iri) {
+        if ( namespaces.isEmpty() )
+            return null;
+        int idx = Math.max(iri.lastIndexOf('#'), Math.max(iri.lastIndexOf('/'), iri.lastIndexOf(':')));
+        if ( idx < 0 )
+            return null;
+        String prefix = namespaces.get(iri.substring(0, idx+1));
+        if ( prefix == null )
+            return null;
+        return new RDF_PrefixName(prefix, iri.substring(idx+1));
+    }
+
+    private void declarePrefix(String prefix, String iriStr) {
+        undeclarePrefix(prefix);
+        prefixes.put(prefix, iriStr);
+        namespaces.put(iriStr, prefix);
+    }
+
+    private void undeclarePrefix(String prefix) {
+        String iriStr = prefixes.remove(prefix);
+        // Only remove the reverse entry if it is for this prefix.
+        if ( iriStr != null && prefix.equals(namespaces.get(iriStr)) )
+            namespaces.remove(iriStr);
     }
 
     @Override
@@ -164,6 +269,8 @@ public class RDFChangesWriterBinary implements RDFChanges {
         prefixAdd.setIriStr(uriStr);
         row.setPrefixAdd(prefixAdd);
         write();
+        // Prefixes for compression are for the whole patch, whatever the graph.
+        declarePrefix(prefix, uriStr);
     }
 
     @Override
@@ -177,6 +284,7 @@ public class RDFChangesWriterBinary implements RDFChanges {
         prefixDel.setPrefix(prefix);
         row.setPrefixDel(prefixDel);
         write();
+        undeclarePrefix(prefix);
     }
 
     @Override
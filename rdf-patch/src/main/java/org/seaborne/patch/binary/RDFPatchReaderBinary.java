@@ -18,6 +18,7 @@
 package org.seaborne.patch.binary;
 
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -41,12 +42,15 @@ import org.seaborne.patch.binary.thrift.Patch_Prefix_Add;
 import org.seaborne.patch.binary.thrift.Patch_Prefix_Del;
 import org.seaborne.patch.binary.thrift.RDF_Literal;
 import org.seaborne.patch.binary.thrift.RDF_Patch_Row;
+import org.seaborne.patch.binary.thrift.RDF_PrefixName;
 import org.seaborne.patch.binary.thrift.RDF_Term;
 import org.seaborne.patch.binary.thrift.Transaction;
 import org.seaborne.patch.changes.RDFChangesCollector;
 
 /**
  * Read a binary patch.
+ * <p>
+ * This reads both compressed and uncompressed patches (see {@link RDFChangesWriterBinary}).
  * @see PatchProcessor
  */
 public class RDFPatchReaderBinary implements PatchProcessor {
@@ -126,6 +130,7 @@ public class RDFPatchReaderBinary implements PatchProcessor {
 
     public static void read(TProtocol protocol, RDFChanges changes) {
         RDF_Patch_Row row = new RDF_Patch_Row();
+        Decoder decoder = new Decoder();
         changes.start();
         for (;;) {
             row.clear();
@@ -141,72 +146,115 @@ public class RDFPatchReaderBinary implements PatchProcessor {
                 throw new PatchException("Thrift exception", e);
             }
 
-            dispatch(row, changes);
+            decoder.dispatch(row, changes);
         }
     }
 
-    private static void dispatch(RDF_Patch_Row row, RDFChanges changes) {
-        if ( row.isSetHeader() ) {
-            Patch_Header h = row.getHeader();
-            Node n = RDFPatchReaderBinary.fromThrift(h.getValue());
-            changes.header(h.getName(), n);
-            return;
-        }
+    /**
+     * Decoding state for one patch: the last graph, subject and predicate, for
+     * {@code RDF_REPEAT}, and the prefixes declared so far, for {@code RDF_PrefixName}.
+     */
+    private static class Decoder {
+        private Node lastG = null;
+        private Node lastS = null;
+        private Node lastP = null;
+        private final Map<String, String> prefixes = new HashMap<>();
 
-        if ( row.isSetDataAdd() ) {
-            Patch_Data_Add add = row.getDataAdd();
-            Node s = RDFPatchReaderBinary.fromThrift(add.getS());
-            Node p = RDFPatchReaderBinary.fromThrift(add.getP());
-            Node o = RDFPatchReaderBinary.fromThrift(add.getO());
-            Node g = null;
-            if ( add.isSetG() )
-                g = RDFPatchReaderBinary.fromThrift(add.getG());
-            changes.add(g, s, p, o);
-            return;
+        private Node term(RDF_Term term, Node previous) {
+            if ( term.isSetRepeat() ) {
+                if ( previous == null )
+                    throw new PatchException("Repeat term with no previous term");
+                return previous;
+            }
+            if ( term.isSetPrefixName() )
+                return NodeFactory.createURI(expand(term.getPrefixName()));
+            if ( term.isSetLiteral() && term.getLiteral().isSetDtPrefix() ) {
+                RDF_Literal lit = term.getLiteral();
+                RDFDatatype dt = NodeFactory.getType(expand(lit.getDtPrefix()));
+                return NodeFactory.createLiteral(lit.getLex(), lit.getLangtag(), dt);
+            }
+            return fromThrift(term);
         }
 
-        if ( row.isSetDataDel() ) {
-            Patch_Data_Del del = row.getDataDel();
-            Node s = RDFPatchReaderBinary.fromThrift(del.getS());
-            Node p = RDFPatchReaderBinary.fromThrift(del.getP());
-            Node o = RDFPatchReaderBinary.fromThrift(del.getO());
-            Node g = null;
-            if ( del.isSetG() )
-                g = RDFPatchReaderBinary.fromThrift(del.getG());
-            changes.delete(g, s, p, o);
-            return;
+        private String expand(RDF_PrefixName pn) {
+            String iriStr = prefixes.get(pn.getPrefix());
+            if ( iriStr == null )
+                throw new PatchException("Undeclared prefix: "+pn.getPrefix());
+            return iriStr+pn.getLocalName();
         }
 
-        if ( row.isSetPrefixAdd()) {
-            Patch_Prefix_Add add = row.getPrefixAdd();
-            Node gn = null;
-            if ( add.isSetGraphNode() )
-                gn = fromThrift(add.getGraphNode());
-            changes.addPrefix(gn, add.getPrefix(), add.getIriStr());
-            return;
-        }
+        private void dispatch(RDF_Patch_Row row, RDFChanges changes) {
+            if ( row.isSetHeader() ) {
+                Patch_Header h = row.getHeader();
+                Node n = RDFPatchReaderBinary.fromThrift(h.getValue());
+                changes.header(h.getName(), n);
+                return;
+            }
 
-        if ( row.isSetPrefixDel()) {
-            Patch_Prefix_Del del = row.getPrefixDel();
-            Node gn = null;
-            if ( del.isSetGraphNode() )
-                gn = fromThrift(del.getGraphNode());
-            changes.deletePrefix(gn, del.getPrefix());
-            return;
-        }
+            if ( row.isSetDataAdd() ) {
+                Patch_Data_Add add = row.getDataAdd();
+                Node s = term(add.getS(), lastS);
+                Node p = term(add.getP(), lastP);
+                Node o = term(add.getO(), null);
+                Node g = null;
+                if ( add.isSetG() )
+                    g = term(add.getG(), lastG);
+                lastG = g;
+                lastS = s;
+                lastP = p;
+                changes.add(g, s, p, o);
+                return;
+            }
 
-        if ( row.isSetTxn() ) {
-            Transaction txn = row.getTxn();
-            switch (txn) {
-                case TX : changes.txnBegin(); break;
-                case TC : changes.txnCommit(); break;
-                case TA : changes.txnAbort(); break;
-                case Segment : changes.segment(); break;
+            if ( row.isSetDataDel() ) {
+                Patch_Data_Del del = row.getDataDel();
+                Node s = term(del.getS(), lastS);
+                Node p = term(del.getP(), lastP);
+                Node o = term(del.getO(), null);
+                Node g = null;
+                if ( del.isSetG() )
+                    g = term(del.getG(), lastG);
+                lastG = g;
+                lastS = s;
+                lastP = p;
+                changes.delete(g, s, p, o);
+                return;
+            }
+
+            if ( row.isSetPrefixAdd()) {
+                Patch_Prefix_Add add = row.getPrefixAdd();
+                Node gn = null;
+                if ( add.isSetGraphNode() )
+                    gn = fromThrift(add.getGraphNode());
+                // Prefixes for compression are for the whole patch, whatever the graph.
+                prefixes.put(add.getPrefix(), add.getIriStr());
+                changes.addPrefix(gn, add.getPrefix(), add.getIriStr());
+                return;
+            }
+
+            if ( row.isSetPrefixDel()) {
+                Patch_Prefix_Del del = row.getPrefixDel();
+                Node gn = null;
+                if ( del.isSetGraphNode() )
+                    gn = fromThrift(del.getGraphNode());
+                prefixes.remove(del.getPrefix());
+                changes.deletePrefix(gn, del.getPrefix());
+                return;
             }
-            return;
-        }
 
-        throw new PatchException("Unrecogized :"+row);
+            if ( row.isSetTxn() ) {
+                Transaction txn = row.getTxn();
+                switch (txn) {
+                    case TX : changes.txnBegin(); break;
+                    case TC : changes.txnCommit(); break;
+                    case TA : changes.txnAbort(); break;
+                    case Segment : changes.segment(); break;
+                }
+                return;
+            }
+
+            throw new PatchException("Unrecogized :"+row);
+        }
     }
 
     public static Node fromThrift(RDF_Term term) {
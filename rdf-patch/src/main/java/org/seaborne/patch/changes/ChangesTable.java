@@ -0,0 +1,301 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch.changes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.items.*;
+
+/**
+ * Compact storage for a sequence of changes.
+ * <p>
+ * Each RDF term and prefix string is stored once in a table of terms. A change is
+ * recorded in an {@code int} array as an operation code followed by the indexes of its
+ * terms so a quad costs five {@code int}s, not an object per change.
+ * <p>
+ * Storage is append-only: a {@link View} of the first changes is not affected by later
+ * changes so it can be taken without copying. The terms and the codes are held in arrays
+ * that are replaced, not changed, when they grow, and a view only uses the entries
+ * that existed when it was taken, so a view can be used while more changes are added.
+ */
+/*package*/ class ChangesTable {
+    private static final int HEADER        = 0;
+    private static final int ADD           = 1;
+    private static final int DELETE        = 2;
+    private static final int ADD_PREFIX    = 3;
+    private static final int DELETE_PREFIX = 4;
+    private static final int TXN_BEGIN     = 5;
+    private static final int TXN_COMMIT    = 6;
+    private static final int TXN_ABORT     = 7;
+    private static final int SEGMENT       = 8;
+
+    // Index of a null term (the default graph).
+    private static final int NONE = -1;
+
+    // Nodes and strings. Only appended to.
+    private Object[] terms = new Object[16];
+    private int termCount = 0;
+    private final Map<Object, Integer> termIndex = new HashMap<>();
+    private int[] codes = new int[64];
+    private int length = 0;
+
+    /** A fixed view of the changes so far. */
+    /*package*/ View view() {
+        return new View(terms, codes, length);
+    }
+
+    private int term(Object term) {
+        if ( term == null )
+            return NONE;
+        Integer idx = termIndex.get(term);
+        if ( idx == null ) {
+            if ( termCount == terms.length )
+                terms = Arrays.copyOf(terms, 2*terms.length);
+            idx = termCount;
+            terms[termCount++] = term;
+            termIndex.put(term, idx);
+        }
+        return idx;
+    }
+
+    private void ensure(int n) {
+        if ( length + n > codes.length )
+            codes = Arrays.copyOf(codes, Math.max(2*codes.length, length + n));
+    }
+
+    private void record(int code) {
+        ensure(1);
+        codes[length++] = code;
+    }
+
+    private void record(int code, Object x1, Object x2) {
+        ensure(3);
+        codes[length++] = code;
+        codes[length++] = term(x1);
+        codes[length++] = term(x2);
+    }
+
+    private void record(int code, Object x1, Object x2, Object x3, Object x4) {
+        ensure(5);
+        codes[length++] = code;
+        codes[length++] = term(x1);
+        codes[length++] = term(x2);
+        codes[length++] = term(x3);
+        codes[length++] = term(x4);
+    }
+
+    /*package*/ void header(String field, Node value) { record(HEADER, field, value); }
+
+    /*package*/ void add(Node g, Node s, Node p, Node o) { record(ADD, g, s, p, o); }
+
+    /*package*/ void delete(Node g, Node s, Node p, Node o) { record(DELETE, g, s, p, o); }
+
+    /*package*/ void addPrefix(Node gn, String prefix, String uriStr) {
+        ensure(4);
+        codes[length++] = ADD_PREFIX;
+        codes[length++] = term(gn);
+        codes[length++] = term(prefix);
+        codes[length++] = term(uriStr);
+    }
+
+    /*package*/ void deletePrefix(Node gn, String prefix) { record(DELETE_PREFIX, gn, prefix); }
+
+    /*package*/ void txnBegin() { record(TXN_BEGIN); }
+
+    /*package*/ void txnCommit() { record(TXN_COMMIT); }
+
+    /*package*/ void txnAbort() { record(TXN_ABORT); }
+
+    /*package*/ void segment() { record(SEGMENT); }
+
+    /*package*/ void add(ChangeItem item) {
+        if ( item instanceof HeaderItem ) {
+            HeaderItem h = (HeaderItem)item;
+            header(h.field, h.value);
+        } else if ( item instanceof AddQuad ) {
+            AddQuad a = (AddQuad)item;
+            add(a.g, a.s, a.p, a.o);
+        } else if ( item instanceof DeleteQuad ) {
+            DeleteQuad d = (DeleteQuad)item;
+            delete(d.g, d.s, d.p, d.o);
+        } else if ( item instanceof AddPrefix ) {
+            AddPrefix a = (AddPrefix)item;
+            addPrefix(a.gn, a.prefix, a.uriStr);
+        } else if ( item instanceof DeletePrefix ) {
+            DeletePrefix d = (DeletePrefix)item;
+            deletePrefix(d.gn, d.prefix);
+        } else if ( item instanceof TxnBegin )
+            txnBegin();
+        else if ( item instanceof TxnCommit )
+            txnCommit();
+        else if ( item instanceof TxnAbort )
+            txnAbort();
+        else if ( item instanceof Segment )
+            segment();
+        else
+            throw new IllegalArgumentException("Unrecognized change: "+item);
+    }
+
+    /** The first {@code length} entries of a {@code ChangesTable}. */
+    /*package*/ static class View {
+        private final Object[] terms;
+        private final int[] codes;
+        private final int length;
+
+        private View(Object[] terms, int[] codes, int length) {
+            this.terms = terms;
+            this.codes = codes;
+            this.length = length;
+        }
+
+        private Node node(int idx) {
+            return idx == NONE ? null : (Node)terms[idx];
+        }
+
+        private String string(int idx) {
+            return idx == NONE ? null : (String)terms[idx];
+        }
+
+        /*package*/ void apply(RDFChanges target) {
+            int i = 0;
+            while ( i < length ) {
+                int code = codes[i];
+                switch(code) {
+                    case HEADER:
+                        target.header(string(codes[i+1]), node(codes[i+2]));
+                        i += 3;
+                        break;
+                    case ADD:
+                        target.add(node(codes[i+1]), node(codes[i+2]), node(codes[i+3]), node(codes[i+4]));
+                        i += 5;
+                        break;
+                    case DELETE:
+                        target.delete(node(codes[i+1]), node(codes[i+2]), node(codes[i+3]), node(codes[i+4]));
+                        i += 5;
+                        break;
+                    case ADD_PREFIX:
+                        target.addPrefix(node(codes[i+1]), string(codes[i+2]), string(codes[i+3]));
+                        i += 4;
+                        break;
+                    case DELETE_PREFIX:
+                        target.deletePrefix(node(codes[i+1]), string(codes[i+2]));
+                        i += 3;
+                        break;
+                    case TXN_BEGIN:
+                        target.txnBegin();
+                        i += 1;
+                        break;
+                    case TXN_COMMIT:
+                        target.txnCommit();
+                        i += 1;
+                        break;
+                    case TXN_ABORT:
+                        target.txnAbort();
+                        i += 1;
+                        break;
+                    case SEGMENT:
+                        target.segment();
+                        i += 1;
+                        break;
+                    default:
+                        throw new IllegalStateException("Bad change code: "+code);
+                }
+            }
+        }
+
+        /** The changes as {@link ChangeItem}s. */
+        /*package*/ List<ChangeItem> items() {
+            List<ChangeItem> items = new ArrayList<>();
+            apply(new RDFChanges() {
+                @Override public void start() {}
+                @Override public void finish() {}
+                @Override public void header(String field, Node value) { items.add(new HeaderItem(field, value)); }
+                @Override public void add(Node g, Node s, Node p, Node o) { items.add(new AddQuad(g, s, p, o)); }
+                @Override public void delete(Node g, Node s, Node p, Node o) { items.add(new DeleteQuad(g, s, p, o)); }
+                @Override public void addPrefix(Node gn, String prefix, String uriStr) { items.add(new AddPrefix(gn, prefix, uriStr)); }
+                @Override public void deletePrefix(Node gn, String prefix) { items.add(new DeletePrefix(gn, prefix)); }
+                @Override public void txnBegin() { items.add(TxnBegin.object()); }
+                @Override public void txnCommit() { items.add(TxnCommit.object()); }
+                @Override public void txnAbort() { items.add(TxnAbort.object()); }
+                @Override public void segment() { items.add(new Segment()); }
+            });
+            return items;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 1;
+            int i = 0;
+            while ( i < length ) {
+                int code = codes[i];
+                result = 31 * result + code;
+                int n = arity(code);
+                for ( int j = 1 ; j <= n ; j++ ) {
+                    int x = codes[i+j];
+                    result = 31 * result + ( x == NONE ? 0 : terms[x].hashCode() );
+                }
+                i += 1 + n;
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( !(obj instanceof View) )
+                return false;
+            View other = (View)obj;
+            if ( length != other.length )
+                return false;
+            int i = 0;
+            while ( i < length ) {
+                int code = codes[i];
+                if ( code != other.codes[i] )
+                    return false;
+                int n = arity(code);
+                for ( int j = 1 ; j <= n ; j++ ) {
+                    int x1 = codes[i+j];
+                    int x2 = other.codes[i+j];
+                    if ( x1 == NONE || x2 == NONE ) {
+                        if ( x1 != x2 )
+                            return false;
+                    } else if ( ! terms[x1].equals(other.terms[x2]) )
+                        return false;
+                }
+                i += 1 + n;
+            }
+            return true;
+        }
+    }
+
+    private static int arity(int code) {
+        switch(code) {
+            case ADD: case DELETE:  return 4;
+            case ADD_PREFIX:        return 3;
+            case HEADER: case DELETE_PREFIX: return 2;
+            default:                return 0;
+        }
+    }
+}
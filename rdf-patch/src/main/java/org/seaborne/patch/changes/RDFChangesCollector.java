@@ -17,30 +17,46 @@
 
 package org.seaborne.patch.changes;
 
-import java.util.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
-import org.apache.jena.atlas.lib.Lib;
-import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.graph.Node;
 import org.seaborne.patch.PatchHeader;
 import org.seaborne.patch.RDFChanges;
 import org.seaborne.patch.RDFPatch;
-import org.seaborne.patch.items.*;
+import org.seaborne.patch.items.ChangeItem;
 
-/** Capture a stream of changes, then play it to another {@link RDFChanges} */
+/**
+ * Capture a stream of changes, then play it to another {@link RDFChanges}.
+ * <p>
+ * Changes are held compactly (see {@code ChangesTable}); {@link #getRDFPatch} returns a
+ * view of the changes so far without copying them.
+ */
 public class RDFChangesCollector implements RDFChanges {
     // NB begin - then set headers correctly becomes headers then begin.
     // This is intentional so headers can be set after the patch log starts.
     // But use with care.
     private static final boolean RECORD_HEADER = false;
     private Map<String, Node> header = new LinkedHashMap<>();
-    private List<ChangeItem> actions = new LinkedList<>();
+    private ChangesTable actions = new ChangesTable();
 
     public static class RDFPatchStored implements RDFPatch {
         private final PatchHeader header ;
-        private final List<ChangeItem> actions;
+        private final ChangesTable.View actions;
+        // The changes as ChangeItems, made when first asked for.
+        private volatile List<ChangeItem> items = null;
 
         public RDFPatchStored(Map<String, Node> header, List<ChangeItem> actions) {
+            this.header = new PatchHeader(header);
+            ChangesTable table = new ChangesTable();
+            actions.forEach(table::add);
+            this.actions = table.view();
+        }
+
+        private RDFPatchStored(Map<String, Node> header, ChangesTable.View actions) {
             this.header = new PatchHeader(header);
             this.actions = actions;
         }
@@ -54,7 +70,7 @@ public class RDFChangesCollector implements RDFChanges {
         public void apply(RDFChanges changes) {
             if ( ! RECORD_HEADER )
                 header.apply(changes);
-            actions.forEach(a -> enact(a, changes));
+            actions.apply(changes);
         }
 
         @Override
@@ -62,15 +78,27 @@ public class RDFChangesCollector implements RDFChanges {
             return true;
         }
 
+        /**
+         * Return the changes as a list of {@link ChangeItem}s.
+         * <p>
+         * The list is made when first asked for and can not be modified; the changes of
+         * the patch can not be changed through it. (Before changes were held compactly,
+         * this returned the list the patch used.)
+         */
         public List<ChangeItem> getActions() {
-            return actions;
+            List<ChangeItem> x = items;
+            if ( x == null ) {
+                x = Collections.unmodifiableList(actions.items());
+                items = x;
+            }
+            return x;
         }
 
         @Override
         public int hashCode() {
             final int prime = 31;
             int result = 1;
-            result = prime * result + ((actions == null) ? 0 : actions.hashCode());
+            result = prime * result + actions.hashCode();
             result = prime * result + ((header == null) ? 0 : header.hashCode());
             return result;
         }
@@ -84,10 +112,7 @@ public class RDFChangesCollector implements RDFChanges {
             if ( getClass() != obj.getClass() )
                 return false;
             RDFPatchStored other = (RDFPatchStored)obj;
-            if ( actions == null ) {
-                if ( other.actions != null )
-                    return false;
-            } else if ( !actions.equals(other.actions) )
+            if ( !actions.equals(other.actions) )
                 return false;
             if ( header == null ) {
                 if ( other.header != null )
@@ -100,90 +125,12 @@ public class RDFChangesCollector implements RDFChanges {
 
     public RDFChangesCollector() { }
 
+    /**
+     * Return the patch of the changes so far. The patch is not affected by later changes
+     * to this {@code RDFChangesCollector}.
+     */
     public RDFPatch getRDFPatch() {
-        return new RDFPatchStored(new HashMap<>(header), new ArrayList<>(actions));
-    }
-
-//    /** Play backwards, swapping adds for deletes and delete for adds */
-//    public void playReverse(RDFChanges target) {
-//        System.err.println("playReverse: Partially implemented");
-//        // More complicated - turn into transaction chunks then ...
-//
-//        ListIteratorReverse.reverse(actions.listIterator()).forEachRemaining(a-> enactFlip(a, target));
-//    }
-
-    private void enactFlip(ChangeItem a, RDFChanges target) {
-        if ( a instanceof AddQuad ) {
-            AddQuad a2 = (AddQuad)a;
-            target.delete/*add*/(a2.g, a2.s, a2.p, a2.o);
-            return;
-        }
-        if ( a instanceof DeleteQuad ) {
-            DeleteQuad a2 = (DeleteQuad)a;
-            target.add/*delete*/(a2.g, a2.s, a2.p, a2.o);
-            return;
-        }
-//        if ( a instanceof AddPrefix ) {
-//            AddPrefix a2 = (AddPrefix)a;
-//            target.deletePrefix(a2.gn, a2.prefix, a2.uriStr);
-//            return;
-//        }
-//        if ( a instanceof DeletePrefix ) {
-//            DeletePrefix a2 = (DeletePrefix)a;
-//            target.addPrefix(a2.gn, a2.prefix);
-//            return;
-//        }
-        // Transaction.
-        enact(a, target);
-    }
-
-    private static void enact(ChangeItem item, RDFChanges target) {
-        if ( item instanceof HeaderItem ) {
-            HeaderItem h = (HeaderItem)item;
-            target.header(h.field, h.value);
-            return;
-        }
-        if ( item instanceof AddQuad ) {
-            AddQuad a2 = (AddQuad)item;
-            target.add(a2.g, a2.s, a2.p, a2.o);
-            return;
-        }
-        if ( item instanceof DeleteQuad ) {
-            DeleteQuad a2 = (DeleteQuad)item;
-            target.delete(a2.g, a2.s, a2.p, a2.o);
-            return;
-        }
-        if ( item instanceof AddPrefix ) {
-            AddPrefix a2 = (AddPrefix)item;
-            target.addPrefix(a2.gn, a2.prefix, a2.uriStr);
-            return;
-        }
-        if ( item instanceof DeletePrefix ) {
-            DeletePrefix a2 = (DeletePrefix)item;
-            target.deletePrefix(a2.gn, a2.prefix);
-            return;
-        }
-        if ( item instanceof TxnBegin ) {
-            target.txnBegin();
-            return;
-        }
-        if ( item instanceof TxnCommit ) {
-            target.txnCommit();
-            return;
-        }
-        if ( item instanceof TxnAbort ) {
-            target.txnAbort();
-            return;
-        }
-        if ( item instanceof Segment ) {
-            target.segment();
-            return;
-        }
-        FmtLog.warn(RDFChangesCollector.class,  "Unrecognized action: %s : %s", Lib.className(item), item);
-    }
-
-    private void collect(ChangeItem object) {
-        actions.add(object);
+        return new RDFPatchStored(new HashMap<>(header), actions.view());
     }
 
     @Override
@@ -199,7 +146,7 @@ public class RDFChangesCollector implements RDFChanges {
 
     @Override
     public void segment() {
-        actions.add(new Segment());
+        actions.segment();
     }
 
     public void reset() {
@@ -208,13 +155,14 @@ public class RDFChangesCollector implements RDFChanges {
 
     private void internalReset() {
         header.clear();
-        actions.clear();
+        // A new table: patches from getRDFPatch() keep the old one.
+        actions = new ChangesTable();
     }
 
     @Override
     public void header(String field, Node value) {
         if ( RECORD_HEADER )
-            collect(new HeaderItem(field, value));
+            actions.header(field, value);
         // And keep a copy.
         header.put(field, value);
     }
@@ -225,36 +173,36 @@ public class RDFChangesCollector implements RDFChanges {
 
     @Override
     public void add(Node g, Node s, Node p, Node o) {
-        collect(new AddQuad(g, s, p, o));
+        actions.add(g, s, p, o);
     }
 
     @Override
     public void delete(Node g, Node s, Node p, Node o) {
-        collect(new DeleteQuad(g, s, p, o));
+        actions.delete(g, s, p, o);
     }
 
     @Override
     public void addPrefix(Node gn, String prefix, String uriStr) {
-        collect(new AddPrefix(gn, prefix, uriStr));
+        actions.addPrefix(gn, prefix, uriStr);
     }
 
     @Override
     public void deletePrefix(Node gn, String prefix) {
-        collect(new DeletePrefix(gn, prefix)) ;
+        actions.deletePrefix(gn, prefix);
     }
 
     @Override
     public void txnBegin() {
-        collect(TxnBegin.object());
+        actions.txnBegin();
     }
 
     @Override
     public void txnCommit() {
-        collect(TxnCommit.object());
+        actions.txnCommit();
     }
 
     @Override
     public void txnAbort() {
-        collect(TxnAbort.object());
+        actions.txnAbort();
     }
 }
@@ -0,0 +1,136 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch.changes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.thrift.TRDF;
+import org.seaborne.patch.PatchHeader;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.binary.RDFChangesWriterBinary;
+import org.seaborne.patch.system.RDFPatchSpooled;
+import org.seaborne.patch.system.Spool;
+
+/**
+ * Capture a stream of changes, like {@link RDFChangesCollector}, but hold the changes in
+ * binary format in a {@link Spool} so that a large patch is written to a temporary
+ * file instead of being held in memory.
+ * <p>
+ * The header is kept in memory and can be set after the changes have started.
+ */
+public class RDFChangesSpool implements RDFChanges {
+    private final long memoryLimit;
+    private final Map<String, Node> header = new LinkedHashMap<>();
+    private Spool spool;
+    private RDFChangesWriterBinary writer;
+
+    public RDFChangesSpool() {
+        this(Spool.DFT_MEMORY_LIMIT);
+    }
+
+    /** Capture changes, holding up to {@code memoryLimit} bytes in memory. */
+    public RDFChangesSpool(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        newSpool();
+    }
+
+    private void newSpool() {
+        spool = new Spool(memoryLimit);
+        writer = new RDFChangesWriterBinary(TRDF.protocol(spool));
+    }
+
+    /**
+     * Return the patch of the changes so far. The patch keeps the spooled changes; this
+     * {@code RDFChangesSpool} starts again with no changes and the same header.
+     */
+    public RDFPatch getRDFPatch() {
+        writer.finish();
+        RDFPatch patch = RDFPatchSpooled.create(new PatchHeader(new LinkedHashMap<>(header)), spool, true);
+        newSpool();
+        return patch;
+    }
+
+    public void reset() {
+        header.clear();
+        spool.reset();
+        newSpool();
+    }
+
+    @Override
+    public void start() {
+        reset();
+    }
+
+    @Override
+    public void finish() {
+        // Do not reset here.
+        // The collected patch may be used after .finish() happens.
+    }
+
+    @Override
+    public void header(String field, Node value) {
+        header.put(field, value);
+    }
+
+    protected Node header(String field) {
+        return header.get(field);
+    }
+
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        writer.add(g, s, p, o);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        writer.delete(g, s, p, o);
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        writer.addPrefix(gn, prefix, uriStr);
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        writer.deletePrefix(gn, prefix);
+    }
+
+    @Override
+    public void txnBegin() {
+        writer.txnBegin();
+    }
+
+    @Override
+    public void txnCommit() {
+        writer.txnCommit();
+    }
+
+    @Override
+    public void txnAbort() {
+        writer.txnAbort();
+    }
+
+    @Override
+    public void segment() {
+        writer.segment();
+    }
+}
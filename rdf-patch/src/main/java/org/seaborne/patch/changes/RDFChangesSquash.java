@@ -0,0 +1,180 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch.changes;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+
+/**
+ * Collect the net effect of a sequence of changes, for example the patches for a range of
+ * versions of a patch log, as one patch.
+ * <p>
+ * Adding and deleting quads, and adding and deleting prefixes, are set operations so
+ * only the last change to each quad, or to each prefix of a graph, has any effect. The
+ * net effect patch has that last change, in one transaction. An add followed by a delete
+ * of the same quad becomes a delete (the quad may have been in the dataset before the
+ * first change), and a delete followed by an add becomes an add.
+ * <p>
+ * Changes in an aborted transaction are dropped.
+ * <p>
+ * Headers are those of the last patch, except {@code prev} which is that of the first
+ * patch, so the net effect patch fits in the place of the patches it replaces.
+ */
+public class RDFChangesSquash implements RDFChanges {
+    // Key (g,s,p,o), g may be null -> true for add, false for delete.
+    private final Map<List<Node>, Boolean> quads = new LinkedHashMap<>();
+    // Key (graph, prefix), graph may be null -> IRI for add, null for delete.
+    private final Map<List<Object>, String> prefixes = new LinkedHashMap<>();
+    private final Map<String, Node> header = new LinkedHashMap<>();
+
+    // Changes of the current transaction, if any.
+    private final Map<List<Node>, Boolean> txnQuads = new LinkedHashMap<>();
+    private final Map<List<Object>, String> txnPrefixes = new LinkedHashMap<>();
+    private boolean inTransaction = false;
+    // Set at the first transaction or change.
+    private boolean started = false;
+    // Set when the headers of a later patch start: a header after a change, or a second
+    // "id" header. Only the "prev" header of the first patch is kept.
+    private boolean firstPatchDone = false;
+
+    public RDFChangesSquash() {}
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void finish() {}
+
+    @Override
+    public void header(String field, Node value) {
+        if ( started || ( RDFPatchConst.ID.equals(field) && header.containsKey(RDFPatchConst.ID) ) )
+            firstPatchDone = true;
+        if ( RDFPatchConst.PREV.equals(field) && firstPatchDone )
+            return;
+        header.put(field, value);
+    }
+
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        quadChange(Arrays.asList(g, s, p, o), Boolean.TRUE);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        quadChange(Arrays.asList(g, s, p, o), Boolean.FALSE);
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        prefixChange(Arrays.asList(gn, prefix), uriStr);
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        prefixChange(Arrays.asList(gn, prefix), null);
+    }
+
+    private void quadChange(List<Node> quad, Boolean isAdd) {
+        started = true;
+        Map<List<Node>, Boolean> target = inTransaction ? txnQuads : quads;
+        // Remove first so the change is placed after earlier changes.
+        target.remove(quad);
+        target.put(quad, isAdd);
+    }
+
+    private void prefixChange(List<Object> key, String uriStr) {
+        started = true;
+        Map<List<Object>, String> target = inTransaction ? txnPrefixes : prefixes;
+        target.remove(key);
+        target.put(key, uriStr);
+    }
+
+    @Override
+    public void txnBegin() {
+        started = true;
+        inTransaction = true;
+    }
+
+    @Override
+    public void txnCommit() {
+        txnQuads.forEach((quad, isAdd)->{
+            quads.remove(quad);
+            quads.put(quad, isAdd);
+        });
+        txnPrefixes.forEach((key, uriStr)->{
+            prefixes.remove(key);
+            prefixes.put(key, uriStr);
+        });
+        endTransaction();
+    }
+
+    @Override
+    public void txnAbort() {
+        endTransaction();
+    }
+
+    private void endTransaction() {
+        txnQuads.clear();
+        txnPrefixes.clear();
+        inTransaction = false;
+    }
+
+    @Override
+    public void segment() {}
+
+    /** The number of quad and prefix changes in the net effect. */
+    public int size() {
+        return quads.size() + prefixes.size();
+    }
+
+    /** Return the net effect of the changes so far as a patch. */
+    public RDFPatch getRDFPatch() {
+        RDFChangesCollector collector = new RDFChangesCollector();
+        collector.start();
+        header.forEach(collector::header);
+        collector.txnBegin();
+        prefixes.forEach((key, uriStr)->{
+            Node gn = (Node)key.get(0);
+            String prefix = (String)key.get(1);
+            if ( uriStr == null )
+                collector.deletePrefix(gn, prefix);
+            else
+                collector.addPrefix(gn, prefix, uriStr);
+        });
+        // Deletes, then adds. Each quad has at most one change so the order does not
+        // affect the result.
+        quads.forEach((q, isAdd)->{
+            if ( ! isAdd )
+                collector.delete(q.get(0), q.get(1), q.get(2), q.get(3));
+        });
+        quads.forEach((q, isAdd)->{
+            if ( isAdd )
+                collector.add(q.get(0), q.get(1), q.get(2), q.get(3));
+        });
+        collector.txnCommit();
+        collector.finish();
+        return collector.getRDFPatch();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch.system;
+
+import org.seaborne.patch.PatchHeader;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+
+/**
+ * An {@link RDFPatch}, held in memory, together with the size in bytes of the
+ * serialized form it was read from. The size is known without writing the patch out.
+ */
+public class RDFPatchSized implements RDFPatch {
+
+    private final RDFPatch patch;
+    private final long size;
+
+    public RDFPatchSized(RDFPatch patch, long size) {
+        this.patch = patch;
+        this.size = size;
+    }
+
+    /** The patch. */
+    public RDFPatch get() {
+        return patch;
+    }
+
+    /** Size, in bytes, of the serialized patch. */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public PatchHeader header() {
+        return patch.header();
+    }
+
+    @Override
+    public void apply(RDFChanges changes) {
+        patch.apply(changes);
+    }
+
+    @Override
+    public boolean repeatable() {
+        return patch.repeatable();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch.system;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.PatchHeader;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
+import org.seaborne.patch.changes.RDFChangesNoOp;
+import org.seaborne.patch.changes.RDFChangesOnStartFinish;
+import org.seaborne.patch.text.RDFPatchReaderText;
+
+/**
+ * An {@link RDFPatch} held as bytes, in text or binary format, in a {@link Spool}. The
+ * bytes are parsed each time the patch is applied so the patch is not held in memory as
+ * Java objects.
+ * <p>
+ * {@link #close} discards the bytes, and any temporary file, when the patch is no longer needed.
+ */
+public class RDFPatchSpooled implements RDFPatch, AutoCloseable {
+
+    private final PatchHeader header;
+    private final Spool spool;
+    private final boolean binary;
+    private final boolean headerInSpool;
+
+    /**
+     * A patch where the spool holds the whole patch, header and body.
+     * The header is read from the spool.
+     */
+    public static RDFPatchSpooled create(Spool spool, boolean binary) {
+        PatchHeader header;
+        try ( InputStream in = spool.openInputStream() ) {
+            header = binary ? RDFPatchReaderBinary.readHeader(in) : RDFPatchReaderText.readerHeader(in);
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+        return new RDFPatchSpooled(header, spool, binary, true);
+    }
+
+    /**
+     * Read a patch, copying the bytes to the spool as they are read. The patch is parsed
+     * as it is read, so bad syntax is found without parsing it again from the spool, and
+     * the header is taken from this parse.
+     */
+    public static RDFPatchSpooled read(InputStream input, Spool spool, boolean binary) throws IOException {
+        Map<String, Node> header = new LinkedHashMap<>();
+        RDFChanges changes = new RDFChangesNoOp() {
+            @Override
+            public void header(String field, Node value) {
+                header.putIfAbsent(field, value);
+            }
+        };
+        InputStream in = new SpoolingInputStream(input, spool);
+        if ( binary )
+            RDFPatchReaderBinary.read(in, changes);
+        else
+            new RDFPatchReaderText(in).apply(changes);
+        // Keep anything after the patch, as the bytes of the patch.
+        in.transferTo(OutputStream.nullOutputStream());
+        return new RDFPatchSpooled(new PatchHeader(header), spool, binary, true);
+    }
+
+    /** Copy the bytes read to a {@link Spool}. */
+    private static class SpoolingInputStream extends FilterInputStream {
+        private final Spool spool;
+
+        SpoolingInputStream(InputStream in, Spool spool) {
+            super(in);
+            this.spool = spool;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if ( b != -1 )
+                spool.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if ( n > 0 )
+                spool.write(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must still be copied.
+            byte[] b = new byte[(int)Math.min(n, 8192)];
+            int x = read(b, 0, b.length);
+            return Math.max(x, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /** A patch where the spool holds the body and the header is given separately. */
+    public static RDFPatchSpooled create(PatchHeader header, Spool spool, boolean binary) {
+        return new RDFPatchSpooled(header, spool, binary, false);
+    }
+
+    private RDFPatchSpooled(PatchHeader header, Spool spool, boolean binary, boolean headerInSpool) {
+        this.header = header;
+        this.spool = spool;
+        this.binary = binary;
+        this.headerInSpool = headerInSpool;
+    }
+
+    @Override
+    public PatchHeader header() {
+        return header;
+    }
+
+    /** Size, in bytes, of the spooled patch. */
+    public long size() {
+        return spool.size();
+    }
+
+    @Override
+    public void apply(RDFChanges changes) {
+        if ( ! headerInSpool )
+            header.apply(changes);
+        // The readers call start() and finish(); applying a patch does not.
+        RDFChanges target = new RDFChangesOnStartFinish(changes, null, null);
+        try ( InputStream in = spool.openInputStream() ) {
+            if ( binary )
+                RDFPatchReaderBinary.read(in, target);
+            else
+                new RDFPatchReaderText(in).apply(target);
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+    }
+
+    @Override
+    public boolean repeatable() {
+        return true;
+    }
+
+    /** Discard the bytes of the patch and delete any temporary file. The patch can not be used afterwards. */
+    @Override
+    public void close() {
+        spool.reset();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch.system;
+
+import java.io.*;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.jena.atlas.RuntimeIOException;
+
+/**
+ * An {@link OutputStream} that keeps the bytes written in memory up to a limit and then
+ * moves them to a temporary file. The bytes can be read back, any number of times,
+ * with {@link #openInputStream}.
+ * <p>
+ * The temporary file is deleted by {@link #reset} or when the {@code Spool} is no longer
+ * reachable.
+ */
+public class Spool extends OutputStream {
+
+    /** Default limit, in bytes, on the bytes held in memory. */
+    public static final long DFT_MEMORY_LIMIT = 8*1024*1024;
+
+    private static final Cleaner cleaner = Cleaner.create();
+
+    // The temporary file, held separately from the Spool so the Cleaner can delete it.
+    private static class SpoolFile implements Runnable {
+        final Path path;
+        final OutputStream output;
+        SpoolFile(Path path, OutputStream output) {
+            this.path = path;
+            this.output = output;
+        }
+
+        @Override
+        public void run() {
+            try { output.close(); } catch (IOException ex) {}
+            try { Files.deleteIfExists(path); } catch (IOException ex) {}
+        }
+    }
+
+    private final long memoryLimit;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream(8*1024);
+    private SpoolFile file = null;
+    private Cleaner.Cleanable cleanable = null;
+    private long size = 0;
+
+    public Spool() {
+        this(DFT_MEMORY_LIMIT);
+    }
+
+    public Spool(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    /** Number of bytes written. */
+    public long size() {
+        return size;
+    }
+
+    /** Are all the bytes held in memory? */
+    public boolean inMemory() {
+        return file == null;
+    }
+
+    @Override
+    public void write(int b) {
+        try {
+            output(1).write(b);
+            size++;
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        try {
+            output(len).write(b, off, len);
+            size += len;
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+    }
+
+    // Where to write the next len bytes.
+    private OutputStream output(int len) throws IOException {
+        if ( file != null )
+            return file.output;
+        if ( size+len <= memoryLimit )
+            return memory;
+        // Move to a file.
+        Path path = Files.createTempFile("spool", ".tmp");
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 128*1024);
+        file = new SpoolFile(path, out);
+        cleanable = cleaner.register(this, file);
+        memory.writeTo(out);
+        memory = null;
+        return out;
+    }
+
+    @Override
+    public void flush() {
+        if ( file == null )
+            return;
+        try {
+            file.output.flush();
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+    }
+
+    /** Read the bytes written so far. The caller must close the {@code InputStream}. */
+    public InputStream openInputStream() {
+        if ( file == null )
+            return new ByteArrayInputStream(memory.toByteArray());
+        flush();
+        try {
+            return new BufferedInputStream(Files.newInputStream(file.path), 128*1024);
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+    }
+
+    /** Discard the bytes written and delete any temporary file. */
+    public void reset() {
+        if ( cleanable != null )
+            cleanable.clean();
+        cleanable = null;
+        file = null;
+        memory = new ByteArrayOutputStream(8*1024);
+        size = 0;
+    }
+
+    /** Closing a {@code Spool} does not discard the bytes; see {@link #reset}. */
+    @Override
+    public void close() {
+        flush();
+    }
+}
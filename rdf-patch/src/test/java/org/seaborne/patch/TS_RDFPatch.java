@@ -29,6 +29,10 @@ import org.seaborne.patch.filelog.TestRotate;
     , TestRDFChangesDataset.class
     , TestRDFChangesGraph.class
     , TestRDFChangesCancel.class
+    , TestRDFPatchBinary.class
+    , TestRDFPatchSquash.class
+    , TestRDFChangesCollector.class
+    , TestRDFChangesSpool.class
     , TestRotate.class
     , TestAssemblerFileLog.class
 })
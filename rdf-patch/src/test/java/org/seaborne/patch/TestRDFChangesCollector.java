@@ -0,0 +1,144 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesCollector.RDFPatchStored;
+import org.seaborne.patch.items.AddQuad;
+import org.seaborne.patch.items.ChangeItem;
+import org.seaborne.patch.items.TxnBegin;
+
+public class TestRDFChangesCollector {
+    private static Node g1 = SSE.parseNode("<http://example/g1>");
+    private static Node s1 = SSE.parseNode("<http://example/s1>");
+    private static Node p1 = SSE.parseNode("<http://example/p1>");
+    private static Node o1 = SSE.parseNode("'abc'");
+    private static Node o2 = SSE.parseNode("123");
+
+    private static final String PATCH = String.join("\n"
+        , "H id <uuid:1234> ."
+        , "TX ."
+        , "PA \"ex\" \"http://example/\" ."
+        , "PA \"ns\" \"http://example/ns#\" <http://example/g1> ."
+        , "A <http://example/s1> <http://example/p1> \"abc\" ."
+        , "A <http://example/s1> <http://example/p1> \"abc\" <http://example/g1> ."
+        , "D <http://example/s1> <http://example/p1> 123 ."
+        , "PD \"ex\" ."
+        , "TC ."
+        , "");
+
+    private static RDFPatch parse(String str) {
+        return RDFPatchOps.read(new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test public void collect_roundtrip() {
+        RDFPatch patch = parse(PATCH);
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(RDFPatchOps.collect(patch)));
+        RDFPatch patch2 = parse(RDFPatchOps.str(patch));
+        assertEquals(patch, patch2);
+        assertEquals(patch.hashCode(), patch2.hashCode());
+    }
+
+    @Test public void collect_view() {
+        // A patch is not changed by later changes to the collector.
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.start();
+        c.txnBegin();
+        c.add(g1, s1, p1, o1);
+        RDFPatch patch1 = c.getRDFPatch();
+        String str1 = RDFPatchOps.str(patch1);
+        for ( int i = 0 ; i < 1000 ; i++ )
+            c.add(null, s1, p1, SSE.parseNode("'"+i+"'"));
+        c.txnCommit();
+        assertEquals(str1, RDFPatchOps.str(patch1));
+        RDFPatch patch2 = c.getRDFPatch();
+        assertNotEquals(patch1, patch2);
+        assertEquals(1001, RDFPatchOps.summary(patch2).countAddData);
+        // Reset starts again; earlier patches are unchanged.
+        c.reset();
+        assertEquals(str1, RDFPatchOps.str(patch1));
+        assertEquals("", RDFPatchOps.str(c.getRDFPatch()));
+    }
+
+    @Test public void collect_equals() {
+        RDFChangesCollector c1 = new RDFChangesCollector();
+        c1.add(null, s1, p1, o1);
+        c1.add(g1, s1, p1, o2);
+        RDFChangesCollector c2 = new RDFChangesCollector();
+        // Different order of first use of terms.
+        c2.deletePrefix(g1, "ex");
+        c2.reset();
+        c2.add(null, s1, p1, o1);
+        c2.add(g1, s1, p1, o2);
+        assertEquals(c1.getRDFPatch(), c2.getRDFPatch());
+        assertEquals(c1.getRDFPatch().hashCode(), c2.getRDFPatch().hashCode());
+        c2.delete(g1, s1, p1, o2);
+        assertNotEquals(c1.getRDFPatch(), c2.getRDFPatch());
+    }
+
+    @Test public void collect_items() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.txnBegin();
+        c.add(g1, s1, p1, o1);
+        List<ChangeItem> items = ((RDFPatchStored)c.getRDFPatch()).getActions();
+        assertEquals(2, items.size());
+        assertTrue(items.get(0) instanceof TxnBegin);
+        assertEquals(new AddQuad(g1, s1, p1, o1), items.get(1));
+        RDFPatch patch = new RDFPatchStored(new HashMap<>(), items);
+        assertEquals(c.getRDFPatch(), patch);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void collect_items_fixed() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.add(g1, s1, p1, o1);
+        RDFPatchStored patch = (RDFPatchStored)c.getRDFPatch();
+        assertSame(patch.getActions(), patch.getActions());
+        patch.getActions().clear();
+    }
+
+    @Test public void collect_view_concurrent() throws Exception {
+        // A patch is not affected by changes added, in another thread, after it was taken.
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.txnBegin();
+        c.add(g1, s1, p1, o1);
+        RDFPatch patch = c.getRDFPatch();
+        String expected = RDFPatchOps.str(patch);
+        Thread thread = new Thread(()->{
+            // New terms: the table of terms grows.
+            for ( int i = 0 ; i < 100_000 ; i++ )
+                c.add(g1, s1, p1, SSE.parseNode("'v"+i+"'"));
+        });
+        thread.start();
+        while ( thread.isAlive() )
+            assertEquals(expected, RDFPatchOps.str(patch));
+        thread.join();
+        assertEquals(expected, RDFPatchOps.str(patch));
+        assertNotEquals(expected, RDFPatchOps.str(c.getRDFPatch()));
+    }
+}
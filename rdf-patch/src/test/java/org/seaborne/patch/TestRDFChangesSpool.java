@@ -0,0 +1,165 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesSpool;
+import org.seaborne.patch.system.RDFPatchSpooled;
+import org.seaborne.patch.system.Spool;
+
+public class TestRDFChangesSpool {
+    private static Node g1 = SSE.parseNode("<http://example/g1>");
+    private static Node s1 = SSE.parseNode("<http://example/s1>");
+    private static Node p1 = SSE.parseNode("<http://example/p1>");
+    private static Node o1 = SSE.parseNode("'abc'");
+    private static Node id = SSE.parseNode("<uuid:1234>");
+
+    private static byte[] bytes(int n) {
+        byte[] b = new byte[n];
+        for ( int i = 0 ; i < n ; i++ )
+            b[i] = (byte)i;
+        return b;
+    }
+
+    private static byte[] readAll(Spool spool) {
+        try ( InputStream in = spool.openInputStream() ) {
+            return IO.readWholeFile(in);
+        } catch (IOException ex) { throw new RuntimeException(ex); }
+    }
+
+    @Test public void spool_memory() {
+        Spool spool = new Spool(1000);
+        spool.write(bytes(100), 0, 100);
+        assertTrue(spool.inMemory());
+        assertEquals(100, spool.size());
+        assertArrayEquals(bytes(100), readAll(spool));
+    }
+
+    @Test public void spool_file() {
+        Spool spool = new Spool(100);
+        byte[] data = bytes(1000);
+        spool.write(data, 0, 50);
+        assertTrue(spool.inMemory());
+        spool.write(data, 50, 950);
+        assertFalse(spool.inMemory());
+        assertEquals(1000, spool.size());
+        assertArrayEquals(data, readAll(spool));
+        // Can be read again.
+        assertArrayEquals(data, readAll(spool));
+        spool.reset();
+        assertTrue(spool.inMemory());
+        assertEquals(0, spool.size());
+    }
+
+    private static void changes(RDFChanges x) {
+        x.header("id", id);
+        x.txnBegin();
+        x.addPrefix(null, "ex", "http://example/");
+        for ( int i = 0 ; i < 200 ; i++ )
+            x.add(g1, s1, p1, SSE.parseNode("'abc-"+i+"'"));
+        x.delete(null, s1, p1, o1);
+        x.txnCommit();
+    }
+
+    private static RDFPatch collect(RDFChangesCollector c, Consumer<RDFChanges> action) {
+        c.start();
+        action.accept(c);
+        c.finish();
+        return c.getRDFPatch();
+    }
+
+    private static RDFPatch spool(RDFChangesSpool c, Consumer<RDFChanges> action) {
+        c.start();
+        action.accept(c);
+        c.finish();
+        return c.getRDFPatch();
+    }
+
+    @Test public void spool_changes_memory() {
+        RDFPatch expected = collect(new RDFChangesCollector(), TestRDFChangesSpool::changes);
+        RDFPatch patch = spool(new RDFChangesSpool(), TestRDFChangesSpool::changes);
+        assertEquals(id, patch.header().get("id"));
+        assertEquals(RDFPatchOps.str(expected), RDFPatchOps.str(patch));
+        // Repeatable.
+        assertEquals(RDFPatchOps.str(expected), RDFPatchOps.str(patch));
+    }
+
+    @Test public void spool_changes_file() {
+        RDFPatch expected = collect(new RDFChangesCollector(), TestRDFChangesSpool::changes);
+        RDFPatch patch = spool(new RDFChangesSpool(64), TestRDFChangesSpool::changes);
+        assertEquals(RDFPatchOps.str(expected), RDFPatchOps.str(patch));
+    }
+
+    @Test public void spool_changes_next() {
+        // After getRDFPatch, the next patch starts empty.
+        RDFChangesSpool c = new RDFChangesSpool(64);
+        RDFPatch patch1 = spool(c, TestRDFChangesSpool::changes);
+        RDFPatch patch2 = spool(c, x->{
+            x.txnBegin();
+            x.add(null, s1, p1, o1);
+            x.txnCommit();
+        });
+        RDFPatch expected2 = collect(new RDFChangesCollector(), x->{
+            x.txnBegin();
+            x.add(null, s1, p1, o1);
+            x.txnCommit();
+        });
+        assertEquals(RDFPatchOps.str(expected2), RDFPatchOps.str(patch2));
+        RDFPatch expected1 = collect(new RDFChangesCollector(), TestRDFChangesSpool::changes);
+        assertEquals(RDFPatchOps.str(expected1), RDFPatchOps.str(patch1));
+    }
+
+    private static void spooled_read(boolean binary) throws IOException {
+        RDFPatch expected = collect(new RDFChangesCollector(), TestRDFChangesSpool::changes);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if ( binary )
+            RDFPatchOps.writeBinary(out, expected);
+        else
+            RDFPatchOps.write(out, expected);
+        byte[] bytes = out.toByteArray();
+        Spool spool = new Spool(64);
+        RDFPatchSpooled patch = RDFPatchSpooled.read(new ByteArrayInputStream(bytes), spool, binary);
+        assertEquals(bytes.length, patch.size());
+        assertArrayEquals(bytes, readAll(spool));
+        assertEquals(id, patch.getId());
+        assertEquals(RDFPatchOps.str(expected), RDFPatchOps.str(patch));
+        patch.close();
+        assertEquals(0, spool.size());
+        assertTrue(spool.inMemory());
+    }
+
+    @Test public void spooled_read_text() throws IOException {
+        spooled_read(false);
+    }
+
+    @Test public void spooled_read_binary() throws IOException {
+        spooled_read(true);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.function.Consumer;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.binary.RDFChangesWriterBinary;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+public class TestRDFPatchBinary {
+    private static Node g1 = SSE.parseNode("<http://example/g1>");
+    private static Node s1 = SSE.parseNode("<http://example/s1>");
+    private static Node s2 = SSE.parseNode("_:s2");
+    private static Node p1 = SSE.parseNode("<http://example/p1>");
+    private static Node p2 = SSE.parseNode("<http://example/ns#p2>");
+    private static Node o1 = SSE.parseNode("'abc'");
+    private static Node o2 = SSE.parseNode("123");
+    private static Node o3 = SSE.parseNode("'chat'@fr");
+
+    private static RDFPatch makePatch(Consumer<RDFChanges> action) {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        changes.start();
+        action.accept(changes);
+        changes.finish();
+        return changes.getRDFPatch();
+    }
+
+    private static byte[] writeBinary(RDFPatch patch, boolean compress) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFChangesWriterBinary writer = new RDFChangesWriterBinary(TRDF.protocol(out), compress);
+        writer.start();
+        patch.apply(writer);
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private static RDFPatch readBinary(byte[] bytes) {
+        return RDFPatchOps.readBinary(new ByteArrayInputStream(bytes));
+    }
+
+    private static void roundTrip(RDFPatch patch) {
+        String expected = RDFPatchOps.str(patch);
+        assertEquals(expected, RDFPatchOps.str(readBinary(writeBinary(patch, true))));
+        assertEquals(expected, RDFPatchOps.str(readBinary(writeBinary(patch, false))));
+    }
+
+    @Test public void binary_roundtrip_01() {
+        RDFPatch patch = makePatch(x->{
+            x.txnBegin();
+            x.add(g1, s1, p1, o1);
+            x.add(g1, s1, p1, o2);
+            x.add(null, s1, p1, o2);
+            x.delete(g1, s2, p2, o3);
+            x.add(g1, s2, p2, o3);
+            x.txnCommit();
+        });
+        roundTrip(patch);
+    }
+
+    @Test public void binary_roundtrip_02() {
+        // Prefixes, including redefinition and deletion part way through the patch.
+        RDFPatch patch = makePatch(x->{
+            x.header("id", SSE.parseNode("<uuid:1234>"));
+            x.txnBegin();
+            x.addPrefix(null, "ex", "http://example/");
+            x.addPrefix(g1, "ns", "http://example/ns#");
+            x.addPrefix(null, "xsd", "http://www.w3.org/2001/XMLSchema#");
+            x.add(g1, s1, p1, o1);
+            x.add(g1, s1, p2, o2);
+            x.add(g1, s1, p2, SSE.parseNode("'2020-01-01'^^xsd:date"));
+            x.deletePrefix(null, "ex");
+            x.add(g1, s2, p1, o1);
+            x.addPrefix(null, "ex", "http://example/other/");
+            x.add(null, s1, p1, o1);
+            x.add(null, SSE.parseNode("<http://example/other/s>"), p1, o1);
+            x.txnCommit();
+        });
+        roundTrip(patch);
+    }
+
+    @Test public void binary_compress_01() {
+        RDFPatch patch = makePatch(x->{
+            x.txnBegin();
+            x.addPrefix(null, "ex", "http://example/");
+            for ( int i = 0 ; i < 100 ; i++ )
+                x.add(g1, s1, p1, SSE.parseNode("<http://example/o"+i+">"));
+            x.txnCommit();
+        });
+        byte[] compressed = writeBinary(patch, true);
+        byte[] uncompressed = writeBinary(patch, false);
+        assertTrue("Not smaller: "+compressed.length+" >= "+uncompressed.length, 2*compressed.length < uncompressed.length);
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(readBinary(compressed)));
+    }
+
+    @Test public void binary_compress_02() {
+        // One writer, two patches: the second patch must not depend on the first.
+        RDFPatch patch1 = makePatch(x->{
+            x.txnBegin();
+            x.addPrefix(null, "ex", "http://example/");
+            x.add(g1, s1, p1, o1);
+            x.txnCommit();
+        });
+        RDFPatch patch2 = makePatch(x->{
+            x.txnBegin();
+            x.add(g1, s1, p1, o2);
+            x.txnCommit();
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFChangesWriterBinary writer = new RDFChangesWriterBinary(TRDF.protocol(out), true);
+        writer.start();
+        patch1.apply(writer);
+        writer.finish();
+        byte[] bytes1 = out.toByteArray();
+        out.reset();
+        writer.start();
+        patch2.apply(writer);
+        writer.finish();
+        byte[] bytes2 = out.toByteArray();
+        assertEquals(RDFPatchOps.str(patch1), RDFPatchOps.str(readBinary(bytes1)));
+        assertEquals(RDFPatchOps.str(patch2), RDFPatchOps.str(readBinary(bytes2)));
+    }
+
+    @Test public void binary_default_uncompressed() {
+        RDFPatch patch = makePatch(x->{
+            x.txnBegin();
+            x.add(g1, s1, p1, o1);
+            x.add(g1, s1, p1, o2);
+            x.txnCommit();
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFPatchOps.writeBinary(out, patch);
+        assertArrayEquals(writeBinary(patch, false), out.toByteArray());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.changes.PatchSummary;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+public class TestRDFPatchSquash {
+    private static Node g1 = SSE.parseNode("<http://example/g1>");
+    private static Node s1 = SSE.parseNode("<http://example/s1>");
+    private static Node p1 = SSE.parseNode("<http://example/p1>");
+    private static Node o1 = SSE.parseNode("'abc'");
+    private static Node o2 = SSE.parseNode("123");
+    private static Node o3 = SSE.parseNode("'chat'@fr");
+
+    private static Node id1 = SSE.parseNode("<urn:uuid:1>");
+    private static Node id2 = SSE.parseNode("<urn:uuid:2>");
+    private static Node id3 = SSE.parseNode("<urn:uuid:3>");
+
+    private static RDFPatch makePatch(Node id, Node prev, Consumer<RDFChanges> action) {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        changes.start();
+        changes.header(RDFPatchConst.ID, id);
+        if ( prev != null )
+            changes.header(RDFPatchConst.PREV, prev);
+        changes.txnBegin();
+        action.accept(changes);
+        changes.txnCommit();
+        changes.finish();
+        return changes.getRDFPatch();
+    }
+
+    private static RDFPatch squash(RDFPatch... patches) {
+        return RDFPatchOps.squash(Arrays.asList(patches).iterator());
+    }
+
+    private static DatasetGraph apply(RDFPatch... patches) {
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        for ( RDFPatch patch : patches )
+            RDFPatchOps.applyChange(dsg, patch);
+        return dsg;
+    }
+
+    @Test public void squash_header_01() {
+        RDFPatch patch1 = makePatch(id1, null, x->x.add(g1, s1, p1, o1));
+        RDFPatch patch2 = makePatch(id2, id1, x->x.add(g1, s1, p1, o2));
+        RDFPatch patch3 = makePatch(id3, id2, x->x.add(g1, s1, p1, o3));
+        RDFPatch patch = squash(patch1, patch2, patch3);
+        assertEquals(id3, patch.getId());
+        assertNull(patch.getPrevious());
+        assertEquals(3, RDFPatchOps.squashCount(patch));
+        assertEquals(1, RDFPatchOps.squashCount(patch1));
+    }
+
+    @Test public void squash_header_02() {
+        RDFPatch patch2 = makePatch(id2, id1, x->x.add(g1, s1, p1, o2));
+        RDFPatch patch3 = makePatch(id3, id2, x->x.add(g1, s1, p1, o3));
+        RDFPatch patch = squash(patch2, patch3);
+        assertEquals(id3, patch.getId());
+        assertEquals(id1, patch.getPrevious());
+        // Squash of squashed patches.
+        RDFPatch patch1 = makePatch(id1, null, x->x.add(g1, s1, p1, o1));
+        assertEquals(3, RDFPatchOps.squashCount(squash(patch1, patch)));
+    }
+
+    @Test public void squash_header_03() {
+        // A first patch with only headers: the "prev" of a later patch does not replace it.
+        Node id0 = SSE.parseNode("<urn:uuid:0>");
+        RDFChangesCollector changes = new RDFChangesCollector();
+        changes.header(RDFPatchConst.ID, id1);
+        changes.header(RDFPatchConst.PREV, id0);
+        RDFPatch patch1 = changes.getRDFPatch();
+        RDFPatch patch2 = makePatch(id2, id1, x->x.add(g1, s1, p1, o2));
+        RDFPatch patch = squash(patch1, patch2);
+        assertEquals(id2, patch.getId());
+        assertEquals(id0, patch.getPrevious());
+    }
+
+    @Test public void squash_header_04() {
+        // A first patch with only headers and no "prev".
+        RDFChangesCollector changes = new RDFChangesCollector();
+        changes.header(RDFPatchConst.ID, id1);
+        RDFPatch patch1 = changes.getRDFPatch();
+        RDFPatch patch2 = makePatch(id2, id1, x->x.add(g1, s1, p1, o2));
+        assertNull(squash(patch1, patch2).getPrevious());
+    }
+
+    @Test public void squash_cancel_01() {
+        // Add then delete : a delete. Delete then add : an add.
+        RDFPatch patch1 = makePatch(id1, null, x->{
+            x.add(g1, s1, p1, o1);
+            x.delete(null, s1, p1, o2);
+        });
+        RDFPatch patch2 = makePatch(id2, id1, x->{
+            x.delete(g1, s1, p1, o1);
+            x.add(null, s1, p1, o2);
+        });
+        RDFPatch patch = squash(patch1, patch2);
+        PatchSummary summary = RDFPatchOps.summary(patch);
+        assertEquals(1, summary.getCountAddData());
+        assertEquals(1, summary.getCountDeleteData());
+        assertEquals(1, summary.getCountTxnBegin());
+    }
+
+    @Test public void squash_prefix_01() {
+        RDFPatch patch1 = makePatch(id1, null, x->{
+            x.addPrefix(null, "ex", "http://example/");
+            x.addPrefix(g1, "ex", "http://example/");
+        });
+        RDFPatch patch2 = makePatch(id2, id1, x->{
+            x.addPrefix(null, "ex", "http://example/ns#");
+            x.deletePrefix(g1, "ex");
+        });
+        PatchSummary summary = RDFPatchOps.summary(squash(patch1, patch2));
+        assertEquals(1, summary.getCountAddPrefix());
+        assertEquals(1, summary.getCountDeletePrefix());
+    }
+
+    @Test public void squash_abort_01() {
+        RDFPatch patch1 = makePatch(id1, null, x->{
+            x.add(g1, s1, p1, o1);
+            x.txnAbort();
+            x.txnBegin();
+            x.add(g1, s1, p1, o2);
+        });
+        DatasetGraph dsg = apply(squash(patch1));
+        assertFalse(dsg.contains(g1, s1, p1, o1));
+        assertTrue(dsg.contains(g1, s1, p1, o2));
+    }
+
+    @Test public void squash_apply_01() {
+        RDFPatch patch1 = makePatch(id1, null, x->{
+            x.add(g1, s1, p1, o1);
+            x.add(g1, s1, p1, o2);
+        });
+        RDFPatch patch2 = makePatch(id2, id1, x->{
+            x.delete(g1, s1, p1, o1);
+            x.add(null, s1, p1, o3);
+        });
+        RDFPatch patch3 = makePatch(id3, id2, x->{
+            x.add(g1, s1, p1, o1);
+            x.delete(g1, s1, p1, o2);
+        });
+        DatasetGraph dsg1 = apply(patch1, patch2, patch3);
+        DatasetGraph dsg2 = apply(squash(patch1, patch2, patch3));
+        assertTrue(dsg2.contains(g1, s1, p1, o1));
+        assertFalse(dsg2.contains(g1, s1, p1, o2));
+        assertTrue(dsg2.getDefaultGraph().contains(s1, p1, o3));
+        assertEquals(dsg1.getDefaultGraph().size(), dsg2.getDefaultGraph().size());
+        assertEquals(dsg1.getGraph(g1).size(), dsg2.getGraph(g1).size());
+    }
+}